@@ -37,6 +37,10 @@ sourceSets {
             srcDirs("${rootDir}/src/main/languages")
         }
     }
+    // Classes using incubating Vector API are compiled separately, they are loaded only when the module is present
+    create("vector") {
+        compileClasspath += main.get().output + main.get().compileClasspath
+    }
 }
 
 tasks {
@@ -46,6 +50,19 @@ tasks {
         targetCompatibility = "17"
         options.compilerArgs = options.compilerArgs + "-Xlint:unchecked" + "-Xlint:deprecation"
     }
+
+    named<JavaCompile>("compileVectorJava") {
+        options.compilerArgs = options.compilerArgs + "--add-modules" + "jdk.incubator.vector"
+    }
+
+    jar {
+        from(sourceSets["vector"].output)
+    }
+
+    // Vector API is used for search only when the module is added to the IDE JVM
+    runIde {
+        jvmArgs("--add-modules", "jdk.incubator.vector")
+    }
 //    withType<org.jetbrains.kotlin.gradle.tasks.KotlinCompile> {
 //        kotlinOptions.jvmTarget = "17"
 //    }
@@ -136,4 +153,6 @@ dependencies {
     compileOnly(":debugvalue-rider-2022.2.1")
     compileOnly(":database-plugin-2022.2.1")
     compileOnly(":jsr305-2.0.1")
+    testCompileOnly(":jsr305-2.0.1")
+    testImplementation("junit:junit:4.13.2")
 }
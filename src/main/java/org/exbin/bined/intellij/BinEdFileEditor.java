@@ -52,7 +52,6 @@ public class BinEdFileEditor implements FileEditor, DumbAware {
     private final PropertyChangeSupport propertyChangeSupport;
     private String displayName;
     private BinEdVirtualFile virtualFile;
-    private BinEdFileEditorState fileEditorState = new BinEdFileEditorState();
     private static VirtualFile NULL_VIRTUAL_FILE = new NullVirtualFile();
 
     public BinEdFileEditor(Project project, final BinEdVirtualFile virtualFile) {
@@ -85,16 +84,19 @@ public class BinEdFileEditor implements FileEditor, DumbAware {
     @Nonnull
     @Override
     public FileEditorState getState(FileEditorStateLevel level) {
-        return fileEditorState;
+        return virtualFile.getEditorState();
     }
 
     @Override
     public void setState(FileEditorState state) {
+        if (state instanceof BinEdFileEditorState) {
+            virtualFile.setEditorState((BinEdFileEditorState) state);
+        }
     }
 
     @Override
     public boolean isModified() {
-        return virtualFile.getEditorFile().isModified();
+        return virtualFile.isModified();
     }
 
     @Override
@@ -104,7 +106,7 @@ public class BinEdFileEditor implements FileEditor, DumbAware {
 
     @Override
     public void selectNotify() {
-
+        virtualFile.openFileIfNeeded();
     }
 
     @Override
@@ -46,10 +46,13 @@ public class BinEdFileEditorProvider implements FileEditorProvider, DumbAware {
     @Override
     public FileEditor createEditor(Project project, VirtualFile virtualFile) {
         BinEdVirtualFile binEdVirtualFile;
-        if (virtualFile instanceof BinEdVirtualFile) {
+        if (virtualFile instanceof BinEdVirtualFile && ((BinEdVirtualFile) virtualFile).getProject() == project) {
             binEdVirtualFile = (BinEdVirtualFile) virtualFile;
+        } else if (virtualFile instanceof BinEdVirtualFile) {
+            // File resolved by path only, each project uses its own instance
+            binEdVirtualFile = BinEdFileSystem.getInstance().getBinEdFile(project, ((BinEdVirtualFile) virtualFile).getParentFile());
         } else {
-            binEdVirtualFile = new BinEdVirtualFile(virtualFile);
+            binEdVirtualFile = BinEdFileSystem.getInstance().getBinEdFile(project, virtualFile);
         }
 
         BinEdFileEditor fileEditor = new BinEdFileEditor(project, binEdVirtualFile);
@@ -73,10 +76,13 @@ public class BinEdFileEditorProvider implements FileEditorProvider, DumbAware {
     @Nonnull
     @Override
     public FileEditorState readState(Element sourceElement, Project project, VirtualFile file) {
-        return FileEditorState.INSTANCE;
+        return BinEdFileEditorState.readExternal(sourceElement);
     }
 
     @Override
     public void writeState(FileEditorState state, Project project, Element targetElement) {
+        if (state instanceof BinEdFileEditorState) {
+            ((BinEdFileEditorState) state).writeExternal(targetElement);
+        }
     }
 }
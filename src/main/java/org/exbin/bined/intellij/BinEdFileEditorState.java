@@ -17,19 +17,181 @@ package org.exbin.bined.intellij;
 
 import com.intellij.openapi.fileEditor.FileEditorState;
 import com.intellij.openapi.fileEditor.FileEditorStateLevel;
+import org.exbin.bined.CodeAreaCaretPosition;
+import org.exbin.bined.CodeAreaSection;
+import org.exbin.bined.CodeType;
+import org.exbin.bined.DefaultCodeAreaCaretPosition;
+import org.exbin.bined.SelectionRange;
+import org.exbin.bined.basic.BasicCodeAreaSection;
+import org.exbin.bined.basic.CodeAreaScrollPosition;
+import org.exbin.bined.swing.section.SectCodeArea;
+import org.jdom.Element;
 
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
 
 /**
  * File editor state for hex editor.
+ * <p>
+ * Holds caret, selection, scroll position, code type and active section,
+ * so that the editor can be reopened at the last position.
  *
  * @author ExBin Project (https://exbin.org)
  */
 @ParametersAreNonnullByDefault
 public class BinEdFileEditorState implements FileEditorState {
 
+    private static final String CARET_POSITION_ATTRIBUTE = "caretPosition";
+    private static final String CARET_CODE_OFFSET_ATTRIBUTE = "caretCodeOffset";
+    private static final String SECTION_ATTRIBUTE = "section";
+    private static final String SELECTION_START_ATTRIBUTE = "selectionStart";
+    private static final String SELECTION_END_ATTRIBUTE = "selectionEnd";
+    private static final String SCROLL_ROW_POSITION_ATTRIBUTE = "scrollRowPosition";
+    private static final String SCROLL_ROW_OFFSET_ATTRIBUTE = "scrollRowOffset";
+    private static final String SCROLL_CHAR_POSITION_ATTRIBUTE = "scrollCharPosition";
+    private static final String SCROLL_CHAR_OFFSET_ATTRIBUTE = "scrollCharOffset";
+    private static final String CODE_TYPE_ATTRIBUTE = "codeType";
+
+    private long caretPosition = 0;
+    private int caretCodeOffset = 0;
+    private String section = null;
+    private long selectionStart = 0;
+    private long selectionEnd = 0;
+    private long scrollRowPosition = 0;
+    private int scrollRowOffset = 0;
+    private int scrollCharPosition = 0;
+    private int scrollCharOffset = 0;
+    private String codeType = null;
+
+    /**
+     * Creates state of given code area.
+     *
+     * @param codeArea code area
+     * @return editor state
+     */
+    @Nonnull
+    public static BinEdFileEditorState fromCodeArea(SectCodeArea codeArea) {
+        BinEdFileEditorState state = new BinEdFileEditorState();
+        CodeAreaCaretPosition caret = codeArea.getActiveCaretPosition();
+        state.caretPosition = caret.getDataPosition();
+        state.caretCodeOffset = caret.getCodeOffset();
+        CodeAreaSection activeSection = codeArea.getActiveSection();
+        state.section = activeSection instanceof BasicCodeAreaSection ? ((BasicCodeAreaSection) activeSection).name() : null;
+        SelectionRange selection = codeArea.getSelection();
+        state.selectionStart = selection.getStart();
+        state.selectionEnd = selection.getEnd();
+        CodeAreaScrollPosition scrollPosition = codeArea.getScrollPosition();
+        state.scrollRowPosition = scrollPosition.getRowPosition();
+        state.scrollRowOffset = scrollPosition.getRowOffset();
+        state.scrollCharPosition = scrollPosition.getCharPosition();
+        state.scrollCharOffset = scrollPosition.getCharOffset();
+        state.codeType = codeArea.getCodeType().name();
+        return state;
+    }
+
+    /**
+     * Applies state to given code area. Positions are limited to the size of
+     * the current data.
+     *
+     * @param codeArea code area
+     */
+    public void applyTo(SectCodeArea codeArea) {
+        CodeType targetCodeType = parseEnum(CodeType.class, codeType);
+        if (targetCodeType != null) {
+            codeArea.setCodeType(targetCodeType);
+        }
+
+        long dataSize = codeArea.getDataSize();
+        BasicCodeAreaSection targetSection = parseEnum(BasicCodeAreaSection.class, section);
+        long targetCaretPosition = Math.min(caretPosition, dataSize);
+        int targetCodeOffset = targetCaretPosition == caretPosition ? caretCodeOffset : 0;
+        codeArea.setActiveCaretPosition(new DefaultCodeAreaCaretPosition(targetCaretPosition, targetCodeOffset, targetSection));
+        if (selectionStart != selectionEnd) {
+            codeArea.setSelection(new SelectionRange(Math.min(selectionStart, dataSize), Math.min(selectionEnd, dataSize)));
+        } else {
+            codeArea.clearSelection();
+        }
+
+        CodeAreaScrollPosition scrollPosition = new CodeAreaScrollPosition();
+        scrollPosition.setRowPosition(scrollRowPosition);
+        scrollPosition.setRowOffset(scrollRowOffset);
+        scrollPosition.setCharPosition(scrollCharPosition);
+        scrollPosition.setCharOffset(scrollCharOffset);
+        codeArea.setScrollPosition(scrollPosition);
+    }
+
+    /**
+     * Reads state from given element.
+     *
+     * @param element source element
+     * @return editor state
+     */
+    @Nonnull
+    public static BinEdFileEditorState readExternal(Element element) {
+        BinEdFileEditorState state = new BinEdFileEditorState();
+        state.caretPosition = Math.max(0, parseLong(element.getAttributeValue(CARET_POSITION_ATTRIBUTE)));
+        state.caretCodeOffset = (int) Math.max(0, parseLong(element.getAttributeValue(CARET_CODE_OFFSET_ATTRIBUTE)));
+        state.section = element.getAttributeValue(SECTION_ATTRIBUTE);
+        state.selectionStart = Math.max(0, parseLong(element.getAttributeValue(SELECTION_START_ATTRIBUTE)));
+        state.selectionEnd = Math.max(0, parseLong(element.getAttributeValue(SELECTION_END_ATTRIBUTE)));
+        state.scrollRowPosition = Math.max(0, parseLong(element.getAttributeValue(SCROLL_ROW_POSITION_ATTRIBUTE)));
+        state.scrollRowOffset = (int) Math.max(0, parseLong(element.getAttributeValue(SCROLL_ROW_OFFSET_ATTRIBUTE)));
+        state.scrollCharPosition = (int) Math.max(0, parseLong(element.getAttributeValue(SCROLL_CHAR_POSITION_ATTRIBUTE)));
+        state.scrollCharOffset = (int) Math.max(0, parseLong(element.getAttributeValue(SCROLL_CHAR_OFFSET_ATTRIBUTE)));
+        state.codeType = element.getAttributeValue(CODE_TYPE_ATTRIBUTE);
+        return state;
+    }
+
+    /**
+     * Writes state to given element.
+     *
+     * @param element target element
+     */
+    public void writeExternal(Element element) {
+        element.setAttribute(CARET_POSITION_ATTRIBUTE, String.valueOf(caretPosition));
+        element.setAttribute(CARET_CODE_OFFSET_ATTRIBUTE, String.valueOf(caretCodeOffset));
+        if (section != null) {
+            element.setAttribute(SECTION_ATTRIBUTE, section);
+        }
+        element.setAttribute(SELECTION_START_ATTRIBUTE, String.valueOf(selectionStart));
+        element.setAttribute(SELECTION_END_ATTRIBUTE, String.valueOf(selectionEnd));
+        element.setAttribute(SCROLL_ROW_POSITION_ATTRIBUTE, String.valueOf(scrollRowPosition));
+        element.setAttribute(SCROLL_ROW_OFFSET_ATTRIBUTE, String.valueOf(scrollRowOffset));
+        element.setAttribute(SCROLL_CHAR_POSITION_ATTRIBUTE, String.valueOf(scrollCharPosition));
+        element.setAttribute(SCROLL_CHAR_OFFSET_ATTRIBUTE, String.valueOf(scrollCharOffset));
+        if (codeType != null) {
+            element.setAttribute(CODE_TYPE_ATTRIBUTE, codeType);
+        }
+    }
+
     @Override
     public boolean canBeMergedWith(FileEditorState otherState, FileEditorStateLevel level) {
         return false;
     }
+
+    private static long parseLong(@Nullable String value) {
+        if (value == null) {
+            return 0;
+        }
+
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException ex) {
+            return 0;
+        }
+    }
+
+    @Nullable
+    private static <T extends Enum<T>> T parseEnum(Class<T> enumClass, @Nullable String value) {
+        if (value == null) {
+            return null;
+        }
+
+        try {
+            return Enum.valueOf(enumClass, value);
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+    }
 }
@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) ExBin Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.exbin.bined.intellij;
+
+import com.intellij.openapi.fileChooser.FileChooserFactory;
+import com.intellij.openapi.fileChooser.FileSaverDescriptor;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileWrapper;
+import org.exbin.auxiliary.binary_data.BinaryData;
+import org.exbin.bined.SelectionRange;
+import org.exbin.bined.intellij.data.FileDataWriter;
+import org.exbin.bined.intellij.data.OverlayEditableData;
+import org.exbin.bined.intellij.data.PartialWriteException;
+import org.exbin.bined.intellij.data.SharedFileSources;
+import org.exbin.bined.swing.section.SectCodeArea;
+import org.exbin.framework.App;
+import org.exbin.framework.language.api.LanguageModuleApi;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.swing.JOptionPane;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ResourceBundle;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Exporter of code area content to file.
+ *
+ * @author ExBin Project (https://exbin.org)
+ */
+@ParametersAreNonnullByDefault
+public class BinEdFileExporter {
+
+    private BinEdFileExporter() {
+    }
+
+    /**
+     * Asks for target file and exports content of code area to it under
+     * progress indicator.
+     *
+     * @param codeArea code area
+     * @param selectionOnly if true only selected range is exported
+     */
+    public static void exportData(SectCodeArea codeArea, boolean selectionOnly) {
+        ResourceBundle resourceBundle = App.getModule(LanguageModuleApi.class).getBundle(BinEdFileExporter.class);
+        BinaryData contentData = codeArea.getContentData();
+        long startFrom = 0;
+        long length = contentData.getDataSize();
+        if (selectionOnly) {
+            SelectionRange selection = codeArea.getSelection();
+            if (selection.isEmpty()) {
+                return;
+            }
+            startFrom = selection.getFirst();
+            length = selection.getLength();
+        }
+
+        String title = resourceBundle.getString(selectionOnly ? "exportSelectionDialog.title" : "saveCopyDialog.title");
+        FileSaverDescriptor descriptor = new FileSaverDescriptor(title, "");
+        VirtualFileWrapper fileWrapper = FileChooserFactory.getInstance().createSaveFileDialog(descriptor, codeArea).save((VirtualFile) null, null);
+        if (fileWrapper == null) {
+            return;
+        }
+
+        // Snapshot keeps content stable and has its own lookup state for background thread
+        BinaryData data = contentData instanceof OverlayEditableData ? ((OverlayEditableData) contentData).createSnapshot() : contentData;
+        startExport(codeArea, data, startFrom, length, fileWrapper.getFile().toPath(), resourceBundle);
+    }
+
+    /**
+     * Exports data under progress indicator.
+     * <p>
+     * Failure is reported to the user. Target which was created or changed
+     * only partially is deleted, cancelled export doesn't change target.
+     *
+     * @param codeArea code area
+     * @param data exported data
+     * @param startFrom start position
+     * @param length length of exported range
+     * @param targetPath target file
+     * @param resourceBundle resource bundle
+     */
+    private static void startExport(SectCodeArea codeArea, BinaryData data, long startFrom, long length, Path targetPath, ResourceBundle resourceBundle) {
+        String title = String.format(resourceBundle.getString("exportTask.title"), targetPath.getFileName());
+        boolean targetExisted = Files.exists(targetPath);
+        new Task.Modal(null, title, true) {
+
+            private boolean exported = false;
+
+            @Override
+            public void run(@Nonnull ProgressIndicator indicator) {
+                indicator.setIndeterminate(false);
+                try {
+                    exported = FileDataWriter.exportRange(targetPath, data, startFrom, length, new FileDataWriter.TransferMonitor() {
+                        @Override
+                        public boolean isCancelled() {
+                            return indicator.isCanceled();
+                        }
+
+                        @Override
+                        public void transferred(long transferredSize) {
+                            indicator.setFraction(length == 0 ? 1 : (double) transferredSize / length);
+                        }
+                    });
+                } catch (IOException ex) {
+                    throw new IllegalStateException(ex);
+                }
+            }
+
+            @Override
+            public void onSuccess() {
+                if (exported) {
+                    // Target can be opened in other views
+                    SharedFileSources.notifySourceReplaced(null, targetPath);
+                }
+            }
+
+            @Override
+            public void onThrowable(Throwable error) {
+                Throwable cause = error instanceof IllegalStateException && error.getCause() instanceof IOException ? error.getCause() : error;
+                Logger.getLogger(BinEdFileExporter.class.getName()).log(Level.SEVERE, "Unable to export data to " + targetPath, cause);
+                if (!targetExisted || cause instanceof PartialWriteException) {
+                    deletePartialTarget(targetPath, cause);
+                    SharedFileSources.notifySourceReplaced(null, targetPath);
+                }
+                JOptionPane.showMessageDialog(codeArea,
+                        String.format(resourceBundle.getString("exportFailed.message"), targetPath, cause.getLocalizedMessage()),
+                        resourceBundle.getString("exportFailed.title"),
+                        JOptionPane.ERROR_MESSAGE);
+            }
+        }.queue();
+    }
+
+    private static void deletePartialTarget(Path targetPath, Throwable cause) {
+        try {
+            Files.deleteIfExists(targetPath);
+            if (cause instanceof PartialWriteException) {
+                // Exported content can be exported again
+                Files.deleteIfExists(((PartialWriteException) cause).getCompleteFile());
+            }
+        } catch (IOException ex) {
+            Logger.getLogger(BinEdFileExporter.class.getName()).log(Level.WARNING, "Unable to delete partially exported file " + targetPath, ex);
+        }
+    }
+}
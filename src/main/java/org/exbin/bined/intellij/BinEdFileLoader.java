@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) ExBin Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.exbin.bined.intellij;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.exbin.auxiliary.binary_data.BinaryData;
+import org.exbin.bined.intellij.data.GzipSeekIndex;
+import org.exbin.bined.intellij.data.ProgressiveFileData;
+import org.exbin.bined.intellij.gui.UnloadedDataColorAssessor;
+import org.exbin.bined.swing.CodeAreaColorAssessor;
+import org.exbin.bined.swing.capability.ColorAssessorPainterCapable;
+import org.exbin.bined.swing.section.SectCodeArea;
+import org.exbin.framework.App;
+import org.exbin.framework.language.api.LanguageModuleApi;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ResourceBundle;
+import java.util.function.Consumer;
+import java.util.zip.ZipException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Background loader of file content.
+ *
+ * @author ExBin Project (https://exbin.org)
+ */
+@ParametersAreNonnullByDefault
+public class BinEdFileLoader {
+
+    private static final long REPAINT_INTERVAL = 200;
+
+    private BinEdFileLoader() {
+    }
+
+    /**
+     * Starts loading of file content to given data under progress indicator.
+     * <p>
+     * Code area is repainted as data are loaded, regions which are not loaded
+     * yet are shown as placeholder. Loading is stopped when data are disposed.
+     *
+     * @param project project or null
+     * @param virtualFile source virtual file
+     * @param filePath local file path if available
+     * @param data target data
+     * @param initialPosition position to load first
+     * @param codeArea code area showing data
+     * @param finishedListener listener called on dispatch thread when all
+     * data are loaded
+     */
+    public static void startLoading(@Nullable Project project, VirtualFile virtualFile, @Nullable Path filePath, ProgressiveFileData data, long initialPosition, SectCodeArea codeArea, Runnable finishedListener) {
+        ResourceBundle resourceBundle = App.getModule(LanguageModuleApi.class).getBundle(BinEdFileLoader.class);
+        String title = String.format(resourceBundle.getString("loadingTask.title"), virtualFile.getPresentableName());
+        ColorAssessorPainterCapable painter = (ColorAssessorPainterCapable) codeArea.getPainter();
+        CodeAreaColorAssessor colorAssessor = painter.getColorAssessor();
+        if (colorAssessor instanceof UnloadedDataColorAssessor) {
+            // Replaces placeholder of previously loaded data
+            colorAssessor = ((UnloadedDataColorAssessor) colorAssessor).getParentColorAssessor().orElse(null);
+        }
+        UnloadedDataColorAssessor unloadedDataAssessor = new UnloadedDataColorAssessor(codeArea, data, colorAssessor);
+        painter.setColorAssessor(unloadedDataAssessor);
+        new Task.Backgroundable(project, title, true) {
+            @Override
+            public void run(@Nonnull ProgressIndicator indicator) {
+                indicator.setIndeterminate(false);
+                long dataSize = data.getDataSize();
+                ProgressiveFileData.LoadingMonitor monitor = new ProgressiveFileData.LoadingMonitor() {
+                    private long lastRepaint = 0;
+
+                    @Override
+                    public boolean isCancelled() {
+                        return indicator.isCanceled();
+                    }
+
+                    @Override
+                    public void chunkLoaded(long loadedSize) {
+                        indicator.setFraction(dataSize == 0 ? 1 : (double) loadedSize / dataSize);
+                        long time = System.currentTimeMillis();
+                        if (time - lastRepaint >= REPAINT_INTERVAL) {
+                            lastRepaint = time;
+                            ApplicationManager.getApplication().invokeLater(codeArea::repaint);
+                        }
+                    }
+                };
+
+                try {
+                    if (filePath != null) {
+                        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+                            data.loadFromChannel(channel, initialPosition, monitor);
+                        }
+                    } else {
+                        try (InputStream inputStream = virtualFile.getInputStream()) {
+                            data.loadFromStream(inputStream, monitor);
+                        }
+                    }
+                } catch (IOException ex) {
+                    if (!data.isDisposed()) {
+                        Logger.getLogger(BinEdFileLoader.class.getName()).log(Level.SEVERE, "Unable to load file " + virtualFile.getPath(), ex);
+                    }
+                }
+            }
+
+            @Override
+            public void onFinished() {
+                if (data.isFullyLoaded() && painter.getColorAssessor() == unloadedDataAssessor) {
+                    painter.setColorAssessor(unloadedDataAssessor.getParentColorAssessor().orElse(null));
+                }
+                codeArea.repaint();
+                if (data.isFullyLoaded() && !data.isDisposed()) {
+                    finishedListener.run();
+                }
+            }
+        }.queue();
+    }
+
+    /**
+     * Starts building of seek index of gzip compressed data under progress
+     * indicator.
+     * <p>
+     * Built index is saved to given cache file, so it doesn't have to be
+     * built again for unchanged file.
+     *
+     * @param project project or null
+     * @param virtualFile source virtual file
+     * @param compressed compressed data
+     * @param indexPath path of cached index
+     * @param fileSize size of the compressed file
+     * @param fileModified modification time of the compressed file
+     * @param finishedListener listener called on dispatch thread with built
+     * index or null if building failed or was cancelled
+     */
+    public static void startIndexing(@Nullable Project project, VirtualFile virtualFile, BinaryData compressed, Path indexPath, long fileSize, long fileModified, Consumer<GzipSeekIndex> finishedListener) {
+        ResourceBundle resourceBundle = App.getModule(LanguageModuleApi.class).getBundle(BinEdFileLoader.class);
+        String title = String.format(resourceBundle.getString("indexingTask.title"), virtualFile.getPresentableName());
+        new Task.Backgroundable(project, title, true) {
+            private GzipSeekIndex index = null;
+
+            @Override
+            public void run(@Nonnull ProgressIndicator indicator) {
+                indicator.setIndeterminate(false);
+                GzipSeekIndex.BuildMonitor monitor = new GzipSeekIndex.BuildMonitor() {
+                    @Override
+                    public boolean isCancelled() {
+                        return indicator.isCanceled();
+                    }
+
+                    @Override
+                    public void progress(long position, long size) {
+                        indicator.setFraction(size == 0 ? 1 : (double) position / size);
+                    }
+                };
+
+                try {
+                    index = GzipSeekIndex.build(compressed, GzipSeekIndex.DEFAULT_SPAN, monitor);
+                } catch (ZipException ex) {
+                    Logger.getLogger(BinEdFileLoader.class.getName()).log(Level.SEVERE, "Unable to index file " + virtualFile.getPath(), ex);
+                    return;
+                }
+
+                if (index != null) {
+                    try {
+                        index.save(indexPath, fileSize, fileModified);
+                    } catch (IOException ex) {
+                        // Index is only cached, it is built again next time
+                        Logger.getLogger(BinEdFileLoader.class.getName()).log(Level.WARNING, "Unable to save index " + indexPath, ex);
+                    }
+                }
+            }
+
+            @Override
+            public void onFinished() {
+                finishedListener.accept(index);
+            }
+        }.queue();
+    }
+}
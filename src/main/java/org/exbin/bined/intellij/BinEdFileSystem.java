@@ -16,6 +16,9 @@
 package org.exbin.bined.intellij;
 
 import com.intellij.openapi.project.DumbAware;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.JarFileSystem;
+import com.intellij.openapi.vfs.LocalFileSystem;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.openapi.vfs.VirtualFileListener;
 import com.intellij.openapi.vfs.VirtualFileSystem;
@@ -24,11 +27,19 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
 import java.io.IOException;
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Virtual file system for binary editor.
+ * <p>
+ * Files are cached weakly by project and path, so that the same file
+ * instance is used by all editors of given file in the project as long as it
+ * is referenced. Each project has its own instance with its own editor
+ * component.
  *
  * @author ExBin Project (https://exbin.org)
  */
@@ -38,6 +49,7 @@ public class BinEdFileSystem extends VirtualFileSystem implements DumbAware {
     private static final String PROTOCOL = "bined";
     private static final String ERROR_INVALID_OPERATION = "Invalid operation";
     private List<VirtualFileListener> fileListeners = new ArrayList<>();
+    private final Map<String, WeakReference<BinEdVirtualFile>> files = new HashMap<>();
 
     private static class SingletonHelper {
         static final BinEdFileSystem INSTANCE = new BinEdFileSystem();
@@ -54,10 +66,47 @@ public class BinEdFileSystem extends VirtualFileSystem implements DumbAware {
         return PROTOCOL;
     }
 
+    /**
+     * Returns binary editor file for given file not bound to any project,
+     * used when file is resolved by path only.
+     *
+     * @param parentFile edited file
+     * @return binary editor file
+     */
+    @Nonnull
+    public BinEdVirtualFile getBinEdFile(VirtualFile parentFile) {
+        return getBinEdFile(null, parentFile);
+    }
+
+    /**
+     * Returns binary editor file for given file in given project, existing
+     * instance is reused if available.
+     *
+     * @param project project or null
+     * @param parentFile edited file
+     * @return binary editor file
+     */
+    @Nonnull
+    public synchronized BinEdVirtualFile getBinEdFile(@Nullable Project project, VirtualFile parentFile) {
+        String path = parentFile.getPath();
+        if (!path.startsWith(BinEdVirtualFile.PATH_PREFIX)) {
+            path = BinEdVirtualFile.PATH_PREFIX + path;
+        }
+        String key = getFileKey(project, path);
+        BinEdVirtualFile file = getCachedFile(key);
+        if (file == null) {
+            file = new BinEdVirtualFile(project, parentFile);
+            // Drop entries of already collected files
+            files.values().removeIf(reference -> reference.get() == null);
+            files.put(key, new WeakReference<>(file));
+        }
+        return file;
+    }
+
     @Nullable
     @Override
-    public VirtualFile findFileByPath(String s) {
-        return null;
+    public VirtualFile findFileByPath(String path) {
+        return findFile(path, false);
     }
 
     @Override
@@ -66,8 +115,42 @@ public class BinEdFileSystem extends VirtualFileSystem implements DumbAware {
 
     @Nullable
     @Override
-    public VirtualFile refreshAndFindFileByPath(String s) {
-        return null;
+    public VirtualFile refreshAndFindFileByPath(String path) {
+        return findFile(path, true);
+    }
+
+    @Nullable
+    private VirtualFile findFile(String path, boolean refresh) {
+        String filePath = path.startsWith(BinEdVirtualFile.PATH_PREFIX) ? path.substring(BinEdVirtualFile.PATH_PREFIX.length()) : path;
+        synchronized (this) {
+            BinEdVirtualFile file = getCachedFile(getFileKey(null, BinEdVirtualFile.PATH_PREFIX + filePath));
+            if (file != null) {
+                return file;
+            }
+        }
+
+        VirtualFileSystem fileSystem = filePath.contains(JarFileSystem.JAR_SEPARATOR) ? JarFileSystem.getInstance() : LocalFileSystem.getInstance();
+        VirtualFile parentFile = refresh ? fileSystem.refreshAndFindFileByPath(filePath) : fileSystem.findFileByPath(filePath);
+        if (parentFile == null || parentFile.isDirectory()) {
+            return null;
+        }
+
+        return getBinEdFile(parentFile);
+    }
+
+    @Nullable
+    private BinEdVirtualFile getCachedFile(String key) {
+        WeakReference<BinEdVirtualFile> reference = files.get(key);
+        BinEdVirtualFile file = reference == null ? null : reference.get();
+        if (reference != null && file == null) {
+            files.remove(key);
+        }
+        return file;
+    }
+
+    @Nonnull
+    private static String getFileKey(@Nullable Project project, String path) {
+        return project == null ? path : project.getLocationHash() + ":" + path;
     }
 
     @Override
@@ -20,22 +20,41 @@ import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.editor.ex.DocumentEx;
 import com.intellij.openapi.fileEditor.FileDocumentManager;
+import com.intellij.openapi.project.Project;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.util.LocalTimeCounter;
 import org.exbin.auxiliary.binary_data.BinaryData;
-import org.exbin.auxiliary.binary_data.paged.PagedData;
 import org.exbin.bined.EditMode;
+import org.exbin.bined.intellij.data.BlockHashes;
+import org.exbin.bined.intellij.data.OverlayEditableData;
+import org.exbin.bined.intellij.data.PageJournal;
+import org.exbin.bined.intellij.data.ProgressiveFileData;
+import org.exbin.bined.intellij.data.SharedFileSources;
 import org.exbin.bined.intellij.gui.BinEdFilePanel;
+import org.exbin.bined.intellij.gui.BinEdToolbarPanel;
 import org.exbin.bined.swing.section.SectCodeArea;
+import org.exbin.framework.App;
 import org.exbin.framework.bined.BinEdFileHandler;
 import org.exbin.framework.bined.FileHandlingMode;
+import org.exbin.framework.language.api.LanguageModuleApi;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
 import javax.swing.JComponent;
+import javax.swing.JOptionPane;
+import javax.swing.Timer;
 import java.awt.Font;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.ResourceBundle;
+import java.util.concurrent.Callable;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * File editor wrapper using BinEd editor component.
@@ -45,17 +64,82 @@ import java.io.IOException;
 @ParametersAreNonnullByDefault
 public class BinEdNativeFile {
 
+    private static final int FOLLOW_INTERVAL = 1000;
+
+    private final ResourceBundle resourceBundle = App.getModule(LanguageModuleApi.class).getBundle(BinEdNativeFile.class);
     private final BinEdFilePanel filePanel = new BinEdFilePanel();
     private final BinEdFileHandler editorFile = new BinEdFileHandler();
 
+    private final Project project;
     private boolean opened = false;
     private VirtualFile virtualFile;
     private Font defaultFont;
     private long documentOriginalSize;
+    private final BinEdSaveScheduler saveScheduler = new BinEdSaveScheduler(this::prepareSave);
+    private long changeCount = 0;
+    private boolean opening = false;
+    private volatile BinaryData writtenSource = null;
+    private volatile String savedFileStamp = null;
+    private volatile BlockHashes blockHashes = null;
+    private final Object fileLock = new Object();
+    private boolean followMode = false;
+    private volatile PageJournal directWriteJournal = null;
+    private final Timer followTimer = new Timer(FOLLOW_INTERVAL, e -> checkFollowedFile());
+    private final SharedFileSources.SourceListener sourceListener = new SharedFileSources.SourceListener() {
+        @Override
+        public void rangesWritten(List<OverlayEditableData.DataRange> ranges) {
+            ApplicationManager.getApplication().executeOnPooledThread(() -> updateWrittenRanges(ranges));
+        }
 
-    public BinEdNativeFile(VirtualFile virtualFile) {
+        @Override
+        public void sourceReplaced() {
+            ApplicationManager.getApplication().invokeLater(() -> reloadReplacedSource());
+        }
+    };
+
+    public BinEdNativeFile(Project project, VirtualFile virtualFile) {
+        this.project = project;
         this.virtualFile = virtualFile;
         filePanel.setFileHandler(editorFile);
+        filePanel.setDirectWriteControl(new BinEdToolbarPanel.DirectWriteControl() {
+            @Override
+            public boolean isDirectWriteAvailable() {
+                return virtualFile.isWritable() && getLocalFilePath(virtualFile) != null;
+            }
+
+            @Override
+            public boolean isDirectWriteMode() {
+                return directWriteJournal != null;
+            }
+
+            @Override
+            public void setDirectWriteMode(boolean directWriteMode) {
+                BinEdNativeFile.this.setDirectWriteMode(directWriteMode);
+            }
+
+            @Override
+            public boolean canRevertDirectWrites() {
+                PageJournal journal = directWriteJournal;
+                return journal != null && !journal.isEmpty();
+            }
+
+            @Override
+            public void revertDirectWrites() {
+                BinEdNativeFile.this.revertDirectWrites();
+            }
+        });
+        filePanel.setFollowControl(new BinEdToolbarPanel.FollowControl() {
+            @Override
+            public boolean isFollowMode() {
+                return followMode;
+            }
+
+            @Override
+            public void setFollowMode(boolean followMode) {
+                BinEdNativeFile.this.setFollowMode(followMode);
+            }
+        });
+        saveScheduler.addPendingStateListener(filePanel::setSavePending);
 //        BinedModule binedModule = App.getModule(BinedModule.class);
 //        binedModule.getFileManager().initComponentPanel(componentPanel.getComponentPanel());
         // TODO binedModule.getFileManager().initFileHandler(this);
@@ -76,7 +160,11 @@ public class BinEdNativeFile {
     }
 
     public boolean isModified() {
-        return false; // TODO componentPanel.isModified();
+        return saveScheduler.isPending();
+    }
+
+    public void addPendingStateListener(BinEdSaveScheduler.PendingStateListener listener) {
+        saveScheduler.addPendingStateListener(listener);
     }
 
     @Nonnull
@@ -97,19 +185,54 @@ public class BinEdNativeFile {
     public void openFile(VirtualFile virtualFile) {
         boolean editable = virtualFile.isWritable();
 
-        ApplicationManager.getApplication().runReadAction(() -> {
+        SectCodeArea codeArea = editorFile.getCodeArea();
+        BinaryData previousData = codeArea.getContentData();
+        Path filePath = getLocalFilePath(virtualFile);
+        OverlayEditableData contentData;
+        ProgressiveFileData loadingData = null;
+        if (filePath != null) {
+            // Local files are mapped to memory shared with other views and paged in only when accessed
             try {
-                byte[] fileContent = virtualFile.contentsToByteArray();
-                PagedData binaryData = new PagedData();
-                binaryData.insert(0, fileContent);
-                editorFile.getCodeArea().setContentData(binaryData);
+                contentData = new OverlayEditableData(SharedFileSources.acquire(filePath));
             } catch (IOException e) {
                 throw createBrokenVirtualFileException(e);
             }
-        });
-        SectCodeArea codeArea = editorFile.getCodeArea();
-        codeArea.addDataChangedListener(this::saveDocument);
-        codeArea.setEditMode(editable ? EditMode.EXPANDING : EditMode.READ_ONLY);
+        } else {
+            // Other files are copied to temporary file in background to keep heap usage bounded
+            try {
+                loadingData = new ProgressiveFileData(virtualFile.getLength());
+            } catch (IOException e) {
+                throw createBrokenVirtualFileException(e);
+            }
+            contentData = new OverlayEditableData(loadingData);
+        }
+        writtenSource = contentData.getSource();
+        blockHashes = null;
+        opening = true;
+        try {
+            codeArea.setContentData(contentData);
+        } finally {
+            opening = false;
+        }
+        if (previousData instanceof OverlayEditableData) {
+            previousData.dispose();
+        }
+        if (!opened) {
+            codeArea.addDataChangedListener(this::dataChanged);
+        }
+        if (loadingData != null) {
+            // Editing is enabled when all data are loaded
+            codeArea.setEditMode(EditMode.READ_ONLY);
+            BinEdFileLoader.startLoading(project, virtualFile, null, loadingData, 0, codeArea, () -> {
+                if (codeArea.getContentData() == contentData) {
+                    codeArea.setEditMode(editable ? EditMode.EXPANDING : EditMode.READ_ONLY);
+                }
+            });
+        } else {
+            codeArea.setEditMode(editable ? (directWriteJournal != null ? EditMode.INPLACE : EditMode.EXPANDING) : EditMode.READ_ONLY);
+            SharedFileSources.setSourceListener(contentData.getSource(), sourceListener);
+            computeBlockHashes(contentData.getSource());
+        }
 
         opened = true;
         documentOriginalSize = codeArea.getDataSize();
@@ -120,29 +243,443 @@ public class BinEdNativeFile {
 //        }
     }
 
+    /**
+     * Writes current content to the file and waits for completion.
+     */
     public void saveDocument() {
+        saveScheduler.writeNow();
+        saveScheduler.flush();
+    }
+
+    /**
+     * Writes pending changes without waiting for quiet period.
+     */
+    public void writePendingChanges() {
+        saveScheduler.writePending();
+    }
+
+    /**
+     * Writes pending changes and waits for completion.
+     */
+    public void flushPendingChanges() {
+        saveScheduler.flush();
+    }
+
+    public boolean isFollowMode() {
+        return followMode;
+    }
+
+    /**
+     * Sets follow mode in which data appended to the file are loaded
+     * incrementally and view is kept at the end of the file.
+     *
+     * @param followMode follow mode
+     */
+    public void setFollowMode(boolean followMode) {
+        this.followMode = followMode;
+        if (followMode && getLocalFilePath(virtualFile) != null) {
+            followTimer.start();
+        } else {
+            followTimer.stop();
+        }
+    }
+
+    /**
+     * Sets direct write mode in which data can be only overwritten and each
+     * change is written to the file immediately. Original content of
+     * overwritten pages is recorded so that it can be reverted.
+     *
+     * @param directWriteMode direct write mode
+     */
+    public void setDirectWriteMode(boolean directWriteMode) {
+        SectCodeArea codeArea = editorFile.getCodeArea();
+        if (directWriteMode == (directWriteJournal != null) || !(codeArea.getContentData() instanceof OverlayEditableData) || getLocalFilePath(virtualFile) == null || !virtualFile.isWritable()) {
+            return;
+        }
+
+        saveScheduler.flush();
+        directWriteJournal = directWriteMode ? new PageJournal() : null;
+        codeArea.setEditMode(directWriteMode ? EditMode.INPLACE : EditMode.EXPANDING);
+    }
+
+    /**
+     * Restores original content of pages overwritten in direct write mode.
+     */
+    public void revertDirectWrites() {
+        PageJournal journal = directWriteJournal;
+        Path filePath = getLocalFilePath(virtualFile);
+        SectCodeArea codeArea = editorFile.getCodeArea();
+        if (journal == null || filePath == null || !(codeArea.getContentData() instanceof OverlayEditableData)) {
+            return;
+        }
+
+        saveScheduler.flush();
+        OverlayEditableData contentData = (OverlayEditableData) codeArea.getContentData();
+        synchronized (fileLock) {
+            List<OverlayEditableData.DataRange> revertedRanges;
+            try {
+                revertedRanges = journal.revert(filePath);
+            } catch (IOException ex) {
+                Logger.getLogger(BinEdNativeFile.class.getName()).log(Level.SEVERE, "Unable to revert file " + filePath, ex);
+                return;
+            }
+            SharedFileSources.notifyRangesWritten(contentData.getSource(), filePath, revertedRanges);
+            BlockHashes hashes = blockHashes;
+            if (hashes != null) {
+                blockHashes = hashes.update(contentData.getSource(), revertedRanges);
+            }
+            savedFileStamp = getFileStamp(filePath);
+        }
+
+        // Source is mapped from the file so it already contains reverted data
+        contentData.clearModifications();
+        opening = true;
+        try {
+            codeArea.notifyDataChanged();
+        } finally {
+            opening = false;
+        }
+        virtualFile.refresh(true, false);
+    }
+
+    public void dispose() {
+        followTimer.stop();
+        saveScheduler.dispose();
+        BinaryData contentData = editorFile.getCodeArea().getContentData();
+        if (contentData instanceof OverlayEditableData) {
+            contentData.dispose();
+        }
+    }
+
+    private void dataChanged() {
+        if (opening) {
+            return;
+        }
+
+        changeCount++;
+        if (directWriteJournal != null) {
+            saveScheduler.writeNow();
+        } else {
+            saveScheduler.changeReported();
+        }
+    }
+
+    @Nullable
+    private Callable<Runnable> prepareSave() {
         BinaryData contentData = editorFile.getCodeArea().getContentData();
-        long dataSize = contentData.getDataSize();
-        final byte[] fileContent = new byte[(int) dataSize];
-        if (dataSize > 0) {
-            contentData.copyToArray(0L, fileContent, 0, (int) dataSize);
+        Path filePath = getLocalFilePath(virtualFile);
+        if (contentData instanceof OverlayEditableData && filePath != null) {
+            OverlayEditableData overlayData = (OverlayEditableData) contentData;
+            if (!overlayData.isModified()) {
+                return null;
+            }
+
+            OverlayEditableData snapshot = overlayData.createSnapshot();
+            long snapshotChangeCount = changeCount;
+            return () -> writeSnapshot(snapshot, filePath, snapshotChangeCount);
         }
+
+        // Virtual file can be written only in write action on dispatch thread
+        return () -> this::writeVirtualFile;
+    }
+
+    private void writeVirtualFile() {
+        BinaryData contentData = editorFile.getCodeArea().getContentData();
         Application application = ApplicationManager.getApplication();
         application.runWriteAction(() -> {
-            try {
-                virtualFile.setBinaryContent(fileContent);
+            try (OutputStream outputStream = virtualFile.getOutputStream(this)) {
+                contentData.saveToStream(outputStream);
             } catch (IOException e) {
                 throw createBrokenVirtualFileException(e);
             }
         });
     }
 
+    /**
+     * Writes snapshot of content to the file.
+     * <p>
+     * Only modified ranges are written when file still matches the source
+     * data, otherwise the file is rewritten. Called on background thread.
+     *
+     * @param snapshot content snapshot
+     * @param filePath local file path
+     * @param snapshotChangeCount count of changes at time of snapshot
+     * @return runnable finishing the save on event dispatch thread
+     * @throws IOException if write fails
+     */
+    @Nonnull
+    private Runnable writeSnapshot(OverlayEditableData snapshot, Path filePath, long snapshotChangeCount) throws IOException {
+        BinaryData source = snapshot.getSource();
+        BinaryData rewrittenSource = null;
+        String fileStamp;
+        synchronized (fileLock) {
+            // Source replaced by other view doesn't match the file anymore
+            boolean sourceMatches = source == writtenSource && !SharedFileSources.isReplaced(source);
+            List<OverlayEditableData.DataRange> modifiedRanges = sourceMatches ? snapshot.getInPlaceModifiedRanges() : null;
+            BlockHashes hashes = blockHashes;
+            if (modifiedRanges != null) {
+                PageJournal journal = directWriteJournal;
+                if (journal != null) {
+                    journal.record(source, modifiedRanges);
+                }
+                SharedFileSources.writeRanges(source, filePath, snapshot, modifiedRanges);
+                writtenSource = source;
+                blockHashes = hashes != null ? hashes.update(snapshot, modifiedRanges) : null;
+            } else {
+                rewrittenSource = SharedFileSources.rewriteFile(source, filePath, snapshot);
+                writtenSource = rewrittenSource;
+                blockHashes = BlockHashes.compute(rewrittenSource);
+            }
+            fileStamp = getFileStamp(filePath);
+        }
+
+        BinaryData newSource = rewrittenSource;
+        return () -> finishSave(snapshot, newSource, snapshotChangeCount, fileStamp);
+    }
+
+    /**
+     * Finishes save on event dispatch thread.
+     * <p>
+     * Rewritten file doesn't match previous source anymore, so content is
+     * always moved to the new source, changes made during the save are kept
+     * on top of it.
+     *
+     * @param snapshot written snapshot
+     * @param newSource source of rewritten file or null if ranges were
+     * written in place
+     * @param snapshotChangeCount count of changes at time of snapshot
+     * @param fileStamp stamp of written file
+     */
+    private void finishSave(OverlayEditableData snapshot, @Nullable BinaryData newSource, long snapshotChangeCount, @Nullable String fileStamp) {
+        savedFileStamp = fileStamp;
+        BinaryData contentData = editorFile.getCodeArea().getContentData();
+        if (!(contentData instanceof OverlayEditableData) || ((OverlayEditableData) contentData).getSource() != snapshot.getSource()) {
+            // Content was replaced during save
+            if (newSource != null) {
+                newSource.dispose();
+            }
+            virtualFile.refresh(true, false);
+            return;
+        }
+
+        OverlayEditableData overlayData = (OverlayEditableData) contentData;
+        if (newSource != null) {
+            if (changeCount == snapshotChangeCount) {
+                // Content matches the file now
+                overlayData.resetSource(newSource);
+            } else if (!overlayData.rebaseSource(snapshot, newSource)) {
+                Logger.getLogger(BinEdNativeFile.class.getName()).log(Level.WARNING, "Unable to keep changes made during save of " + virtualFile.getPath());
+                newSource.dispose();
+                openFile(virtualFile);
+                return;
+            }
+            SharedFileSources.setSourceListener(newSource, sourceListener);
+        } else if (changeCount == snapshotChangeCount) {
+            overlayData.clearModifications();
+        }
+        virtualFile.refresh(true, false);
+    }
+
     @Nonnull
     public FileHandlingMode getFileHandlingMode() {
         return FileHandlingMode.DIRECT;
     }
 
     public void reloadFile() {
+        saveScheduler.flush();
+        Path filePath = getLocalFilePath(virtualFile);
+        if (filePath != null && savedFileStamp != null && savedFileStamp.equals(getFileStamp(filePath))) {
+            // Change was caused by save of this editor
+            return;
+        }
+
+        BinaryData contentData = editorFile.getCodeArea().getContentData();
+        if (filePath != null && blockHashes != null && contentData instanceof OverlayEditableData && !((OverlayEditableData) contentData).isModified()) {
+            reloadChangedBlocks((OverlayEditableData) contentData, filePath);
+            return;
+        }
+
+        openFile(virtualFile);
+    }
+
+    /**
+     * Requests refresh of followed file when its size changes, because file
+     * system notifications might be delayed or missing for files appended
+     * continuously.
+     */
+    private void checkFollowedFile() {
+        Path filePath = getLocalFilePath(virtualFile);
+        BinaryData source = writtenSource;
+        BinaryData contentData = editorFile.getCodeArea().getContentData();
+        if (filePath == null || source == null || !(contentData instanceof OverlayEditableData) || ((OverlayEditableData) contentData).isModified()) {
+            return;
+        }
+
+        try {
+            if (Files.size(filePath) != source.getDataSize()) {
+                virtualFile.refresh(true, false);
+            }
+        } catch (IOException ex) {
+            // File is probably being replaced, check again later
+        }
+    }
+
+    /**
+     * Computes block hashes of given file source in background.
+     *
+     * @param source file source
+     */
+    private void computeBlockHashes(BinaryData source) {
+        ApplicationManager.getApplication().executeOnPooledThread(() -> {
+            synchronized (fileLock) {
+                if (writtenSource == source && blockHashes == null) {
+                    blockHashes = BlockHashes.compute(source);
+                }
+            }
+        });
+    }
+
+    /**
+     * Reloads file by comparing block hashes in background and patching
+     * content in place, so that caret, scroll position and undo history are
+     * kept.
+     * <p>
+     * In follow mode growth of the file is checked first and only appended
+     * data are hashed if original content is unchanged. Otherwise blocks are
+     * compared only if size of the file is unchanged, if data were moved by
+     * size change, file is opened again without hashing.
+     *
+     * @param contentData current content data
+     * @param filePath local file path
+     */
+    private void reloadChangedBlocks(OverlayEditableData contentData, Path filePath) {
+        long reloadChangeCount = changeCount;
+        boolean followAppended = followMode;
+        ApplicationManager.getApplication().executeOnPooledThread(() -> {
+            BinaryData newSource;
+            List<OverlayEditableData.DataRange> changedRanges;
+            try {
+                synchronized (fileLock) {
+                    BlockHashes previousHashes = blockHashes;
+                    newSource = SharedFileSources.acquireReloaded(filePath);
+                    long previousSize = previousHashes != null ? previousHashes.getDataSize() : 0;
+                    long newSize = newSource.getDataSize();
+                    if (previousHashes == null) {
+                        changedRanges = null;
+                    } else if (followAppended && newSize > previousSize && previousHashes.isExtendedBy(newSource)) {
+                        changedRanges = Collections.singletonList(new OverlayEditableData.DataRange(previousSize, newSize - previousSize));
+                        blockHashes = previousHashes.append(newSource);
+                    } else if (newSize == previousSize) {
+                        BlockHashes newHashes = BlockHashes.compute(newSource);
+                        changedRanges = previousHashes.getChangedRanges(newHashes);
+                        blockHashes = newHashes;
+                    } else {
+                        // Blocks after changed part are shifted, hashes would differ anyway
+                        changedRanges = null;
+                        blockHashes = null;
+                    }
+                }
+            } catch (IOException ex) {
+                Logger.getLogger(BinEdNativeFile.class.getName()).log(Level.SEVERE, "Unable to reload file " + filePath, ex);
+                return;
+            }
+            ApplicationManager.getApplication().invokeLater(() -> applyChangedBlocks(contentData, newSource, changedRanges, reloadChangeCount));
+        });
+    }
+
+    private void applyChangedBlocks(OverlayEditableData contentData, BinaryData newSource, @Nullable List<OverlayEditableData.DataRange> changedRanges, long reloadChangeCount) {
+        SectCodeArea codeArea = editorFile.getCodeArea();
+        if (codeArea.getContentData() != contentData || changeCount != reloadChangeCount || contentData.isModified() || changedRanges == null) {
+            // Content was changed during reload
+            newSource.dispose();
+            if (codeArea.getContentData() == contentData) {
+                openFile(virtualFile);
+            }
+            return;
+        }
+
+        long newSize = newSource.getDataSize();
+        if (changedRanges.isEmpty() && newSize == contentData.getDataSize()) {
+            newSource.dispose();
+            return;
+        }
+
+        boolean pinnedToEnd = followMode && codeArea.getDataPosition() == contentData.getDataSize();
+        synchronized (fileLock) {
+            contentData.resetSource(newSource);
+            writtenSource = newSource;
+        }
+        SharedFileSources.setSourceListener(newSource, sourceListener);
+        if (pinnedToEnd || codeArea.getDataPosition() > newSize) {
+            codeArea.clearSelection();
+            codeArea.setActiveCaretPosition(newSize);
+        }
+        opening = true;
+        try {
+            codeArea.notifyDataChanged();
+        } finally {
+            opening = false;
+        }
+        if (pinnedToEnd) {
+            codeArea.revealCursor();
+        }
+        documentOriginalSize = newSize;
+    }
+
+    /**
+     * Updates state after other view of the file wrote ranges in place.
+     * Source is mapped from the file, so it already contains written data.
+     *
+     * @param ranges written ranges
+     */
+    private void updateWrittenRanges(List<OverlayEditableData.DataRange> ranges) {
+        Path filePath = getLocalFilePath(virtualFile);
+        synchronized (fileLock) {
+            BinaryData source = writtenSource;
+            BlockHashes hashes = blockHashes;
+            if (hashes != null && source != null) {
+                blockHashes = hashes.update(source, ranges);
+            }
+            if (filePath != null) {
+                // Change is already reflected, so it is not reloaded again
+                savedFileStamp = getFileStamp(filePath);
+            }
+        }
+
+        ApplicationManager.getApplication().invokeLater(() -> {
+            opening = true;
+            try {
+                editorFile.getCodeArea().notifyDataChanged();
+            } finally {
+                opening = false;
+            }
+        });
+    }
+
+    /**
+     * Reloads content after other view of the file rewrote it, positions of
+     * current source do not match the file anymore.
+     * <p>
+     * User is asked whether modified content should be reloaded, kept
+     * changes replace the file when saved.
+     */
+    private void reloadReplacedSource() {
+        Path filePath = getLocalFilePath(virtualFile);
+        BinaryData contentData = editorFile.getCodeArea().getContentData();
+        if (contentData instanceof OverlayEditableData && ((OverlayEditableData) contentData).isModified()) {
+            int result = JOptionPane.showConfirmDialog(filePanel,
+                    String.format(resourceBundle.getString("reloadDialog.message"), filePath != null ? filePath : virtualFile.getPresentableUrl()),
+                    resourceBundle.getString("reloadDialog.title"),
+                    JOptionPane.YES_NO_OPTION,
+                    JOptionPane.WARNING_MESSAGE);
+            if (result != JOptionPane.YES_OPTION || editorFile.getCodeArea().getContentData() != contentData) {
+                return;
+            }
+        } else if (filePath != null && blockHashes != null && contentData instanceof OverlayEditableData) {
+            reloadChangedBlocks((OverlayEditableData) contentData, filePath);
+            return;
+        }
+
         openFile(virtualFile);
     }
 
@@ -156,6 +693,28 @@ public class BinEdNativeFile {
 //        propertyChangeSupport.firePropertyChange(FileEditor.PROP_MODIFIED, !modified, modified);
     }
 
+    @Nullable
+    private static Path getLocalFilePath(VirtualFile virtualFile) {
+        if (!virtualFile.isInLocalFileSystem()) {
+            return null;
+        }
+
+        try {
+            return virtualFile.toNioPath();
+        } catch (UnsupportedOperationException ex) {
+            return null;
+        }
+    }
+
+    @Nullable
+    private static String getFileStamp(Path filePath) {
+        try {
+            return Files.getLastModifiedTime(filePath).toMillis() + ":" + Files.size(filePath);
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+
     @Nonnull
     private IllegalStateException createBrokenVirtualFileException(@Nullable Exception ex) {
         String filePath = virtualFile.getCanonicalPath();
@@ -48,13 +48,13 @@ public class BinEdNativeFileEditor implements FileEditor, DumbAware {
     private final PropertyChangeSupport propertyChangeSupport;
     private String displayName;
     private BinEdNativeFile nativeFile;
-    private BinEdFileEditorState fileEditorState = new BinEdFileEditorState();
 
     public BinEdNativeFileEditor(Project project, final VirtualFile virtualFile) {
         this.project = project;
-        this.nativeFile = new BinEdNativeFile(virtualFile);
+        this.nativeFile = new BinEdNativeFile(project, virtualFile);
 
         propertyChangeSupport = new PropertyChangeSupport(this);
+        nativeFile.addPendingStateListener(pending -> propertyChangeSupport.firePropertyChange(FileEditor.PROP_MODIFIED, !pending, pending));
     }
 
     @Nonnull
@@ -78,11 +78,14 @@ public class BinEdNativeFileEditor implements FileEditor, DumbAware {
     @Nonnull
     @Override
     public FileEditorState getState(FileEditorStateLevel level) {
-        return fileEditorState;
+        return BinEdFileEditorState.fromCodeArea(nativeFile.getCodeArea());
     }
 
     @Override
     public void setState(FileEditorState state) {
+        if (state instanceof BinEdFileEditorState) {
+            ((BinEdFileEditorState) state).applyTo(nativeFile.getCodeArea());
+        }
     }
 
     @Override
@@ -102,7 +105,7 @@ public class BinEdNativeFileEditor implements FileEditor, DumbAware {
 
     @Override
     public void deselectNotify() {
-
+        nativeFile.writePendingChanges();
     }
 
     @Override
@@ -130,6 +133,7 @@ public class BinEdNativeFileEditor implements FileEditor, DumbAware {
 
     @Override
     public void dispose() {
+        nativeFile.dispose();
     }
 
     @Nullable
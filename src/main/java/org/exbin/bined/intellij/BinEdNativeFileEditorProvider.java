@@ -43,6 +43,9 @@ public class BinEdNativeFileEditorProvider implements FileEditorProvider, DumbAw
         BinEdPluginStartupActivity.addIntegrationOptionsListener(
                 integrationOptions -> active = integrationOptions.isRegisterNativeBinaryFile()
         );
+        BinEdPluginStartupActivity.addIntegrationOptionsListener(
+                integrationOptions -> BinEdSaveScheduler.setQuietPeriod(integrationOptions.getNativeFileSaveDelay())
+        );
     }
 
     @Override
@@ -81,10 +84,13 @@ public class BinEdNativeFileEditorProvider implements FileEditorProvider, DumbAw
     @Nonnull
     @Override
     public FileEditorState readState(Element sourceElement, Project project, VirtualFile file) {
-        return FileEditorState.INSTANCE;
+        return BinEdFileEditorState.readExternal(sourceElement);
     }
 
     @Override
     public void writeState(FileEditorState state, Project project, Element targetElement) {
+        if (state instanceof BinEdFileEditorState) {
+            ((BinEdFileEditorState) state).writeExternal(targetElement);
+        }
     }
 }
@@ -18,6 +18,7 @@ package org.exbin.bined.intellij;
 import com.intellij.diff.impl.DiffSettingsHolder;
 import com.intellij.diff.tools.fragmented.UnifiedDiffTool;
 import com.intellij.diff.tools.simple.SimpleDiffTool;
+import com.intellij.ide.AppLifecycleListener;
 import com.intellij.ide.util.PropertiesComponent;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.extensions.ExtensionPointAdapter;
@@ -42,6 +43,8 @@ import kotlin.Unit;
 import kotlin.coroutines.Continuation;
 import org.exbin.bined.intellij.api.BinaryViewData;
 import org.exbin.bined.intellij.api.BinaryViewHandler;
+import org.exbin.bined.intellij.data.DirectPageAllocator;
+import org.exbin.bined.intellij.data.PageBudget;
 import org.exbin.bined.intellij.diff.BinEdDiffTool;
 import org.exbin.bined.intellij.objectdata.MainBinaryViewHandler;
 import org.exbin.bined.intellij.options.IntegrationOptions;
@@ -176,6 +179,12 @@ public final class BinEdPluginStartupActivity implements ProjectActivity, Startu
 
         if (initialIntegrationOptions == null) {
             ProjectManager.getInstance().addProjectManagerListener(new BinEdVetoableProjectListener());
+            ApplicationManager.getApplication().getMessageBus().connect().subscribe(AppLifecycleListener.TOPIC, new AppLifecycleListener() {
+                @Override
+                public void appWillBeClosed(boolean isRestart) {
+                    BinEdSaveScheduler.flushAll();
+                }
+            });
 
             try {
                 BINED_VIEW_DATA.addExtensionPointListener(new ExtensionPointAdapter<>() {
@@ -224,8 +233,7 @@ public final class BinEdPluginStartupActivity implements ProjectActivity, Startu
                 if (file instanceof BinEdVirtualFile && !((BinEdVirtualFile) file).isMoved()
                         && !((BinEdVirtualFile) file).isClosing()) {
                     ((BinEdVirtualFile) file).setClosing(true);
-                    BinEdFileHandler fileHandler = ((BinEdVirtualFile) file).getEditorFile();
-                    if (fileHandler.isModified() && ((BinEdComponentFileApi) fileHandler).isSaveSupported()) {
+                    if (((BinEdVirtualFile) file).isModified() && ((BinEdComponentFileApi) ((BinEdVirtualFile) file).getEditorFile()).isSaveSupported()) {
                         ApplicationManager.getApplication().invokeLater(() -> {
                             boolean released = false; // TODO editorProvider.releaseFile(fileHandler);
                             ((BinEdVirtualFile) file).setClosing(false);
@@ -316,6 +324,8 @@ public final class BinEdPluginStartupActivity implements ProjectActivity, Startu
         } else {
             languageModule.switchToLanguage(languageLocale);
         }
+        DirectPageAllocator.setLimit(integrationOptions.getOffHeapMemoryLimit() * 1024L * 1024L);
+        PageBudget.setBudget(integrationOptions.getPageMemoryBudget() * 1024L * 1024L);
         for (IntegrationOptionsListener listener : INTEGRATION_OPTIONS_LISTENERS) {
             listener.integrationInit(integrationOptions);
         }
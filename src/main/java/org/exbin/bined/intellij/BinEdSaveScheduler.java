@@ -0,0 +1,253 @@
+/*
+ * Copyright (C) ExBin Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.exbin.bined.intellij;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.Task;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.exbin.bined.intellij.preferences.IntegrationPreferences;
+import org.exbin.framework.App;
+import org.exbin.framework.language.api.LanguageModuleApi;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.swing.Timer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.ResourceBundle;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Write-behind scheduler for saving of file changes.
+ * <p>
+ * Changes are coalesced until no change is reported for quiet period and
+ * then written in single background task. All writes are performed
+ * sequentially. Methods are expected to be called from event dispatch
+ * thread. Waiting for running write is done under modal progress, so that
+ * event dispatch thread is not blocked.
+ *
+ * @author ExBin Project (https://exbin.org)
+ */
+@ParametersAreNonnullByDefault
+public class BinEdSaveScheduler {
+
+    private static final ExecutorService WRITE_EXECUTOR = AppExecutorUtil.createBoundedApplicationPoolExecutor("BinEd Save", 1);
+    private static final CopyOnWriteArraySet<BinEdSaveScheduler> ACTIVE_SCHEDULERS = new CopyOnWriteArraySet<>();
+    private static int quietPeriod = IntegrationPreferences.DEFAULT_NATIVE_FILE_SAVE_DELAY;
+
+    private final ResourceBundle resourceBundle = App.getModule(LanguageModuleApi.class).getBundle(BinEdSaveScheduler.class);
+    private final SaveTask saveTask;
+    private final Timer timer;
+    private final Queue<Runnable> finishedWrites = new ConcurrentLinkedQueue<>();
+    private final List<PendingStateListener> pendingStateListeners = new ArrayList<>();
+    private Future<?> lastWrite = null;
+    private int runningWrites = 0;
+    private boolean pending = false;
+
+    public BinEdSaveScheduler(SaveTask saveTask) {
+        this.saveTask = saveTask;
+        timer = new Timer(quietPeriod, e -> writeNow());
+        timer.setRepeats(false);
+        ACTIVE_SCHEDULERS.add(this);
+    }
+
+    /**
+     * Sets quiet period used for newly reported changes.
+     *
+     * @param quietPeriod quiet period in milliseconds
+     */
+    public static void setQuietPeriod(int quietPeriod) {
+        BinEdSaveScheduler.quietPeriod = Math.max(0, quietPeriod);
+    }
+
+    /**
+     * Writes all pending changes of all files and waits for completion.
+     */
+    public static void flushAll() {
+        for (BinEdSaveScheduler scheduler : ACTIVE_SCHEDULERS) {
+            scheduler.flush();
+        }
+    }
+
+    /**
+     * Reports change which should be written after quiet period.
+     */
+    public void changeReported() {
+        timer.setInitialDelay(quietPeriod);
+        timer.restart();
+        updatePending();
+    }
+
+    /**
+     * Starts writing of reported changes without waiting for quiet period.
+     */
+    public void writePending() {
+        if (timer.isRunning()) {
+            writeNow();
+        }
+    }
+
+    /**
+     * Starts writing of current state regardless of reported changes.
+     */
+    public void writeNow() {
+        timer.stop();
+        Callable<Runnable> write;
+        try {
+            write = saveTask.prepareWrite();
+        } catch (Exception ex) {
+            Logger.getLogger(BinEdSaveScheduler.class.getName()).log(Level.SEVERE, "Unable to prepare save", ex);
+            write = null;
+        }
+
+        if (write != null) {
+            Callable<Runnable> preparedWrite = write;
+            runningWrites++;
+            lastWrite = WRITE_EXECUTOR.submit(() -> {
+                Runnable finish = null;
+                try {
+                    finish = preparedWrite.call();
+                } catch (Exception ex) {
+                    Logger.getLogger(BinEdSaveScheduler.class.getName()).log(Level.SEVERE, "Unable to save file", ex);
+                }
+                finishedWrites.add(finish != null ? finish : () -> {});
+                ApplicationManager.getApplication().invokeLater(this::processFinishedWrites);
+            });
+        }
+        updatePending();
+    }
+
+    /**
+     * Writes all pending changes and waits for completion.
+     */
+    public void flush() {
+        writePending();
+
+        Future<?> write = lastWrite;
+        if (write != null && !write.isDone()) {
+            if (ApplicationManager.getApplication().isDispatchThread()) {
+                // Modal task queued on dispatch thread returns when finished
+                new Task.Modal(null, resourceBundle.getString("flushTask.title"), false) {
+                    @Override
+                    public void run(@Nonnull ProgressIndicator indicator) {
+                        indicator.setIndeterminate(true);
+                        waitForWrite(write);
+                    }
+                }.queue();
+            } else {
+                waitForWrite(write);
+            }
+        }
+        processFinishedWrites();
+    }
+
+    /**
+     * Returns true if there are changes which were not written yet.
+     *
+     * @return true if write is pending
+     */
+    public boolean isPending() {
+        return pending;
+    }
+
+    public void addPendingStateListener(PendingStateListener listener) {
+        pendingStateListeners.add(listener);
+    }
+
+    public void removePendingStateListener(PendingStateListener listener) {
+        pendingStateListeners.remove(listener);
+    }
+
+    /**
+     * Flushes pending changes and stops scheduling.
+     */
+    public void dispose() {
+        flush();
+        ACTIVE_SCHEDULERS.remove(this);
+        pendingStateListeners.clear();
+    }
+
+    private static void waitForWrite(Future<?> write) {
+        try {
+            write.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ex) {
+            Logger.getLogger(BinEdSaveScheduler.class.getName()).log(Level.SEVERE, "Unable to save file", ex);
+        }
+    }
+
+    private void processFinishedWrites() {
+        Runnable finish;
+        while ((finish = finishedWrites.poll()) != null) {
+            runningWrites--;
+            try {
+                finish.run();
+            } catch (Exception ex) {
+                Logger.getLogger(BinEdSaveScheduler.class.getName()).log(Level.SEVERE, "Unable to finish save", ex);
+            }
+        }
+        updatePending();
+    }
+
+    private void updatePending() {
+        boolean newPending = timer.isRunning() || runningWrites > 0;
+        if (newPending != pending) {
+            pending = newPending;
+            for (PendingStateListener listener : pendingStateListeners) {
+                listener.pendingStateChanged(pending);
+            }
+        }
+    }
+
+    /**
+     * Task performing write of changes.
+     */
+    @ParametersAreNonnullByDefault
+    public interface SaveTask {
+
+        /**
+         * Prepares write of current changes.
+         * <p>
+         * Called on event dispatch thread. Returned write is called on
+         * background thread and the runnable it returns, if any, is then
+         * called on event dispatch thread to finish the write.
+         *
+         * @return write or null if there is nothing to write
+         */
+        @Nullable
+        Callable<Runnable> prepareWrite();
+    }
+
+    /**
+     * Listener for changes of pending writes state.
+     */
+    @ParametersAreNonnullByDefault
+    public interface PendingStateListener {
+
+        void pendingStateChanged(boolean pending);
+    }
+}
@@ -15,6 +15,7 @@
  */
 package org.exbin.bined.intellij;
 
+import com.intellij.openapi.fileEditor.FileEditor;
 import com.intellij.openapi.fileEditor.FileEditorManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.project.VetoableProjectManagerListener;
@@ -42,10 +43,16 @@ public class BinEdVetoableProjectListener implements VetoableProjectManagerListe
     @Override
     public boolean canClose(Project project) {
         FileEditorManager fileEditorManager = FileEditorManager.getInstance(project);
+        for (FileEditor fileEditor : fileEditorManager.getAllEditors()) {
+            if (fileEditor instanceof BinEdNativeFileEditor) {
+                ((BinEdNativeFileEditor) fileEditor).getNativeFile().flushPendingChanges();
+            }
+        }
+
         List<FileHandler> fileHandlers = new ArrayList<>();
         VirtualFile[] openFiles = fileEditorManager.getOpenFiles();
         for (VirtualFile file : openFiles) {
-            if (file instanceof BinEdVirtualFile && !((BinEdVirtualFile) file).isClosing()) {
+            if (file instanceof BinEdVirtualFile && !((BinEdVirtualFile) file).isClosing() && ((BinEdVirtualFile) file).isEditorCreated()) {
                 FileHandler fileHandler = ((BinEdVirtualFile) file).getEditorFile();
                 // TODO
 //                if (fileHandler.isModified()) {
@@ -15,12 +15,29 @@
  */
 package org.exbin.bined.intellij;
 
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.PathManager;
 import com.intellij.openapi.fileEditor.impl.FileEditorManagerImpl;
 import com.intellij.openapi.project.DumbAware;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.JarFileSystem;
 import com.intellij.openapi.vfs.LocalFileSystem;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.openapi.vfs.VirtualFileSystem;
+import com.intellij.openapi.vfs.newvfs.ArchiveFileSystem;
+import org.exbin.auxiliary.binary_data.BinaryData;
+import org.exbin.auxiliary.binary_data.OutOfBoundsException;
+import org.exbin.bined.EditMode;
+import org.exbin.bined.intellij.data.EditJournal;
+import org.exbin.bined.intellij.data.GzipFileData;
+import org.exbin.bined.intellij.data.GzipSeekIndex;
+import org.exbin.bined.intellij.data.MappedFileData;
+import org.exbin.bined.intellij.data.OverlayEditableData;
+import org.exbin.bined.intellij.data.ProgressiveFileData;
+import org.exbin.bined.intellij.data.SharedFileSources;
+import org.exbin.bined.intellij.data.ZipEntryData;
 import org.exbin.bined.intellij.gui.BinEdFilePanel;
+import org.exbin.bined.swing.section.SectCodeArea;
 import org.exbin.framework.bined.BinEdFileHandler;
 import org.jetbrains.annotations.Nullable;
 
@@ -31,8 +48,13 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.zip.ZipException;
 
 /**
  * Virtual file for binary editor.
@@ -43,14 +65,34 @@ import java.util.logging.Logger;
 public class BinEdVirtualFile extends VirtualFile implements DumbAware {
 
     public static final String PATH_PREFIX = "bined://";
+    private static final String JOURNAL_DIRECTORY = "bined/journal";
+    private static final String GZIP_INDEX_DIRECTORY = "bined/gzindex";
 
+    private final Project project;
     private final VirtualFile parentFile;
     private String displayName;
-    private final BinEdFilePanel filePanel = new BinEdFilePanel();
-    private final BinEdFileHandler editorFile = new BinEdFileHandler();
+    private BinEdFilePanel filePanel = null;
+    private BinEdVirtualFileHandler editorFile = null;
+    private boolean fileOpened = false;
     private boolean closing = false;
+    private EditJournal editJournal = null;
+    private boolean decompressed = false;
+    private int openGeneration = 0;
+    private BinEdFileEditorState restoredState = null;
 
     public BinEdVirtualFile(VirtualFile parentFile) {
+        this(null, parentFile);
+    }
+
+    /**
+     * Creates binary editor file for given file.
+     *
+     * @param project project the file is edited in or null if not bound to
+     * project
+     * @param parentFile edited file
+     */
+    public BinEdVirtualFile(@Nullable Project project, VirtualFile parentFile) {
+        this.project = project;
         if (parentFile.getPath().startsWith(PATH_PREFIX)) {
             this.parentFile = LocalFileSystem.getInstance().findFileByPath(parentFile.getPath().substring(PATH_PREFIX.length()));
         } else {
@@ -63,20 +105,64 @@ public class BinEdVirtualFile extends VirtualFile implements DumbAware {
         } else {
             this.displayName = "";
         }
-        filePanel.setFileHandler(editorFile);
-        editorFile.registerUndoHandler();
     }
 
+    /**
+     * Returns file handler, editor components are created on first access.
+     *
+     * @return file handler
+     */
     @Nonnull
-    public BinEdFileHandler getEditorFile() {
+    public BinEdVirtualFileHandler getEditorFile() {
+        if (editorFile == null) {
+            editorFile = new BinEdVirtualFileHandler();
+            editorFile.setSourceListener(new SharedFileSources.SourceListener() {
+                @Override
+                public void rangesWritten(List<OverlayEditableData.DataRange> ranges) {
+                    // Source is mapped from the file, so it already contains written data
+                    ApplicationManager.getApplication().invokeLater(() -> editorFile.getCodeArea().repaint());
+                }
+
+                @Override
+                public void sourceReplaced() {
+                    ApplicationManager.getApplication().invokeLater(() -> reloadReplacedSource());
+                }
+            });
+            filePanel = new BinEdFilePanel();
+            filePanel.setFileHandler(editorFile);
+            editorFile.registerUndoHandler();
+        }
         return editorFile;
     }
 
     @Nonnull
     public JComponent getEditorComponent() {
+        getEditorFile();
         return filePanel;
     }
 
+    @Nullable
+    public Project getProject() {
+        return project;
+    }
+
+    @Nonnull
+    public VirtualFile getParentFile() {
+        return parentFile;
+    }
+
+    public boolean isEditorCreated() {
+        return editorFile != null;
+    }
+
+    public boolean isFileOpened() {
+        return fileOpened;
+    }
+
+    public boolean isModified() {
+        return editorFile != null && editorFile.isModified();
+    }
+
     @Nonnull
     @Override
     public String getName() {
@@ -101,7 +187,7 @@ public class BinEdVirtualFile extends VirtualFile implements DumbAware {
 
     @Override
     public boolean isWritable() {
-        return parentFile.isWritable();
+        return !decompressed && parentFile.isWritable();
     }
 
     @Override
@@ -175,7 +261,7 @@ public class BinEdVirtualFile extends VirtualFile implements DumbAware {
 
         BinEdVirtualFile that = (BinEdVirtualFile) o;
         String path = getPath();
-        return path.equals(that.getPath());
+        return path.equals(that.getPath()) && project == that.project;
     }
 
     @Override
@@ -183,6 +269,20 @@ public class BinEdVirtualFile extends VirtualFile implements DumbAware {
         return getPath().hashCode();
     }
 
+    public boolean isDecompressed() {
+        return decompressed;
+    }
+
+    /**
+     * Sets whether gzip compressed file should be shown decompressed.
+     * Decompressed content is read-only.
+     *
+     * @param decompressed true for decompressed content
+     */
+    public void setDecompressed(boolean decompressed) {
+        this.decompressed = decompressed;
+    }
+
     public boolean isMoved() {
         Boolean closingToReopen = getUserData(FileEditorManagerImpl.CLOSING_TO_REOPEN);
         return closingToReopen != null && closingToReopen;
@@ -196,9 +296,30 @@ public class BinEdVirtualFile extends VirtualFile implements DumbAware {
         this.closing = closing;
     }
 
+    /**
+     * Closes file content. File can be opened again, as the same instance is
+     * reused while referenced.
+     */
     public void dispose() {
+        fileOpened = false;
+        openGeneration++;
+        boolean modified = isModified();
         if (editorFile != null) {
+            BinaryData contentData = editorFile.getCodeArea().getContentData();
             editorFile.closeData();
+            if (contentData instanceof OverlayEditableData || contentData instanceof GzipFileData) {
+                contentData.dispose();
+            }
+        }
+        if (editJournal != null) {
+            if (modified) {
+                // Unsaved changes are offered for recovery when opened again
+                editJournal.close();
+            } else {
+                // Saved or discarded, nothing to recover
+                editJournal.delete();
+            }
+            editJournal = null;
         }
     }
 
@@ -207,19 +328,277 @@ public class BinEdVirtualFile extends VirtualFile implements DumbAware {
         return getEditorFile().getCodeArea();
     }
 
-    public void openFile(BinEdFileHandler fileHandler) {
+    /**
+     * Returns state of the editor. State restored for editor which wasn't
+     * opened yet is returned as is.
+     *
+     * @return editor state
+     */
+    @Nonnull
+    public BinEdFileEditorState getEditorState() {
+        if (restoredState != null) {
+            return restoredState;
+        }
+        if (editorFile == null) {
+            return new BinEdFileEditorState();
+        }
+
+        return BinEdFileEditorState.fromCodeArea(editorFile.getCodeArea());
+    }
+
+    /**
+     * Sets state of the editor. If content is not opened yet, state is
+     * applied when it is opened.
+     *
+     * @param state editor state
+     */
+    public void setEditorState(BinEdFileEditorState state) {
+        if (fileOpened && editorFile != null) {
+            state.applyTo(editorFile.getCodeArea());
+        } else {
+            restoredState = state;
+        }
+    }
+
+    /**
+     * Opens file content if it wasn't opened yet, used to defer loading of
+     * restored tabs until they are selected.
+     */
+    public void openFileIfNeeded() {
+        if (!fileOpened) {
+            openFile(getEditorFile());
+        }
+    }
+
+    public void openFile(BinEdVirtualFileHandler fileHandler) {
+        fileOpened = true;
         if (!isDirectory() && isValid()) {
+            SectCodeArea codeArea = fileHandler.getCodeArea();
             File file = extractFile(this);
-            if (file.isFile() && file.exists()) {
-                fileHandler.clearFile();
-                fileHandler.loadFromFile(file.toURI(), null);
-            } else {
-                try (InputStream stream = getInputStream()) {
-                    fileHandler.loadFromStream(stream);
+            if (decompressed && file.isFile()) {
+                openDecompressed(fileHandler, file.toPath());
+                return;
+            }
+
+            if (file.isFile()) {
+                // Local file shares mapped source with other views of the same file
+                BinaryData source;
+                try {
+                    source = SharedFileSources.acquire(file.toPath());
                 } catch (IOException ex) {
                     Logger.getLogger(BinEdFileHandler.class.getName()).log(Level.SEVERE, null, ex);
+                    return;
                 }
+                fileHandler.clearFile();
+                // Handler keeps the file, so content can be saved to it
+                fileHandler.setTargetFile(parentFile, file.toPath());
+                fileHandler.attachSource(source);
+                OverlayEditableData contentData = new OverlayEditableData(source);
+                openJournal(fileHandler, file.toPath(), contentData);
+                codeArea.setContentData(contentData);
+                applyRestoredState(codeArea);
+                return;
             }
+
+            if (openArchiveEntry(fileHandler)) {
+                return;
+            }
+
+            ProgressiveFileData loadingData;
+            try {
+                loadingData = new ProgressiveFileData(getLength());
+            } catch (IOException ex) {
+                Logger.getLogger(BinEdFileHandler.class.getName()).log(Level.SEVERE, null, ex);
+                return;
+            }
+
+            // Content is copied to temporary file in background, so editor is usable while loading
+            fileHandler.clearFile();
+            fileHandler.setTargetFile(parentFile, null);
+            OverlayEditableData contentData = new OverlayEditableData(loadingData);
+            codeArea.setContentData(contentData);
+            // Restored position is loaded first
+            applyRestoredState(codeArea);
+            EditMode editMode = codeArea.getEditMode();
+            codeArea.setEditMode(EditMode.READ_ONLY);
+
+            BinEdFileLoader.startLoading(project, this, null, loadingData, codeArea.getDataPosition(), codeArea, () -> {
+                if (codeArea.getContentData() == contentData) {
+                    codeArea.setEditMode(editMode);
+                }
+            });
+        }
+    }
+
+    /**
+     * Processes rewrite of the file by other view.
+     * <p>
+     * Unmodified content is reopened. User is asked whether modified content
+     * should be reopened, kept changes stay recorded in edit journal and are
+     * on top of previous content of the file.
+     */
+    private void reloadReplacedSource() {
+        if (!fileOpened || editorFile == null) {
+            return;
+        }
+
+        if (isModified() && !editorFile.confirmReload(extractFile(this).toPath())) {
+            return;
+        }
+        reopenFile();
+    }
+
+    /**
+     * Opens content again after other view rewrote the file, positions of
+     * current source do not match the file anymore.
+     */
+    private void reopenFile() {
+        if (!fileOpened || editorFile == null) {
+            return;
+        }
+
+        SectCodeArea codeArea = editorFile.getCodeArea();
+        BinaryData previousData = codeArea.getContentData();
+        restoredState = BinEdFileEditorState.fromCodeArea(codeArea);
+        openFile(editorFile);
+        if (previousData instanceof OverlayEditableData && codeArea.getContentData() != previousData) {
+            previousData.dispose();
+        }
+    }
+
+    private void applyRestoredState(SectCodeArea codeArea) {
+        if (restoredState != null) {
+            restoredState.applyTo(codeArea);
+            restoredState = null;
+        }
+    }
+
+    /**
+     * Opens entry of zip archive directly from mapped archive file, so that
+     * neither the entry nor the archive has to be loaded.
+     *
+     * @param fileHandler file handler
+     * @return true if entry was opened
+     */
+    private boolean openArchiveEntry(BinEdVirtualFileHandler fileHandler) {
+        if (!(parentFile.getFileSystem() instanceof ArchiveFileSystem)) {
+            return false;
+        }
+
+        VirtualFile archiveFile = ((ArchiveFileSystem) parentFile.getFileSystem()).getLocalByEntry(parentFile);
+        String path = parentFile.getPath();
+        int separatorIndex = path.indexOf(JarFileSystem.JAR_SEPARATOR);
+        if (archiveFile == null || !archiveFile.isInLocalFileSystem() || separatorIndex < 0) {
+            return false;
+        }
+
+        String entryName = path.substring(separatorIndex + JarFileSystem.JAR_SEPARATOR.length());
+        BinaryData archive;
+        try {
+            archive = SharedFileSources.acquire(Paths.get(archiveFile.getPath()));
+        } catch (IOException ex) {
+            Logger.getLogger(BinEdVirtualFile.class.getName()).log(Level.SEVERE, null, ex);
+            return false;
+        }
+
+        BinaryData entryData;
+        try {
+            entryData = ZipEntryData.openEntry(archive, entryName);
+        } catch (ZipException | OutOfBoundsException ex) {
+            Logger.getLogger(BinEdVirtualFile.class.getName()).log(Level.WARNING, "Unable to locate entry " + path, ex);
+            entryData = null;
+        }
+        if (entryData == null) {
+            // Fallback to loading entry content through virtual file
+            archive.dispose();
+            return false;
+        }
+
+        fileHandler.clearFile();
+        fileHandler.setTargetFile(parentFile, null);
+        fileHandler.getCodeArea().setContentData(new OverlayEditableData(entryData));
+        applyRestoredState(fileHandler.getCodeArea());
+        return true;
+    }
+
+    /**
+     * Opens decompressed content of gzip file. Seek index is loaded from
+     * cache or built in background before content is shown.
+     *
+     * @param fileHandler file handler
+     * @param filePath compressed file path
+     */
+    private void openDecompressed(BinEdVirtualFileHandler fileHandler, Path filePath) {
+        SectCodeArea codeArea = fileHandler.getCodeArea();
+        MappedFileData compressed;
+        long fileSize;
+        long fileModified;
+        try {
+            compressed = new MappedFileData(filePath);
+            fileSize = Files.size(filePath);
+            fileModified = Files.getLastModifiedTime(filePath).toMillis();
+        } catch (IOException ex) {
+            Logger.getLogger(BinEdVirtualFile.class.getName()).log(Level.SEVERE, null, ex);
+            return;
+        }
+
+        fileHandler.clearFile();
+        codeArea.setEditMode(EditMode.READ_ONLY);
+        Path indexPath = GzipSeekIndex.getCachePath(Paths.get(PathManager.getSystemPath(), GZIP_INDEX_DIRECTORY), filePath);
+        GzipSeekIndex index = GzipSeekIndex.load(indexPath, fileSize, fileModified);
+        if (index != null) {
+            codeArea.setContentData(new GzipFileData(compressed, index));
+            applyRestoredState(codeArea);
+            return;
+        }
+
+        int generation = openGeneration;
+        BinEdFileLoader.startIndexing(project, this, compressed, indexPath, fileSize, fileModified, builtIndex -> {
+            if (builtIndex == null || generation != openGeneration) {
+                compressed.dispose();
+                return;
+            }
+            codeArea.setContentData(new GzipFileData(compressed, builtIndex));
+            applyRestoredState(codeArea);
+        });
+    }
+
+    /**
+     * Opens journal of edits of given file. Edits left in journal after
+     * abnormal termination are replayed to the content data and user is
+     * asked whether to keep them.
+     *
+     * @param fileHandler file handler
+     * @param filePath file path
+     * @param contentData content data
+     */
+    private void openJournal(BinEdVirtualFileHandler fileHandler, Path filePath, OverlayEditableData contentData) {
+        if (editJournal != null) {
+            // Content is reopened, changes of previous content were discarded
+            editJournal.delete();
+            editJournal = null;
+        }
+
+        Path journalPath = EditJournal.getJournalPath(Paths.get(PathManager.getSystemPath(), JOURNAL_DIRECTORY), filePath);
+        if (EditJournal.isInUse(journalPath)) {
+            // File is edited in other project, edits are recorded by that editor only
+            return;
+        }
+
+        try {
+            editJournal = EditJournal.open(journalPath, filePath);
+        } catch (IOException ex) {
+            Logger.getLogger(BinEdVirtualFile.class.getName()).log(Level.SEVERE, "Unable to open edit journal " + journalPath, ex);
+            return;
+        }
+
+        if (editJournal.hasRecords()) {
+            if (contentData.recover(editJournal)) {
+                Logger.getLogger(BinEdVirtualFile.class.getName()).log(Level.INFO, "Recovered unsaved changes of file " + filePath);
+                ApplicationManager.getApplication().invokeLater(() -> fileHandler.confirmRecovery(contentData, filePath));
+            }
+        } else {
+            contentData.setJournal(editJournal);
         }
     }
 
@@ -0,0 +1,281 @@
+/*
+ * Copyright (C) ExBin Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.exbin.bined.intellij;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.exbin.auxiliary.binary_data.BinaryData;
+import org.exbin.bined.intellij.data.EditJournal;
+import org.exbin.bined.intellij.data.OverlayEditableData;
+import org.exbin.bined.intellij.data.SharedFileSources;
+import org.exbin.framework.App;
+import org.exbin.framework.bined.BinEdFileHandler;
+import org.exbin.framework.file.api.FileType;
+import org.exbin.framework.language.api.LanguageModuleApi;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.swing.JOptionPane;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.ResourceBundle;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * File handler for content opened via binary editor virtual file.
+ * <p>
+ * Content is not loaded by the framework, so the handler keeps target file
+ * itself. Local files are mapped to memory, so they are saved using
+ * {@link SharedFileSources} instead of truncating stream save, other files
+ * are saved through virtual file output stream.
+ *
+ * @author ExBin Project (https://exbin.org)
+ */
+@ParametersAreNonnullByDefault
+public class BinEdVirtualFileHandler extends BinEdFileHandler {
+
+    private final ResourceBundle resourceBundle = App.getModule(LanguageModuleApi.class).getBundle(BinEdVirtualFileHandler.class);
+
+    private VirtualFile targetFile = null;
+    private Path targetPath = null;
+    private SharedFileSources.SourceListener sourceListener = null;
+    private boolean recovered = false;
+
+    /**
+     * Sets file the content was opened from and will be saved to.
+     *
+     * @param targetFile virtual file or null
+     * @param targetPath local file path or null if file is not local
+     */
+    public void setTargetFile(@Nullable VirtualFile targetFile, @Nullable Path targetPath) {
+        this.targetFile = targetFile;
+        this.targetPath = targetPath;
+    }
+
+    /**
+     * Sets listener for changes of the local target file made by other
+     * views, listener is attached to each source of the file.
+     *
+     * @param sourceListener source listener or null
+     */
+    public void setSourceListener(@Nullable SharedFileSources.SourceListener sourceListener) {
+        this.sourceListener = sourceListener;
+    }
+
+    /**
+     * Attaches source listener to given source of the target file.
+     *
+     * @param source source reference
+     */
+    public void attachSource(BinaryData source) {
+        SharedFileSources.setSourceListener(source, sourceListener);
+    }
+
+    /**
+     * Asks whether unsaved changes recovered from edit journal should be
+     * kept. Kept changes are reported as modification until saved,
+     * discarded changes are dropped together with the journal.
+     *
+     * @param contentData content data with recovered changes
+     * @param filePath edited file
+     */
+    public void confirmRecovery(OverlayEditableData contentData, Path filePath) {
+        recovered = true;
+        int result = JOptionPane.showConfirmDialog(getComponent(),
+                String.format(resourceBundle.getString("recoveryDialog.message"), filePath),
+                resourceBundle.getString("recoveryDialog.title"),
+                JOptionPane.YES_NO_OPTION,
+                JOptionPane.QUESTION_MESSAGE);
+        if (result == JOptionPane.NO_OPTION && getCodeArea().getContentData() == contentData) {
+            recovered = false;
+            contentData.clearModifications();
+            getCodeArea().notifyDataChanged();
+        }
+    }
+
+    /**
+     * Asks whether content with unsaved changes should be reloaded after
+     * other view rewrote the file. Kept changes replace the file when saved.
+     *
+     * @param filePath edited file
+     * @return true if content should be reloaded
+     */
+    public boolean confirmReload(Path filePath) {
+        int result = JOptionPane.showConfirmDialog(getComponent(),
+                String.format(resourceBundle.getString("reloadDialog.message"), filePath),
+                resourceBundle.getString("reloadDialog.title"),
+                JOptionPane.YES_NO_OPTION,
+                JOptionPane.WARNING_MESSAGE);
+        return result == JOptionPane.YES_OPTION;
+    }
+
+    @Override
+    public boolean isModified() {
+        return recovered || super.isModified();
+    }
+
+    @Nonnull
+    @Override
+    public Optional<URI> getFileUri() {
+        if (targetPath != null) {
+            return Optional.of(targetPath.toUri());
+        }
+        return super.getFileUri();
+    }
+
+    @Override
+    public void saveFile() {
+        Optional<URI> fileUri = getFileUri();
+        if (fileUri.isPresent()) {
+            saveToFile(fileUri.get(), null);
+        } else if (targetFile != null) {
+            saveContent(null);
+        } else {
+            super.saveFile();
+        }
+    }
+
+    @Override
+    public void saveToFile(URI fileUri, @Nullable FileType fileType) {
+        if (targetPath != null && fileUri.equals(targetPath.toUri())) {
+            saveContent(targetPath);
+            return;
+        }
+
+        super.saveToFile(fileUri, fileType);
+    }
+
+    @Override
+    public void clearFile() {
+        super.clearFile();
+        targetFile = null;
+        targetPath = null;
+        recovered = false;
+    }
+
+    /**
+     * Saves content to the target file under progress indicator.
+     * <p>
+     * Only modified ranges are written if size and position of the rest of
+     * the data is unchanged, otherwise the file is rewritten and content is
+     * mapped from it again.
+     *
+     * @param filePath local file path or null to save through virtual file
+     */
+    private void saveContent(@Nullable Path filePath) {
+        BinaryData contentData = getCodeArea().getContentData();
+        if (!(contentData instanceof OverlayEditableData)) {
+            return;
+        }
+
+        OverlayEditableData overlayData = (OverlayEditableData) contentData;
+        VirtualFile virtualFile = targetFile;
+        if (filePath == null) {
+            if (virtualFile == null) {
+                return;
+            }
+            writeVirtualFile(virtualFile, overlayData);
+            finishSave(overlayData, null, null);
+            return;
+        }
+
+        // Snapshot has its own lookup state for background thread
+        OverlayEditableData snapshot = overlayData.createSnapshot();
+        new Task.Modal(null, String.format(resourceBundle.getString("saveTask.title"), filePath.getFileName()), false) {
+
+            private BinaryData newSource = null;
+            private EditJournal.FileState fileState = null;
+
+            @Override
+            public void run(@Nonnull ProgressIndicator indicator) {
+                try {
+                    // Source replaced by other view doesn't match the file anymore
+                    List<OverlayEditableData.DataRange> modifiedRanges = SharedFileSources.isReplaced(snapshot.getSource()) ? null : snapshot.getInPlaceModifiedRanges();
+                    if (modifiedRanges != null) {
+                        SharedFileSources.writeRanges(snapshot.getSource(), filePath, snapshot, modifiedRanges);
+                    } else {
+                        newSource = SharedFileSources.rewriteFile(snapshot.getSource(), filePath, snapshot);
+                    }
+                } catch (IOException ex) {
+                    throw new IllegalStateException(ex);
+                }
+
+                try {
+                    // Edit journal has to match the saved file for recovery of later edits
+                    fileState = EditJournal.FileState.of(filePath);
+                } catch (IOException ex) {
+                    Logger.getLogger(BinEdVirtualFileHandler.class.getName()).log(Level.WARNING, "Unable to read state of file " + filePath, ex);
+                }
+            }
+
+            @Override
+            public void onSuccess() {
+                finishSave(overlayData, newSource, fileState);
+                if (virtualFile != null) {
+                    virtualFile.refresh(true, false);
+                }
+            }
+
+            @Override
+            public void onThrowable(Throwable error) {
+                Throwable cause = error instanceof IllegalStateException && error.getCause() instanceof IOException ? error.getCause() : error;
+                Logger.getLogger(BinEdVirtualFileHandler.class.getName()).log(Level.SEVERE, "Unable to save file " + filePath, cause);
+                JOptionPane.showMessageDialog(getComponent(),
+                        String.format(resourceBundle.getString("saveFailed.message"), filePath, cause.getLocalizedMessage()),
+                        resourceBundle.getString("saveFailed.title"),
+                        JOptionPane.ERROR_MESSAGE);
+            }
+        }.queue();
+    }
+
+    private void writeVirtualFile(VirtualFile virtualFile, OverlayEditableData contentData) {
+        ApplicationManager.getApplication().runWriteAction(() -> {
+            try (OutputStream outputStream = virtualFile.getOutputStream(this)) {
+                contentData.saveToStream(outputStream);
+            } catch (IOException ex) {
+                throw new IllegalStateException("Unable to save file " + virtualFile.getPath(), ex);
+            }
+        });
+    }
+
+    private void finishSave(OverlayEditableData contentData, @Nullable BinaryData newSource, @Nullable EditJournal.FileState fileState) {
+        if (getCodeArea().getContentData() != contentData) {
+            // Content was replaced while saving
+            if (newSource != null) {
+                newSource.dispose();
+            }
+            return;
+        }
+
+        if (newSource != null) {
+            contentData.resetSource(newSource, fileState);
+            attachSource(newSource);
+        } else if (targetPath != null) {
+            // Modified ranges were written to the mapped file
+            contentData.clearModifications(fileState);
+        }
+        recovered = false;
+        getUndoRedo().setSyncPosition();
+    }
+}
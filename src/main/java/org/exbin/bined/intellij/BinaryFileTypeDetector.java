@@ -0,0 +1,195 @@
+/*
+ * Copyright (C) ExBin Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.exbin.bined.intellij;
+
+import com.intellij.openapi.fileTypes.FileType;
+import com.intellij.openapi.fileTypes.FileTypeRegistry;
+import com.intellij.openapi.util.io.ByteSequence;
+import com.intellij.openapi.vfs.VirtualFile;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * Detector of binary files by sample of their content.
+ * <p>
+ * Only prefix of at most {@link #SAMPLE_SIZE} bytes is inspected. File is
+ * detected as binary if it starts with known magic number of binary format
+ * or if sample contains too many NUL bytes, control characters or invalid
+ * UTF-8 sequences. Invalid UTF-8 sequences alone are tolerated up to a high
+ * ratio, as they are common in text using legacy 8-bit encodings. Detected
+ * files are opened by native binary editor.
+ *
+ * @author ExBin Project (https://exbin.org)
+ */
+@ParametersAreNonnullByDefault
+public class BinaryFileTypeDetector implements FileTypeRegistry.FileTypeDetector {
+
+    public static final int SAMPLE_SIZE = 4096;
+
+    private static final int NUL_RATIO_LIMIT = 100;
+    private static final int CONTROL_RATIO_LIMIT = 10;
+    private static final int INVALID_PERCENT_LIMIT = 40;
+
+    private static final byte[][] MAGIC_NUMBERS = {
+            {0x7f, 'E', 'L', 'F'},
+            {(byte) 0xca, (byte) 0xfe, (byte) 0xba, (byte) 0xbe},
+            {(byte) 0xfe, (byte) 0xed, (byte) 0xfa, (byte) 0xce},
+            {(byte) 0xfe, (byte) 0xed, (byte) 0xfa, (byte) 0xcf},
+            {(byte) 0xce, (byte) 0xfa, (byte) 0xed, (byte) 0xfe},
+            {(byte) 0xcf, (byte) 0xfa, (byte) 0xed, (byte) 0xfe},
+            {'P', 'K', 3, 4},
+            {0x1f, (byte) 0x8b},
+            {'B', 'Z', 'h'},
+            {(byte) 0xfd, '7', 'z', 'X', 'Z', 0},
+            {'7', 'z', (byte) 0xbc, (byte) 0xaf, 0x27, 0x1c},
+            {0x28, (byte) 0xb5, 0x2f, (byte) 0xfd},
+            {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'},
+            {'G', 'I', 'F', '8'},
+            {'R', 'I', 'F', 'F'},
+            {(byte) 0xff, (byte) 0xd8, (byte) 0xff},
+            {0, 'a', 's', 'm'},
+            {'S', 'Q', 'L', 'i', 't', 'e', ' ', 'f', 'o', 'r', 'm', 'a', 't', ' ', '3', 0},
+            {'%', 'P', 'D', 'F', '-'}
+    };
+
+    private static volatile boolean active = true;
+
+    public BinaryFileTypeDetector() {
+        BinEdPluginStartupActivity.addIntegrationOptionsListener(
+                integrationOptions -> active = integrationOptions.isRegisterNativeBinaryFile()
+        );
+    }
+
+    @Nullable
+    @Override
+    public FileType detect(VirtualFile file, ByteSequence firstBytes, @Nullable CharSequence firstCharsIfText) {
+        if (!active) {
+            return null;
+        }
+
+        int length = Math.min(firstBytes.length(), SAMPLE_SIZE);
+        byte[] sample = new byte[length];
+        for (int i = 0; i < length; i++) {
+            sample[i] = firstBytes.byteAt(i);
+        }
+        return isBinaryContent(sample, length) ? BinaryFileType.INSTANCE : null;
+    }
+
+    @Override
+    public int getDesiredContentPrefixLength() {
+        return SAMPLE_SIZE;
+    }
+
+    @Nonnull
+    @Override
+    public Collection<? extends FileType> getDetectedFileTypes() {
+        return Collections.singletonList(BinaryFileType.INSTANCE);
+    }
+
+    /**
+     * Checks whether given sample of file prefix looks like binary data.
+     *
+     * @param sample sample data
+     * @param length length of the sample
+     * @return true if sample looks like binary data
+     */
+    public static boolean isBinaryContent(byte[] sample, int length) {
+        if (length == 0) {
+            return false;
+        }
+
+        for (byte[] magicNumber : MAGIC_NUMBERS) {
+            if (startsWith(sample, length, magicNumber)) {
+                return true;
+            }
+        }
+
+        // Byte order mark of UTF-16 and UTF-32 text
+        if (length >= 2 && ((sample[0] == (byte) 0xff && sample[1] == (byte) 0xfe) || (sample[0] == (byte) 0xfe && sample[1] == (byte) 0xff))) {
+            return false;
+        }
+
+        int nulCount = 0;
+        int evenNulCount = 0;
+        int controlCount = 0;
+        int invalidCount = 0;
+        int position = 0;
+        while (position < length) {
+            int value = sample[position] & 0xff;
+            if (value < 0x80) {
+                if (value == 0) {
+                    nulCount++;
+                    if ((position & 1) == 0) {
+                        evenNulCount++;
+                    }
+                } else if ((value < 0x20 && value != '\t' && value != '\n' && value != '\r' && value != '\f' && value != 0x1b) || value == 0x7f) {
+                    controlCount++;
+                }
+                position++;
+                continue;
+            }
+
+            int sequenceLength = value >= 0xf0 && value <= 0xf4 ? 4 : value >= 0xe0 ? (value <= 0xef ? 3 : 0) : value >= 0xc2 ? 2 : 0;
+            if (sequenceLength == 0) {
+                invalidCount++;
+                position++;
+                continue;
+            }
+            if (position + sequenceLength > length) {
+                // Sequence truncated by the end of the sample
+                break;
+            }
+            int continuation = 1;
+            while (continuation < sequenceLength && (sample[position + continuation] & 0xc0) == 0x80) {
+                continuation++;
+            }
+            if (continuation < sequenceLength) {
+                invalidCount++;
+                position++;
+            } else {
+                position += sequenceLength;
+            }
+        }
+
+        if (nulCount > 0) {
+            // UTF-16 text without byte order mark has NUL bytes on alternating positions only
+            if (nulCount * 4 >= length && (evenNulCount == nulCount || evenNulCount == 0)) {
+                return false;
+            }
+            if (nulCount * NUL_RATIO_LIMIT >= length) {
+                return true;
+            }
+        }
+        return controlCount * CONTROL_RATIO_LIMIT >= length || (controlCount + invalidCount) * 100 >= length * INVALID_PERCENT_LIMIT;
+    }
+
+    private static boolean startsWith(byte[] sample, int length, byte[] prefix) {
+        if (length < prefix.length) {
+            return false;
+        }
+
+        for (int i = 0; i < prefix.length; i++) {
+            if (sample[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -30,12 +30,15 @@ import com.intellij.openapi.util.NlsActions;
 import com.intellij.openapi.vfs.JarFileSystem;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.openapi.vfs.newvfs.ArchiveFileSystem;
+import org.exbin.framework.App;
+import org.exbin.framework.language.api.LanguageModuleApi;
 import org.jetbrains.annotations.Nullable;
 
 import javax.annotation.Nonnull;
 import javax.annotation.ParametersAreNonnullByDefault;
 import javax.swing.JOptionPane;
 import java.util.List;
+import java.util.ResourceBundle;
 
 /**
  * Open file in binary editor action.
@@ -85,7 +88,19 @@ public class OpenAsBinaryAction extends AnAction implements DumbAware {
         }
 
         if (isValid) {
-            openValidVirtualFile(project, virtualFile);
+            boolean decompressed = false;
+            if (isGzipFile(virtualFile)) {
+                ResourceBundle resourceBundle = App.getModule(LanguageModuleApi.class).getBundle(OpenAsBinaryAction.class);
+                int result = JOptionPane.showConfirmDialog(null,
+                        resourceBundle.getString("gzipDialog.message"),
+                        resourceBundle.getString("gzipDialog.title"),
+                        JOptionPane.YES_NO_CANCEL_OPTION);
+                if (result != JOptionPane.YES_OPTION && result != JOptionPane.NO_OPTION) {
+                    return;
+                }
+                decompressed = result == JOptionPane.YES_OPTION;
+            }
+            openValidVirtualFile(project, virtualFile, decompressed);
         } else {
             JOptionPane.showMessageDialog(null,
                     "File reported as invalid",
@@ -96,14 +111,31 @@ public class OpenAsBinaryAction extends AnAction implements DumbAware {
 
     @Nonnull
     public static BinEdVirtualFile openValidVirtualFile(Project project, VirtualFile virtualFile) {
-        BinEdVirtualFile binEdVirtualFile = new BinEdVirtualFile(virtualFile);
+        return openValidVirtualFile(project, virtualFile, false);
+    }
+
+    /**
+     * Opens file in binary editor.
+     *
+     * @param project project
+     * @param virtualFile virtual file
+     * @param decompressed true to show decompressed content of gzip file
+     * @return binary editor virtual file
+     */
+    @Nonnull
+    public static BinEdVirtualFile openValidVirtualFile(Project project, VirtualFile virtualFile, boolean decompressed) {
+        BinEdVirtualFile binEdVirtualFile = BinEdFileSystem.getInstance().getBinEdFile(project, virtualFile);
+        if (!binEdVirtualFile.isFileOpened()) {
+            // Already opened file is only focused
+            binEdVirtualFile.setDecompressed(decompressed);
+        }
         OpenFileDescriptor descriptor = new OpenFileDescriptor(project, binEdVirtualFile, 0);
         FileEditorManager fileEditorManager = FileEditorManager.getInstance(project);
         List<FileEditor> editors = fileEditorManager.openEditor(descriptor, true);
         fileEditorManager.setSelectedEditor(binEdVirtualFile, BinEdFileEditorProvider.BINED_EDITOR_TYPE_ID);
         for (FileEditor fileEditor : editors) {
             if (fileEditor instanceof BinEdFileEditor) {
-                binEdVirtualFile.openFile(binEdVirtualFile.getEditorFile());
+                binEdVirtualFile.openFileIfNeeded();
                 break;
             } else {
                 // TODO: Drop other editors
@@ -112,4 +144,8 @@ public class OpenAsBinaryAction extends AnAction implements DumbAware {
         }
         return binEdVirtualFile;
     }
+
+    private static boolean isGzipFile(VirtualFile virtualFile) {
+        return virtualFile.isInLocalFileSystem() && "gz".equalsIgnoreCase(virtualFile.getExtension());
+    }
 }
@@ -0,0 +1,199 @@
+/*
+ * Copyright (C) ExBin Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.exbin.bined.intellij.data;
+
+import org.exbin.auxiliary.binary_data.BinaryData;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CRC32C;
+
+/**
+ * Hashes of fixed size blocks of binary data.
+ * <p>
+ * Used to detect which parts of the file were changed. Each hash combines
+ * two different checksums to reduce probability of missed change.
+ *
+ * @author ExBin Project (https://exbin.org)
+ */
+@ParametersAreNonnullByDefault
+public class BlockHashes {
+
+    public static final int BLOCK_SIZE = 64 * 1024;
+
+    private final long dataSize;
+    private final long[] hashes;
+
+    private BlockHashes(long dataSize, long[] hashes) {
+        this.dataSize = dataSize;
+        this.hashes = hashes;
+    }
+
+    /**
+     * Computes hashes of all blocks of given data.
+     *
+     * @param data data
+     * @return block hashes
+     */
+    @Nonnull
+    public static BlockHashes compute(BinaryData data) {
+        long dataSize = data.getDataSize();
+        long[] hashes = new long[getBlocksCount(dataSize)];
+        byte[] buffer = new byte[BLOCK_SIZE];
+        for (int block = 0; block < hashes.length; block++) {
+            hashes[block] = computeBlockHash(data, block, buffer);
+        }
+        return new BlockHashes(dataSize, hashes);
+    }
+
+    /**
+     * Returns hashes with blocks overlapping given ranges recomputed from
+     * given data of the same size.
+     *
+     * @param data data
+     * @param ranges changed ranges
+     * @return block hashes
+     */
+    @Nonnull
+    public BlockHashes update(BinaryData data, List<OverlayEditableData.DataRange> ranges) {
+        if (data.getDataSize() != dataSize) {
+            return compute(data);
+        }
+
+        long[] updatedHashes = hashes.clone();
+        byte[] buffer = new byte[BLOCK_SIZE];
+        for (OverlayEditableData.DataRange range : ranges) {
+            if (range.getLength() == 0) {
+                continue;
+            }
+            int firstBlock = (int) (range.getStartPosition() / BLOCK_SIZE);
+            int lastBlock = (int) ((range.getStartPosition() + range.getLength() - 1) / BLOCK_SIZE);
+            for (int block = firstBlock; block <= lastBlock; block++) {
+                updatedHashes[block] = computeBlockHash(data, block, buffer);
+            }
+        }
+        return new BlockHashes(dataSize, updatedHashes);
+    }
+
+    /**
+     * Returns hashes extended to given data created by appending to the
+     * original data. Only blocks after the original end are computed.
+     *
+     * @param data data
+     * @return block hashes
+     */
+    @Nonnull
+    public BlockHashes append(BinaryData data) {
+        long newSize = data.getDataSize();
+        if (newSize < dataSize) {
+            return compute(data);
+        }
+
+        long[] appendedHashes = Arrays.copyOf(hashes, getBlocksCount(newSize));
+        byte[] buffer = new byte[BLOCK_SIZE];
+        for (int block = (int) (dataSize / BLOCK_SIZE); block < appendedHashes.length; block++) {
+            appendedHashes[block] = computeBlockHash(data, block, buffer);
+        }
+        return new BlockHashes(newSize, appendedHashes);
+    }
+
+    /**
+     * Checks whether given data start with the original data.
+     * <p>
+     * Only last two blocks of the original data are compared, which is
+     * sufficient to detect append-only growth of files.
+     *
+     * @param data data
+     * @return true if data seem to be extension of the original data
+     */
+    public boolean isExtendedBy(BinaryData data) {
+        if (data.getDataSize() < dataSize) {
+            return false;
+        }
+
+        byte[] buffer = new byte[BLOCK_SIZE];
+        for (int block = Math.max(0, hashes.length - 2); block < hashes.length; block++) {
+            if (computeBlockHash(data, block, (int) getBlockLength(block), buffer) != hashes[block]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns ranges of new data which differ from data of these hashes.
+     * <p>
+     * Blocks beyond the end of the original data are reported as changed,
+     * removal of data from the end is reflected only by the size.
+     *
+     * @param newHashes hashes of new data
+     * @return list of changed ranges in new data
+     */
+    @Nonnull
+    public List<OverlayEditableData.DataRange> getChangedRanges(BlockHashes newHashes) {
+        List<OverlayEditableData.DataRange> ranges = new ArrayList<>();
+        long rangeStart = -1;
+        for (int block = 0; block < newHashes.hashes.length; block++) {
+            long position = (long) block * BLOCK_SIZE;
+            boolean changed = block >= hashes.length
+                    || hashes[block] != newHashes.hashes[block]
+                    || getBlockLength(block) != newHashes.getBlockLength(block);
+            if (changed) {
+                if (rangeStart < 0) {
+                    rangeStart = position;
+                }
+            } else if (rangeStart >= 0) {
+                ranges.add(new OverlayEditableData.DataRange(rangeStart, position - rangeStart));
+                rangeStart = -1;
+            }
+        }
+        if (rangeStart >= 0) {
+            ranges.add(new OverlayEditableData.DataRange(rangeStart, newHashes.dataSize - rangeStart));
+        }
+        return ranges;
+    }
+
+    public long getDataSize() {
+        return dataSize;
+    }
+
+    private static int getBlocksCount(long dataSize) {
+        return (int) ((dataSize + BLOCK_SIZE - 1) / BLOCK_SIZE);
+    }
+
+    private long getBlockLength(int block) {
+        return Math.min(BLOCK_SIZE, dataSize - (long) block * BLOCK_SIZE);
+    }
+
+    private static long computeBlockHash(BinaryData data, int block, byte[] buffer) {
+        long position = (long) block * BLOCK_SIZE;
+        return computeBlockHash(data, block, (int) Math.min(BLOCK_SIZE, data.getDataSize() - position), buffer);
+    }
+
+    private static long computeBlockHash(BinaryData data, int block, int length, byte[] buffer) {
+        long position = (long) block * BLOCK_SIZE;
+        data.copyToArray(position, buffer, 0, length);
+        CRC32C crc32c = new CRC32C();
+        crc32c.update(buffer, 0, length);
+        CRC32 crc32 = new CRC32();
+        crc32.update(buffer, 0, length);
+        return (crc32c.getValue() << 32) | crc32.getValue();
+    }
+}
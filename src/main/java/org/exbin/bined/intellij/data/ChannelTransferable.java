@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) ExBin Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.exbin.bined.intellij.data;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Binary data which can transfer ranges directly to channel.
+ * <p>
+ * Data backed by file use file channel transfer, so content is not copied
+ * through Java heap.
+ *
+ * @author ExBin Project (https://exbin.org)
+ */
+@ParametersAreNonnullByDefault
+public interface ChannelTransferable {
+
+    /**
+     * Writes range of data to current position of given channel.
+     *
+     * @param startFrom start position
+     * @param length length of range
+     * @param target target channel
+     * @throws IOException if transfer fails
+     */
+    void transferTo(long startFrom, long length, WritableByteChannel target) throws IOException;
+}
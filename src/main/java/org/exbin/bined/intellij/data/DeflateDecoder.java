@@ -0,0 +1,531 @@
+/*
+ * Copyright (C) ExBin Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.exbin.bined.intellij.data;
+
+import org.exbin.auxiliary.binary_data.BinaryData;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.Arrays;
+import java.util.zip.ZipException;
+
+/**
+ * Decoder of raw deflate stream.
+ * <p>
+ * Unlike {@link java.util.zip.Inflater} decoder reports boundaries of
+ * deflate blocks and can start decoding at any block boundary, including
+ * positions which are not byte aligned, when the preceding window of
+ * uncompressed data is provided. This allows random access to compressed
+ * data using index of checkpoints.
+ *
+ * @author ExBin Project (https://exbin.org)
+ */
+@ParametersAreNonnullByDefault
+public class DeflateDecoder {
+
+    public static final int WINDOW_SIZE = 32768;
+
+    private static final int RING_SIZE = 2 * WINDOW_SIZE;
+    private static final int RING_MASK = RING_SIZE - 1;
+    private static final int MAX_MATCH_LENGTH = 258;
+    private static final int MAX_UNREAD = WINDOW_SIZE - MAX_MATCH_LENGTH;
+    private static final int INPUT_BUFFER_SIZE = 64 * 1024;
+
+    private static final int STATE_HEADER = 0;
+    private static final int STATE_STORED = 1;
+    private static final int STATE_HUFFMAN = 2;
+    private static final int STATE_END = 3;
+
+    private static final int[] LENGTH_BASE = {3, 4, 5, 6, 7, 8, 9, 10, 11, 13, 15, 17, 19, 23, 27, 31, 35, 43, 51, 59, 67, 83, 99, 115, 131, 163, 195, 227, 258};
+    private static final int[] LENGTH_EXTRA = {0, 0, 0, 0, 0, 0, 0, 0, 1, 1, 1, 1, 2, 2, 2, 2, 3, 3, 3, 3, 4, 4, 4, 4, 5, 5, 5, 5, 0};
+    private static final int[] DISTANCE_BASE = {1, 2, 3, 4, 5, 7, 9, 13, 17, 25, 33, 49, 65, 97, 129, 193, 257, 385, 513, 769, 1025, 1537, 2049, 3073, 4097, 6145, 8193, 12289, 16385, 24577};
+    private static final int[] DISTANCE_EXTRA = {0, 0, 0, 0, 1, 1, 2, 2, 3, 3, 4, 4, 5, 5, 6, 6, 7, 7, 8, 8, 9, 9, 10, 10, 11, 11, 12, 12, 13, 13};
+    private static final int[] CODE_LENGTH_ORDER = {16, 17, 18, 0, 8, 7, 9, 6, 10, 5, 11, 4, 12, 3, 13, 2, 14, 1, 15};
+
+    private static final HuffmanTable FIXED_LITERAL_TABLE;
+    private static final HuffmanTable FIXED_DISTANCE_TABLE;
+
+    static {
+        int[] literalLengths = new int[288];
+        for (int symbol = 0; symbol < literalLengths.length; symbol++) {
+            literalLengths[symbol] = symbol < 144 ? 8 : symbol < 256 ? 9 : symbol < 280 ? 7 : 8;
+        }
+        int[] distanceLengths = new int[30];
+        Arrays.fill(distanceLengths, 5);
+        try {
+            FIXED_LITERAL_TABLE = HuffmanTable.build(literalLengths, literalLengths.length);
+            FIXED_DISTANCE_TABLE = HuffmanTable.build(distanceLengths, distanceLengths.length);
+        } catch (ZipException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private final BinaryData input;
+    private final long inputLimit;
+    private final byte[] inputBuffer = new byte[INPUT_BUFFER_SIZE];
+    private long inputBufferPosition;
+    private int inputBufferOffset = 0;
+    private int inputBufferLength = 0;
+    private long loadedBytes;
+    private long bitBuffer = 0;
+    private int bitCount = 0;
+    private int paddingBits = 0;
+
+    private final byte[] ring = new byte[RING_SIZE];
+    private final long historyStart;
+    private final long initialWindowLength;
+    private long outputPosition;
+    private long readPosition;
+
+    private int state = STATE_HEADER;
+    private boolean finalBlock = false;
+    private int storedRemaining = 0;
+    private HuffmanTable literalTable;
+    private HuffmanTable distanceTable;
+    private BlockListener blockListener = null;
+
+    /**
+     * Creates decoder starting at given bit position of the input.
+     *
+     * @param input compressed data
+     * @param bitPosition bit position of the start of a deflate block
+     * @param window uncompressed data preceding the block, up to
+     * {@link #WINDOW_SIZE} bytes, or null at the start of the stream
+     */
+    public DeflateDecoder(BinaryData input, long bitPosition, @Nullable byte[] window) {
+        this.input = input;
+        inputLimit = input.getDataSize();
+        loadedBytes = bitPosition >>> 3;
+        inputBufferPosition = loadedBytes;
+
+        int windowLength = window == null ? 0 : Math.min(window.length, WINDOW_SIZE);
+        if (window != null) {
+            System.arraycopy(window, window.length - windowLength, ring, 0, windowLength);
+        }
+        historyStart = 0;
+        initialWindowLength = windowLength;
+        outputPosition = windowLength;
+        readPosition = windowLength;
+
+        int skippedBits = (int) (bitPosition & 7);
+        if (skippedBits > 0) {
+            ensureBits(skippedBits);
+            bitBuffer >>>= skippedBits;
+            bitCount -= skippedBits;
+        }
+    }
+
+    public void setBlockListener(@Nullable BlockListener blockListener) {
+        this.blockListener = blockListener;
+    }
+
+    /**
+     * Reads decoded data.
+     *
+     * @param target target array
+     * @param offset target offset
+     * @param length maximum length
+     * @return count of bytes read or -1 at the end of the deflate stream
+     * @throws ZipException if compressed data are invalid
+     */
+    public int read(byte[] target, int offset, int length) throws ZipException {
+        int total = 0;
+        while (length > 0) {
+            if (readPosition == outputPosition) {
+                if (state == STATE_END) {
+                    break;
+                }
+                decode();
+                continue;
+            }
+
+            int ringOffset = (int) (readPosition & RING_MASK);
+            int chunkLength = (int) Math.min(Math.min(length, outputPosition - readPosition), RING_SIZE - ringOffset);
+            System.arraycopy(ring, ringOffset, target, offset, chunkLength);
+            readPosition += chunkLength;
+            offset += chunkLength;
+            length -= chunkLength;
+            total += chunkLength;
+        }
+        return total == 0 && state == STATE_END && length > 0 ? -1 : total;
+    }
+
+    /**
+     * Skips decoded data.
+     *
+     * @param length maximum length to skip
+     * @return count of bytes skipped, less than length only at the end of
+     * the deflate stream
+     * @throws ZipException if compressed data are invalid
+     */
+    public long skip(long length) throws ZipException {
+        long total = 0;
+        while (total < length) {
+            if (readPosition == outputPosition) {
+                if (state == STATE_END) {
+                    break;
+                }
+                decode();
+                continue;
+            }
+
+            long chunkLength = Math.min(length - total, outputPosition - readPosition);
+            readPosition += chunkLength;
+            total += chunkLength;
+        }
+        return total;
+    }
+
+    public boolean isFinished() {
+        return state == STATE_END && readPosition == outputPosition;
+    }
+
+    /**
+     * Returns count of decoded bytes excluding initial window.
+     *
+     * @return output position
+     */
+    public long getOutputPosition() {
+        return readPosition - initialWindowLength;
+    }
+
+    /**
+     * Returns position of the first input byte after the end of the deflate
+     * stream. Valid only when decoding is finished.
+     *
+     * @return input byte position
+     */
+    public long getInputEndPosition() {
+        return (getInputBitPosition() + 7) >>> 3;
+    }
+
+    /**
+     * Returns copy of the last decoded data up to {@link #WINDOW_SIZE}
+     * bytes, which is needed to continue decoding from current block.
+     *
+     * @return window data
+     */
+    @Nonnull
+    public byte[] getWindow() {
+        int windowLength = (int) Math.min(WINDOW_SIZE, outputPosition - historyStart);
+        byte[] window = new byte[windowLength];
+        long position = outputPosition - windowLength;
+        for (int i = 0; i < windowLength; i++) {
+            window[i] = ring[(int) ((position + i) & RING_MASK)];
+        }
+        return window;
+    }
+
+    private long getInputBitPosition() {
+        return loadedBytes * 8 - bitCount;
+    }
+
+    private void decode() throws ZipException {
+        while (state != STATE_END && outputPosition - readPosition < MAX_UNREAD) {
+            switch (state) {
+                case STATE_HEADER: {
+                    decodeBlockHeader();
+                    break;
+                }
+                case STATE_STORED: {
+                    int chunkLength = (int) Math.min(storedRemaining, MAX_UNREAD - (outputPosition - readPosition));
+                    for (int i = 0; i < chunkLength; i++) {
+                        ring[(int) (outputPosition++ & RING_MASK)] = (byte) readBits(8);
+                    }
+                    storedRemaining -= chunkLength;
+                    if (storedRemaining == 0) {
+                        finishBlock();
+                    }
+                    break;
+                }
+                case STATE_HUFFMAN: {
+                    decodeSymbol();
+                    break;
+                }
+                default:
+                    throw new IllegalStateException("Unexpected state " + state);
+            }
+        }
+    }
+
+    private void decodeBlockHeader() throws ZipException {
+        if (blockListener != null) {
+            blockListener.blockStarted(getInputBitPosition(), getDecodedLength());
+        }
+
+        finalBlock = readBits(1) == 1;
+        int blockType = readBits(2);
+        switch (blockType) {
+            case 0: {
+                int skippedBits = bitCount & 7;
+                bitBuffer >>>= skippedBits;
+                bitCount -= skippedBits;
+                int length = readBits(16);
+                int lengthComplement = readBits(16);
+                if ((length ^ 0xffff) != lengthComplement) {
+                    throw new ZipException("Invalid stored block length");
+                }
+                storedRemaining = length;
+                if (length == 0) {
+                    finishBlock();
+                } else {
+                    state = STATE_STORED;
+                }
+                break;
+            }
+            case 1: {
+                literalTable = FIXED_LITERAL_TABLE;
+                distanceTable = FIXED_DISTANCE_TABLE;
+                state = STATE_HUFFMAN;
+                break;
+            }
+            case 2: {
+                decodeDynamicTables();
+                state = STATE_HUFFMAN;
+                break;
+            }
+            default:
+                throw new ZipException("Invalid block type");
+        }
+    }
+
+    private void decodeDynamicTables() throws ZipException {
+        int literalCount = readBits(5) + 257;
+        int distanceCount = readBits(5) + 1;
+        int codeLengthCount = readBits(4) + 4;
+        if (literalCount > 286 || distanceCount > 30) {
+            throw new ZipException("Invalid dynamic block header");
+        }
+
+        int[] codeLengthLengths = new int[19];
+        for (int i = 0; i < codeLengthCount; i++) {
+            codeLengthLengths[CODE_LENGTH_ORDER[i]] = readBits(3);
+        }
+        HuffmanTable codeLengthTable = HuffmanTable.build(codeLengthLengths, codeLengthLengths.length);
+
+        int[] lengths = new int[literalCount + distanceCount];
+        int index = 0;
+        while (index < lengths.length) {
+            int symbol = readSymbol(codeLengthTable);
+            if (symbol < 16) {
+                lengths[index++] = symbol;
+                continue;
+            }
+
+            int repeatedLength = 0;
+            int repeatCount;
+            if (symbol == 16) {
+                if (index == 0) {
+                    throw new ZipException("Invalid code lengths repeat");
+                }
+                repeatedLength = lengths[index - 1];
+                repeatCount = 3 + readBits(2);
+            } else if (symbol == 17) {
+                repeatCount = 3 + readBits(3);
+            } else {
+                repeatCount = 11 + readBits(7);
+            }
+            if (index + repeatCount > lengths.length) {
+                throw new ZipException("Invalid code lengths repeat");
+            }
+            for (int i = 0; i < repeatCount; i++) {
+                lengths[index++] = repeatedLength;
+            }
+        }
+
+        if (lengths[256] == 0) {
+            throw new ZipException("Missing end of block code");
+        }
+        literalTable = HuffmanTable.build(lengths, literalCount);
+        int[] distanceLengths = new int[distanceCount];
+        System.arraycopy(lengths, literalCount, distanceLengths, 0, distanceCount);
+        distanceTable = HuffmanTable.build(distanceLengths, distanceCount);
+    }
+
+    private void decodeSymbol() throws ZipException {
+        int symbol = readSymbol(literalTable);
+        if (symbol < 256) {
+            ring[(int) (outputPosition++ & RING_MASK)] = (byte) symbol;
+            return;
+        }
+        if (symbol == 256) {
+            finishBlock();
+            return;
+        }
+
+        symbol -= 257;
+        if (symbol >= LENGTH_BASE.length) {
+            throw new ZipException("Invalid length symbol");
+        }
+        int length = LENGTH_BASE[symbol] + readBits(LENGTH_EXTRA[symbol]);
+        int distanceSymbol = readSymbol(distanceTable);
+        if (distanceSymbol >= DISTANCE_BASE.length) {
+            throw new ZipException("Invalid distance symbol");
+        }
+        int distance = DISTANCE_BASE[distanceSymbol] + readBits(DISTANCE_EXTRA[distanceSymbol]);
+        if (distance > outputPosition - historyStart) {
+            throw new ZipException("Invalid distance too far back");
+        }
+
+        for (int i = 0; i < length; i++) {
+            ring[(int) (outputPosition & RING_MASK)] = ring[(int) ((outputPosition - distance) & RING_MASK)];
+            outputPosition++;
+        }
+    }
+
+    private void finishBlock() {
+        state = finalBlock ? STATE_END : STATE_HEADER;
+    }
+
+    private long getDecodedLength() {
+        return outputPosition - initialWindowLength;
+    }
+
+    private int readSymbol(HuffmanTable table) throws ZipException {
+        ensureBits(table.maxLength);
+        int entry = table.entries[(int) (bitBuffer & ((1 << table.maxLength) - 1))];
+        int length = entry & 15;
+        if (length == 0) {
+            throw new ZipException("Invalid Huffman code");
+        }
+        consumeBits(length);
+        return entry >>> 4;
+    }
+
+    private int readBits(int count) throws ZipException {
+        if (count == 0) {
+            return 0;
+        }
+
+        ensureBits(count);
+        int value = (int) (bitBuffer & ((1L << count) - 1));
+        consumeBits(count);
+        return value;
+    }
+
+    private void consumeBits(int count) throws ZipException {
+        bitBuffer >>>= count;
+        bitCount -= count;
+        if (bitCount < paddingBits) {
+            throw new ZipException("Unexpected end of compressed data");
+        }
+    }
+
+    /**
+     * Ensures bit buffer contains given count of bits. Bits after the end of
+     * the input are padded with zeros so that lookups of short codes near the
+     * end are possible.
+     *
+     * @param count count of bits
+     */
+    private void ensureBits(int count) {
+        while (bitCount < count) {
+            int value;
+            if (loadedBytes < inputLimit) {
+                if (inputBufferOffset == inputBufferLength) {
+                    inputBufferPosition = loadedBytes;
+                    inputBufferLength = (int) Math.min(INPUT_BUFFER_SIZE, inputLimit - loadedBytes);
+                    input.copyToArray(inputBufferPosition, inputBuffer, 0, inputBufferLength);
+                    inputBufferOffset = 0;
+                }
+                value = inputBuffer[inputBufferOffset++] & 0xff;
+            } else {
+                value = 0;
+                paddingBits += 8;
+            }
+            bitBuffer |= (long) value << bitCount;
+            bitCount += 8;
+            loadedBytes++;
+        }
+    }
+
+    /**
+     * Listener for start of deflate blocks.
+     */
+    @ParametersAreNonnullByDefault
+    public interface BlockListener {
+
+        /**
+         * Reports start of deflate block.
+         *
+         * @param bitPosition bit position of the block in the input
+         * @param outputPosition count of bytes decoded before the block,
+         * excluding initial window
+         */
+        void blockStarted(long bitPosition, long outputPosition);
+    }
+
+    /**
+     * Lookup table for canonical Huffman code.
+     * <p>
+     * Table is indexed by bit-reversed code padded to the maximum code length
+     * and each entry holds symbol and code length.
+     */
+    private static final class HuffmanTable {
+
+        private final int[] entries;
+        private final int maxLength;
+
+        private HuffmanTable(int[] entries, int maxLength) {
+            this.entries = entries;
+            this.maxLength = maxLength;
+        }
+
+        @Nonnull
+        private static HuffmanTable build(int[] lengths, int count) throws ZipException {
+            int maxLength = 0;
+            int[] lengthCounts = new int[16];
+            for (int symbol = 0; symbol < count; symbol++) {
+                lengthCounts[lengths[symbol]]++;
+                maxLength = Math.max(maxLength, lengths[symbol]);
+            }
+            if (maxLength == 0) {
+                // Empty distance table is valid when block contains only literals
+                return new HuffmanTable(new int[2], 1);
+            }
+
+            int left = 1;
+            for (int length = 1; length <= 15; length++) {
+                left = (left << 1) - lengthCounts[length];
+                if (left < 0) {
+                    throw new ZipException("Over-subscribed Huffman code");
+                }
+            }
+
+            int[] nextCode = new int[16];
+            int code = 0;
+            lengthCounts[0] = 0;
+            for (int length = 1; length <= 15; length++) {
+                code = (code + lengthCounts[length - 1]) << 1;
+                nextCode[length] = code;
+            }
+
+            int[] entries = new int[1 << maxLength];
+            for (int symbol = 0; symbol < count; symbol++) {
+                int length = lengths[symbol];
+                if (length == 0) {
+                    continue;
+                }
+                int reversed = Integer.reverse(nextCode[length]++) >>> (32 - length);
+                for (int index = reversed; index < entries.length; index += 1 << length) {
+                    entries[index] = (symbol << 4) | length;
+                }
+            }
+            return new HuffmanTable(entries, maxLength);
+        }
+    }
+}
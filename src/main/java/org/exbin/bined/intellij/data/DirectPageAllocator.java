@@ -0,0 +1,195 @@
+/*
+ * Copyright (C) ExBin Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.exbin.bined.intellij.data;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.lang.ref.Cleaner;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Allocator of data pages outside of Java heap.
+ * <p>
+ * Total size of allocated direct pages is limited, when limit is reached
+ * pages are allocated on heap instead. Released direct pages are freed
+ * immediately without waiting for garbage collection when supported by
+ * runtime. Size of pages which were dropped without release is returned to
+ * the limit when they are garbage collected.
+ *
+ * @author ExBin Project (https://exbin.org)
+ */
+@ParametersAreNonnullByDefault
+public class DirectPageAllocator {
+
+    public static final long DEFAULT_LIMIT = 256L * 1024 * 1024;
+
+    private static final AtomicLong ALLOCATED_SIZE = new AtomicLong();
+    private static volatile long limit = DEFAULT_LIMIT;
+    private static final BufferCleaner BUFFER_CLEANER = createBufferCleaner();
+    private static final Cleaner PAGE_CLEANER = Cleaner.create();
+
+    private DirectPageAllocator() {
+    }
+
+    /**
+     * Allocates new page with zeroed content.
+     *
+     * @param capacity page capacity
+     * @return page
+     */
+    @Nonnull
+    public static Page allocate(int capacity) {
+        if (ALLOCATED_SIZE.addAndGet(capacity) <= limit) {
+            try {
+                return new Page(ByteBuffer.allocateDirect(capacity), true);
+            } catch (OutOfMemoryError ex) {
+                // Direct memory of runtime is exhausted
+            }
+        }
+        ALLOCATED_SIZE.addAndGet(-capacity);
+        return new Page(ByteBuffer.allocate(capacity), false);
+    }
+
+    /**
+     * Sets limit for total size of direct pages.
+     *
+     * @param limit limit in bytes
+     */
+    public static void setLimit(long limit) {
+        DirectPageAllocator.limit = Math.max(0, limit);
+    }
+
+    public static long getLimit() {
+        return limit;
+    }
+
+    public static long getAllocatedSize() {
+        return ALLOCATED_SIZE.get();
+    }
+
+    /**
+     * Frees memory of direct or mapped buffer immediately.
+     * <p>
+     * Buffer must not be accessed afterwards by any thread.
+     *
+     * @param buffer buffer
+     * @return true if buffer was freed, false if it is left to garbage
+     * collector
+     */
+    static boolean freeBuffer(ByteBuffer buffer) {
+        if (BUFFER_CLEANER == null || !buffer.isDirect()) {
+            return false;
+        }
+
+        try {
+            BUFFER_CLEANER.clean(buffer);
+            return true;
+        } catch (Exception ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns true if buffers can be freed without garbage collection.
+     *
+     * @return true if supported by runtime
+     */
+    static boolean canFreeBuffers() {
+        return BUFFER_CLEANER != null;
+    }
+
+    @Nullable
+    private static BufferCleaner createBufferCleaner() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field unsafeField = unsafeClass.getDeclaredField("theUnsafe");
+            unsafeField.setAccessible(true);
+            Object unsafe = unsafeField.get(null);
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            return buffer -> invokeCleaner.invoke(unsafe, buffer);
+        } catch (Exception ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Allocated page.
+     * <p>
+     * Owner of the page must ensure that no other thread can access its
+     * buffer when page is released.
+     */
+    @ParametersAreNonnullByDefault
+    public static final class Page {
+
+        private final ByteBuffer buffer;
+        private final Cleaner.Cleanable accounting;
+        private boolean released = false;
+
+        private Page(ByteBuffer buffer, boolean direct) {
+            this.buffer = buffer;
+            accounting = direct ? PAGE_CLEANER.register(this, new SizeRelease(buffer.capacity())) : null;
+        }
+
+        @Nonnull
+        public ByteBuffer getBuffer() {
+            return buffer;
+        }
+
+        public boolean isDirect() {
+            return accounting != null;
+        }
+
+        /**
+         * Releases page. Page must not be used afterwards.
+         */
+        public synchronized void release() {
+            if (accounting == null || released) {
+                return;
+            }
+
+            released = true;
+            accounting.clean();
+            freeBuffer(buffer);
+        }
+    }
+
+    /**
+     * Returns size of page to the limit, must not reference the page.
+     */
+    private static final class SizeRelease implements Runnable {
+
+        private final int size;
+
+        private SizeRelease(int size) {
+            this.size = size;
+        }
+
+        @Override
+        public void run() {
+            ALLOCATED_SIZE.addAndGet(-size);
+        }
+    }
+
+    @ParametersAreNonnullByDefault
+    private interface BufferCleaner {
+
+        void clean(ByteBuffer buffer) throws Exception;
+    }
+}
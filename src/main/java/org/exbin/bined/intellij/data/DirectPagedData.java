@@ -0,0 +1,602 @@
+/*
+ * Copyright (C) ExBin Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.exbin.bined.intellij.data;
+
+import org.exbin.auxiliary.binary_data.BinaryData;
+import org.exbin.auxiliary.binary_data.EditableBinaryData;
+import org.exbin.auxiliary.binary_data.OutOfBoundsException;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Editable binary data stored in pages outside of Java heap.
+ * <p>
+ * Pages are allocated by {@link DirectPageAllocator} and each page holds
+ * up to page size bytes, so insertion or removal only splits affected page.
+ * Pages are released when data are disposed.
+ * <p>
+ * Data can be read from multiple threads. Reads and modifications are
+ * guarded by read-write lock, so page is never released while it is being
+ * read.
+ *
+ * @author ExBin Project (https://exbin.org)
+ */
+@ParametersAreNonnullByDefault
+public class DirectPagedData implements EditableBinaryData {
+
+    public static final int PAGE_SIZE = 64 * 1024;
+
+    private final List<DirectPageAllocator.Page> pages = new ArrayList<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile long dataSize = 0;
+
+    private volatile PageLocation cachedLocation = PageLocation.START;
+
+    public DirectPagedData() {
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return dataSize == 0;
+    }
+
+    @Override
+    public long getDataSize() {
+        return dataSize;
+    }
+
+    @Override
+    public byte getByte(long position) {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            checkRange(position, 1);
+            PageLocation location = findPage(position);
+            return getPage(location.index).get((int) (position - location.position));
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public void copyToArray(long startFrom, byte[] target, int offset, int length) {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            checkRange(startFrom, length);
+            while (length > 0) {
+                PageLocation location = findPage(startFrom);
+                ByteBuffer page = getPage(location.index);
+                int pageOffset = (int) (startFrom - location.position);
+                int chunkLength = Math.min(length, page.limit() - pageOffset);
+                page.get(pageOffset, target, offset, chunkLength);
+                startFrom += chunkLength;
+                offset += chunkLength;
+                length -= chunkLength;
+            }
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Nonnull
+    @Override
+    public BinaryData copy() {
+        return copy(0, dataSize);
+    }
+
+    @Nonnull
+    @Override
+    public BinaryData copy(long startFrom, long length) {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            checkRange(startFrom, length);
+            DirectPagedData result = new DirectPagedData();
+            result.insert(0, this, startFrom, length);
+            return result;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public void saveToStream(OutputStream outputStream) throws IOException {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            byte[] buffer = new byte[PAGE_SIZE];
+            for (DirectPageAllocator.Page page : pages) {
+                ByteBuffer pageBuffer = page.getBuffer();
+                int length = pageBuffer.limit();
+                pageBuffer.get(0, buffer, 0, length);
+                outputStream.write(buffer, 0, length);
+            }
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Nonnull
+    @Override
+    public InputStream getDataInputStream() {
+        return new InputStream() {
+            private long position = 0;
+
+            @Override
+            public int read() {
+                return position < dataSize ? getByte(position++) & 0xff : -1;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) {
+                if (length == 0) {
+                    return 0;
+                }
+                if (position >= dataSize) {
+                    return -1;
+                }
+
+                int chunkLength = (int) Math.min(length, dataSize - position);
+                copyToArray(position, buffer, offset, chunkLength);
+                position += chunkLength;
+                return chunkLength;
+            }
+
+            @Override
+            public int available() {
+                return (int) Math.min(Integer.MAX_VALUE, dataSize - position);
+            }
+        };
+    }
+
+    @Override
+    public void setDataSize(long size) {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            if (size < dataSize) {
+                remove(size, dataSize - size);
+            } else if (size > dataSize) {
+                insert(dataSize, size - dataSize);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void setByte(long position, byte value) {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            checkRange(position, 1);
+            PageLocation location = findPage(position);
+            getPage(location.index).put((int) (position - location.position), value);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void insertUninitialized(long startFrom, long length) {
+        insert(startFrom, length);
+    }
+
+    @Override
+    public void insert(long startFrom, long length) {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            checkInsertPosition(startFrom, length);
+            byte[] emptyData = new byte[(int) Math.min(PAGE_SIZE, length)];
+            long position = 0;
+            while (position < length) {
+                int chunkLength = (int) Math.min(PAGE_SIZE, length - position);
+                insertArray(startFrom + position, emptyData, 0, chunkLength);
+                position += chunkLength;
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void insert(long startFrom, byte[] insertedData) {
+        insert(startFrom, insertedData, 0, insertedData.length);
+    }
+
+    @Override
+    public void insert(long startFrom, byte[] insertedData, int insertedDataOffset, int insertedDataLength) {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            checkInsertPosition(startFrom, insertedDataLength);
+            insertArray(startFrom, insertedData, insertedDataOffset, insertedDataLength);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void insert(long startFrom, BinaryData insertedData) {
+        insert(startFrom, insertedData, 0, insertedData.getDataSize());
+    }
+
+    @Override
+    public void insert(long startFrom, BinaryData insertedData, long insertedDataOffset, long insertedDataLength) {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            checkInsertPosition(startFrom, insertedDataLength);
+            byte[] buffer = new byte[(int) Math.min(PAGE_SIZE, insertedDataLength)];
+            long position = 0;
+            while (position < insertedDataLength) {
+                int chunkLength = (int) Math.min(PAGE_SIZE, insertedDataLength - position);
+                insertedData.copyToArray(insertedDataOffset + position, buffer, 0, chunkLength);
+                insertArray(startFrom + position, buffer, 0, chunkLength);
+                position += chunkLength;
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public long insert(long startFrom, InputStream inputStream, long maximumDataSize) throws IOException {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            checkInsertPosition(startFrom, 0);
+            byte[] buffer = new byte[PAGE_SIZE];
+            long position = 0;
+            while (maximumDataSize < 0 || position < maximumDataSize) {
+                int readLength = maximumDataSize < 0 ? PAGE_SIZE : (int) Math.min(PAGE_SIZE, maximumDataSize - position);
+                int length = inputStream.read(buffer, 0, readLength);
+                if (length < 0) {
+                    break;
+                }
+                insertArray(startFrom + position, buffer, 0, length);
+                position += length;
+            }
+            return position;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void fillData(long startFrom, long length) {
+        fillData(startFrom, length, (byte) 0);
+    }
+
+    @Override
+    public void fillData(long startFrom, long length, byte fill) {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            checkRange(startFrom, length);
+            while (length > 0) {
+                PageLocation location = findPage(startFrom);
+                ByteBuffer page = getPage(location.index);
+                int pageOffset = (int) (startFrom - location.position);
+                int chunkLength = (int) Math.min(length, page.limit() - pageOffset);
+                for (int i = 0; i < chunkLength; i++) {
+                    page.put(pageOffset + i, fill);
+                }
+                startFrom += chunkLength;
+                length -= chunkLength;
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void replace(long targetPosition, BinaryData replacingData) {
+        replace(targetPosition, replacingData, 0, replacingData.getDataSize());
+    }
+
+    @Override
+    public void replace(long targetPosition, BinaryData replacingData, long startFrom, long length) {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            checkRange(targetPosition, length);
+            byte[] buffer = new byte[(int) Math.min(PAGE_SIZE, length)];
+            long position = 0;
+            while (position < length) {
+                int chunkLength = (int) Math.min(PAGE_SIZE, length - position);
+                replacingData.copyToArray(startFrom + position, buffer, 0, chunkLength);
+                replaceArray(targetPosition + position, buffer, 0, chunkLength);
+                position += chunkLength;
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void replace(long targetPosition, byte[] replacingData) {
+        replace(targetPosition, replacingData, 0, replacingData.length);
+    }
+
+    @Override
+    public void replace(long targetPosition, byte[] replacingData, int replacingDataOffset, int length) {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            checkRange(targetPosition, length);
+            replaceArray(targetPosition, replacingData, replacingDataOffset, length);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void remove(long startFrom, long length) {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            checkRange(startFrom, length);
+            if (length == 0) {
+                return;
+            }
+
+            int startIndex = splitAt(startFrom);
+            int endIndex = splitAt(startFrom + length);
+            List<DirectPageAllocator.Page> removedPages = pages.subList(startIndex, endIndex);
+            for (DirectPageAllocator.Page page : removedPages) {
+                page.release();
+            }
+            removedPages.clear();
+            dataSize -= length;
+            invalidateCache();
+            if (startIndex > 0 && startIndex < pages.size()) {
+                mergePages(startIndex - 1);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            for (DirectPageAllocator.Page page : pages) {
+                page.release();
+            }
+            pages.clear();
+            dataSize = 0;
+            invalidateCache();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void loadFromStream(InputStream inputStream) throws IOException {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            clear();
+            insert(0, inputStream, -1);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Nonnull
+    @Override
+    public OutputStream getDataOutputStream() {
+        return new OutputStream() {
+            private long position = 0;
+
+            @Override
+            public void write(int value) {
+                write(new byte[]{(byte) value}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] buffer, int offset, int length) {
+                int overwriteLength = (int) Math.min(length, dataSize - position);
+                if (overwriteLength > 0) {
+                    replace(position, buffer, offset, overwriteLength);
+                }
+                if (overwriteLength < length) {
+                    insert(position + overwriteLength, buffer, offset + overwriteLength, length - overwriteLength);
+                }
+                position += length;
+            }
+        };
+    }
+
+    @Override
+    public void dispose() {
+        clear();
+    }
+
+    @Nonnull
+    private ByteBuffer getPage(int index) {
+        return pages.get(index).getBuffer();
+    }
+
+    private void replaceArray(long targetPosition, byte[] replacingData, int replacingDataOffset, int length) {
+        while (length > 0) {
+            PageLocation location = findPage(targetPosition);
+            ByteBuffer page = getPage(location.index);
+            int pageOffset = (int) (targetPosition - location.position);
+            int chunkLength = Math.min(length, page.limit() - pageOffset);
+            page.put(pageOffset, replacingData, replacingDataOffset, chunkLength);
+            targetPosition += chunkLength;
+            replacingDataOffset += chunkLength;
+            length -= chunkLength;
+        }
+    }
+
+    private void insertArray(long position, byte[] data, int offset, int length) {
+        if (length == 0) {
+            return;
+        }
+
+        int index = splitAt(position);
+        if (index > 0) {
+            // Fill free space of preceding page first
+            ByteBuffer previousPage = getPage(index - 1);
+            int freeLength = Math.min(length, previousPage.capacity() - previousPage.limit());
+            if (freeLength > 0) {
+                int pageLength = previousPage.limit();
+                previousPage.limit(pageLength + freeLength);
+                previousPage.put(pageLength, data, offset, freeLength);
+                offset += freeLength;
+                length -= freeLength;
+                dataSize += freeLength;
+            }
+        }
+
+        while (length > 0) {
+            int chunkLength = Math.min(PAGE_SIZE, length);
+            DirectPageAllocator.Page page = DirectPageAllocator.allocate(PAGE_SIZE);
+            page.getBuffer().limit(chunkLength);
+            page.getBuffer().put(0, data, offset, chunkLength);
+            pages.add(index, page);
+            index++;
+            offset += chunkLength;
+            length -= chunkLength;
+            dataSize += chunkLength;
+        }
+        invalidateCache();
+    }
+
+    /**
+     * Ensures that page boundary exists at given position.
+     *
+     * @param position data position
+     * @return index of page starting at given position
+     */
+    private int splitAt(long position) {
+        if (position == dataSize) {
+            return pages.size();
+        }
+
+        PageLocation location = findPage(position);
+        int offset = (int) (position - location.position);
+        if (offset == 0) {
+            return location.index;
+        }
+
+        ByteBuffer page = getPage(location.index);
+        int tailLength = page.limit() - offset;
+        DirectPageAllocator.Page tail = DirectPageAllocator.allocate(PAGE_SIZE);
+        tail.getBuffer().limit(tailLength);
+        tail.getBuffer().put(0, page, offset, tailLength);
+        page.limit(offset);
+        pages.add(location.index + 1, tail);
+        invalidateCache();
+        return location.index + 1;
+    }
+
+    private void mergePages(int index) {
+        ByteBuffer first = getPage(index);
+        ByteBuffer second = getPage(index + 1);
+        int firstLength = first.limit();
+        int secondLength = second.limit();
+        if (firstLength + secondLength > first.capacity()) {
+            return;
+        }
+
+        first.limit(firstLength + secondLength);
+        first.put(firstLength, second, 0, secondLength);
+        pages.remove(index + 1).release();
+        invalidateCache();
+    }
+
+    /**
+     * Finds page containing given position and updates cached location.
+     * Cached location is replaced as a whole, so that concurrent reads are
+     * safe.
+     *
+     * @param position data position
+     * @return page location
+     */
+    @Nonnull
+    private PageLocation findPage(long position) {
+        PageLocation location = cachedLocation;
+        int index = location.index;
+        long pagePosition = location.position;
+        if (index >= pages.size() || position < pagePosition) {
+            index = 0;
+            pagePosition = 0;
+        }
+
+        while (true) {
+            int pageLength = getPage(index).limit();
+            if (position < pagePosition + pageLength) {
+                break;
+            }
+            pagePosition += pageLength;
+            index++;
+        }
+
+        location = new PageLocation(index, pagePosition);
+        cachedLocation = location;
+        return location;
+    }
+
+    private void invalidateCache() {
+        cachedLocation = PageLocation.START;
+    }
+
+    private void checkRange(long startFrom, long length) {
+        if (startFrom < 0 || length < 0 || startFrom + length > dataSize) {
+            throw new OutOfBoundsException();
+        }
+    }
+
+    private void checkInsertPosition(long startFrom, long length) {
+        if (startFrom < 0 || startFrom > dataSize || length < 0) {
+            throw new OutOfBoundsException();
+        }
+    }
+
+    /**
+     * Index and start position of page.
+     */
+    private static final class PageLocation {
+
+        private static final PageLocation START = new PageLocation(0, 0);
+
+        private final int index;
+        private final long position;
+
+        private PageLocation(int index, long position) {
+            this.index = index;
+            this.position = position;
+        }
+    }
+}
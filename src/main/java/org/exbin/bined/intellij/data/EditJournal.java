@@ -0,0 +1,501 @@
+/*
+ * Copyright (C) ExBin Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.exbin.bined.intellij.data;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Append-only on-disk journal of edit operations.
+ * <p>
+ * Journal starts with header identifying the edited file and its state at
+ * the time of opening, followed by records of insert, replace and remove
+ * operations including inserted data. Data of large edits can be read back
+ * from the journal, so they don't need to be held on heap. Journal of file
+ * which was not closed properly can be replayed to recover unsaved edits.
+ * <p>
+ * When writing to the journal fails, no further records are appended and
+ * the journal is invalidated for recovery, but data already stored in it
+ * can be still read.
+ *
+ * @author ExBin Project (https://exbin.org)
+ */
+@ParametersAreNonnullByDefault
+public class EditJournal {
+
+    private static final int MAGIC = 0x424e454a;
+    private static final int VERSION = 1;
+    private static final int FILE_STATE_POSITION = 4 + 4;
+    private static final byte RECORD_INSERT = 1;
+    private static final byte RECORD_REPLACE = 2;
+    private static final byte RECORD_REMOVE = 3;
+    private static final int RECORD_HEADER_SIZE = 1 + 8 + 8;
+    private static final int READ_CACHE_SIZE = 4096;
+    private static final Set<Path> OPEN_JOURNALS = ConcurrentHashMap.newKeySet();
+
+    private final Path journalPath;
+    private final FileChannel channel;
+    private final long headerSize;
+    private long journalSize;
+    private boolean closed = false;
+    private boolean failed = false;
+
+    private final ByteBuffer recordHeader = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+    private final byte[] readCache = new byte[READ_CACHE_SIZE];
+    private long readCachePosition = -1;
+    private int readCacheLength = 0;
+
+    private EditJournal(Path journalPath, FileChannel channel, long headerSize, long journalSize) {
+        this.journalPath = journalPath;
+        this.channel = channel;
+        this.headerSize = headerSize;
+        this.journalSize = journalSize;
+    }
+
+    /**
+     * Returns path of journal for given file in given directory.
+     *
+     * @param journalDirectory directory of journals
+     * @param filePath edited file
+     * @return journal path
+     */
+    @Nonnull
+    public static Path getJournalPath(Path journalDirectory, Path filePath) {
+        String key = filePath.toAbsolutePath().normalize().toString();
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder builder = new StringBuilder();
+            for (int i = 0; i < 16; i++) {
+                builder.append(String.format("%02x", digest[i]));
+            }
+            return journalDirectory.resolve(builder + ".journal");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Returns true if journal is opened in this process.
+     *
+     * @param journalPath journal path
+     * @return true if journal is in use
+     */
+    public static boolean isInUse(Path journalPath) {
+        return OPEN_JOURNALS.contains(journalPath.toAbsolutePath().normalize());
+    }
+
+    /**
+     * Opens journal for given file.
+     * <p>
+     * Existing journal is kept for recovery if it was created for the same
+     * file with the same size and modification time, otherwise it is
+     * replaced with empty journal. Incomplete last record is discarded.
+     *
+     * @param journalPath journal path
+     * @param filePath edited file
+     * @return journal
+     * @throws IOException if journal cannot be created or is already in use
+     */
+    @Nonnull
+    public static EditJournal open(Path journalPath, Path filePath) throws IOException {
+        journalPath = journalPath.toAbsolutePath().normalize();
+        if (!OPEN_JOURNALS.add(journalPath)) {
+            throw new IOException("Journal " + journalPath + " is already in use");
+        }
+
+        try {
+            return openJournal(journalPath, filePath);
+        } catch (IOException | RuntimeException ex) {
+            OPEN_JOURNALS.remove(journalPath);
+            throw ex;
+        }
+    }
+
+    @Nonnull
+    private static EditJournal openJournal(Path journalPath, Path filePath) throws IOException {
+        byte[] fileKey = filePath.toAbsolutePath().normalize().toString().getBytes(StandardCharsets.UTF_8);
+        FileState fileState = FileState.of(filePath);
+        Files.createDirectories(journalPath.getParent());
+        FileChannel channel = FileChannel.open(journalPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(4 + 4 + 8 + 8 + 4 + fileKey.length);
+            header.putInt(MAGIC).putInt(VERSION).putLong(fileState.getFileSize()).putLong(fileState.getFileModified()).putInt(fileKey.length).put(fileKey);
+            header.flip();
+            long headerSize = header.limit();
+
+            if (matchesHeader(channel, header)) {
+                EditJournal journal = new EditJournal(journalPath, channel, headerSize, channel.size());
+                journal.journalSize = journal.findValidSize();
+                channel.truncate(journal.journalSize);
+                return journal;
+            }
+
+            channel.truncate(0);
+            writeFully(channel, header, 0);
+            return new EditJournal(journalPath, channel, headerSize, headerSize);
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Returns true if journal contains any edit records.
+     *
+     * @return true if there are records
+     */
+    public synchronized boolean hasRecords() {
+        return journalSize > headerSize;
+    }
+
+    /**
+     * Returns true if writing to the journal failed and edits are not
+     * recorded anymore.
+     *
+     * @return true if failed
+     */
+    public synchronized boolean isFailed() {
+        return failed;
+    }
+
+    /**
+     * Appends record of insertion.
+     *
+     * @param position target position
+     * @param data inserted data
+     * @return journal position of inserted data or -1 if journal failed
+     */
+    public synchronized long appendInsert(long position, byte[] data) {
+        return appendRecord(RECORD_INSERT, position, data.length, data);
+    }
+
+    /**
+     * Appends record of replacement of the same length.
+     *
+     * @param position target position
+     * @param data replacing data
+     * @return journal position of replacing data or -1 if journal failed
+     */
+    public synchronized long appendReplace(long position, byte[] data) {
+        return appendRecord(RECORD_REPLACE, position, data.length, data);
+    }
+
+    /**
+     * Appends record of removal.
+     *
+     * @param position start position
+     * @param length removed length
+     */
+    public synchronized void appendRemove(long position, long length) {
+        appendRecord(RECORD_REMOVE, position, length, null);
+    }
+
+    /**
+     * Copies data stored in the journal.
+     *
+     * @param journalPosition journal position
+     * @param target target array
+     * @param offset target offset
+     * @param length length
+     */
+    public synchronized void read(long journalPosition, byte[] target, int offset, int length) {
+        if (length <= READ_CACHE_SIZE) {
+            if (readCachePosition < 0 || journalPosition < readCachePosition || journalPosition + length > readCachePosition + readCacheLength) {
+                readCacheLength = (int) Math.min(READ_CACHE_SIZE, journalSize - journalPosition);
+                readFully(ByteBuffer.wrap(readCache, 0, readCacheLength), journalPosition);
+                readCachePosition = journalPosition;
+            }
+            System.arraycopy(readCache, (int) (journalPosition - readCachePosition), target, offset, length);
+            return;
+        }
+
+        readFully(ByteBuffer.wrap(target, offset, length), journalPosition);
+    }
+
+    /**
+     * Reads single byte stored in the journal.
+     *
+     * @param journalPosition journal position
+     * @return byte value
+     */
+    public synchronized byte readByte(long journalPosition) {
+        byte[] value = new byte[1];
+        read(journalPosition, value, 0, 1);
+        return value[0];
+    }
+
+    /**
+     * Replays all records to given listener.
+     *
+     * @param listener replay listener
+     */
+    public synchronized void replay(ReplayListener listener) {
+        long position = headerSize;
+        while (position + RECORD_HEADER_SIZE <= journalSize) {
+            recordHeader.clear();
+            readFully(recordHeader, position);
+            recordHeader.flip();
+            byte type = recordHeader.get();
+            long targetPosition = recordHeader.getLong();
+            long length = recordHeader.getLong();
+            position += RECORD_HEADER_SIZE;
+            switch (type) {
+                case RECORD_INSERT:
+                    listener.inserted(targetPosition, position, (int) length);
+                    position += length;
+                    break;
+                case RECORD_REPLACE:
+                    listener.replaced(targetPosition, position, (int) length);
+                    position += length;
+                    break;
+                case RECORD_REMOVE:
+                    listener.removed(targetPosition, length);
+                    break;
+                default:
+                    throw new IllegalStateException("Unexpected journal record type " + type);
+            }
+        }
+    }
+
+    /**
+     * Discards all records, header keeps the state of the file.
+     */
+    public synchronized void clear() {
+        clear(null);
+    }
+
+    /**
+     * Discards all records, used when edits were saved to the file.
+     * <p>
+     * Header is updated to given state of the saved file, so that edits made
+     * after the save are recovered when the file is opened again.
+     *
+     * @param fileState state of the file after save or null to keep header
+     */
+    public synchronized void clear(@Nullable FileState fileState) {
+        if (closed) {
+            return;
+        }
+
+        try {
+            channel.truncate(headerSize);
+            if (fileState != null && !failed) {
+                ByteBuffer stateBuffer = ByteBuffer.allocate(8 + 8);
+                stateBuffer.putLong(fileState.getFileSize()).putLong(fileState.getFileModified());
+                stateBuffer.flip();
+                writeFully(channel, stateBuffer, FILE_STATE_POSITION);
+            }
+            journalSize = headerSize;
+            readCachePosition = -1;
+        } catch (IOException ex) {
+            Logger.getLogger(EditJournal.class.getName()).log(Level.SEVERE, "Unable to clear journal " + journalPath, ex);
+        }
+    }
+
+    /**
+     * Closes the journal and keeps its file, used when unsaved edits should
+     * be offered for recovery when the file is opened again.
+     */
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+        try {
+            channel.close();
+        } catch (IOException ex) {
+            Logger.getLogger(EditJournal.class.getName()).log(Level.SEVERE, "Unable to close journal " + journalPath, ex);
+        }
+        OPEN_JOURNALS.remove(journalPath);
+    }
+
+    /**
+     * Closes the journal and deletes its file.
+     */
+    public synchronized void delete() {
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+        try {
+            channel.close();
+            Files.deleteIfExists(journalPath);
+        } catch (IOException ex) {
+            Logger.getLogger(EditJournal.class.getName()).log(Level.SEVERE, "Unable to delete journal " + journalPath, ex);
+        }
+        OPEN_JOURNALS.remove(journalPath);
+    }
+
+    private long appendRecord(byte type, long position, long length, @Nullable byte[] data) {
+        if (closed || failed) {
+            return -1;
+        }
+
+        try {
+            recordHeader.clear();
+            recordHeader.put(type).putLong(position).putLong(length);
+            recordHeader.flip();
+            writeFully(channel, recordHeader, journalSize);
+            long dataPosition = journalSize + RECORD_HEADER_SIZE;
+            if (data != null) {
+                writeFully(channel, ByteBuffer.wrap(data), dataPosition);
+            }
+            journalSize = dataPosition + (data != null ? data.length : 0);
+            return dataPosition;
+        } catch (IOException ex) {
+            // Journal is only a safeguard, editing continues without it, but
+            // channel is kept open as segments can still read stored data
+            Logger.getLogger(EditJournal.class.getName()).log(Level.SEVERE, "Unable to write journal " + journalPath, ex);
+            failed = true;
+            invalidate();
+            return -1;
+        }
+    }
+
+    /**
+     * Invalidates header, so that incomplete journal is not replayed.
+     */
+    private void invalidate() {
+        try {
+            writeFully(channel, ByteBuffer.allocate(4), 0);
+        } catch (IOException ex) {
+            // Journal is discarded when file is opened with different state
+            Logger.getLogger(EditJournal.class.getName()).log(Level.WARNING, "Unable to invalidate journal " + journalPath, ex);
+        }
+    }
+
+    /**
+     * Finds size of journal up to the last complete record.
+     *
+     * @return valid size
+     */
+    private long findValidSize() {
+        long position = headerSize;
+        while (position + RECORD_HEADER_SIZE <= journalSize) {
+            recordHeader.clear();
+            readFully(recordHeader, position);
+            recordHeader.flip();
+            byte type = recordHeader.get();
+            recordHeader.getLong();
+            long length = recordHeader.getLong();
+            long recordEnd = position + RECORD_HEADER_SIZE + (type == RECORD_REMOVE ? 0 : length);
+            if (type < RECORD_INSERT || type > RECORD_REMOVE || length < 0 || recordEnd > journalSize) {
+                break;
+            }
+            position = recordEnd;
+        }
+        return position;
+    }
+
+    private static boolean matchesHeader(FileChannel channel, ByteBuffer header) throws IOException {
+        if (channel.size() < header.limit()) {
+            return false;
+        }
+
+        ByteBuffer existingHeader = ByteBuffer.allocate(header.limit());
+        while (existingHeader.hasRemaining()) {
+            if (channel.read(existingHeader, existingHeader.position()) < 0) {
+                return false;
+            }
+        }
+        existingHeader.flip();
+        return existingHeader.equals(header);
+    }
+
+    private void readFully(ByteBuffer buffer, long position) {
+        long startPosition = position - buffer.position();
+        try {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, startPosition + buffer.position()) < 0) {
+                    throw new IllegalStateException("Unexpected end of journal " + journalPath);
+                }
+            }
+        } catch (IOException ex) {
+            throw new IllegalStateException("Unable to read journal " + journalPath, ex);
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long startPosition = position - buffer.position();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, startPosition + buffer.position());
+        }
+    }
+
+    /**
+     * State of the edited file identifying its content.
+     */
+    @ParametersAreNonnullByDefault
+    public static class FileState {
+
+        private final long fileSize;
+        private final long fileModified;
+
+        public FileState(long fileSize, long fileModified) {
+            this.fileSize = fileSize;
+            this.fileModified = fileModified;
+        }
+
+        /**
+         * Returns current state of given file.
+         *
+         * @param filePath file path
+         * @return file state
+         * @throws IOException if file attributes cannot be read
+         */
+        @Nonnull
+        public static FileState of(Path filePath) throws IOException {
+            return new FileState(Files.size(filePath), Files.getLastModifiedTime(filePath).toMillis());
+        }
+
+        public long getFileSize() {
+            return fileSize;
+        }
+
+        public long getFileModified() {
+            return fileModified;
+        }
+    }
+
+    /**
+     * Listener for replay of journal records.
+     */
+    @ParametersAreNonnullByDefault
+    public interface ReplayListener {
+
+        void inserted(long position, long journalPosition, int length);
+
+        void replaced(long position, long journalPosition, int length);
+
+        void removed(long position, long length);
+    }
+}
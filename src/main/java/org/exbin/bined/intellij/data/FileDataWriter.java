@@ -0,0 +1,234 @@
+/*
+ * Copyright (C) ExBin Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.exbin.bined.intellij.data;
+
+import org.exbin.auxiliary.binary_data.BinaryData;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Writer of binary data to files using file channels.
+ *
+ * @author ExBin Project (https://exbin.org)
+ */
+@ParametersAreNonnullByDefault
+public class FileDataWriter {
+
+    public static final int BUFFER_SIZE = 64 * 1024;
+    public static final long TRANSFER_CHUNK_SIZE = 16 * 1024 * 1024;
+
+    private FileDataWriter() {
+    }
+
+    /**
+     * Writes given ranges of data to the same positions of existing file.
+     *
+     * @param filePath target file
+     * @param data source data
+     * @param ranges ranges to write
+     * @throws IOException if write fails
+     */
+    public static void writeRanges(Path filePath, BinaryData data, List<OverlayEditableData.DataRange> ranges) throws IOException {
+        if (ranges.isEmpty()) {
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            for (OverlayEditableData.DataRange range : ranges) {
+                writeRange(channel, data, range.getStartPosition(), range.getLength(), range.getStartPosition(), buffer);
+            }
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Rewrites file with given data.
+     * <p>
+     * Data are streamed to temporary file in the same directory first, so
+     * data can be still backed by the original file while writing. Content
+     * is then copied into the original file, so its hard links, owner and
+     * access rights are kept. Mapped data of the original file are detached
+     * before it is overwritten. Ranges backed by file are transferred
+     * between channels without copying.
+     * <p>
+     * If the original file is changed only partially, temporary file with
+     * complete content is kept and {@link PartialWriteException} is thrown.
+     *
+     * @param filePath target file
+     * @param data source data
+     * @throws IOException if write fails
+     */
+    public static void rewriteFile(Path filePath, BinaryData data) throws IOException {
+        writeFile(filePath, data, 0, data.getDataSize(), null);
+    }
+
+    /**
+     * Exports range of data to file.
+     * <p>
+     * Ranges backed by file are transferred between channels without
+     * copying, other ranges are streamed in chunks, so memory usage is
+     * constant. Target file is changed only when whole range is written, if
+     * existing target is changed only partially,
+     * {@link PartialWriteException} is thrown.
+     *
+     * @param filePath target file
+     * @param data source data
+     * @param startFrom start position
+     * @param length length of range
+     * @param monitor transfer monitor
+     * @return true if exported, false if cancelled
+     * @throws IOException if write fails
+     */
+    public static boolean exportRange(Path filePath, BinaryData data, long startFrom, long length, @Nullable TransferMonitor monitor) throws IOException {
+        return writeFile(filePath, data, startFrom, length, monitor);
+    }
+
+    private static boolean writeFile(Path filePath, BinaryData data, long startFrom, long length, @Nullable TransferMonitor monitor) throws IOException {
+        Path directory = filePath.toAbsolutePath().getParent();
+        Path tempFile = Files.createTempFile(directory, filePath.getFileName().toString(), ".tmp");
+        boolean keepTempFile = false;
+        try {
+            try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+                long position = 0;
+                while (position < length) {
+                    if (monitor != null && monitor.isCancelled()) {
+                        return false;
+                    }
+                    long chunkLength = Math.min(TRANSFER_CHUNK_SIZE, length - position);
+                    transferRange(channel, data, startFrom + position, chunkLength);
+                    position += chunkLength;
+                    if (monitor != null) {
+                        monitor.transferred(position);
+                    }
+                }
+                channel.force(false);
+            }
+
+            if (!Files.exists(filePath)) {
+                try {
+                    try {
+                        Files.move(tempFile, filePath, StandardCopyOption.ATOMIC_MOVE);
+                    } catch (AtomicMoveNotSupportedException ex) {
+                        Files.move(tempFile, filePath);
+                    }
+                } catch (IOException ex) {
+                    throw new IOException("Unable to create file " + filePath, ex);
+                }
+                return true;
+            }
+
+            // Existing file is overwritten in place to keep its links, owner
+            // and access rights, mapped data of the file are released first
+            MappedFileData.detachFile(filePath);
+            try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.WRITE)) {
+                try {
+                    // Shrinking first fails before any change if file is still mapped
+                    if (channel.size() > length) {
+                        channel.truncate(length);
+                    }
+                } catch (IOException ex) {
+                    throw new IOException("Unable to overwrite file " + filePath, ex);
+                }
+
+                keepTempFile = true;
+                try (FileChannel tempChannel = FileChannel.open(tempFile, StandardOpenOption.READ)) {
+                    long position = 0;
+                    while (position < length) {
+                        long transferred = channel.transferFrom(tempChannel, position, length - position);
+                        if (transferred <= 0) {
+                            throw new IOException("Unable to transfer data to file " + filePath);
+                        }
+                        position += transferred;
+                    }
+                }
+                channel.force(false);
+            } catch (IOException ex) {
+                if (keepTempFile) {
+                    throw new PartialWriteException(filePath, tempFile, ex);
+                }
+                throw ex;
+            }
+            keepTempFile = false;
+            return true;
+        } finally {
+            if (!keepTempFile) {
+                Files.deleteIfExists(tempFile);
+            }
+        }
+    }
+
+    /**
+     * Writes range of data to current position of channel.
+     *
+     * @param channel target channel
+     * @param data source data
+     * @param startFrom start position
+     * @param length length of range
+     * @throws IOException if write fails
+     */
+    private static void transferRange(FileChannel channel, BinaryData data, long startFrom, long length) throws IOException {
+        if (data instanceof ChannelTransferable) {
+            ((ChannelTransferable) data).transferTo(startFrom, length, channel);
+            return;
+        }
+
+        long targetPosition = channel.position();
+        writeRange(channel, data, startFrom, length, targetPosition, ByteBuffer.allocate(BUFFER_SIZE));
+        channel.position(targetPosition + length);
+    }
+
+    private static void writeRange(FileChannel channel, BinaryData data, long startPosition, long length, long targetPosition, ByteBuffer buffer) throws IOException {
+        byte[] bufferArray = buffer.array();
+        long position = 0;
+        while (position < length) {
+            int chunkLength = (int) Math.min(bufferArray.length, length - position);
+            data.copyToArray(startPosition + position, bufferArray, 0, chunkLength);
+            buffer.clear();
+            buffer.limit(chunkLength);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, targetPosition + position + buffer.position());
+            }
+            position += chunkLength;
+        }
+    }
+
+    /**
+     * Monitor of data transfer.
+     */
+    @ParametersAreNonnullByDefault
+    public interface TransferMonitor {
+
+        boolean isCancelled();
+
+        /**
+         * Reports progress of transfer.
+         *
+         * @param transferredSize count of bytes written so far
+         */
+        void transferred(long transferredSize);
+    }
+}
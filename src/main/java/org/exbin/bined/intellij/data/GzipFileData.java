@@ -0,0 +1,258 @@
+/*
+ * Copyright (C) ExBin Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.exbin.bined.intellij.data;
+
+import org.exbin.auxiliary.binary_data.BinaryData;
+import org.exbin.auxiliary.binary_data.OutOfBoundsException;
+import org.exbin.auxiliary.binary_data.paged.PagedData;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.ZipException;
+
+/**
+ * Read-only binary data of decompressed content of gzip file.
+ * <p>
+ * Data are decoded on demand in pages starting from the nearest checkpoint
+ * of {@link GzipSeekIndex}. Recently used pages are cached and sequential
+ * reads continue with the last decoder instead of seeking again.
+ * <p>
+ * With lazy index the data can represent single raw deflate stream, such as
+ * deflated entry of zip archive.
+ *
+ * @author ExBin Project (https://exbin.org)
+ */
+@ParametersAreNonnullByDefault
+public class GzipFileData implements BinaryData {
+
+    public static final int PAGE_SIZE = 64 * 1024;
+    public static final int CACHED_PAGES = 32;
+
+    private final BinaryData compressed;
+    private final GzipSeekIndex index;
+    private final long dataSize;
+    private final Map<Long, byte[]> pages = new LinkedHashMap<Long, byte[]>(CACHED_PAGES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, byte[]> eldest) {
+            return size() > CACHED_PAGES;
+        }
+    };
+    private DeflateDecoder decoder = null;
+    private long decoderPosition;
+
+    /**
+     * Creates data for given compressed data and index.
+     *
+     * @param compressed gzip compressed data, disposed with this data
+     * @param index seek index of compressed data
+     */
+    public GzipFileData(BinaryData compressed, GzipSeekIndex index) {
+        this.compressed = compressed;
+        this.index = index;
+        dataSize = index.getUncompressedSize();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return dataSize == 0;
+    }
+
+    @Override
+    public long getDataSize() {
+        return dataSize;
+    }
+
+    @Override
+    public synchronized byte getByte(long position) {
+        if (position < 0 || position >= dataSize) {
+            throw new OutOfBoundsException();
+        }
+
+        return getPage(position / PAGE_SIZE)[(int) (position % PAGE_SIZE)];
+    }
+
+    @Nonnull
+    @Override
+    public BinaryData copy() {
+        return copy(0, dataSize);
+    }
+
+    @Nonnull
+    @Override
+    public BinaryData copy(long startFrom, long length) {
+        if (startFrom < 0 || length < 0 || startFrom + length > dataSize) {
+            throw new OutOfBoundsException();
+        }
+
+        PagedData result = new PagedData();
+        byte[] buffer = new byte[PAGE_SIZE];
+        long position = 0;
+        while (position < length) {
+            int chunkLength = (int) Math.min(PAGE_SIZE, length - position);
+            copyToArray(startFrom + position, buffer, 0, chunkLength);
+            result.insert(position, buffer, 0, chunkLength);
+            position += chunkLength;
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized void copyToArray(long startFrom, byte[] target, int offset, int length) {
+        if (startFrom < 0 || length < 0 || startFrom + length > dataSize) {
+            throw new OutOfBoundsException();
+        }
+
+        while (length > 0) {
+            int pageOffset = (int) (startFrom % PAGE_SIZE);
+            int chunkLength = Math.min(length, PAGE_SIZE - pageOffset);
+            System.arraycopy(getPage(startFrom / PAGE_SIZE), pageOffset, target, offset, chunkLength);
+            startFrom += chunkLength;
+            offset += chunkLength;
+            length -= chunkLength;
+        }
+    }
+
+    @Override
+    public void saveToStream(OutputStream outputStream) throws IOException {
+        byte[] buffer = new byte[PAGE_SIZE];
+        long position = 0;
+        while (position < dataSize) {
+            int chunkLength = (int) Math.min(PAGE_SIZE, dataSize - position);
+            copyToArray(position, buffer, 0, chunkLength);
+            outputStream.write(buffer, 0, chunkLength);
+            position += chunkLength;
+        }
+    }
+
+    @Nonnull
+    @Override
+    public InputStream getDataInputStream() {
+        return new InputStream() {
+            private long position = 0;
+
+            @Override
+            public int read() {
+                return position < dataSize ? getByte(position++) & 0xff : -1;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) {
+                if (length == 0) {
+                    return 0;
+                }
+                if (position >= dataSize) {
+                    return -1;
+                }
+
+                int chunkLength = (int) Math.min(length, dataSize - position);
+                copyToArray(position, buffer, offset, chunkLength);
+                position += chunkLength;
+                return chunkLength;
+            }
+
+            @Override
+            public int available() {
+                return (int) Math.min(Integer.MAX_VALUE, dataSize - position);
+            }
+        };
+    }
+
+    @Override
+    public synchronized void dispose() {
+        pages.clear();
+        decoder = null;
+        compressed.dispose();
+    }
+
+    @Nonnull
+    private byte[] getPage(long pageIndex) {
+        byte[] page = pages.get(pageIndex);
+        if (page != null) {
+            return page;
+        }
+
+        long pagePosition = pageIndex * PAGE_SIZE;
+        page = new byte[(int) Math.min(PAGE_SIZE, dataSize - pagePosition)];
+        try {
+            decodePage(pagePosition, page);
+        } catch (ZipException ex) {
+            decoder = null;
+            throw new IllegalStateException("Unable to decompress data", ex);
+        }
+        pages.put(pageIndex, page);
+        return page;
+    }
+
+    private void decodePage(long position, byte[] page) throws ZipException {
+        int filled = 0;
+        boolean restarted = false;
+        while (filled < page.length) {
+            long targetPosition = position + filled;
+            if (!continueDecoder(targetPosition, restarted)) {
+                if (restarted) {
+                    throw new ZipException("Unexpected end of compressed data");
+                }
+                GzipSeekIndex.Checkpoint checkpoint = index.findCheckpoint(targetPosition);
+                decoder = checkpoint.createDecoder(compressed);
+                decoderPosition = checkpoint.getUncompressedPosition();
+                if (index.isLazy()) {
+                    DeflateDecoder lazyDecoder = decoder;
+                    long basePosition = decoderPosition;
+                    lazyDecoder.setBlockListener((bitPosition, outputPosition) -> index.offerCheckpoint(bitPosition, basePosition + outputPosition, lazyDecoder));
+                }
+                restarted = true;
+                continue;
+            }
+
+            int length = decoder.read(page, filled, page.length - filled);
+            if (length < 0) {
+                // End of gzip member, continue from checkpoint of the next one
+                decoder = null;
+                continue;
+            }
+            decoderPosition += length;
+            filled += length;
+            restarted = false;
+        }
+    }
+
+    /**
+     * Moves current decoder to given position if it is cheaper than seeking
+     * to checkpoint.
+     *
+     * @param position target position
+     * @param seeking true if decoder was just created at checkpoint
+     * @return true if decoder is at given position
+     */
+    private boolean continueDecoder(long position, boolean seeking) throws ZipException {
+        if (decoder == null || decoderPosition > position || (!seeking && position - decoderPosition > index.getSpan())) {
+            return false;
+        }
+
+        long skipped = decoder.skip(position - decoderPosition);
+        decoderPosition += skipped;
+        if (decoderPosition != position || decoder.isFinished()) {
+            decoder = null;
+            return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,432 @@
+/*
+ * Copyright (C) ExBin Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.exbin.bined.intellij.data;
+
+import org.exbin.auxiliary.binary_data.BinaryData;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Index of checkpoints for random access to gzip compressed data.
+ * <p>
+ * Checkpoint is recorded at deflate block boundary approximately every span
+ * of uncompressed data and at the start of each gzip member. Each checkpoint
+ * holds the last 32 KiB of uncompressed data preceding it, stored deflated,
+ * so any position can be decoded by seeking to the nearest preceding
+ * checkpoint.
+ * <p>
+ * Index of single raw deflate stream of known size can be also created
+ * lazily, checkpoints are then recorded as the data are decoded.
+ *
+ * @author ExBin Project (https://exbin.org)
+ */
+@ParametersAreNonnullByDefault
+public class GzipSeekIndex {
+
+    public static final long DEFAULT_SPAN = 4 * 1024 * 1024;
+
+    private static final int MAGIC = 0x424e475a;
+    private static final int VERSION = 1;
+    private static final int SKIP_CHUNK_SIZE = 1024 * 1024;
+    private static final int GZIP_MIN_MEMBER_SIZE = 18;
+    private static final int FLAG_HCRC = 2;
+    private static final int FLAG_EXTRA = 4;
+    private static final int FLAG_NAME = 8;
+    private static final int FLAG_COMMENT = 16;
+
+    private final long span;
+    private final long uncompressedSize;
+    private final List<Checkpoint> checkpoints;
+    private final boolean lazy;
+
+    private GzipSeekIndex(long span, long uncompressedSize, List<Checkpoint> checkpoints, boolean lazy) {
+        this.span = span;
+        this.uncompressedSize = uncompressedSize;
+        this.checkpoints = checkpoints;
+        this.lazy = lazy;
+    }
+
+    /**
+     * Creates lazy index of raw deflate stream.
+     *
+     * @param uncompressedSize size of uncompressed data
+     * @param span minimal distance of checkpoints in uncompressed data
+     * @return index with checkpoint at the start of the stream only
+     */
+    @Nonnull
+    public static GzipSeekIndex createLazy(long uncompressedSize, long span) {
+        List<Checkpoint> checkpoints = new ArrayList<>();
+        checkpoints.add(new Checkpoint(0, 0, new byte[0]));
+        return new GzipSeekIndex(span, uncompressedSize, checkpoints, true);
+    }
+
+    /**
+     * Builds index by decoding all gzip members of given data. Data after the
+     * last member which don't start with gzip header are ignored.
+     *
+     * @param compressed gzip compressed data
+     * @param span minimal distance of checkpoints in uncompressed data
+     * @param monitor build monitor or null
+     * @return index or null if build was cancelled
+     * @throws ZipException if data are not valid gzip data
+     */
+    @Nullable
+    public static GzipSeekIndex build(BinaryData compressed, long span, @Nullable BuildMonitor monitor) throws ZipException {
+        long compressedSize = compressed.getDataSize();
+        List<Checkpoint> checkpoints = new ArrayList<>();
+        long memberPosition = 0;
+        long uncompressedSize = 0;
+        while (memberPosition + GZIP_MIN_MEMBER_SIZE <= compressedSize && isGzipHeader(compressed, memberPosition)) {
+            long memberStart = uncompressedSize;
+            DeflateDecoder decoder = new DeflateDecoder(compressed, skipGzipHeader(compressed, memberPosition) * 8, null);
+            decoder.setBlockListener((bitPosition, outputPosition) -> {
+                long position = memberStart + outputPosition;
+                Checkpoint lastCheckpoint = checkpoints.isEmpty() ? null : checkpoints.get(checkpoints.size() - 1);
+                if (outputPosition == 0 || lastCheckpoint == null || position - lastCheckpoint.uncompressedPosition >= span) {
+                    checkpoints.add(new Checkpoint(bitPosition, position, compressWindow(decoder.getWindow())));
+                }
+            });
+
+            long skipped;
+            while ((skipped = decoder.skip(SKIP_CHUNK_SIZE)) > 0) {
+                uncompressedSize += skipped;
+                if (monitor != null) {
+                    if (monitor.isCancelled()) {
+                        return null;
+                    }
+                    monitor.progress(decoder.getInputEndPosition(), compressedSize);
+                }
+            }
+            // Skip CRC32 and ISIZE trailer
+            memberPosition = decoder.getInputEndPosition() + 8;
+        }
+
+        if (checkpoints.isEmpty()) {
+            throw new ZipException("Not in gzip format");
+        }
+        return new GzipSeekIndex(span, uncompressedSize, checkpoints, false);
+    }
+
+    public long getSpan() {
+        return span;
+    }
+
+    public long getUncompressedSize() {
+        return uncompressedSize;
+    }
+
+    public int getCheckpointsCount() {
+        return checkpoints.size();
+    }
+
+    public boolean isLazy() {
+        return lazy;
+    }
+
+    /**
+     * Records checkpoint of lazy index if it is far enough from the last
+     * checkpoint.
+     *
+     * @param bitPosition bit position of the block in compressed data
+     * @param position uncompressed position of the block
+     * @param decoder decoder providing window
+     */
+    public void offerCheckpoint(long bitPosition, long position, DeflateDecoder decoder) {
+        if (!lazy) {
+            return;
+        }
+
+        Checkpoint lastCheckpoint = checkpoints.get(checkpoints.size() - 1);
+        if (position - lastCheckpoint.uncompressedPosition >= span) {
+            checkpoints.add(new Checkpoint(bitPosition, position, compressWindow(decoder.getWindow())));
+        }
+    }
+
+    /**
+     * Returns the last checkpoint at or before given uncompressed position.
+     *
+     * @param position uncompressed position
+     * @return checkpoint
+     */
+    @Nonnull
+    public Checkpoint findCheckpoint(long position) {
+        int low = 0;
+        int high = checkpoints.size() - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (checkpoints.get(middle).uncompressedPosition <= position) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return checkpoints.get(low);
+    }
+
+    /**
+     * Returns path of cached index for given file in given directory.
+     *
+     * @param cacheDirectory directory of cached indexes
+     * @param filePath compressed file
+     * @return index path
+     */
+    @Nonnull
+    public static Path getCachePath(Path cacheDirectory, Path filePath) {
+        String key = filePath.toAbsolutePath().normalize().toString();
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder builder = new StringBuilder();
+            for (int i = 0; i < 16; i++) {
+                builder.append(String.format("%02x", digest[i]));
+            }
+            return cacheDirectory.resolve(builder + ".gzindex");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Saves index to given file.
+     *
+     * @param indexPath index path
+     * @param fileSize size of the compressed file
+     * @param fileModified modification time of the compressed file
+     * @throws IOException if write fails
+     */
+    public void save(Path indexPath, long fileSize, long fileModified) throws IOException {
+        Files.createDirectories(indexPath.getParent());
+        Path tempPath = indexPath.resolveSibling(indexPath.getFileName() + ".tmp");
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempPath)))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeLong(fileSize);
+            output.writeLong(fileModified);
+            output.writeLong(span);
+            output.writeLong(uncompressedSize);
+            output.writeInt(checkpoints.size());
+            for (Checkpoint checkpoint : checkpoints) {
+                output.writeLong(checkpoint.bitPosition);
+                output.writeLong(checkpoint.uncompressedPosition);
+                output.writeInt(checkpoint.window.length);
+                output.write(checkpoint.window);
+            }
+        }
+        Files.move(tempPath, indexPath, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Loads index from given file if it was created for the compressed file
+     * of given size and modification time.
+     *
+     * @param indexPath index path
+     * @param fileSize size of the compressed file
+     * @param fileModified modification time of the compressed file
+     * @return index or null if not available or outdated
+     */
+    @Nullable
+    public static GzipSeekIndex load(Path indexPath, long fileSize, long fileModified) {
+        if (!Files.isRegularFile(indexPath)) {
+            return null;
+        }
+
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexPath)))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION || input.readLong() != fileSize || input.readLong() != fileModified) {
+                return null;
+            }
+            long span = input.readLong();
+            long uncompressedSize = input.readLong();
+            int count = input.readInt();
+            if (count <= 0) {
+                return null;
+            }
+            List<Checkpoint> checkpoints = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                long bitPosition = input.readLong();
+                long uncompressedPosition = input.readLong();
+                int windowLength = input.readInt();
+                if (windowLength < 0 || windowLength > DeflateDecoder.WINDOW_SIZE * 2) {
+                    return null;
+                }
+                byte[] window = new byte[windowLength];
+                input.readFully(window);
+                checkpoints.add(new Checkpoint(bitPosition, uncompressedPosition, window));
+            }
+            return new GzipSeekIndex(span, uncompressedSize, checkpoints, false);
+        } catch (IOException ex) {
+            // Damaged index is built again
+            return null;
+        }
+    }
+
+    private static boolean isGzipHeader(BinaryData data, long position) {
+        return data.getByte(position) == (byte) 0x1f && data.getByte(position + 1) == (byte) 0x8b && data.getByte(position + 2) == 8;
+    }
+
+    private static long skipGzipHeader(BinaryData data, long position) throws ZipException {
+        long dataSize = data.getDataSize();
+        int flags = data.getByte(position + 3) & 0xff;
+        position += 10;
+        if ((flags & FLAG_EXTRA) != 0) {
+            checkHeaderPosition(position + 2, dataSize);
+            position += 2 + ((data.getByte(position) & 0xff) | (data.getByte(position + 1) & 0xff) << 8);
+        }
+        if ((flags & FLAG_NAME) != 0) {
+            position = skipZeroTerminated(data, position);
+        }
+        if ((flags & FLAG_COMMENT) != 0) {
+            position = skipZeroTerminated(data, position);
+        }
+        if ((flags & FLAG_HCRC) != 0) {
+            position += 2;
+        }
+        checkHeaderPosition(position, dataSize);
+        return position;
+    }
+
+    private static long skipZeroTerminated(BinaryData data, long position) throws ZipException {
+        long dataSize = data.getDataSize();
+        while (true) {
+            checkHeaderPosition(position + 1, dataSize);
+            if (data.getByte(position++) == 0) {
+                return position;
+            }
+        }
+    }
+
+    private static void checkHeaderPosition(long position, long dataSize) throws ZipException {
+        if (position > dataSize) {
+            throw new ZipException("Truncated gzip header");
+        }
+    }
+
+    @Nonnull
+    private static byte[] compressWindow(byte[] window) {
+        if (window.length == 0) {
+            return window;
+        }
+
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(window);
+            deflater.finish();
+            ByteArrayOutputStream output = new ByteArrayOutputStream(window.length / 2);
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                int length = deflater.deflate(buffer);
+                output.write(buffer, 0, length);
+            }
+            return output.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Checkpoint of deflate stream at block boundary.
+     */
+    @ParametersAreNonnullByDefault
+    public static final class Checkpoint {
+
+        private final long bitPosition;
+        private final long uncompressedPosition;
+        private final byte[] window;
+
+        private Checkpoint(long bitPosition, long uncompressedPosition, byte[] window) {
+            this.bitPosition = bitPosition;
+            this.uncompressedPosition = uncompressedPosition;
+            this.window = window;
+        }
+
+        public long getBitPosition() {
+            return bitPosition;
+        }
+
+        public long getUncompressedPosition() {
+            return uncompressedPosition;
+        }
+
+        /**
+         * Creates decoder positioned at this checkpoint.
+         *
+         * @param compressed compressed data
+         * @return decoder
+         */
+        @Nonnull
+        public DeflateDecoder createDecoder(BinaryData compressed) {
+            if (window.length == 0) {
+                return new DeflateDecoder(compressed, bitPosition, null);
+            }
+
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(window);
+                byte[] uncompressedWindow = new byte[DeflateDecoder.WINDOW_SIZE];
+                int length = 0;
+                while (!inflater.finished() && length < uncompressedWindow.length) {
+                    int inflated = inflater.inflate(uncompressedWindow, length, uncompressedWindow.length - length);
+                    if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        throw new IllegalStateException("Damaged checkpoint window");
+                    }
+                    length += inflated;
+                }
+                byte[] windowData = new byte[length];
+                System.arraycopy(uncompressedWindow, 0, windowData, 0, length);
+                return new DeflateDecoder(compressed, bitPosition, windowData);
+            } catch (DataFormatException ex) {
+                throw new IllegalStateException("Damaged checkpoint window", ex);
+            } finally {
+                inflater.end();
+            }
+        }
+    }
+
+    /**
+     * Monitor of index building.
+     */
+    @ParametersAreNonnullByDefault
+    public interface BuildMonitor {
+
+        boolean isCancelled();
+
+        /**
+         * Reports progress of building.
+         *
+         * @param position processed compressed position
+         * @param size compressed size
+         */
+        void progress(long position, long size);
+    }
+}
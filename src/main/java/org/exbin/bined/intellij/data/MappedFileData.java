@@ -0,0 +1,559 @@
+/*
+ * Copyright (C) ExBin Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.exbin.bined.intellij.data;
+
+import org.exbin.auxiliary.binary_data.BinaryData;
+import org.exbin.auxiliary.binary_data.OutOfBoundsException;
+import org.exbin.auxiliary.binary_data.paged.PagedData;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Read-only binary data backed by memory-mapped file.
+ * <p>
+ * File is mapped lazily in fixed size windows, so only regions which are
+ * actually accessed are mapped and their pages are faulted in by operating
+ * system on demand. Mapped windows are accounted in {@link PageBudget} and
+ * least recently used windows are unmapped when over budget.
+ * <p>
+ * Reads hold read lock of the window, window is unmapped only when its write
+ * lock is acquired, so it is never unmapped while it is being read. If runtime
+ * does not support unmapping, windows are kept mapped until disposed.
+ * <p>
+ * Before file is overwritten in place, its data are detached by
+ * {@link #detachFile(Path)}, windows are unmapped and data are read through
+ * file channel afterwards. Data are detached in the same way when access to
+ * mapped window faults, as the file was truncated by other process. Data
+ * which have to stay valid after the file is
+ * overwritten are switched to a copy of the file by
+ * {@link #preserveContent()}.
+ *
+ * @author ExBin Project (https://exbin.org)
+ */
+@ParametersAreNonnullByDefault
+public class MappedFileData implements BinaryData, ChannelTransferable, PageBudget.PageOwner {
+
+    public static final int MAPPING_SIZE = 64 * 1024 * 1024;
+    public static final int BUFFER_SIZE = 64 * 1024;
+    public static final int HIT_BATCH_SIZE = 4096;
+
+    private static final Set<MappedFileData> INSTANCES = ConcurrentHashMap.newKeySet();
+
+    private final Path filePath;
+    private final boolean temporary;
+    private final long dataSize;
+    private volatile FileChannel fileChannel;
+    private volatile Path contentCopyPath = null;
+    private final AtomicReferenceArray<MappedByteBuffer> mappings;
+    private final long[] accessStamps;
+    private final ReadWriteLock[] mappingLocks;
+    private int lastAccessedIndex = -1;
+    private int pendingHits = 0;
+    private volatile boolean disposed = false;
+    private volatile boolean detached = false;
+
+    public MappedFileData(Path filePath) throws IOException {
+        this(filePath, false);
+    }
+
+    /**
+     * Creates data backed by given file.
+     *
+     * @param filePath file path
+     * @param temporary if true file is deleted when data are disposed
+     * @throws IOException if file cannot be opened
+     */
+    public MappedFileData(Path filePath, boolean temporary) throws IOException {
+        this.filePath = filePath;
+        this.temporary = temporary;
+        fileChannel = FileChannel.open(filePath, StandardOpenOption.READ);
+        dataSize = fileChannel.size();
+        mappings = new AtomicReferenceArray<>((int) ((dataSize + MAPPING_SIZE - 1) / MAPPING_SIZE));
+        accessStamps = new long[mappings.length()];
+        mappingLocks = new ReadWriteLock[mappings.length()];
+        for (int i = 0; i < mappingLocks.length; i++) {
+            mappingLocks[i] = new ReentrantReadWriteLock();
+        }
+        PageBudget.register(this);
+        INSTANCES.add(this);
+    }
+
+    /**
+     * Detaches all data backed by given file so that the file can be
+     * overwritten or truncated in place.
+     * <p>
+     * Waits for ongoing reads of mapped windows, unmaps them and switches
+     * data to reading through file channel. Data of detached instances
+     * reflect changes of the file, so their owners are expected to reload
+     * them.
+     *
+     * @param filePath file path
+     * @return true if all windows were unmapped, false if runtime does not
+     * support unmapping
+     */
+    public static boolean detachFile(Path filePath) {
+        List<MappedFileData> fileData = new ArrayList<>();
+        for (MappedFileData data : INSTANCES) {
+            try {
+                if (Files.isSameFile(data.filePath, filePath)) {
+                    fileData.add(data);
+                }
+            } catch (IOException ex) {
+                // File of data was deleted, so it is not the same file
+            }
+        }
+
+        boolean unmapped = true;
+        for (MappedFileData data : fileData) {
+            unmapped &= data.detach();
+        }
+        return unmapped;
+    }
+
+    /**
+     * Copies current content of the file to temporary file and switches data
+     * to read from the copy, so that data stay valid when the file is
+     * overwritten. Copy is deleted when data are disposed.
+     *
+     * @throws IOException if copy cannot be created
+     */
+    public void preserveContent() throws IOException {
+        synchronized (this) {
+            if (disposed || detached) {
+                return;
+            }
+        }
+
+        Path copyPath = Files.createTempFile("bined", ".tmp");
+        FileChannel copyChannel;
+        try {
+            try (FileChannel channel = FileChannel.open(copyPath, StandardOpenOption.WRITE)) {
+                transferTo(0, dataSize, channel);
+            }
+            copyChannel = FileChannel.open(copyPath, StandardOpenOption.READ);
+        } catch (IOException | RuntimeException ex) {
+            Files.deleteIfExists(copyPath);
+            throw ex;
+        }
+
+        FileChannel previousChannel;
+        synchronized (this) {
+            if (disposed || detached) {
+                copyChannel.close();
+                Files.deleteIfExists(copyPath);
+                return;
+            }
+            // Content is the same, so mapped windows stay valid until unmapped
+            previousChannel = fileChannel;
+            fileChannel = copyChannel;
+            contentCopyPath = copyPath;
+            detached = true;
+        }
+        unmapAll();
+        previousChannel.close();
+    }
+
+    @Nonnull
+    public Path getFilePath() {
+        return filePath;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return dataSize == 0;
+    }
+
+    @Override
+    public long getDataSize() {
+        return dataSize;
+    }
+
+    @Override
+    public byte getByte(long position) {
+        if (position < 0 || position >= dataSize) {
+            throw new OutOfBoundsException();
+        }
+
+        int mappingIndex = (int) (position / MAPPING_SIZE);
+        byte[] value = new byte[1];
+        readWindow(mappingIndex, position, value, 0, 1);
+        return value[0];
+    }
+
+    @Nonnull
+    @Override
+    public BinaryData copy() {
+        return copy(0, dataSize);
+    }
+
+    @Nonnull
+    @Override
+    public BinaryData copy(long startFrom, long length) {
+        if (startFrom < 0 || length < 0 || startFrom + length > dataSize) {
+            throw new OutOfBoundsException();
+        }
+
+        PagedData result = new PagedData();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long position = 0;
+        while (position < length) {
+            int chunkLength = (int) Math.min(BUFFER_SIZE, length - position);
+            copyToArray(startFrom + position, buffer, 0, chunkLength);
+            result.insert(position, buffer, 0, chunkLength);
+            position += chunkLength;
+        }
+        return result;
+    }
+
+    @Override
+    public void copyToArray(long startFrom, byte[] target, int offset, int length) {
+        if (startFrom < 0 || length < 0 || startFrom + length > dataSize) {
+            throw new OutOfBoundsException();
+        }
+
+        while (length > 0) {
+            int mappingIndex = (int) (startFrom / MAPPING_SIZE);
+            int mappingOffset = (int) (startFrom % MAPPING_SIZE);
+            int chunkLength = Math.min(length, MAPPING_SIZE - mappingOffset);
+            readWindow(mappingIndex, startFrom, target, offset, chunkLength);
+            startFrom += chunkLength;
+            offset += chunkLength;
+            length -= chunkLength;
+        }
+    }
+
+    @Override
+    public void saveToStream(OutputStream outputStream) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long position = 0;
+        while (position < dataSize) {
+            int chunkLength = (int) Math.min(BUFFER_SIZE, dataSize - position);
+            copyToArray(position, buffer, 0, chunkLength);
+            outputStream.write(buffer, 0, chunkLength);
+            position += chunkLength;
+        }
+    }
+
+    @Override
+    public void transferTo(long startFrom, long length, WritableByteChannel target) throws IOException {
+        if (startFrom < 0 || length < 0 || startFrom + length > dataSize) {
+            throw new OutOfBoundsException();
+        }
+
+        long position = 0;
+        while (position < length) {
+            long transferred = fileChannel.transferTo(startFrom + position, length - position, target);
+            if (transferred <= 0) {
+                throw new IOException("Unable to transfer data of file " + filePath);
+            }
+            position += transferred;
+        }
+    }
+
+    @Nonnull
+    @Override
+    public InputStream getDataInputStream() {
+        return new InputStream() {
+            private long position = 0;
+
+            @Override
+            public int read() {
+                return position < dataSize ? getByte(position++) & 0xff : -1;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) {
+                if (length == 0) {
+                    return 0;
+                }
+                if (position >= dataSize) {
+                    return -1;
+                }
+
+                int chunkLength = (int) Math.min(length, dataSize - position);
+                copyToArray(position, buffer, offset, chunkLength);
+                position += chunkLength;
+                return chunkLength;
+            }
+
+            @Override
+            public int available() {
+                return (int) Math.min(Integer.MAX_VALUE, dataSize - position);
+            }
+        };
+    }
+
+    @Override
+    public int getPagesCount() {
+        return mappings.length();
+    }
+
+    @Override
+    public long getPageAccessStamp(int page) {
+        return mappings.get(page) != null ? accessStamps[page] : -1;
+    }
+
+    @Override
+    public void evictPage(int page) {
+        if (!DirectPageAllocator.canFreeBuffers()) {
+            // Unreleased mapping would stay in address space
+            return;
+        }
+
+        Lock writeLock = mappingLocks[page].writeLock();
+        if (!writeLock.tryLock()) {
+            // Window is being read, it is left for next eviction
+            return;
+        }
+
+        MappedByteBuffer mapping;
+        try {
+            mapping = mappings.get(page);
+            if (mapping == null || !DirectPageAllocator.freeBuffer(mapping)) {
+                return;
+            }
+            mappings.set(page, null);
+        } finally {
+            writeLock.unlock();
+        }
+        PageBudget.pageReleased(mapping.capacity());
+    }
+
+    @Override
+    public void dispose() {
+        PageBudget.unregister(this);
+        INSTANCES.remove(this);
+        synchronized (this) {
+            if (disposed) {
+                return;
+            }
+            disposed = true;
+        }
+
+        // No window can be mapped anymore, wait for ongoing reads of mapped windows
+        unmapAll();
+        try {
+            fileChannel.close();
+        } catch (IOException ex) {
+            // Channel is discarded anyway
+        }
+        if (temporary) {
+            deleteFile(filePath);
+        }
+        Path copyPath = contentCopyPath;
+        if (copyPath != null) {
+            deleteFile(copyPath);
+        }
+    }
+
+    private static void deleteFile(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ex) {
+            // File might be still mapped
+            path.toFile().deleteOnExit();
+        }
+    }
+
+    private boolean detach() {
+        synchronized (this) {
+            if (disposed || detached) {
+                return true;
+            }
+            detached = true;
+        }
+
+        return unmapAll();
+    }
+
+    /**
+     * Reads data of single window.
+     * <p>
+     * Fault of access to mapped window is reported asynchronously, so it can
+     * be thrown even after the window was read. Data are then detached and
+     * read through file channel.
+     *
+     * @param mappingIndex window index
+     * @param position start position
+     * @param target target array
+     * @param offset target offset
+     * @param length length, must not exceed the window
+     */
+    private void readWindow(int mappingIndex, long position, byte[] target, int offset, int length) {
+        try {
+            boolean loaded;
+            Lock readLock = mappingLocks[mappingIndex].readLock();
+            readLock.lock();
+            try {
+                loaded = mapIfNeeded(mappingIndex);
+                MappedByteBuffer mapping = mappings.get(mappingIndex);
+                if (mapping == null) {
+                    readChannel(position, target, offset, length);
+                } else {
+                    mapping.get((int) (position % MAPPING_SIZE), target, offset, length);
+                }
+            } finally {
+                readLock.unlock();
+            }
+            recordAccess(mappingIndex, loaded);
+        } catch (InternalError ex) {
+            mappingFaulted(ex);
+            readChannel(position, target, offset, length);
+        }
+    }
+
+    /**
+     * Processes fault of access to mapped window, which occurs when the file
+     * was truncated by other process. Data are detached, so they are read
+     * through file channel afterwards. Must be called without any lock held.
+     *
+     * @param fault access fault
+     */
+    private void mappingFaulted(InternalError fault) {
+        Logger.getLogger(MappedFileData.class.getName()).log(Level.WARNING, "File " + filePath + " was truncated while mapped", fault);
+        detach();
+    }
+
+    /**
+     * Unmaps all windows, waits for ongoing reads of each window.
+     *
+     * @return true if all windows were unmapped
+     */
+    private boolean unmapAll() {
+        boolean unmapped = true;
+        long releasedSize = 0;
+        for (int i = 0; i < mappings.length(); i++) {
+            Lock writeLock = mappingLocks[i].writeLock();
+            writeLock.lock();
+            try {
+                MappedByteBuffer mapping = mappings.get(i);
+                if (mapping != null) {
+                    releasedSize += mapping.capacity();
+                    unmapped &= DirectPageAllocator.freeBuffer(mapping);
+                    mappings.set(i, null);
+                }
+            } finally {
+                writeLock.unlock();
+            }
+        }
+        PageBudget.pageReleased(releasedSize);
+        return unmapped;
+    }
+
+    /**
+     * Reads data of detached file or of its copy through file channel.
+     * <p>
+     * Part beyond current end of file is filled with zeros.
+     */
+    private void readChannel(long position, byte[] target, int offset, int length) {
+        ByteBuffer buffer = ByteBuffer.wrap(target, offset, length);
+        try {
+            while (buffer.hasRemaining()) {
+                int read = fileChannel.read(buffer, position + buffer.position() - offset);
+                if (read < 0) {
+                    while (buffer.hasRemaining()) {
+                        buffer.put((byte) 0);
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            throw new IllegalStateException("Unable to read file " + filePath, ex);
+        }
+    }
+
+    /**
+     * Maps window if not mapped yet and data are not detached. Must be
+     * called with read lock held.
+     *
+     * @param mappingIndex window index
+     * @return true if window was mapped
+     */
+    private boolean mapIfNeeded(int mappingIndex) {
+        if (mappings.get(mappingIndex) != null) {
+            return false;
+        }
+
+        synchronized (this) {
+            if (disposed) {
+                throw new IllegalStateException("Data of file " + filePath + " were disposed");
+            }
+            if (detached || mappings.get(mappingIndex) != null) {
+                return false;
+            }
+
+            long mappingPosition = (long) mappingIndex * MAPPING_SIZE;
+            long mappingLength = Math.min(MAPPING_SIZE, dataSize - mappingPosition);
+            try {
+                mappings.set(mappingIndex, fileChannel.map(FileChannel.MapMode.READ_ONLY, mappingPosition, mappingLength));
+            } catch (IOException ex) {
+                throw new IllegalStateException("Unable to map file " + filePath, ex);
+            }
+            // Accounted together with mapping, so that release of the window always matches
+            PageBudget.pageLoaded(mappingLength);
+            return true;
+        }
+    }
+
+    /**
+     * Records access to window. Must be called without any lock held, as
+     * budget can evict windows of all owners.
+     * <p>
+     * Repeated accesses to the same window are reported to the budget in
+     * batches, so that reading of single bytes doesn't update shared
+     * counters. Counters are not synchronized, concurrent accesses can be
+     * counted only approximately.
+     *
+     * @param mappingIndex window index
+     * @param loaded true if window was mapped by the access
+     */
+    private void recordAccess(int mappingIndex, boolean loaded) {
+        if (loaded) {
+            lastAccessedIndex = mappingIndex;
+            accessStamps[mappingIndex] = PageBudget.nextAccessStamp();
+            PageBudget.evictIfOverBudget();
+            return;
+        }
+
+        int hits = ++pendingHits;
+        if (mappingIndex != lastAccessedIndex || hits >= HIT_BATCH_SIZE) {
+            lastAccessedIndex = mappingIndex;
+            pendingHits = 0;
+            accessStamps[mappingIndex] = PageBudget.nextAccessStamp();
+            PageBudget.pageHits(hits);
+        }
+    }
+}
@@ -0,0 +1,1205 @@
+/*
+ * Copyright (C) ExBin Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.exbin.bined.intellij.data;
+
+import org.exbin.auxiliary.binary_data.BinaryData;
+import org.exbin.auxiliary.binary_data.EditableBinaryData;
+import org.exbin.auxiliary.binary_data.OutOfBoundsException;
+import org.exbin.auxiliary.binary_data.paged.PagedData;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Editable binary data layering modifications over read-only source data.
+ * <p>
+ * Content is kept as sequence of segments, where each segment either
+ * references range of source data or holds modified bytes in memory. Source
+ * data is never modified and memory segments are never changed once created,
+ * so memory usage is proportional to the modifications, not the data size.
+ * <p>
+ * Segments are stored in immutable balanced tree with lengths of subtrees, so
+ * that segment at given position is found and replaced in logarithmic time
+ * and snapshot shares the tree with the modified data.
+ * <p>
+ * When edit journal is set, all modifications are also recorded to it and
+ * large modified blocks are read back from the journal instead of being
+ * held in memory.
+ *
+ * @author ExBin Project (https://exbin.org)
+ */
+@ParametersAreNonnullByDefault
+public class OverlayEditableData implements EditableBinaryData, ChannelTransferable {
+
+    public static final int MAX_MEMORY_SEGMENT_SIZE = 64 * 1024;
+    public static final int BUFFER_SIZE = 64 * 1024;
+    public static final int JOURNAL_SEGMENT_MIN_SIZE = 4096;
+
+    private BinaryData source;
+    private final boolean sourceOwner;
+    private SegmentNode root = null;
+    private EditJournal journal = null;
+    private long dataSize;
+
+    private volatile SegmentLocation cachedLocation = null;
+
+    public OverlayEditableData(BinaryData source) {
+        this.source = source;
+        sourceOwner = true;
+        resetSegments();
+    }
+
+    private OverlayEditableData(OverlayEditableData data) {
+        source = data.source;
+        sourceOwner = false;
+        root = data.root;
+        dataSize = data.dataSize;
+    }
+
+    /**
+     * Sets journal to record modifications to.
+     *
+     * @param journal edit journal or null
+     */
+    public void setJournal(@Nullable EditJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Replays modifications recorded in given journal and continues
+     * recording to it.
+     *
+     * @param journal edit journal
+     * @return true if modifications were recovered, false if journal doesn't
+     * match the source data and was cleared
+     */
+    public boolean recover(EditJournal journal) {
+        this.journal = null;
+        try {
+            journal.replay(new EditJournal.ReplayListener() {
+                @Override
+                public void inserted(long position, long journalPosition, int length) {
+                    checkInsertPosition(position, length);
+                    insertSegment(position, createJournalSegment(journal, journalPosition, length));
+                }
+
+                @Override
+                public void replaced(long position, long journalPosition, int length) {
+                    checkRange(position, length);
+                    replaceSegments(position, length, createJournalSegment(journal, journalPosition, length));
+                }
+
+                @Override
+                public void removed(long position, long length) {
+                    checkRange(position, length);
+                    removeSegments(position, length);
+                }
+            });
+        } catch (OutOfBoundsException | IllegalStateException ex) {
+            resetSegments();
+            journal.clear();
+            this.journal = journal;
+            return false;
+        }
+
+        this.journal = journal;
+        return true;
+    }
+
+    @Nonnull
+    public BinaryData getSource() {
+        return source;
+    }
+
+    /**
+     * Replaces source data and drops all modifications.
+     * <p>
+     * Used when modifications were written to the source file.
+     *
+     * @param source new source data
+     */
+    public void resetSource(BinaryData source) {
+        resetSource(source, null);
+    }
+
+    /**
+     * Replaces source data and drops all modifications.
+     * <p>
+     * Used when modifications were written to the source file, edit journal
+     * is updated to given state of the written file.
+     *
+     * @param source new source data
+     * @param fileState state of the written file or null if unknown
+     */
+    public void resetSource(BinaryData source, @Nullable EditJournal.FileState fileState) {
+        BinaryData previousSource = this.source;
+        this.source = source;
+        resetSegments();
+        if (journal != null) {
+            journal.clear(fileState);
+        }
+        if (previousSource != source) {
+            previousSource.dispose();
+        }
+    }
+
+    /**
+     * Replaces source data with data containing content of given snapshot
+     * and keeps modifications made after the snapshot was created.
+     * <p>
+     * Used when snapshot was written to the file of the source, so previous
+     * source doesn't match the file anymore. Unmodified data are then read
+     * from the new source at positions they had in the snapshot.
+     * Modifications can't be rebased when edit journal is set, as it records
+     * them relatively to the previous source.
+     *
+     * @param snapshot snapshot of this data sharing its source
+     * @param source new source data with content of the snapshot
+     * @return true if rebased, false if some data of previous source are not
+     * present in the snapshot and data were not changed
+     */
+    public boolean rebaseSource(OverlayEditableData snapshot, BinaryData source) {
+        if (snapshot.source != this.source || source.getDataSize() != snapshot.dataSize) {
+            throw new IllegalArgumentException("Snapshot doesn't match the data");
+        }
+        if (journal != null) {
+            throw new IllegalStateException("Data with edit journal can't be rebased");
+        }
+
+        // Positions of previous source data in the snapshot
+        TreeMap<Long, long[]> snapshotRanges = new TreeMap<>();
+        long snapshotPosition = 0;
+        for (Segment segment : getSegments(snapshot.root)) {
+            if (segment instanceof SourceSegment) {
+                snapshotRanges.put(((SourceSegment) segment).sourcePosition, new long[]{snapshotPosition, segment.getLength()});
+            }
+            snapshotPosition += segment.getLength();
+        }
+
+        List<Segment> rebasedSegments = new ArrayList<>();
+        for (Segment segment : getSegments(root)) {
+            if (!(segment instanceof SourceSegment)) {
+                addMerging(rebasedSegments, segment);
+                continue;
+            }
+
+            long sourcePosition = ((SourceSegment) segment).sourcePosition;
+            long remaining = segment.getLength();
+            while (remaining > 0) {
+                Map.Entry<Long, long[]> entry = snapshotRanges.floorEntry(sourcePosition);
+                long offset = entry == null ? 0 : sourcePosition - entry.getKey();
+                if (entry == null || offset >= entry.getValue()[1]) {
+                    return false;
+                }
+                long length = Math.min(remaining, entry.getValue()[1] - offset);
+                addMerging(rebasedSegments, new SourceSegment(entry.getValue()[0] + offset, length));
+                sourcePosition += length;
+                remaining -= length;
+            }
+        }
+
+        BinaryData previousSource = this.source;
+        this.source = source;
+        root = buildTree(rebasedSegments, 0, rebasedSegments.size());
+        if (previousSource != source && sourceOwner) {
+            previousSource.dispose();
+        }
+        return true;
+    }
+
+    /**
+     * Drops all modifications.
+     * <p>
+     * Used when modifications were written directly to the source so the
+     * source now matches the content.
+     */
+    public void clearModifications() {
+        clearModifications(null);
+    }
+
+    /**
+     * Drops all modifications.
+     * <p>
+     * Used when modifications were written directly to the source file,
+     * edit journal is updated to given state of the written file.
+     *
+     * @param fileState state of the written file or null if unknown
+     */
+    public void clearModifications(@Nullable EditJournal.FileState fileState) {
+        resetSegments();
+        if (journal != null) {
+            journal.clear(fileState);
+        }
+    }
+
+    /**
+     * Creates snapshot of current content.
+     * <p>
+     * Snapshot shares source data and immutable segment tree with this data, so
+     * it is cheap to create and can be read from another thread while this
+     * data are being modified. Disposing snapshot doesn't dispose source.
+     *
+     * @return snapshot data
+     */
+    @Nonnull
+    public OverlayEditableData createSnapshot() {
+        return new OverlayEditableData(this);
+    }
+
+    /**
+     * Returns ranges which were modified without shifting the rest of the
+     * data, so they can be written to the source at the same positions.
+     *
+     * @return list of modified ranges or null if data size differs or some
+     * source data were moved
+     */
+    @Nullable
+    public List<DataRange> getInPlaceModifiedRanges() {
+        if (dataSize != source.getDataSize()) {
+            return null;
+        }
+
+        List<DataRange> ranges = new ArrayList<>();
+        long position = 0;
+        long rangeStart = -1;
+        for (Segment segment : getSegments(root)) {
+            if (segment instanceof SourceSegment) {
+                if (((SourceSegment) segment).sourcePosition != position) {
+                    return null;
+                }
+                if (rangeStart >= 0) {
+                    ranges.add(new DataRange(rangeStart, position - rangeStart));
+                    rangeStart = -1;
+                }
+            } else if (rangeStart < 0) {
+                rangeStart = position;
+            }
+            position += segment.getLength();
+        }
+        if (rangeStart >= 0) {
+            ranges.add(new DataRange(rangeStart, position - rangeStart));
+        }
+        return ranges;
+    }
+
+    /**
+     * Returns true if content differs from the source data.
+     *
+     * @return true if modified
+     */
+    public boolean isModified() {
+        if (dataSize != source.getDataSize()) {
+            return true;
+        }
+        if (root == null) {
+            return false;
+        }
+
+        return root.count > 1 || !(root.segment instanceof SourceSegment) || ((SourceSegment) root.segment).sourcePosition != 0;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return dataSize == 0;
+    }
+
+    @Override
+    public long getDataSize() {
+        return dataSize;
+    }
+
+    @Override
+    public byte getByte(long position) {
+        checkRange(position, 1);
+        SegmentLocation location = findSegment(position);
+        Segment segment = location.segment;
+        long offset = position - location.position;
+        if (segment instanceof SourceSegment) {
+            return source.getByte(((SourceSegment) segment).sourcePosition + offset);
+        }
+        if (segment instanceof JournalSegment) {
+            JournalSegment journalSegment = (JournalSegment) segment;
+            return journalSegment.journal.readByte(journalSegment.journalPosition + offset);
+        }
+
+        return ((MemorySegment) segment).data[(int) offset];
+    }
+
+    @Override
+    public void copyToArray(long startFrom, byte[] target, int offset, int length) {
+        checkRange(startFrom, length);
+        if (length == 0) {
+            return;
+        }
+
+        while (length > 0) {
+            SegmentLocation location = findSegment(startFrom);
+            Segment segment = location.segment;
+            long segmentOffset = startFrom - location.position;
+            int chunkLength = (int) Math.min(length, segment.getLength() - segmentOffset);
+            if (segment instanceof SourceSegment) {
+                source.copyToArray(((SourceSegment) segment).sourcePosition + segmentOffset, target, offset, chunkLength);
+            } else if (segment instanceof JournalSegment) {
+                JournalSegment journalSegment = (JournalSegment) segment;
+                journalSegment.journal.read(journalSegment.journalPosition + segmentOffset, target, offset, chunkLength);
+            } else {
+                System.arraycopy(((MemorySegment) segment).data, (int) segmentOffset, target, offset, chunkLength);
+            }
+            startFrom += chunkLength;
+            offset += chunkLength;
+            length -= chunkLength;
+        }
+    }
+
+    @Nonnull
+    @Override
+    public BinaryData copy() {
+        return copy(0, dataSize);
+    }
+
+    @Nonnull
+    @Override
+    public BinaryData copy(long startFrom, long length) {
+        checkRange(startFrom, length);
+        PagedData result = new PagedData();
+        byte[] buffer = new byte[(int) Math.min(BUFFER_SIZE, length)];
+        long position = 0;
+        while (position < length) {
+            int chunkLength = (int) Math.min(BUFFER_SIZE, length - position);
+            copyToArray(startFrom + position, buffer, 0, chunkLength);
+            result.insert(position, buffer, 0, chunkLength);
+            position += chunkLength;
+        }
+        return result;
+    }
+
+    @Override
+    public void saveToStream(OutputStream outputStream) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        for (Segment segment : getSegments(root)) {
+            if (segment instanceof MemorySegment) {
+                outputStream.write(((MemorySegment) segment).data);
+                continue;
+            }
+
+            long position = 0;
+            while (position < segment.getLength()) {
+                int chunkLength = (int) Math.min(BUFFER_SIZE, segment.getLength() - position);
+                copySegmentData(segment, position, buffer, chunkLength);
+                outputStream.write(buffer, 0, chunkLength);
+                position += chunkLength;
+            }
+        }
+    }
+
+    /**
+     * Writes content to given channel segment by segment.
+     *
+     * @param channel target channel
+     * @throws IOException if write fails
+     */
+    public void writeTo(WritableByteChannel channel) throws IOException {
+        transferTo(0, dataSize, channel);
+    }
+
+    /**
+     * Writes range of content to given channel segment by segment.
+     * <p>
+     * Modified bytes are written directly from memory segments, ranges of
+     * source data are transferred by channel if supported by the source,
+     * other ranges are read through buffer.
+     *
+     * @param startFrom start position
+     * @param length length of range
+     * @param target target channel
+     * @throws IOException if write fails
+     */
+    @Override
+    public void transferTo(long startFrom, long length, WritableByteChannel target) throws IOException {
+        checkRange(startFrom, length);
+        if (length == 0) {
+            return;
+        }
+
+        ByteBuffer buffer = null;
+        while (length > 0) {
+            SegmentLocation location = findSegment(startFrom);
+            Segment segment = location.segment;
+            long segmentOffset = startFrom - location.position;
+            long chunkLength = Math.min(length, segment.getLength() - segmentOffset);
+            if (segment instanceof MemorySegment) {
+                writeFully(target, ByteBuffer.wrap(((MemorySegment) segment).data, (int) segmentOffset, (int) chunkLength));
+            } else if (segment instanceof SourceSegment && source instanceof ChannelTransferable) {
+                ((ChannelTransferable) source).transferTo(((SourceSegment) segment).sourcePosition + segmentOffset, chunkLength, target);
+            } else {
+                if (buffer == null) {
+                    buffer = ByteBuffer.allocate(BUFFER_SIZE);
+                }
+                long position = 0;
+                while (position < chunkLength) {
+                    int bufferLength = (int) Math.min(BUFFER_SIZE, chunkLength - position);
+                    copySegmentData(segment, segmentOffset + position, buffer.array(), bufferLength);
+                    buffer.clear();
+                    buffer.limit(bufferLength);
+                    writeFully(target, buffer);
+                    position += bufferLength;
+                }
+            }
+            startFrom += chunkLength;
+            length -= chunkLength;
+        }
+    }
+
+    @Nonnull
+    @Override
+    public InputStream getDataInputStream() {
+        return new InputStream() {
+            private long position = 0;
+
+            @Override
+            public int read() {
+                return position < dataSize ? getByte(position++) & 0xff : -1;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) {
+                if (length == 0) {
+                    return 0;
+                }
+                if (position >= dataSize) {
+                    return -1;
+                }
+
+                int chunkLength = (int) Math.min(length, dataSize - position);
+                copyToArray(position, buffer, offset, chunkLength);
+                position += chunkLength;
+                return chunkLength;
+            }
+
+            @Override
+            public int available() {
+                return (int) Math.min(Integer.MAX_VALUE, dataSize - position);
+            }
+        };
+    }
+
+    @Override
+    public void setDataSize(long size) {
+        if (size < dataSize) {
+            remove(size, dataSize - size);
+        } else if (size > dataSize) {
+            insert(dataSize, size - dataSize);
+        }
+    }
+
+    @Override
+    public void setByte(long position, byte value) {
+        checkRange(position, 1);
+        replaceRange(position, 1, new byte[]{value}, 0, 1);
+    }
+
+    @Override
+    public void insertUninitialized(long startFrom, long length) {
+        insert(startFrom, length);
+    }
+
+    @Override
+    public void insert(long startFrom, long length) {
+        checkInsertPosition(startFrom, length);
+        byte[] emptyData = new byte[(int) Math.min(MAX_MEMORY_SEGMENT_SIZE, length)];
+        long position = 0;
+        while (position < length) {
+            int chunkLength = (int) Math.min(MAX_MEMORY_SEGMENT_SIZE, length - position);
+            insertSegment(startFrom + position, Arrays.copyOf(emptyData, chunkLength));
+            position += chunkLength;
+        }
+    }
+
+    @Override
+    public void insert(long startFrom, byte[] insertedData) {
+        insert(startFrom, insertedData, 0, insertedData.length);
+    }
+
+    @Override
+    public void insert(long startFrom, byte[] insertedData, int insertedDataOffset, int insertedDataLength) {
+        checkInsertPosition(startFrom, insertedDataLength);
+        int position = 0;
+        while (position < insertedDataLength) {
+            int chunkLength = Math.min(MAX_MEMORY_SEGMENT_SIZE, insertedDataLength - position);
+            insertSegment(startFrom + position, Arrays.copyOfRange(insertedData, insertedDataOffset + position, insertedDataOffset + position + chunkLength));
+            position += chunkLength;
+        }
+    }
+
+    @Override
+    public void insert(long startFrom, BinaryData insertedData) {
+        insert(startFrom, insertedData, 0, insertedData.getDataSize());
+    }
+
+    @Override
+    public void insert(long startFrom, BinaryData insertedData, long insertedDataOffset, long insertedDataLength) {
+        checkInsertPosition(startFrom, insertedDataLength);
+        long position = 0;
+        while (position < insertedDataLength) {
+            int chunkLength = (int) Math.min(MAX_MEMORY_SEGMENT_SIZE, insertedDataLength - position);
+            byte[] chunk = new byte[chunkLength];
+            insertedData.copyToArray(insertedDataOffset + position, chunk, 0, chunkLength);
+            insertSegment(startFrom + position, chunk);
+            position += chunkLength;
+        }
+    }
+
+    @Override
+    public long insert(long startFrom, InputStream inputStream, long maximumDataSize) throws IOException {
+        checkInsertPosition(startFrom, 0);
+        byte[] buffer = new byte[MAX_MEMORY_SEGMENT_SIZE];
+        long position = 0;
+        while (maximumDataSize < 0 || position < maximumDataSize) {
+            int readLength = maximumDataSize < 0 ? MAX_MEMORY_SEGMENT_SIZE : (int) Math.min(MAX_MEMORY_SEGMENT_SIZE, maximumDataSize - position);
+            int length = inputStream.read(buffer, 0, readLength);
+            if (length < 0) {
+                break;
+            }
+            if (length > 0) {
+                insertSegment(startFrom + position, Arrays.copyOf(buffer, length));
+                position += length;
+            }
+        }
+        return position;
+    }
+
+    @Override
+    public void fillData(long startFrom, long length) {
+        fillData(startFrom, length, (byte) 0);
+    }
+
+    @Override
+    public void fillData(long startFrom, long length, byte fill) {
+        checkRange(startFrom, length);
+        byte[] fillData = new byte[(int) Math.min(MAX_MEMORY_SEGMENT_SIZE, length)];
+        Arrays.fill(fillData, fill);
+        long position = 0;
+        while (position < length) {
+            int chunkLength = (int) Math.min(MAX_MEMORY_SEGMENT_SIZE, length - position);
+            replaceRange(startFrom + position, chunkLength, fillData, 0, chunkLength);
+            position += chunkLength;
+        }
+    }
+
+    @Override
+    public void replace(long targetPosition, BinaryData replacingData) {
+        replace(targetPosition, replacingData, 0, replacingData.getDataSize());
+    }
+
+    @Override
+    public void replace(long targetPosition, BinaryData replacingData, long startFrom, long length) {
+        checkRange(targetPosition, length);
+        long position = 0;
+        while (position < length) {
+            int chunkLength = (int) Math.min(MAX_MEMORY_SEGMENT_SIZE, length - position);
+            byte[] chunk = new byte[chunkLength];
+            replacingData.copyToArray(startFrom + position, chunk, 0, chunkLength);
+            replaceRange(targetPosition + position, chunkLength, chunk, 0, chunkLength);
+            position += chunkLength;
+        }
+    }
+
+    @Override
+    public void replace(long targetPosition, byte[] replacingData) {
+        replace(targetPosition, replacingData, 0, replacingData.length);
+    }
+
+    @Override
+    public void replace(long targetPosition, byte[] replacingData, int replacingDataOffset, int length) {
+        checkRange(targetPosition, length);
+        int position = 0;
+        while (position < length) {
+            int chunkLength = Math.min(MAX_MEMORY_SEGMENT_SIZE, length - position);
+            replaceRange(targetPosition + position, chunkLength, replacingData, replacingDataOffset + position, chunkLength);
+            position += chunkLength;
+        }
+    }
+
+    @Override
+    public void remove(long startFrom, long length) {
+        checkRange(startFrom, length);
+        if (length == 0) {
+            return;
+        }
+
+        if (journal != null) {
+            journal.appendRemove(startFrom, length);
+        }
+        removeSegments(startFrom, length);
+    }
+
+    @Override
+    public void clear() {
+        if (journal != null && dataSize > 0) {
+            journal.appendRemove(0, dataSize);
+        }
+        root = null;
+        dataSize = 0;
+    }
+
+    @Override
+    public void loadFromStream(InputStream inputStream) throws IOException {
+        clear();
+        insert(0, inputStream, -1);
+    }
+
+    @Nonnull
+    @Override
+    public OutputStream getDataOutputStream() {
+        return new OutputStream() {
+            private long position = 0;
+
+            @Override
+            public void write(int value) {
+                write(new byte[]{(byte) value}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] buffer, int offset, int length) {
+                int overwriteLength = (int) Math.min(length, dataSize - position);
+                if (overwriteLength > 0) {
+                    replace(position, buffer, offset, overwriteLength);
+                }
+                if (overwriteLength < length) {
+                    insert(position + overwriteLength, buffer, offset + overwriteLength, length - overwriteLength);
+                }
+                position += length;
+            }
+        };
+    }
+
+    @Override
+    public void dispose() {
+        root = null;
+        dataSize = 0;
+        if (sourceOwner) {
+            source.dispose();
+        }
+    }
+
+    private void resetSegments() {
+        dataSize = source.getDataSize();
+        root = dataSize > 0 ? new SegmentNode(null, new SourceSegment(0, dataSize), null) : null;
+    }
+
+    private void replaceRange(long targetPosition, int length, byte[] data, int dataOffset, int dataLength) {
+        byte[] replacingData = Arrays.copyOfRange(data, dataOffset, dataOffset + dataLength);
+        long journalPosition = journal != null ? journal.appendReplace(targetPosition, replacingData) : -1;
+        replaceSegments(targetPosition, length, createSegment(replacingData, journalPosition));
+    }
+
+    private void replaceSegments(long targetPosition, long length, Segment segment) {
+        SegmentNode[] head = split(root, targetPosition);
+        SegmentNode[] tail = split(head[1], length);
+        root = joinMerging(head[0], segment, tail[1]);
+        dataSize += segment.getLength() - length;
+    }
+
+    private void insertSegment(long position, byte[] data) {
+        if (data.length == 0) {
+            return;
+        }
+
+        long journalPosition = journal != null ? journal.appendInsert(position, data) : -1;
+        insertSegment(position, createSegment(data, journalPosition));
+    }
+
+    private void insertSegment(long position, Segment segment) {
+        if (segment.getLength() == 0) {
+            return;
+        }
+
+        SegmentNode[] parts = split(root, position);
+        root = joinMerging(parts[0], segment, parts[1]);
+        dataSize += segment.getLength();
+    }
+
+    private void removeSegments(long startFrom, long length) {
+        if (length == 0) {
+            return;
+        }
+
+        SegmentNode[] head = split(root, startFrom);
+        SegmentNode[] tail = split(head[1], length);
+        root = concatMerging(head[0], tail[1]);
+        dataSize -= length;
+    }
+
+    /**
+     * Creates segment for modified data, large data already written to the
+     * journal are referenced instead of kept in memory.
+     *
+     * @param data data
+     * @param journalPosition position of data in journal or -1
+     * @return segment
+     */
+    @Nonnull
+    private Segment createSegment(byte[] data, long journalPosition) {
+        if (journalPosition >= 0 && data.length >= JOURNAL_SEGMENT_MIN_SIZE) {
+            return new JournalSegment(journal, journalPosition, data.length);
+        }
+
+        return new MemorySegment(data);
+    }
+
+    @Nonnull
+    private static Segment createJournalSegment(EditJournal journal, long journalPosition, int length) {
+        if (length >= JOURNAL_SEGMENT_MIN_SIZE) {
+            return new JournalSegment(journal, journalPosition, length);
+        }
+
+        byte[] data = new byte[length];
+        journal.read(journalPosition, data, 0, length);
+        return new MemorySegment(data);
+    }
+
+    private void copySegmentData(Segment segment, long segmentOffset, byte[] target, int length) {
+        if (segment instanceof SourceSegment) {
+            source.copyToArray(((SourceSegment) segment).sourcePosition + segmentOffset, target, 0, length);
+        } else if (segment instanceof JournalSegment) {
+            JournalSegment journalSegment = (JournalSegment) segment;
+            journalSegment.journal.read(journalSegment.journalPosition + segmentOffset, target, 0, length);
+        } else {
+            System.arraycopy(((MemorySegment) segment).data, (int) segmentOffset, target, 0, length);
+        }
+    }
+
+    /**
+     * Returns segments of given tree in order.
+     *
+     * @param node tree root
+     * @return list of segments
+     */
+    @Nonnull
+    private static List<Segment> getSegments(@Nullable SegmentNode node) {
+        List<Segment> result = new ArrayList<>(count(node));
+        collectSegments(node, result);
+        return result;
+    }
+
+    private static void collectSegments(@Nullable SegmentNode node, List<Segment> target) {
+        if (node != null) {
+            collectSegments(node.left, target);
+            target.add(node.segment);
+            collectSegments(node.right, target);
+        }
+    }
+
+    private static void addMerging(List<Segment> segments, Segment segment) {
+        int lastIndex = segments.size() - 1;
+        Segment merged = lastIndex >= 0 ? mergeSegments(segments.get(lastIndex), segment) : null;
+        if (merged != null) {
+            segments.set(lastIndex, merged);
+        } else {
+            segments.add(segment);
+        }
+    }
+
+    @Nullable
+    private static SegmentNode buildTree(List<Segment> segments, int startIndex, int endIndex) {
+        if (startIndex == endIndex) {
+            return null;
+        }
+
+        int middleIndex = (startIndex + endIndex) >>> 1;
+        return new SegmentNode(buildTree(segments, startIndex, middleIndex), segments.get(middleIndex), buildTree(segments, middleIndex + 1, endIndex));
+    }
+
+    /**
+     * Joins trees with segment between them, merging segment with its
+     * neighbours if possible.
+     *
+     * @param left left tree
+     * @param segment segment
+     * @param right right tree
+     * @return joined tree
+     */
+    @Nonnull
+    private static SegmentNode joinMerging(@Nullable SegmentNode left, Segment segment, @Nullable SegmentNode right) {
+        if (left != null) {
+            Segment merged = mergeSegments(lastSegment(left), segment);
+            if (merged != null) {
+                left = removeLast(left);
+                segment = merged;
+            }
+        }
+        if (right != null) {
+            Segment merged = mergeSegments(segment, firstSegment(right));
+            if (merged != null) {
+                right = removeFirst(right);
+                segment = merged;
+            }
+        }
+        return join(left, segment, right);
+    }
+
+    @Nullable
+    private static SegmentNode concatMerging(@Nullable SegmentNode left, @Nullable SegmentNode right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+
+        return joinMerging(removeLast(left), lastSegment(left), right);
+    }
+
+    @Nullable
+    private static Segment mergeSegments(Segment first, Segment second) {
+        if (first instanceof MemorySegment && second instanceof MemorySegment) {
+            byte[] firstData = ((MemorySegment) first).data;
+            byte[] secondData = ((MemorySegment) second).data;
+            if (firstData.length + secondData.length <= MAX_MEMORY_SEGMENT_SIZE) {
+                byte[] data = Arrays.copyOf(firstData, firstData.length + secondData.length);
+                System.arraycopy(secondData, 0, data, firstData.length, secondData.length);
+                return new MemorySegment(data);
+            }
+        } else if (first instanceof JournalSegment && second instanceof JournalSegment) {
+            JournalSegment firstJournal = (JournalSegment) first;
+            JournalSegment secondJournal = (JournalSegment) second;
+            if (firstJournal.journal == secondJournal.journal && firstJournal.journalPosition + firstJournal.length == secondJournal.journalPosition) {
+                return new JournalSegment(firstJournal.journal, firstJournal.journalPosition, firstJournal.length + secondJournal.length);
+            }
+        } else if (first instanceof SourceSegment && second instanceof SourceSegment) {
+            SourceSegment firstSource = (SourceSegment) first;
+            SourceSegment secondSource = (SourceSegment) second;
+            if (firstSource.sourcePosition + firstSource.length == secondSource.sourcePosition) {
+                return new SourceSegment(firstSource.sourcePosition, firstSource.length + secondSource.length);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Splits tree at given position, segment crossing the position is split
+     * in two.
+     *
+     * @param node tree root
+     * @param position data position
+     * @return pair of trees with data before and after the position
+     */
+    @Nonnull
+    private static SegmentNode[] split(@Nullable SegmentNode node, long position) {
+        if (node == null || position == 0) {
+            return new SegmentNode[]{null, node};
+        }
+        if (position == node.length) {
+            return new SegmentNode[]{node, null};
+        }
+
+        long leftLength = length(node.left);
+        long segmentEnd = leftLength + node.segment.getLength();
+        if (position <= leftLength) {
+            SegmentNode[] parts = split(node.left, position);
+            return new SegmentNode[]{parts[0], join(parts[1], node.segment, node.right)};
+        }
+        if (position >= segmentEnd) {
+            SegmentNode[] parts = split(node.right, position - segmentEnd);
+            return new SegmentNode[]{join(node.left, node.segment, parts[0]), parts[1]};
+        }
+
+        long offset = position - leftLength;
+        Segment segment = node.segment;
+        Segment head;
+        Segment tail;
+        if (segment instanceof SourceSegment) {
+            SourceSegment sourceSegment = (SourceSegment) segment;
+            head = new SourceSegment(sourceSegment.sourcePosition, offset);
+            tail = new SourceSegment(sourceSegment.sourcePosition + offset, sourceSegment.length - offset);
+        } else if (segment instanceof JournalSegment) {
+            JournalSegment journalSegment = (JournalSegment) segment;
+            head = new JournalSegment(journalSegment.journal, journalSegment.journalPosition, offset);
+            tail = new JournalSegment(journalSegment.journal, journalSegment.journalPosition + offset, journalSegment.length - offset);
+        } else {
+            byte[] data = ((MemorySegment) segment).data;
+            head = new MemorySegment(Arrays.copyOf(data, (int) offset));
+            tail = new MemorySegment(Arrays.copyOfRange(data, (int) offset, data.length));
+        }
+        return new SegmentNode[]{join(node.left, head, null), join(null, tail, node.right)};
+    }
+
+    /**
+     * Joins trees with segment between them and keeps the result balanced.
+     *
+     * @param left left tree
+     * @param segment segment
+     * @param right right tree
+     * @return joined tree
+     */
+    @Nonnull
+    private static SegmentNode join(@Nullable SegmentNode left, Segment segment, @Nullable SegmentNode right) {
+        int leftHeight = height(left);
+        int rightHeight = height(right);
+        if (leftHeight > rightHeight + 1) {
+            return balance(left.left, left.segment, join(left.right, segment, right));
+        }
+        if (rightHeight > leftHeight + 1) {
+            return balance(join(left, segment, right.left), right.segment, right.right);
+        }
+
+        return new SegmentNode(left, segment, right);
+    }
+
+    @Nonnull
+    private static SegmentNode balance(@Nullable SegmentNode left, Segment segment, @Nullable SegmentNode right) {
+        int difference = height(left) - height(right);
+        if (difference > 1) {
+            if (height(left.left) >= height(left.right)) {
+                return new SegmentNode(left.left, left.segment, new SegmentNode(left.right, segment, right));
+            }
+            SegmentNode pivot = left.right;
+            return new SegmentNode(new SegmentNode(left.left, left.segment, pivot.left), pivot.segment, new SegmentNode(pivot.right, segment, right));
+        }
+        if (difference < -1) {
+            if (height(right.right) >= height(right.left)) {
+                return new SegmentNode(new SegmentNode(left, segment, right.left), right.segment, right.right);
+            }
+            SegmentNode pivot = right.left;
+            return new SegmentNode(new SegmentNode(left, segment, pivot.left), pivot.segment, new SegmentNode(pivot.right, right.segment, right.right));
+        }
+
+        return new SegmentNode(left, segment, right);
+    }
+
+    @Nonnull
+    private static Segment firstSegment(SegmentNode node) {
+        while (node.left != null) {
+            node = node.left;
+        }
+        return node.segment;
+    }
+
+    @Nonnull
+    private static Segment lastSegment(SegmentNode node) {
+        while (node.right != null) {
+            node = node.right;
+        }
+        return node.segment;
+    }
+
+    @Nullable
+    private static SegmentNode removeFirst(SegmentNode node) {
+        if (node.left == null) {
+            return node.right;
+        }
+        return join(removeFirst(node.left), node.segment, node.right);
+    }
+
+    @Nullable
+    private static SegmentNode removeLast(SegmentNode node) {
+        if (node.right == null) {
+            return node.left;
+        }
+        return join(node.left, node.segment, removeLast(node.right));
+    }
+
+    private static int height(@Nullable SegmentNode node) {
+        return node == null ? 0 : node.height;
+    }
+
+    private static long length(@Nullable SegmentNode node) {
+        return node == null ? 0 : node.length;
+    }
+
+    private static int count(@Nullable SegmentNode node) {
+        return node == null ? 0 : node.count;
+    }
+
+    /**
+     * Finds segment containing given position and updates cached position.
+     * Cached location is replaced as a whole and is valid only for the tree
+     * it was found in, so that concurrent reads are possible.
+     *
+     * @param position data position
+     * @return segment location
+     */
+    @Nonnull
+    private SegmentLocation findSegment(long position) {
+        SegmentNode node = root;
+        SegmentLocation location = cachedLocation;
+        if (location != null && location.root == node && position >= location.position && position < location.position + location.segment.getLength()) {
+            return location;
+        }
+
+        long nodePosition = 0;
+        while (true) {
+            long leftLength = length(node.left);
+            if (position < nodePosition + leftLength) {
+                node = node.left;
+                continue;
+            }
+            nodePosition += leftLength;
+            long segmentLength = node.segment.getLength();
+            if (position < nodePosition + segmentLength) {
+                break;
+            }
+            nodePosition += segmentLength;
+            node = node.right;
+        }
+
+        location = new SegmentLocation(root, node.segment, nodePosition);
+        cachedLocation = location;
+        return location;
+    }
+
+    private static void writeFully(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private void checkRange(long startFrom, long length) {
+        if (startFrom < 0 || length < 0 || startFrom + length > dataSize) {
+            throw new OutOfBoundsException();
+        }
+    }
+
+    private void checkInsertPosition(long startFrom, long length) {
+        if (startFrom < 0 || startFrom > dataSize || length < 0) {
+            throw new OutOfBoundsException();
+        }
+    }
+
+    /**
+     * Range of data.
+     */
+    public static final class DataRange {
+
+        private final long startPosition;
+        private final long length;
+
+        public DataRange(long startPosition, long length) {
+            this.startPosition = startPosition;
+            this.length = length;
+        }
+
+        public long getStartPosition() {
+            return startPosition;
+        }
+
+        public long getLength() {
+            return length;
+        }
+    }
+
+    private interface Segment {
+
+        long getLength();
+    }
+
+    private static final class SourceSegment implements Segment {
+
+        private final long sourcePosition;
+        private final long length;
+
+        private SourceSegment(long sourcePosition, long length) {
+            this.sourcePosition = sourcePosition;
+            this.length = length;
+        }
+
+        @Override
+        public long getLength() {
+            return length;
+        }
+    }
+
+    private static final class JournalSegment implements Segment {
+
+        private final EditJournal journal;
+        private final long journalPosition;
+        private final long length;
+
+        private JournalSegment(EditJournal journal, long journalPosition, long length) {
+            this.journal = journal;
+            this.journalPosition = journalPosition;
+            this.length = length;
+        }
+
+        @Override
+        public long getLength() {
+            return length;
+        }
+    }
+
+    private static final class MemorySegment implements Segment {
+
+        private final byte[] data;
+
+        private MemorySegment(byte[] data) {
+            this.data = data;
+        }
+
+        @Override
+        public long getLength() {
+            return data.length;
+        }
+    }
+
+    /**
+     * Node of immutable balanced tree of segments.
+     * <p>
+     * Node keeps total length and count of segments in its subtree.
+     */
+    private static final class SegmentNode {
+
+        private final SegmentNode left;
+        private final Segment segment;
+        private final SegmentNode right;
+        private final long length;
+        private final int count;
+        private final int height;
+
+        private SegmentNode(@Nullable SegmentNode left, Segment segment, @Nullable SegmentNode right) {
+            this.left = left;
+            this.segment = segment;
+            this.right = right;
+            length = length(left) + segment.getLength() + length(right);
+            count = count(left) + 1 + count(right);
+            height = Math.max(height(left), height(right)) + 1;
+        }
+    }
+
+    private static final class SegmentLocation {
+
+        private final SegmentNode root;
+        private final Segment segment;
+        private final long position;
+
+        private SegmentLocation(SegmentNode root, Segment segment, long position) {
+            this.root = root;
+            this.segment = segment;
+            this.position = position;
+        }
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright (C) ExBin Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.exbin.bined.intellij.data;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Application-wide memory budget for pages of binary data.
+ * <p>
+ * Clean pages which can be loaded again from their file source are evicted
+ * in least recently used order when total size of loaded pages exceeds the
+ * budget. Dirty pages allocated by {@link DirectPageAllocator} are never
+ * evicted, but count toward the budget, so clean pages are limited to the
+ * rest of the budget.
+ *
+ * @author ExBin Project (https://exbin.org)
+ */
+@ParametersAreNonnullByDefault
+public class PageBudget {
+
+    public static final long DEFAULT_BUDGET = 1024L * 1024 * 1024;
+
+    private static final Set<PageOwner> OWNERS = ConcurrentHashMap.newKeySet();
+    private static final AtomicLong LOADED_SIZE = new AtomicLong();
+    private static final LongAdder HIT_COUNT = new LongAdder();
+    private static final LongAdder MISS_COUNT = new LongAdder();
+    private static final AtomicLong ACCESS_CLOCK = new AtomicLong();
+    private static volatile long budget = DEFAULT_BUDGET;
+    private static volatile long keptSize = 0;
+
+    private PageBudget() {
+    }
+
+    /**
+     * Returns stamp for page access.
+     *
+     * @return access stamp
+     */
+    public static long nextAccessStamp() {
+        return ACCESS_CLOCK.incrementAndGet();
+    }
+
+    public static void register(PageOwner owner) {
+        OWNERS.add(owner);
+    }
+
+    public static void unregister(PageOwner owner) {
+        OWNERS.remove(owner);
+    }
+
+    /**
+     * Records accesses to already loaded pages.
+     *
+     * @param count count of accesses
+     */
+    public static void pageHits(long count) {
+        HIT_COUNT.add(count);
+    }
+
+    /**
+     * Records loading of page. Can be called while holding lock of page
+     * owner, so that loaded page is accounted together with its loading.
+     * Pages over budget are evicted by {@link #evictIfOverBudget()}.
+     *
+     * @param size page size
+     */
+    public static void pageLoaded(long size) {
+        MISS_COUNT.increment();
+        LOADED_SIZE.addAndGet(size);
+    }
+
+    /**
+     * Evicts pages if total size of loaded pages exceeds the budget.
+     * <p>
+     * Pages are not scanned again until more pages are loaded than were kept
+     * by the last eviction, which could not free enough pages. Must not be
+     * called while holding lock of any page owner.
+     */
+    public static void evictIfOverBudget() {
+        long loadedSize = LOADED_SIZE.get();
+        if (loadedSize > getCleanBudget() && loadedSize > keptSize) {
+            evictPages();
+        }
+    }
+
+    /**
+     * Records release of loaded page.
+     *
+     * @param size page size
+     */
+    public static void pageReleased(long size) {
+        LOADED_SIZE.addAndGet(-size);
+        if (keptSize > 0) {
+            keptSize = Math.max(0, keptSize - size);
+        }
+    }
+
+    /**
+     * Sets budget for total size of pages.
+     *
+     * @param budget budget in bytes
+     */
+    public static void setBudget(long budget) {
+        PageBudget.budget = Math.max(0, budget);
+        keptSize = 0;
+        evictIfOverBudget();
+    }
+
+    public static long getBudget() {
+        return budget;
+    }
+
+    public static long getUsedSize() {
+        return LOADED_SIZE.get() + DirectPageAllocator.getAllocatedSize();
+    }
+
+    public static long getHitCount() {
+        return HIT_COUNT.sum();
+    }
+
+    public static long getMissCount() {
+        return MISS_COUNT.sum();
+    }
+
+    /**
+     * Returns part of the budget available for clean pages.
+     *
+     * @return budget for clean pages in bytes
+     */
+    private static long getCleanBudget() {
+        return Math.max(0, budget - DirectPageAllocator.getAllocatedSize());
+    }
+
+    private static synchronized void evictPages() {
+        long cleanBudget = getCleanBudget();
+        if (LOADED_SIZE.get() <= cleanBudget) {
+            return;
+        }
+
+        List<LoadedPage> loadedPages = new ArrayList<>();
+        for (PageOwner owner : OWNERS) {
+            int pagesCount = owner.getPagesCount();
+            for (int page = 0; page < pagesCount; page++) {
+                long accessStamp = owner.getPageAccessStamp(page);
+                if (accessStamp >= 0) {
+                    loadedPages.add(new LoadedPage(owner, page, accessStamp));
+                }
+            }
+        }
+        loadedPages.sort((first, second) -> Long.compare(first.accessStamp, second.accessStamp));
+
+        // Most recently used page is kept even if it alone exceeds the budget
+        for (int i = 0; i < loadedPages.size() - 1 && LOADED_SIZE.get() > cleanBudget; i++) {
+            LoadedPage loadedPage = loadedPages.get(i);
+            loadedPage.owner.evictPage(loadedPage.page);
+        }
+
+        long loadedSize = LOADED_SIZE.get();
+        keptSize = loadedSize > cleanBudget ? loadedSize : 0;
+    }
+
+    /**
+     * Owner of clean pages which can be evicted.
+     */
+    @ParametersAreNonnullByDefault
+    public interface PageOwner {
+
+        int getPagesCount();
+
+        /**
+         * Returns stamp of last access to the page.
+         *
+         * @param page page index
+         * @return access stamp or -1 if page is not loaded
+         */
+        long getPageAccessStamp(int page);
+
+        /**
+         * Evicts page. Page is loaded again from its source when accessed.
+         * <p>
+         * Page which is in use or cannot be freed is kept, owner reports
+         * {@link #pageReleased(long)} only for pages which were really freed.
+         *
+         * @param page page index
+         */
+        void evictPage(int page);
+    }
+
+    private static final class LoadedPage {
+
+        private final PageOwner owner;
+        private final int page;
+        private final long accessStamp;
+
+        private LoadedPage(PageOwner owner, int page, long accessStamp) {
+            this.owner = owner;
+            this.page = page;
+            this.accessStamp = accessStamp;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) ExBin Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.exbin.bined.intellij.data;
+
+import org.exbin.auxiliary.binary_data.BinaryData;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Journal of original content of file pages overwritten in place.
+ * <p>
+ * Original bytes of each page are recorded only before the first write to
+ * the page, so size of the journal is proportional to count of touched
+ * pages regardless of the file size.
+ *
+ * @author ExBin Project (https://exbin.org)
+ */
+@ParametersAreNonnullByDefault
+public class PageJournal {
+
+    public static final int PAGE_SIZE = 4096;
+
+    private final Map<Long, byte[]> originalPages = new TreeMap<>();
+
+    /**
+     * Records original content of pages overlapping given ranges which were
+     * not recorded yet. Must be called before ranges are written.
+     *
+     * @param source data of the file before write
+     * @param ranges ranges to be written
+     */
+    public synchronized void record(BinaryData source, List<OverlayEditableData.DataRange> ranges) {
+        long sourceSize = source.getDataSize();
+        for (OverlayEditableData.DataRange range : ranges) {
+            if (range.getLength() == 0) {
+                continue;
+            }
+            long firstPage = range.getStartPosition() / PAGE_SIZE;
+            long lastPage = (range.getStartPosition() + range.getLength() - 1) / PAGE_SIZE;
+            for (long page = firstPage; page <= lastPage; page++) {
+                long position = page * PAGE_SIZE;
+                if (originalPages.containsKey(page) || position >= sourceSize) {
+                    continue;
+                }
+                byte[] pageData = new byte[(int) Math.min(PAGE_SIZE, sourceSize - position)];
+                source.copyToArray(position, pageData, 0, pageData.length);
+                originalPages.put(page, pageData);
+            }
+        }
+    }
+
+    /**
+     * Writes original content of all recorded pages back to the file and
+     * clears the journal.
+     *
+     * @param filePath file path
+     * @return list of reverted ranges
+     * @throws IOException if write fails
+     */
+    @Nonnull
+    public synchronized List<OverlayEditableData.DataRange> revert(Path filePath) throws IOException {
+        List<OverlayEditableData.DataRange> ranges = new ArrayList<>();
+        if (originalPages.isEmpty()) {
+            return ranges;
+        }
+
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.WRITE)) {
+            for (Map.Entry<Long, byte[]> entry : originalPages.entrySet()) {
+                long position = entry.getKey() * PAGE_SIZE;
+                ByteBuffer buffer = ByteBuffer.wrap(entry.getValue());
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer, position + buffer.position());
+                }
+                ranges.add(new OverlayEditableData.DataRange(position, entry.getValue().length));
+            }
+            channel.force(false);
+        }
+        originalPages.clear();
+        return ranges;
+    }
+
+    public synchronized boolean isEmpty() {
+        return originalPages.isEmpty();
+    }
+
+    public synchronized int getPagesCount() {
+        return originalPages.size();
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) ExBin Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.exbin.bined.intellij.data;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Exception thrown when existing file was overwritten only partially.
+ * <p>
+ * Complete content is kept in temporary file.
+ *
+ * @author ExBin Project (https://exbin.org)
+ */
+@ParametersAreNonnullByDefault
+public class PartialWriteException extends IOException {
+
+    private final Path completeFile;
+
+    public PartialWriteException(Path filePath, Path completeFile, Throwable cause) {
+        super("File " + filePath + " was partially overwritten, complete content was kept in " + completeFile, cause);
+        this.completeFile = completeFile;
+    }
+
+    /**
+     * Returns temporary file with complete content.
+     *
+     * @return file path
+     */
+    @Nonnull
+    public Path getCompleteFile() {
+        return completeFile;
+    }
+}
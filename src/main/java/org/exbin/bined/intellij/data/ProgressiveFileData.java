@@ -0,0 +1,387 @@
+/*
+ * Copyright (C) ExBin Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.exbin.bined.intellij.data;
+
+import org.exbin.auxiliary.binary_data.BinaryData;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.awt.EventQueue;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+
+/**
+ * Read-only binary data backed by temporary file which is filled in
+ * background.
+ * <p>
+ * Content is loaded in chunks. When loading from channel, chunks around
+ * initial position are loaded first.
+ * <p>
+ * Reading of regions which are not loaded yet waits until they are loaded,
+ * so that search or export don't process incomplete data. If loading was
+ * stopped before such region was loaded, read fails with
+ * {@link IllegalStateException}. Event dispatch thread doesn't wait, as it
+ * would block the user interface, reading of regions which are not loaded yet
+ * fails there. Only painting of code area reads such regions as zeros after
+ * {@link #allowUnloadedReads()} and shows them as placeholder.
+ *
+ * @author ExBin Project (https://exbin.org)
+ */
+@ParametersAreNonnullByDefault
+public class ProgressiveFileData implements BinaryData, ChannelTransferable {
+
+    public static final int CHUNK_SIZE = 1024 * 1024;
+    public static final int INITIAL_WINDOW_SIZE = 4 * CHUNK_SIZE;
+
+    private final long dataSize;
+    private final FileChannel writeChannel;
+    private final MappedFileData mappedData;
+    private final BitSet loadedChunks = new BitSet();
+    private volatile long loadedSize = 0;
+    private volatile boolean loadingStopped = false;
+    private volatile boolean disposed = false;
+    private boolean unloadedReadsAllowed = false;
+
+    public ProgressiveFileData(long dataSize) throws IOException {
+        this.dataSize = dataSize;
+        Path tempFile = Files.createTempFile("bined", ".tmp");
+        try {
+            writeChannel = FileChannel.open(tempFile, StandardOpenOption.WRITE);
+            if (dataSize > 0) {
+                // Extend file to full size, not yet loaded regions are left sparse
+                writeChannel.write(ByteBuffer.allocate(1), dataSize - 1);
+            }
+            mappedData = new MappedFileData(tempFile, true);
+        } catch (IOException | RuntimeException ex) {
+            Files.deleteIfExists(tempFile);
+            throw ex;
+        }
+    }
+
+    /**
+     * Loads content from given channel.
+     * <p>
+     * Chunks around initial position are loaded first, then the rest of the
+     * data is loaded sequentially.
+     *
+     * @param channel source channel
+     * @param initialPosition initial position
+     * @param monitor loading monitor
+     * @throws IOException if loading fails
+     */
+    public void loadFromChannel(FileChannel channel, long initialPosition, LoadingMonitor monitor) throws IOException {
+        int chunksCount = getChunksCount();
+        int windowChunks = INITIAL_WINDOW_SIZE / CHUNK_SIZE;
+        int initialChunk = (int) (Math.max(0, Math.min(initialPosition, dataSize)) / CHUNK_SIZE);
+        int firstChunk = Math.max(0, initialChunk - windowChunks / 2);
+        int lastChunk = Math.min(chunksCount, firstChunk + windowChunks);
+
+        ByteBuffer buffer = ByteBuffer.allocate(CHUNK_SIZE);
+        try {
+            for (int chunk = firstChunk; chunk < lastChunk; chunk++) {
+                if (!loadChunk(channel, chunk, buffer, monitor)) {
+                    return;
+                }
+            }
+
+            for (int chunk = 0; chunk < chunksCount; chunk++) {
+                if (!isChunkLoaded(chunk) && !loadChunk(channel, chunk, buffer, monitor)) {
+                    return;
+                }
+            }
+        } finally {
+            stopLoading();
+        }
+    }
+
+    /**
+     * Loads content sequentially from given stream.
+     * <p>
+     * If stream is shorter than data size, the rest is left as zeros.
+     *
+     * @param inputStream source stream
+     * @param monitor loading monitor
+     * @throws IOException if loading fails
+     */
+    public void loadFromStream(InputStream inputStream, LoadingMonitor monitor) throws IOException {
+        int chunksCount = getChunksCount();
+        byte[] buffer = new byte[CHUNK_SIZE];
+        try {
+            for (int chunk = 0; chunk < chunksCount; chunk++) {
+                if (disposed || monitor.isCancelled()) {
+                    return;
+                }
+
+                long position = (long) chunk * CHUNK_SIZE;
+                int length = (int) Math.min(CHUNK_SIZE, dataSize - position);
+                int offset = 0;
+                while (offset < length) {
+                    int read = inputStream.read(buffer, offset, length - offset);
+                    if (read < 0) {
+                        break;
+                    }
+                    offset += read;
+                }
+                writeFully(ByteBuffer.wrap(buffer, 0, offset), position);
+                if (offset < length) {
+                    for (int remainingChunk = chunk; remainingChunk < chunksCount; remainingChunk++) {
+                        chunkLoaded(remainingChunk, (int) Math.min(CHUNK_SIZE, dataSize - (long) remainingChunk * CHUNK_SIZE), monitor);
+                    }
+                    return;
+                }
+                chunkLoaded(chunk, length, monitor);
+            }
+        } finally {
+            stopLoading();
+        }
+    }
+
+    /**
+     * Returns true if data at given position were already loaded.
+     *
+     * @param position position
+     * @return true if loaded
+     */
+    public boolean isLoaded(long position) {
+        return isChunkLoaded((int) (position / CHUNK_SIZE));
+    }
+
+    /**
+     * Allows reading of regions which are not loaded yet as zeros on event
+     * dispatch thread until the current event is processed.
+     * <p>
+     * Intended for painting of code area, which shows such regions as
+     * placeholder. Must be called on event dispatch thread.
+     */
+    public void allowUnloadedReads() {
+        if (!unloadedReadsAllowed) {
+            unloadedReadsAllowed = true;
+            EventQueue.invokeLater(() -> unloadedReadsAllowed = false);
+        }
+    }
+
+    public boolean isFullyLoaded() {
+        return loadedSize == dataSize;
+    }
+
+    public long getLoadedSize() {
+        return loadedSize;
+    }
+
+    public boolean isDisposed() {
+        return disposed;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return dataSize == 0;
+    }
+
+    @Override
+    public long getDataSize() {
+        return dataSize;
+    }
+
+    @Override
+    public byte getByte(long position) {
+        awaitLoaded(position, 1);
+        return mappedData.getByte(position);
+    }
+
+    @Nonnull
+    @Override
+    public BinaryData copy() {
+        requireLoaded(0, dataSize);
+        return mappedData.copy();
+    }
+
+    @Nonnull
+    @Override
+    public BinaryData copy(long startFrom, long length) {
+        requireLoaded(startFrom, length);
+        return mappedData.copy(startFrom, length);
+    }
+
+    @Override
+    public void copyToArray(long startFrom, byte[] target, int offset, int length) {
+        awaitLoaded(startFrom, length);
+        mappedData.copyToArray(startFrom, target, offset, length);
+    }
+
+    @Override
+    public void saveToStream(OutputStream outputStream) throws IOException {
+        requireLoaded(0, dataSize);
+        mappedData.saveToStream(outputStream);
+    }
+
+    @Override
+    public void transferTo(long startFrom, long length, WritableByteChannel target) throws IOException {
+        requireLoaded(startFrom, length);
+        mappedData.transferTo(startFrom, length, target);
+    }
+
+    @Nonnull
+    @Override
+    public InputStream getDataInputStream() {
+        requireLoaded(0, dataSize);
+        return mappedData.getDataInputStream();
+    }
+
+    @Override
+    public void dispose() {
+        disposed = true;
+        stopLoading();
+        try {
+            writeChannel.close();
+        } catch (IOException ex) {
+            // Channel is discarded anyway
+        }
+        mappedData.dispose();
+    }
+
+    private int getChunksCount() {
+        return (int) ((dataSize + CHUNK_SIZE - 1) / CHUNK_SIZE);
+    }
+
+    /**
+     * Waits until given range is loaded.
+     * <p>
+     * Event dispatch thread doesn't wait.
+     *
+     * @param startFrom start position
+     * @param length length of range
+     * @return true if range is loaded, false if range is not loaded and
+     * unloaded reads are allowed
+     * @throws IllegalStateException if loading was stopped before range was
+     * loaded or if range is not loaded on event dispatch thread
+     */
+    private boolean awaitLoaded(long startFrom, long length) {
+        if (length <= 0 || loadedSize == dataSize) {
+            return true;
+        }
+
+        int firstChunk = (int) (startFrom / CHUNK_SIZE);
+        int lastChunk = (int) ((startFrom + length - 1) / CHUNK_SIZE);
+        boolean dispatchThread = EventQueue.isDispatchThread();
+        synchronized (loadedChunks) {
+            while (true) {
+                int missingChunk = loadedChunks.nextClearBit(firstChunk);
+                if (missingChunk > lastChunk) {
+                    return true;
+                }
+                if (dispatchThread) {
+                    if (unloadedReadsAllowed) {
+                        return false;
+                    }
+                    throw new IllegalStateException("Data at position " + (long) missingChunk * CHUNK_SIZE + " are not loaded yet");
+                }
+                if (loadingStopped) {
+                    throw new IllegalStateException("Data at position " + (long) missingChunk * CHUNK_SIZE + " were not loaded");
+                }
+                try {
+                    loadedChunks.wait();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for data", ex);
+                }
+            }
+        }
+    }
+
+    private void requireLoaded(long startFrom, long length) {
+        if (!awaitLoaded(startFrom, length)) {
+            throw new IllegalStateException("Data are not loaded yet");
+        }
+    }
+
+    private void stopLoading() {
+        synchronized (loadedChunks) {
+            loadingStopped = true;
+            loadedChunks.notifyAll();
+        }
+    }
+
+    private boolean isChunkLoaded(int chunk) {
+        synchronized (loadedChunks) {
+            return loadedChunks.get(chunk);
+        }
+    }
+
+    private boolean loadChunk(FileChannel channel, int chunk, ByteBuffer buffer, LoadingMonitor monitor) throws IOException {
+        if (disposed || monitor.isCancelled()) {
+            return false;
+        }
+
+        long position = (long) chunk * CHUNK_SIZE;
+        int length = (int) Math.min(CHUNK_SIZE, dataSize - position);
+        buffer.clear();
+        buffer.limit(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                break;
+            }
+        }
+        buffer.flip();
+        writeFully(buffer, position);
+        chunkLoaded(chunk, length, monitor);
+        return true;
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+        int startPosition = buffer.position();
+        while (buffer.hasRemaining()) {
+            writeChannel.write(buffer, position + buffer.position() - startPosition);
+        }
+    }
+
+    private void chunkLoaded(int chunk, int length, LoadingMonitor monitor) {
+        synchronized (loadedChunks) {
+            loadedChunks.set(chunk);
+            loadedSize += length;
+            loadedChunks.notifyAll();
+        }
+        monitor.chunkLoaded(loadedSize);
+    }
+
+    /**
+     * Monitor of loading progress.
+     */
+    @ParametersAreNonnullByDefault
+    public interface LoadingMonitor {
+
+        /**
+         * Returns true if loading should be stopped.
+         *
+         * @return true if cancelled
+         */
+        boolean isCancelled();
+
+        /**
+         * Reports loaded chunk.
+         *
+         * @param loadedSize total size of already loaded data
+         */
+        void chunkLoaded(long loadedSize);
+    }
+}
@@ -0,0 +1,424 @@
+/*
+ * Copyright (C) ExBin Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.exbin.bined.intellij.data;
+
+import org.exbin.auxiliary.binary_data.BinaryData;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Store of read-only file sources shared by all views of the same file.
+ * <p>
+ * Sources are keyed by canonical file path and reference counted, mapping
+ * of the file is released when the last reference is disposed. Each view is
+ * expected to keep its modifications in its own overlay.
+ * <p>
+ * Views write the file through this class, so that other views of the same
+ * file are notified by their {@link SourceListener} that data under their
+ * overlays changed. Before the file is rewritten, sources of other views are
+ * switched to a copy of the file, so that views with unsaved changes can
+ * keep editing their previous content.
+ *
+ * @author ExBin Project (https://exbin.org)
+ */
+@ParametersAreNonnullByDefault
+public class SharedFileSources {
+
+    private static final Map<Path, SharedSource> SOURCES = new HashMap<>();
+    private static final Set<SourceReference> REFERENCES = new HashSet<>();
+
+    private SharedFileSources() {
+    }
+
+    /**
+     * Returns new reference to shared source of given file.
+     * <p>
+     * Existing shared source is used only if the file has still the same
+     * size and modification time, otherwise the file was changed outside and
+     * new source is created.
+     *
+     * @param filePath file path
+     * @return source reference, must be disposed when no longer used
+     * @throws IOException if file cannot be opened
+     */
+    @Nonnull
+    public static BinaryData acquire(Path filePath) throws IOException {
+        Path key = getKey(filePath);
+        long fileModified = Files.getLastModifiedTime(filePath).toMillis();
+        synchronized (SOURCES) {
+            SharedSource source = SOURCES.get(key);
+            if (source == null || !source.matchesFile(filePath, fileModified)) {
+                source = new SharedSource(key, new MappedFileData(filePath), fileModified);
+                SOURCES.put(key, source);
+            }
+            return source.createReference();
+        }
+    }
+
+    /**
+     * Returns new reference to source of current content of given file.
+     * <p>
+     * Used when file was replaced or changed, existing references keep
+     * their previous source.
+     *
+     * @param filePath file path
+     * @return source reference, must be disposed when no longer used
+     * @throws IOException if file cannot be opened
+     */
+    @Nonnull
+    public static BinaryData acquireReloaded(Path filePath) throws IOException {
+        Path key = getKey(filePath);
+        long fileModified = Files.getLastModifiedTime(filePath).toMillis();
+        synchronized (SOURCES) {
+            SharedSource source = new SharedSource(key, new MappedFileData(filePath), fileModified);
+            SOURCES.put(key, source);
+            return source.createReference();
+        }
+    }
+
+    /**
+     * Sets listener for changes of the file made through other references.
+     *
+     * @param reference source reference
+     * @param listener listener or null to remove
+     */
+    public static void setSourceListener(BinaryData reference, @Nullable SourceListener listener) {
+        if (reference instanceof SourceReference) {
+            ((SourceReference) reference).listener = listener;
+        }
+    }
+
+    /**
+     * Writes given ranges of data to the same positions of the file and
+     * notifies other references of the file.
+     *
+     * @param reference reference of the writing view or null
+     * @param filePath file path
+     * @param data source data
+     * @param ranges ranges to write
+     * @throws IOException if write fails
+     */
+    public static void writeRanges(@Nullable BinaryData reference, Path filePath, BinaryData data, List<OverlayEditableData.DataRange> ranges) throws IOException {
+        FileDataWriter.writeRanges(filePath, data, ranges);
+        updateFileModified(filePath);
+        notifyRangesWritten(reference, filePath, ranges);
+    }
+
+    /**
+     * Rewrites file with given data and notifies other references of the
+     * file that their source was replaced.
+     *
+     * @param reference reference of the writing view or null
+     * @param filePath file path
+     * @param data source data
+     * @return new source reference of written file, must be disposed when
+     * no longer used
+     * @throws IOException if write fails
+     */
+    @Nonnull
+    public static BinaryData rewriteFile(@Nullable BinaryData reference, Path filePath, BinaryData data) throws IOException {
+        preserveOtherSources(reference, getKey(filePath));
+        FileDataWriter.rewriteFile(filePath, data);
+        BinaryData newReference = acquireReloaded(filePath);
+        notifySourceReplaced(reference, filePath);
+        return newReference;
+    }
+
+    /**
+     * Returns true if the file was rewritten through other reference, so
+     * positions of given reference do not match the file anymore.
+     *
+     * @param reference source reference
+     * @return true if source was replaced
+     */
+    public static boolean isReplaced(BinaryData reference) {
+        return reference instanceof SourceReference && ((SourceReference) reference).replaced;
+    }
+
+    /**
+     * Notifies references of the file except given one that ranges of the
+     * file were written in place.
+     *
+     * @param reference reference of the writing view or null
+     * @param filePath file path
+     * @param ranges written ranges
+     */
+    public static void notifyRangesWritten(@Nullable BinaryData reference, Path filePath, List<OverlayEditableData.DataRange> ranges) {
+        if (ranges.isEmpty()) {
+            return;
+        }
+
+        for (SourceListener listener : getListeners(reference, getKey(filePath))) {
+            listener.rangesWritten(ranges);
+        }
+    }
+
+    /**
+     * Notifies references of the file except given one that the file was
+     * rewritten and their source does not match it anymore.
+     *
+     * @param reference reference of the writing view or null
+     * @param filePath file path
+     */
+    public static void notifySourceReplaced(@Nullable BinaryData reference, Path filePath) {
+        Path key = getKey(filePath);
+        synchronized (SOURCES) {
+            for (SourceReference otherReference : REFERENCES) {
+                if (otherReference != reference && otherReference.source.key.equals(key)) {
+                    otherReference.replaced = true;
+                }
+            }
+        }
+        for (SourceListener listener : getListeners(reference, key)) {
+            listener.sourceReplaced();
+        }
+    }
+
+    /**
+     * Returns count of files with shared source.
+     *
+     * @return count of files
+     */
+    public static int getSourcesCount() {
+        synchronized (SOURCES) {
+            return SOURCES.size();
+        }
+    }
+
+    @Nonnull
+    private static Path getKey(Path filePath) {
+        try {
+            return filePath.toRealPath();
+        } catch (IOException ex) {
+            return filePath.toAbsolutePath().normalize();
+        }
+    }
+
+    @Nonnull
+    private static List<SourceListener> getListeners(@Nullable BinaryData excludedReference, Path key) {
+        List<SourceListener> listeners = new ArrayList<>();
+        synchronized (SOURCES) {
+            for (SourceReference reference : REFERENCES) {
+                SourceListener listener = reference.listener;
+                if (reference != excludedReference && listener != null && reference.source.key.equals(key)) {
+                    listeners.add(listener);
+                }
+            }
+        }
+        return listeners;
+    }
+
+    /**
+     * Updates modification time of shared source after the file was written
+     * in place, so that the source is still shared.
+     */
+    private static void updateFileModified(Path filePath) throws IOException {
+        long fileModified = Files.getLastModifiedTime(filePath).toMillis();
+        synchronized (SOURCES) {
+            SharedSource source = SOURCES.get(getKey(filePath));
+            if (source != null) {
+                source.fileModified = fileModified;
+            }
+        }
+    }
+
+    /**
+     * Switches sources used by references of the file other than given one
+     * to a copy of the file.
+     */
+    private static void preserveOtherSources(@Nullable BinaryData excludedReference, Path key) throws IOException {
+        Set<MappedFileData> preservedData = new HashSet<>();
+        synchronized (SOURCES) {
+            for (SourceReference reference : REFERENCES) {
+                if (reference != excludedReference && reference.source.key.equals(key)) {
+                    preservedData.add(reference.source.data);
+                }
+            }
+        }
+        for (MappedFileData data : preservedData) {
+            data.preserveContent();
+        }
+    }
+
+    private static void release(SourceReference reference) {
+        SharedSource source = reference.source;
+        synchronized (SOURCES) {
+            REFERENCES.remove(reference);
+            source.references--;
+            if (source.references > 0) {
+                return;
+            }
+
+            if (SOURCES.get(source.key) == source) {
+                SOURCES.remove(source.key);
+            }
+        }
+        source.data.dispose();
+    }
+
+    private static class SharedSource {
+
+        private final Path key;
+        private final MappedFileData data;
+        private long fileModified;
+        private int references = 0;
+
+        public SharedSource(Path key, MappedFileData data, long fileModified) {
+            this.key = key;
+            this.data = data;
+            this.fileModified = fileModified;
+        }
+
+        /**
+         * Returns true if the file has still the state source was created
+         * for.
+         *
+         * @param filePath file path
+         * @param currentModified current modification time of the file
+         * @return true if file matches
+         */
+        public boolean matchesFile(Path filePath, long currentModified) {
+            try {
+                return currentModified == fileModified && Files.size(filePath) == data.getDataSize();
+            } catch (IOException ex) {
+                return false;
+            }
+        }
+
+        @Nonnull
+        public SourceReference createReference() {
+            references++;
+            SourceReference reference = new SourceReference(this);
+            REFERENCES.add(reference);
+            return reference;
+        }
+    }
+
+    /**
+     * Reference to shared source, disposing releases the reference.
+     */
+    @ParametersAreNonnullByDefault
+    private static class SourceReference implements BinaryData, ChannelTransferable {
+
+        private final SharedSource source;
+        private volatile SourceListener listener = null;
+        private volatile boolean replaced = false;
+        private boolean released = false;
+
+        public SourceReference(SharedSource source) {
+            this.source = source;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return source.data.isEmpty();
+        }
+
+        @Override
+        public long getDataSize() {
+            return source.data.getDataSize();
+        }
+
+        @Override
+        public byte getByte(long position) {
+            return source.data.getByte(position);
+        }
+
+        @Nonnull
+        @Override
+        public BinaryData copy() {
+            return source.data.copy();
+        }
+
+        @Nonnull
+        @Override
+        public BinaryData copy(long startFrom, long length) {
+            return source.data.copy(startFrom, length);
+        }
+
+        @Override
+        public void copyToArray(long startFrom, byte[] target, int offset, int length) {
+            source.data.copyToArray(startFrom, target, offset, length);
+        }
+
+        @Override
+        public void saveToStream(OutputStream outputStream) throws IOException {
+            source.data.saveToStream(outputStream);
+        }
+
+        @Override
+        public void transferTo(long startFrom, long length, WritableByteChannel target) throws IOException {
+            source.data.transferTo(startFrom, length, target);
+        }
+
+        @Nonnull
+        @Override
+        public InputStream getDataInputStream() {
+            return source.data.getDataInputStream();
+        }
+
+        @Override
+        public void dispose() {
+            synchronized (this) {
+                if (released) {
+                    return;
+                }
+                released = true;
+            }
+            listener = null;
+            release(this);
+        }
+    }
+
+    /**
+     * Listener for changes of the file made through other references.
+     * <p>
+     * Methods are called on the writing thread while the writer can hold its
+     * locks, so listeners are expected to process changes asynchronously.
+     */
+    @ParametersAreNonnullByDefault
+    public interface SourceListener {
+
+        /**
+         * Reports that ranges of the file were overwritten in place. Source
+         * already contains new data.
+         *
+         * @param ranges written ranges
+         */
+        void rangesWritten(List<OverlayEditableData.DataRange> ranges);
+
+        /**
+         * Reports that the file was rewritten, so positions in source do not
+         * match the file anymore. Source keeps previous content of the file,
+         * content should be reloaded unless it has unsaved changes.
+         */
+        void sourceReplaced();
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) ExBin Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.exbin.bined.intellij.data;
+
+import org.exbin.auxiliary.binary_data.BinaryData;
+import org.exbin.auxiliary.binary_data.OutOfBoundsException;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Read-only view of range of another binary data.
+ * <p>
+ * Data are not copied, all access is delegated to the source with shifted
+ * position.
+ *
+ * @author ExBin Project (https://exbin.org)
+ */
+@ParametersAreNonnullByDefault
+public class SliceData implements BinaryData, ChannelTransferable {
+
+    public static final int BUFFER_SIZE = 64 * 1024;
+
+    private final BinaryData source;
+    private final long startPosition;
+    private final long dataSize;
+
+    /**
+     * Creates view of given range of source.
+     *
+     * @param source source data, disposed with this data
+     * @param startPosition start position in source
+     * @param dataSize length of the range
+     */
+    public SliceData(BinaryData source, long startPosition, long dataSize) {
+        if (startPosition < 0 || dataSize < 0 || startPosition + dataSize > source.getDataSize()) {
+            throw new OutOfBoundsException();
+        }
+
+        this.source = source;
+        this.startPosition = startPosition;
+        this.dataSize = dataSize;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return dataSize == 0;
+    }
+
+    @Override
+    public long getDataSize() {
+        return dataSize;
+    }
+
+    @Override
+    public byte getByte(long position) {
+        if (position < 0 || position >= dataSize) {
+            throw new OutOfBoundsException();
+        }
+
+        return source.getByte(startPosition + position);
+    }
+
+    @Nonnull
+    @Override
+    public BinaryData copy() {
+        return copy(0, dataSize);
+    }
+
+    @Nonnull
+    @Override
+    public BinaryData copy(long startFrom, long length) {
+        if (startFrom < 0 || length < 0 || startFrom + length > dataSize) {
+            throw new OutOfBoundsException();
+        }
+
+        return source.copy(startPosition + startFrom, length);
+    }
+
+    @Override
+    public void copyToArray(long startFrom, byte[] target, int offset, int length) {
+        if (startFrom < 0 || length < 0 || startFrom + length > dataSize) {
+            throw new OutOfBoundsException();
+        }
+
+        source.copyToArray(startPosition + startFrom, target, offset, length);
+    }
+
+    @Override
+    public void saveToStream(OutputStream outputStream) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long position = 0;
+        while (position < dataSize) {
+            int chunkLength = (int) Math.min(BUFFER_SIZE, dataSize - position);
+            copyToArray(position, buffer, 0, chunkLength);
+            outputStream.write(buffer, 0, chunkLength);
+            position += chunkLength;
+        }
+    }
+
+    @Override
+    public void transferTo(long startFrom, long length, WritableByteChannel target) throws IOException {
+        if (startFrom < 0 || length < 0 || startFrom + length > dataSize) {
+            throw new OutOfBoundsException();
+        }
+
+        if (source instanceof ChannelTransferable) {
+            ((ChannelTransferable) source).transferTo(startPosition + startFrom, length, target);
+            return;
+        }
+
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long position = 0;
+        while (position < length) {
+            int chunkLength = (int) Math.min(BUFFER_SIZE, length - position);
+            copyToArray(startFrom + position, buffer, 0, chunkLength);
+            ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, chunkLength);
+            while (byteBuffer.hasRemaining()) {
+                target.write(byteBuffer);
+            }
+            position += chunkLength;
+        }
+    }
+
+    @Nonnull
+    @Override
+    public InputStream getDataInputStream() {
+        return new InputStream() {
+            private long position = 0;
+
+            @Override
+            public int read() {
+                return position < dataSize ? getByte(position++) & 0xff : -1;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) {
+                if (length == 0) {
+                    return 0;
+                }
+                if (position >= dataSize) {
+                    return -1;
+                }
+
+                int chunkLength = (int) Math.min(length, dataSize - position);
+                copyToArray(position, buffer, offset, chunkLength);
+                position += chunkLength;
+                return chunkLength;
+            }
+
+            @Override
+            public int available() {
+                return (int) Math.min(Integer.MAX_VALUE, dataSize - position);
+            }
+        };
+    }
+
+    @Override
+    public void dispose() {
+        source.dispose();
+    }
+}
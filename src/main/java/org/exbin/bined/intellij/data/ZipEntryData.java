@@ -0,0 +1,202 @@
+/*
+ * Copyright (C) ExBin Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.exbin.bined.intellij.data;
+
+import org.exbin.auxiliary.binary_data.BinaryData;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.ZipException;
+
+/**
+ * Access to content of zip archive entries without extraction.
+ * <p>
+ * Entry is located using central directory of the archive, including ZIP64
+ * extensions. Stored entries are provided as view of the archive data and
+ * deflated entries are decoded lazily by pages.
+ *
+ * @author ExBin Project (https://exbin.org)
+ */
+@ParametersAreNonnullByDefault
+public class ZipEntryData {
+
+    public static final long DEFLATED_CHECKPOINT_SPAN = 1024 * 1024;
+
+    private static final int END_SIGNATURE = 0x06054b50;
+    private static final int END_SIZE = 22;
+    private static final int MAX_COMMENT_SIZE = 0xffff;
+    private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final int ZIP64_LOCATOR_SIZE = 20;
+    private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+    private static final int CENTRAL_SIGNATURE = 0x02014b50;
+    private static final int CENTRAL_HEADER_SIZE = 46;
+    private static final int LOCAL_SIGNATURE = 0x04034b50;
+    private static final int LOCAL_HEADER_SIZE = 30;
+    private static final int ZIP64_EXTRA_ID = 0x0001;
+    private static final int FLAG_ENCRYPTED = 1;
+    private static final int FLAG_UTF8 = 0x800;
+    private static final int METHOD_STORED = 0;
+    private static final int METHOD_DEFLATED = 8;
+    private static final long UINT32_MAX = 0xffffffffL;
+
+    private static final Charset DEFAULT_NAME_CHARSET = Charset.isSupported("IBM437") ? Charset.forName("IBM437") : StandardCharsets.ISO_8859_1;
+
+    private ZipEntryData() {
+    }
+
+    /**
+     * Opens content of archive entry.
+     *
+     * @param archive data of zip archive, disposed with returned data
+     * @param entryName name of the entry
+     * @return entry data or null if entry was not found or its content
+     * cannot be accessed directly, archive is not disposed in such case
+     * @throws ZipException if archive is damaged
+     */
+    @Nullable
+    public static BinaryData openEntry(BinaryData archive, String entryName) throws ZipException {
+        long endPosition = findEnd(archive);
+        long entriesCount = readUInt16(archive, endPosition + 10);
+        long directorySize = readUInt32(archive, endPosition + 12);
+        long directoryPosition = readUInt32(archive, endPosition + 16);
+        if (entriesCount == 0xffff || directorySize == UINT32_MAX || directoryPosition == UINT32_MAX) {
+            long locatorPosition = endPosition - ZIP64_LOCATOR_SIZE;
+            if (locatorPosition >= 0 && readUInt32(archive, locatorPosition) == ZIP64_LOCATOR_SIGNATURE) {
+                long zip64EndPosition = readUInt64(archive, locatorPosition + 8);
+                if (readUInt32(archive, zip64EndPosition) != ZIP64_END_SIGNATURE) {
+                    throw new ZipException("Invalid ZIP64 end of central directory");
+                }
+                entriesCount = readUInt64(archive, zip64EndPosition + 32);
+                directorySize = readUInt64(archive, zip64EndPosition + 40);
+                directoryPosition = readUInt64(archive, zip64EndPosition + 48);
+            }
+        }
+
+        long archiveSize = archive.getDataSize();
+        if (directoryPosition + directorySize > archiveSize) {
+            throw new ZipException("Invalid central directory position");
+        }
+
+        long position = directoryPosition;
+        for (long entry = 0; entry < entriesCount; entry++) {
+            if (position + CENTRAL_HEADER_SIZE > archiveSize || readUInt32(archive, position) != CENTRAL_SIGNATURE) {
+                throw new ZipException("Invalid central directory entry");
+            }
+            int flags = readUInt16(archive, position + 8);
+            int method = readUInt16(archive, position + 10);
+            long compressedSize = readUInt32(archive, position + 20);
+            long uncompressedSize = readUInt32(archive, position + 24);
+            int nameLength = readUInt16(archive, position + 28);
+            int extraLength = readUInt16(archive, position + 30);
+            int commentLength = readUInt16(archive, position + 32);
+            long localPosition = readUInt32(archive, position + 42);
+            long namePosition = position + CENTRAL_HEADER_SIZE;
+            position = namePosition + nameLength + extraLength + commentLength;
+            if (position > archiveSize) {
+                throw new ZipException("Invalid central directory entry");
+            }
+
+            byte[] nameData = new byte[nameLength];
+            archive.copyToArray(namePosition, nameData, 0, nameLength);
+            String name = new String(nameData, (flags & FLAG_UTF8) != 0 ? StandardCharsets.UTF_8 : DEFAULT_NAME_CHARSET);
+            if (!name.equals(entryName)) {
+                continue;
+            }
+
+            // ZIP64 extra field contains only values which overflowed in the header
+            long extraPosition = namePosition + nameLength;
+            long extraEnd = extraPosition + extraLength;
+            while (extraPosition + 4 <= extraEnd) {
+                int extraId = readUInt16(archive, extraPosition);
+                int extraSize = readUInt16(archive, extraPosition + 2);
+                if (extraId == ZIP64_EXTRA_ID) {
+                    long valuePosition = extraPosition + 4;
+                    if (uncompressedSize == UINT32_MAX) {
+                        uncompressedSize = readUInt64(archive, valuePosition);
+                        valuePosition += 8;
+                    }
+                    if (compressedSize == UINT32_MAX) {
+                        compressedSize = readUInt64(archive, valuePosition);
+                        valuePosition += 8;
+                    }
+                    if (localPosition == UINT32_MAX) {
+                        localPosition = readUInt64(archive, valuePosition);
+                    }
+                    break;
+                }
+                extraPosition += 4 + extraSize;
+            }
+
+            if ((flags & FLAG_ENCRYPTED) != 0 || (method != METHOD_STORED && method != METHOD_DEFLATED)) {
+                return null;
+            }
+
+            if (localPosition + LOCAL_HEADER_SIZE > archiveSize || readUInt32(archive, localPosition) != LOCAL_SIGNATURE) {
+                throw new ZipException("Invalid local header of entry " + entryName);
+            }
+            long dataPosition = localPosition + LOCAL_HEADER_SIZE + readUInt16(archive, localPosition + 26) + readUInt16(archive, localPosition + 28);
+            if (dataPosition + compressedSize > archiveSize) {
+                throw new ZipException("Invalid size of entry " + entryName);
+            }
+
+            if (method == METHOD_STORED) {
+                return new SliceData(archive, dataPosition, compressedSize);
+            }
+            return new GzipFileData(new SliceData(archive, dataPosition, compressedSize), GzipSeekIndex.createLazy(uncompressedSize, DEFLATED_CHECKPOINT_SPAN));
+        }
+        return null;
+    }
+
+    private static long findEnd(BinaryData archive) throws ZipException {
+        long archiveSize = archive.getDataSize();
+        long lowestPosition = Math.max(0, archiveSize - END_SIZE - MAX_COMMENT_SIZE);
+        int searchLength = (int) (archiveSize - lowestPosition);
+        byte[] tail = new byte[searchLength];
+        archive.copyToArray(lowestPosition, tail, 0, searchLength);
+        long candidatePosition = -1;
+        for (int offset = searchLength - END_SIZE; offset >= 0; offset--) {
+            int signature = (tail[offset] & 0xff) | (tail[offset + 1] & 0xff) << 8 | (tail[offset + 2] & 0xff) << 16 | (tail[offset + 3] & 0xff) << 24;
+            if (signature == END_SIGNATURE) {
+                int commentLength = (tail[offset + 20] & 0xff) | (tail[offset + 21] & 0xff) << 8;
+                if (offset + END_SIZE + commentLength == searchLength) {
+                    return lowestPosition + offset;
+                }
+                if (candidatePosition < 0) {
+                    // Archive followed by unexpected data
+                    candidatePosition = lowestPosition + offset;
+                }
+            }
+        }
+        if (candidatePosition < 0) {
+            throw new ZipException("End of central directory not found");
+        }
+        return candidatePosition;
+    }
+
+    private static int readUInt16(BinaryData data, long position) {
+        return (data.getByte(position) & 0xff) | (data.getByte(position + 1) & 0xff) << 8;
+    }
+
+    private static long readUInt32(BinaryData data, long position) {
+        return readUInt16(data, position) | (long) readUInt16(data, position + 2) << 16;
+    }
+
+    private static long readUInt64(BinaryData data, long position) {
+        return readUInt32(data, position) | readUInt32(data, position + 4) << 32;
+    }
+}
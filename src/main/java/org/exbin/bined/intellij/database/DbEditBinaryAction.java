@@ -32,11 +32,12 @@ import com.intellij.openapi.actionSystem.Presentation;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.project.DumbAware;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Disposer;
 import org.exbin.auxiliary.binary_data.BinaryData;
 import org.exbin.auxiliary.binary_data.ByteArrayData;
-import org.exbin.auxiliary.binary_data.ByteArrayEditableData;
 import org.exbin.auxiliary.binary_data.EditableBinaryData;
 import org.exbin.bined.intellij.BinEdPluginStartupActivity;
+import org.exbin.bined.intellij.data.DirectPagedData;
 import org.exbin.bined.intellij.objectdata.gui.DataDialog;
 import org.exbin.framework.bined.objectdata.ObjectValueConvertor;
 import org.jetbrains.annotations.Nullable;
@@ -96,11 +97,11 @@ public class DbEditBinaryAction extends AnAction implements DumbAware, GridActio
 
             BinaryData binaryData;
             if (value instanceof byte[]) {
-                binaryData = new ByteArrayEditableData((byte[]) value);
+                binaryData = createPagedData((byte[]) value);
             } else if (value instanceof TextInfo) {
-                binaryData = new ByteArrayEditableData(((TextInfo) value).bytes);
+                binaryData = createPagedData(((TextInfo) value).bytes);
             } else if (value == null) {
-                binaryData = isBlobType ? new ByteArrayEditableData() : new ByteArrayData();
+                binaryData = isBlobType ? new DirectPagedData() : new ByteArrayData();
             } else {
                 binaryData = objectValueConvertor.process(value).orElse(null);
             }
@@ -130,6 +131,9 @@ public class DbEditBinaryAction extends AnAction implements DumbAware, GridActio
                         }
                     };
                     DataDialog dialog = new DataDialog(project, setDataListener, binaryData);
+                    if (binaryData instanceof DirectPagedData) {
+                        Disposer.register(dialog.getDisposable(), binaryData::dispose);
+                    }
                     boolean editable = binaryData instanceof EditableBinaryData;
                     ResourceBundle resourceBundle = dialog.getResourceBundle();
                     dialog.setTitle(editable ? resourceBundle.getString("dialog.title.edit") : resourceBundle.getString("dialog.title"));
@@ -139,6 +143,14 @@ public class DbEditBinaryAction extends AnAction implements DumbAware, GridActio
         }
     }
 
+    @Nonnull
+    private static DirectPagedData createPagedData(byte[] value) {
+        // Value is kept outside of heap while edited
+        DirectPagedData data = new DirectPagedData();
+        data.insert(0, value);
+        return data;
+    }
+
     @Override
     public void update(AnActionEvent event) {
         Presentation presentation = event.getPresentation();
@@ -60,4 +60,10 @@ public class BinEdDiffViewer extends DiffViewerBase {
     public JComponent getPreferredFocusedComponent() {
         return diffPanel;
     }
+
+    @Override
+    protected void onDispose() {
+        diffPanel.dispose();
+        super.onDispose();
+    }
 }
@@ -25,10 +25,10 @@ import com.intellij.openapi.actionSystem.AnAction;
 import com.intellij.openapi.actionSystem.AnActionEvent;
 import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.util.IconLoader;
+import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.ui.components.JBPanel;
 import org.exbin.auxiliary.binary_data.BinaryData;
 import org.exbin.auxiliary.binary_data.ByteArrayData;
-import org.exbin.auxiliary.binary_data.paged.PagedData;
 import org.exbin.bined.CodeAreaCaretPosition;
 import org.exbin.bined.CodeAreaUtils;
 import org.exbin.bined.CodeType;
@@ -38,6 +38,9 @@ import org.exbin.bined.highlight.swing.NonprintablesCodeAreaAssessor;
 import org.exbin.bined.section.layout.SectionCodeAreaLayoutProfile;
 import org.exbin.bined.intellij.BinEdIntelliJPlugin;
 import org.exbin.bined.intellij.BinEdPluginStartupActivity;
+import org.exbin.bined.intellij.data.DirectPagedData;
+import org.exbin.bined.intellij.data.OverlayEditableData;
+import org.exbin.bined.intellij.data.SharedFileSources;
 import org.exbin.bined.intellij.gui.BinEdToolbarPanel;
 import org.exbin.bined.intellij.options.BinEdApplyOptions;
 import org.exbin.bined.intellij.options.IntegrationOptions;
@@ -90,6 +93,7 @@ import java.awt.event.FocusAdapter;
 import java.awt.event.FocusEvent;
 import java.awt.event.MouseEvent;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
@@ -116,6 +120,8 @@ public class BinedDiffPanel extends JBPanel {
     private BinaryStatusApi binaryStatus;
     private TextEncodingStatusApi encodingStatus;
     private GoToPositionAction goToPositionAction = new GoToPositionAction();
+    private BinaryData leftContentData = null;
+    private BinaryData rightContentData = null;
 
     public BinedDiffPanel() {
         setLayout(new java.awt.BorderLayout());
@@ -226,7 +232,10 @@ public class BinedDiffPanel extends JBPanel {
             if (leftData == null) {
                 return;
             }
+            BinaryData previousLeftData = leftContentData;
+            BinaryData previousRightData = rightContentData;
             diffPanel.setLeftContentData(leftData);
+            leftContentData = leftData;
             SectCodeArea leftCodeArea = diffPanel.getLeftCodeArea();
             leftCodeArea.setComponentPopupMenu(new JPopupMenu() {
                 @Override
@@ -258,7 +267,10 @@ public class BinedDiffPanel extends JBPanel {
             BinaryData rightData = getDiffBinaryData(request, 1);
             if (rightData != null) {
                 diffPanel.setRightContentData(rightData);
+                rightContentData = rightData;
             }
+            releaseContentData(previousLeftData);
+            releaseContentData(previousRightData);
             SectCodeArea rightCodeArea = diffPanel.getRightCodeArea();
             rightCodeArea.setComponentPopupMenu(new JPopupMenu() {
                 @Override
@@ -288,18 +300,44 @@ public class BinedDiffPanel extends JBPanel {
         }
     }
 
+    /**
+     * Releases content data shared with other views.
+     */
+    public void dispose() {
+        releaseContentData(leftContentData);
+        releaseContentData(rightContentData);
+        leftContentData = null;
+        rightContentData = null;
+    }
+
+    private static void releaseContentData(@Nullable BinaryData contentData) {
+        if (contentData instanceof OverlayEditableData || contentData instanceof DirectPagedData) {
+            contentData.dispose();
+        }
+    }
+
     @Nullable
     private static BinaryData getDiffBinaryData(ContentDiffRequest request, int index) {
         List<DiffContent> contents = request.getContents();
         if (contents.size() > index) {
             DiffContent diffContent = contents.get(index);
             if (diffContent instanceof FileContent) {
-                PagedData pageData = new PagedData();
-                try {
-                    byte[] fileContent = ((FileContent) diffContent).getFile().contentsToByteArray();
-                    pageData.insert(0, fileContent);
+                VirtualFile file = ((FileContent) diffContent).getFile();
+                if (file.isInLocalFileSystem()) {
+                    // Local file shares mapped source with other views of the same file
+                    try {
+                        return new OverlayEditableData(SharedFileSources.acquire(file.toNioPath()));
+                    } catch (IOException | UnsupportedOperationException ex) {
+                        // Fallback to copy of the content
+                    }
+                }
+
+                DirectPagedData pageData = new DirectPagedData();
+                try (InputStream inputStream = file.getInputStream()) {
+                    pageData.loadFromStream(inputStream);
                     return pageData;
                 } catch (IOException e) {
+                    pageData.dispose();
                     throw new IllegalStateException("Unable to read file content", e);
                 }
             }
@@ -21,6 +21,7 @@ import com.intellij.openapi.actionSystem.AnActionEvent;
 import org.exbin.bined.CodeAreaUtils;
 import org.exbin.bined.CodeType;
 import org.exbin.bined.highlight.swing.NonprintablesCodeAreaAssessor;
+import org.exbin.bined.intellij.BinEdFileExporter;
 import org.exbin.bined.swing.CodeAreaSwingUtils;
 import org.exbin.bined.swing.capability.ColorAssessorPainterCapable;
 import org.exbin.bined.swing.section.SectCodeArea;
@@ -37,6 +38,9 @@ import org.exbin.framework.utils.DesktopUtils;
 import javax.annotation.Nonnull;
 import javax.annotation.ParametersAreNonnullByDefault;
 import javax.swing.AbstractAction;
+import javax.swing.BorderFactory;
+import javax.swing.JLabel;
+import javax.swing.JMenuItem;
 import javax.swing.JPanel;
 import javax.swing.JPopupMenu;
 import javax.swing.event.PopupMenuEvent;
@@ -53,14 +57,23 @@ import java.awt.event.ActionEvent;
 @ParametersAreNonnullByDefault
 public class BinEdFilePanel extends JPanel {
 
+    private final java.util.ResourceBundle resourceBundle = App.getModule(LanguageModuleApi.class).getBundle(BinEdFilePanel.class);
     private BinEdFileHandler fileHandler;
     private BinEdToolbarPanel toolbarPanel = new BinEdToolbarPanel();
     private BinaryStatusPanel statusPanel = new BinaryStatusPanel();
+    private JLabel savePendingLabel = new JLabel();
 
     public BinEdFilePanel() {
         super(new BorderLayout());
         add(toolbarPanel, BorderLayout.NORTH);
-        add(statusPanel, BorderLayout.SOUTH);
+        savePendingLabel.setText(resourceBundle.getString("savePendingLabel.text"));
+        savePendingLabel.setToolTipText(resourceBundle.getString("savePendingLabel.toolTipText"));
+        savePendingLabel.setBorder(BorderFactory.createEmptyBorder(0, 5, 0, 5));
+        savePendingLabel.setVisible(false);
+        JPanel southPanel = new JPanel(new BorderLayout());
+        southPanel.add(statusPanel, BorderLayout.CENTER);
+        southPanel.add(savePendingLabel, BorderLayout.EAST);
+        add(southPanel, BorderLayout.SOUTH);
     }
 
     public void setFileHandler(BinEdFileHandler fileHandler) {
@@ -122,6 +135,7 @@ public class BinEdFilePanel extends JPanel {
             public void show(Component invoker, int x, int y) {
                 String popupMenuId = "BinEdFilePanel.popup";
                 JPopupMenu popupMenu = codeAreaPopupMenuHandler.createPopupMenu(codeArea, popupMenuId, x, y);
+                addExportMenuItems(popupMenu, codeArea);
                 popupMenu.addPopupMenuListener(new PopupMenuListener() {
                     @Override
                     public void popupMenuWillBecomeVisible(PopupMenuEvent e) {
@@ -145,6 +159,34 @@ public class BinEdFilePanel extends JPanel {
         repaint();
     }
 
+    private void addExportMenuItems(JPopupMenu popupMenu, SectCodeArea codeArea) {
+        popupMenu.addSeparator();
+        JMenuItem exportSelectionMenuItem = new JMenuItem(resourceBundle.getString("exportSelectionMenuItem.text"));
+        exportSelectionMenuItem.setEnabled(!codeArea.getSelection().isEmpty());
+        exportSelectionMenuItem.addActionListener(e -> BinEdFileExporter.exportData(codeArea, true));
+        popupMenu.add(exportSelectionMenuItem);
+        JMenuItem saveCopyMenuItem = new JMenuItem(resourceBundle.getString("saveCopyMenuItem.text"));
+        saveCopyMenuItem.addActionListener(e -> BinEdFileExporter.exportData(codeArea, false));
+        popupMenu.add(saveCopyMenuItem);
+    }
+
+    public void setDirectWriteControl(BinEdToolbarPanel.DirectWriteControl directWriteControl) {
+        toolbarPanel.setDirectWriteControl(directWriteControl);
+    }
+
+    public void setFollowControl(BinEdToolbarPanel.FollowControl followControl) {
+        toolbarPanel.setFollowControl(followControl);
+    }
+
+    /**
+     * Shows whether there are changes waiting to be written to the file.
+     *
+     * @param pending true if write is pending
+     */
+    public void setSavePending(boolean pending) {
+        savePendingLabel.setVisible(pending);
+    }
+
     @Nonnull
     private AbstractAction createOnlineHelpAction() {
         return new AbstractAction() {
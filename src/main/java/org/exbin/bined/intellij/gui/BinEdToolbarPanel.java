@@ -15,6 +15,7 @@
  */
 package org.exbin.bined.intellij.gui;
 
+import com.intellij.icons.AllIcons;
 import com.intellij.openapi.actionSystem.ActionGroup;
 import com.intellij.openapi.actionSystem.ActionManager;
 import com.intellij.openapi.actionSystem.ActionUpdateThread;
@@ -60,11 +61,14 @@ public class BinEdToolbarPanel extends JBPanel {
     private final java.util.ResourceBundle optionsResourceBundle;
     private final java.util.ResourceBundle onlineHelpResourceBundle;
     private final java.util.ResourceBundle operationUndoResourceBundle;
+    private final java.util.ResourceBundle toolbarResourceBundle;
 
     private static final String TOOLBAR_PLACE = "BinEdPluginMainToolbar";
     private static final Key<Boolean> SELECTED_PROPERTY_KEY = Key.create(Toggleable.SELECTED_PROPERTY);
 
     private Control codeAreaControl;
+    private FollowControl followControl = null;
+    private DirectWriteControl directWriteControl = null;
     private AbstractAction optionsAction;
     private AnAction onlineHelpAction;
     private BinaryDataUndoRedo undoRedo;
@@ -87,6 +91,7 @@ public class BinEdToolbarPanel extends JBPanel {
         optionsResourceBundle = languageModule.getResourceBundleByBundleName("org/exbin/framework/options/resources/OptionsModule");
         onlineHelpResourceBundle = languageModule.getResourceBundleByBundleName("org/exbin/framework/help/online/action/resources/OnlineHelpAction");
         operationUndoResourceBundle = languageModule.getResourceBundleByBundleName("org/exbin/framework/operation/undo/resources/OperationUndoModule");
+        toolbarResourceBundle = languageModule.getBundle(BinEdToolbarPanel.class);
 
         setLayout(new java.awt.BorderLayout());
         actionGroup = new DefaultActionGroup();
@@ -191,6 +196,17 @@ public class BinEdToolbarPanel extends JBPanel {
         setActionVisible(redoEditButton, true);
     }
 
+    public void setFollowControl(FollowControl followControl) {
+        this.followControl = followControl;
+        setActionVisible(followToggleButton, true);
+    }
+
+    public void setDirectWriteControl(DirectWriteControl directWriteControl) {
+        this.directWriteControl = directWriteControl;
+        setActionVisible(directWriteToggleButton, true);
+        setActionVisible(revertDirectWritesButton, true);
+    }
+
     public void setOptionsAction(AbstractAction optionsAction) {
         this.optionsAction = optionsAction;
     }
@@ -367,6 +383,94 @@ public class BinEdToolbarPanel extends JBPanel {
         };
         actionGroup.addAction(showNonprintablesToggleButton);
 
+        followToggleButton = new ToggleAction(
+                toolbarResourceBundle.getString("followAction.text"),
+                toolbarResourceBundle.getString("followAction.shortDescription"),
+                AllIcons.RunConfigurations.Scroll_down
+        ) {
+            @NotNull
+            @Override
+            public ActionUpdateThread getActionUpdateThread() {
+                return ActionUpdateThread.BGT;
+            }
+
+            @Override
+            public boolean isSelected(@NotNull AnActionEvent anActionEvent) {
+                return followControl != null && followControl.isFollowMode();
+            }
+
+            @Override
+            public void setSelected(@NotNull AnActionEvent anActionEvent, boolean selected) {
+                if (followControl != null) followControl.setFollowMode(selected);
+            }
+
+            @Override
+            public void update(@NotNull AnActionEvent e) {
+                super.update(e);
+                e.getPresentation().setVisible(followControl != null);
+            }
+        };
+        actionGroup.addAction(followToggleButton);
+        setActionVisible(followToggleButton, false);
+
+        directWriteToggleButton = new ToggleAction(
+                toolbarResourceBundle.getString("directWriteAction.text"),
+                toolbarResourceBundle.getString("directWriteAction.shortDescription"),
+                AllIcons.Actions.Lightning
+        ) {
+            @NotNull
+            @Override
+            public ActionUpdateThread getActionUpdateThread() {
+                return ActionUpdateThread.BGT;
+            }
+
+            @Override
+            public boolean isSelected(@NotNull AnActionEvent anActionEvent) {
+                return directWriteControl != null && directWriteControl.isDirectWriteMode();
+            }
+
+            @Override
+            public void setSelected(@NotNull AnActionEvent anActionEvent, boolean selected) {
+                if (directWriteControl != null) directWriteControl.setDirectWriteMode(selected);
+            }
+
+            @Override
+            public void update(@NotNull AnActionEvent e) {
+                super.update(e);
+                Presentation presentation = e.getPresentation();
+                presentation.setVisible(directWriteControl != null);
+                presentation.setEnabled(directWriteControl != null && directWriteControl.isDirectWriteAvailable());
+            }
+        };
+        actionGroup.addAction(directWriteToggleButton);
+        setActionVisible(directWriteToggleButton, false);
+
+        revertDirectWritesButton = new AnAction(
+                toolbarResourceBundle.getString("revertDirectWritesAction.text"),
+                toolbarResourceBundle.getString("revertDirectWritesAction.shortDescription"),
+                AllIcons.Actions.Rollback
+        ) {
+            @NotNull
+            @Override
+            public ActionUpdateThread getActionUpdateThread() {
+                return ActionUpdateThread.BGT;
+            }
+
+            @Override
+            public void actionPerformed(@NotNull AnActionEvent anActionEvent) {
+                if (directWriteControl != null) directWriteControl.revertDirectWrites();
+            }
+
+            @Override
+            public void update(@NotNull AnActionEvent e) {
+                Presentation presentation = e.getPresentation();
+                presentation.setVisible(directWriteControl != null && directWriteControl.isDirectWriteMode());
+                presentation.setEnabled(directWriteControl != null && directWriteControl.canRevertDirectWrites());
+            }
+        };
+        actionGroup.addAction(revertDirectWritesButton);
+        setActionVisible(revertDirectWritesButton, false);
+
         actionGroup.addAction(cycleCodeTypesSplitAction);
 
         actionGroup.addSeparator();
@@ -409,6 +513,9 @@ public class BinEdToolbarPanel extends JBPanel {
 
     // Variables declaration - do not modify//GEN-BEGIN:variables
     private ToggleAction showNonprintablesToggleButton;
+    private ToggleAction followToggleButton;
+    private ToggleAction directWriteToggleButton;
+    private AnAction revertDirectWritesButton;
     private AnAction saveFileButton;
     private AnAction undoEditButton;
     private AnAction redoEditButton;
@@ -460,4 +567,32 @@ public class BinEdToolbarPanel extends JBPanel {
 
         void repaint();
     }
+
+    /**
+     * Control of following appended data of the file.
+     */
+    @ParametersAreNonnullByDefault
+    public interface FollowControl {
+
+        boolean isFollowMode();
+
+        void setFollowMode(boolean followMode);
+    }
+
+    /**
+     * Control of writing overwritten data directly to the file.
+     */
+    @ParametersAreNonnullByDefault
+    public interface DirectWriteControl {
+
+        boolean isDirectWriteAvailable();
+
+        boolean isDirectWriteMode();
+
+        void setDirectWriteMode(boolean directWriteMode);
+
+        boolean canRevertDirectWrites();
+
+        void revertDirectWrites();
+    }
 }
@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) ExBin Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.exbin.bined.intellij.gui;
+
+import org.exbin.auxiliary.binary_data.BinaryData;
+import org.exbin.bined.CodeAreaSection;
+import org.exbin.bined.intellij.data.OverlayEditableData;
+import org.exbin.bined.intellij.data.ProgressiveFileData;
+import org.exbin.bined.swing.CodeAreaColorAssessor;
+import org.exbin.bined.swing.CodeAreaPaintState;
+import org.exbin.bined.swing.section.SectCodeArea;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.swing.UIManager;
+import java.awt.Color;
+import java.util.Optional;
+
+/**
+ * Color assessor showing regions of data which are not loaded yet as
+ * placeholder.
+ * <p>
+ * Content cannot be edited while it is loading, so positions in code area
+ * match positions in loaded data.
+ *
+ * @author ExBin Project (https://exbin.org)
+ */
+@ParametersAreNonnullByDefault
+public class UnloadedDataColorAssessor implements CodeAreaColorAssessor {
+
+    private final SectCodeArea codeArea;
+    private final ProgressiveFileData data;
+    private final CodeAreaColorAssessor parentColorAssessor;
+    private boolean active = false;
+    private Color placeholderColor = Color.LIGHT_GRAY;
+
+    public UnloadedDataColorAssessor(SectCodeArea codeArea, ProgressiveFileData data, @Nullable CodeAreaColorAssessor parentColorAssessor) {
+        this.codeArea = codeArea;
+        this.data = data;
+        this.parentColorAssessor = parentColorAssessor;
+    }
+
+    @Override
+    public void startPaint(CodeAreaPaintState codeAreaPaintState) {
+        BinaryData contentData = codeArea.getContentData();
+        active = contentData instanceof OverlayEditableData && ((OverlayEditableData) contentData).getSource() == data && !data.isFullyLoaded();
+        if (active) {
+            // Painting reads regions which are not loaded yet as zeros, their text is hidden
+            data.allowUnloadedReads();
+            Color panelColor = UIManager.getColor("Panel.background");
+            placeholderColor = panelColor != null ? panelColor : Color.LIGHT_GRAY;
+        }
+        if (parentColorAssessor != null) {
+            parentColorAssessor.startPaint(codeAreaPaintState);
+        }
+    }
+
+    @Nullable
+    @Override
+    public Color getPositionBackgroundColor(long rowDataPosition, int byteOnRow, int charOnRow, CodeAreaSection section, boolean inSelection) {
+        if (isPlaceholder(rowDataPosition + byteOnRow)) {
+            return placeholderColor;
+        }
+
+        return parentColorAssessor != null ? parentColorAssessor.getPositionBackgroundColor(rowDataPosition, byteOnRow, charOnRow, section, inSelection) : null;
+    }
+
+    @Nullable
+    @Override
+    public Color getPositionTextColor(long rowDataPosition, int byteOnRow, int charOnRow, CodeAreaSection section, boolean inSelection) {
+        if (isPlaceholder(rowDataPosition + byteOnRow)) {
+            return placeholderColor;
+        }
+
+        return parentColorAssessor != null ? parentColorAssessor.getPositionTextColor(rowDataPosition, byteOnRow, charOnRow, section, inSelection) : null;
+    }
+
+    @Nonnull
+    @Override
+    public Optional<CodeAreaColorAssessor> getParentColorAssessor() {
+        return Optional.ofNullable(parentColorAssessor);
+    }
+
+    private boolean isPlaceholder(long position) {
+        return active && position < data.getDataSize() && !data.isLoaded(position);
+    }
+}
@@ -83,11 +83,12 @@ public final class DataDialog extends DialogWrapper {
 
     @Override
     protected void doOKAction() {
-        super.doOKAction();
-
+        // Data are passed before closing as dialog can release them on dispose
         if (setDataListener != null) {
             setDataListener.setData(editorComponent.getContentData());
         }
+
+        super.doOKAction();
     }
 
     @Nonnull
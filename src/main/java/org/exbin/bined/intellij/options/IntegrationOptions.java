@@ -47,4 +47,10 @@ public interface IntegrationOptions {
     boolean isRegisterByteToByteDiffTool();
 
     boolean isRegisterEditAsBinaryForDbColumn();
+
+    int getNativeFileSaveDelay();
+
+    int getOffHeapMemoryLimit();
+
+    int getPageMemoryBudget();
 }
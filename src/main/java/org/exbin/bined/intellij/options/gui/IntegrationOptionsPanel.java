@@ -27,6 +27,7 @@ import javax.swing.DefaultComboBoxModel;
 import javax.swing.DefaultListCellRenderer;
 import javax.swing.ImageIcon;
 import javax.swing.JList;
+import org.exbin.bined.intellij.data.PageBudget;
 import org.exbin.bined.intellij.options.impl.IntegrationOptionsImpl;
 import org.exbin.framework.App;
 import org.exbin.framework.language.api.LanguageModuleApi;
@@ -69,6 +70,9 @@ public class IntegrationOptionsPanel extends javax.swing.JPanel implements Optio
         options.setRegisterDebugViewAsBinary(openAsBinaryInDebugViewCheckBox.isSelected());
         options.setRegisterByteToByteDiffTool(byteToByteDiffToolCheckBox.isSelected());
         options.setRegisterEditAsBinaryForDbColumn(editAsBinaryForDbColumnCheckBox.isSelected());
+        options.setNativeFileSaveDelay((Integer) nativeFileSaveDelaySpinner.getValue());
+        options.setOffHeapMemoryLimit((Integer) offHeapMemoryLimitSpinner.getValue());
+        options.setPageMemoryBudget((Integer) pageMemoryBudgetSpinner.getValue());
     }
 
     @Override
@@ -90,6 +94,11 @@ public class IntegrationOptionsPanel extends javax.swing.JPanel implements Optio
         openAsBinaryInDebugViewCheckBox.setSelected(options.isRegisterDebugViewAsBinary());
         byteToByteDiffToolCheckBox.setSelected(options.isRegisterByteToByteDiffTool());
         editAsBinaryForDbColumnCheckBox.setSelected(options.isRegisterEditAsBinaryForDbColumn());
+        nativeFileSaveDelaySpinner.setValue(options.getNativeFileSaveDelay());
+        offHeapMemoryLimitSpinner.setValue(options.getOffHeapMemoryLimit());
+        pageMemoryBudgetSpinner.setValue(options.getPageMemoryBudget());
+        pageMemoryStatsLabel.setText(String.format(resourceBundle.getString("pageMemoryStatsLabel.text"),
+                PageBudget.getUsedSize() / (1024 * 1024), PageBudget.getHitCount(), PageBudget.getMissCount()));
     }
 
     public void setLanguageLocales(List<LanguageRecord> languageLocales) {
@@ -138,6 +147,13 @@ public class IntegrationOptionsPanel extends javax.swing.JPanel implements Optio
         nativeBinaryFileCheckBox = new javax.swing.JCheckBox();
         byteToByteDiffToolCheckBox = new javax.swing.JCheckBox();
         editAsBinaryForDbColumnCheckBox = new javax.swing.JCheckBox();
+        nativeFileSaveDelayLabel = new javax.swing.JLabel();
+        nativeFileSaveDelaySpinner = new javax.swing.JSpinner();
+        offHeapMemoryLimitLabel = new javax.swing.JLabel();
+        offHeapMemoryLimitSpinner = new javax.swing.JSpinner();
+        pageMemoryBudgetLabel = new javax.swing.JLabel();
+        pageMemoryBudgetSpinner = new javax.swing.JSpinner();
+        pageMemoryStatsLabel = new javax.swing.JLabel();
 
         languageComboBox.addItemListener(new java.awt.event.ItemListener() {
             public void itemStateChanged(java.awt.event.ItemEvent evt) {
@@ -209,6 +225,33 @@ public class IntegrationOptionsPanel extends javax.swing.JPanel implements Optio
             }
         });
 
+        nativeFileSaveDelayLabel.setText(resourceBundle.getString("nativeFileSaveDelayLabel.text")); // NOI18N
+
+        nativeFileSaveDelaySpinner.setModel(new javax.swing.SpinnerNumberModel(500, 0, 60000, 100));
+        nativeFileSaveDelaySpinner.addChangeListener(new javax.swing.event.ChangeListener() {
+            public void stateChanged(javax.swing.event.ChangeEvent evt) {
+                nativeFileSaveDelaySpinnerStateChanged(evt);
+            }
+        });
+
+        offHeapMemoryLimitLabel.setText(resourceBundle.getString("offHeapMemoryLimitLabel.text")); // NOI18N
+
+        offHeapMemoryLimitSpinner.setModel(new javax.swing.SpinnerNumberModel(256, 0, 65536, 64));
+        offHeapMemoryLimitSpinner.addChangeListener(new javax.swing.event.ChangeListener() {
+            public void stateChanged(javax.swing.event.ChangeEvent evt) {
+                offHeapMemoryLimitSpinnerStateChanged(evt);
+            }
+        });
+
+        pageMemoryBudgetLabel.setText(resourceBundle.getString("pageMemoryBudgetLabel.text")); // NOI18N
+
+        pageMemoryBudgetSpinner.setModel(new javax.swing.SpinnerNumberModel(1024, 64, 1048576, 64));
+        pageMemoryBudgetSpinner.addChangeListener(new javax.swing.event.ChangeListener() {
+            public void stateChanged(javax.swing.event.ChangeEvent evt) {
+                pageMemoryBudgetSpinnerStateChanged(evt);
+            }
+        });
+
         javax.swing.GroupLayout layout = new javax.swing.GroupLayout(this);
         this.setLayout(layout);
         layout.setHorizontalGroup(
@@ -227,7 +270,22 @@ public class IntegrationOptionsPanel extends javax.swing.JPanel implements Optio
                     .addGroup(layout.createSequentialGroup()
                         .addComponent(languageLabel)
                         .addGap(0, 0, Short.MAX_VALUE))
-                    .addComponent(nativeBinaryFileCheckBox, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE))
+                    .addComponent(nativeBinaryFileCheckBox, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
+                    .addGroup(layout.createSequentialGroup()
+                        .addComponent(nativeFileSaveDelayLabel)
+                        .addGap(0, 0, Short.MAX_VALUE))
+                    .addComponent(nativeFileSaveDelaySpinner, javax.swing.GroupLayout.Alignment.TRAILING)
+                    .addGroup(layout.createSequentialGroup()
+                        .addComponent(offHeapMemoryLimitLabel)
+                        .addGap(0, 0, Short.MAX_VALUE))
+                    .addComponent(offHeapMemoryLimitSpinner, javax.swing.GroupLayout.Alignment.TRAILING)
+                    .addGroup(layout.createSequentialGroup()
+                        .addComponent(pageMemoryBudgetLabel)
+                        .addGap(0, 0, Short.MAX_VALUE))
+                    .addComponent(pageMemoryBudgetSpinner, javax.swing.GroupLayout.Alignment.TRAILING)
+                    .addGroup(layout.createSequentialGroup()
+                        .addComponent(pageMemoryStatsLabel)
+                        .addGap(0, 0, Short.MAX_VALUE)))
                 .addContainerGap())
         );
         layout.setVerticalGroup(
@@ -253,6 +311,20 @@ public class IntegrationOptionsPanel extends javax.swing.JPanel implements Optio
                 .addComponent(byteToByteDiffToolCheckBox)
                 .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
                 .addComponent(editAsBinaryForDbColumnCheckBox)
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.UNRELATED)
+                .addComponent(nativeFileSaveDelayLabel)
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addComponent(nativeFileSaveDelaySpinner, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE)
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addComponent(offHeapMemoryLimitLabel)
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addComponent(offHeapMemoryLimitSpinner, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE)
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addComponent(pageMemoryBudgetLabel)
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addComponent(pageMemoryBudgetSpinner, javax.swing.GroupLayout.PREFERRED_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.PREFERRED_SIZE)
+                .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.RELATED)
+                .addComponent(pageMemoryStatsLabel)
                 .addContainerGap(javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE))
         );
     }// </editor-fold>//GEN-END:initComponents
@@ -293,6 +365,18 @@ public class IntegrationOptionsPanel extends javax.swing.JPanel implements Optio
         notifyModified();
     }//GEN-LAST:event_nativeBinaryFileCheckBoxStateChanged
 
+    private void nativeFileSaveDelaySpinnerStateChanged(javax.swing.event.ChangeEvent evt) {//GEN-FIRST:event_nativeFileSaveDelaySpinnerStateChanged
+        notifyModified();
+    }//GEN-LAST:event_nativeFileSaveDelaySpinnerStateChanged
+
+    private void offHeapMemoryLimitSpinnerStateChanged(javax.swing.event.ChangeEvent evt) {//GEN-FIRST:event_offHeapMemoryLimitSpinnerStateChanged
+        notifyModified();
+    }//GEN-LAST:event_offHeapMemoryLimitSpinnerStateChanged
+
+    private void pageMemoryBudgetSpinnerStateChanged(javax.swing.event.ChangeEvent evt) {//GEN-FIRST:event_pageMemoryBudgetSpinnerStateChanged
+        notifyModified();
+    }//GEN-LAST:event_pageMemoryBudgetSpinnerStateChanged
+
     /**
      * Test method for this panel.
      *
@@ -310,9 +394,16 @@ public class IntegrationOptionsPanel extends javax.swing.JPanel implements Optio
     private javax.swing.JComboBox<LanguageRecord> languageComboBox;
     private javax.swing.JLabel languageLabel;
     private javax.swing.JCheckBox nativeBinaryFileCheckBox;
+    private javax.swing.JLabel nativeFileSaveDelayLabel;
+    private javax.swing.JSpinner nativeFileSaveDelaySpinner;
+    private javax.swing.JLabel offHeapMemoryLimitLabel;
+    private javax.swing.JSpinner offHeapMemoryLimitSpinner;
     private javax.swing.JCheckBox openAsBinaryInDebugViewCheckBox;
     private javax.swing.JCheckBox openFileAsBinaryCheckBox;
     private javax.swing.JCheckBox openFileToolbarBinaryCheckBox;
+    private javax.swing.JLabel pageMemoryBudgetLabel;
+    private javax.swing.JSpinner pageMemoryBudgetSpinner;
+    private javax.swing.JLabel pageMemoryStatsLabel;
     // End of variables declaration//GEN-END:variables
 
     private void notifyModified() {
@@ -41,6 +41,9 @@ public class IntegrationOptionsImpl implements OptionsData, IntegrationOptions {
     private boolean registerByteToByteDiffTool = true;
 
     private boolean registerEditAsBinaryForDbColumn = true;
+    private int nativeFileSaveDelay = IntegrationPreferences.DEFAULT_NATIVE_FILE_SAVE_DELAY;
+    private int offHeapMemoryLimit = IntegrationPreferences.DEFAULT_OFF_HEAP_MEMORY_LIMIT;
+    private int pageMemoryBudget = IntegrationPreferences.DEFAULT_PAGE_MEMORY_BUDGET;
 
     @Nonnull
     @Override
@@ -124,6 +127,33 @@ public class IntegrationOptionsImpl implements OptionsData, IntegrationOptions {
         this.registerEditAsBinaryForDbColumn = registerEditAsBinaryForDbColumn;
     }
 
+    @Override
+    public int getNativeFileSaveDelay() {
+        return nativeFileSaveDelay;
+    }
+
+    public void setNativeFileSaveDelay(int nativeFileSaveDelay) {
+        this.nativeFileSaveDelay = nativeFileSaveDelay;
+    }
+
+    @Override
+    public int getOffHeapMemoryLimit() {
+        return offHeapMemoryLimit;
+    }
+
+    public void setOffHeapMemoryLimit(int offHeapMemoryLimit) {
+        this.offHeapMemoryLimit = offHeapMemoryLimit;
+    }
+
+    @Override
+    public int getPageMemoryBudget() {
+        return pageMemoryBudget;
+    }
+
+    public void setPageMemoryBudget(int pageMemoryBudget) {
+        this.pageMemoryBudget = pageMemoryBudget;
+    }
+
     public void loadFromPreferences(IntegrationPreferences preferences) {
         languageLocale = preferences.getLanguageLocale();
         registerFileMenuOpenAsBinary = preferences.isRegisterFileMenuOpenAsBinary();
@@ -134,6 +164,9 @@ public class IntegrationOptionsImpl implements OptionsData, IntegrationOptions {
         registerDebugViewAsBinary = preferences.isRegisterDebugViewAsBinary();
         registerByteToByteDiffTool = preferences.isRegisterByteToByteDiffTool();
         registerEditAsBinaryForDbColumn = preferences.isRegisterEditAsBinaryForDbColumn();
+        nativeFileSaveDelay = preferences.getNativeFileSaveDelay();
+        offHeapMemoryLimit = preferences.getOffHeapMemoryLimit();
+        pageMemoryBudget = preferences.getPageMemoryBudget();
     }
 
     public void saveToPreferences(IntegrationPreferences preferences) {
@@ -146,6 +179,9 @@ public class IntegrationOptionsImpl implements OptionsData, IntegrationOptions {
         preferences.setRegisterDebugViewAsBinary(registerDebugViewAsBinary);
         preferences.setRegisterByteToByteDiffTool(registerByteToByteDiffTool);
         preferences.setRegisterEditAsBinaryForDbColumn(registerEditAsBinaryForDbColumn);
+        preferences.setNativeFileSaveDelay(nativeFileSaveDelay);
+        preferences.setOffHeapMemoryLimit(offHeapMemoryLimit);
+        preferences.setPageMemoryBudget(pageMemoryBudget);
     }
 
     public void setOptions(IntegrationOptionsImpl options) {
@@ -158,5 +194,8 @@ public class IntegrationOptionsImpl implements OptionsData, IntegrationOptions {
         registerDebugViewAsBinary = options.isRegisterDebugViewAsBinary();
         registerByteToByteDiffTool = options.isRegisterByteToByteDiffTool();
         registerEditAsBinaryForDbColumn = options.isRegisterEditAsBinaryForDbColumn();
+        nativeFileSaveDelay = options.getNativeFileSaveDelay();
+        offHeapMemoryLimit = options.getOffHeapMemoryLimit();
+        pageMemoryBudget = options.getPageMemoryBudget();
     }
 }
@@ -44,6 +44,13 @@ public class IntegrationPreferences implements IntegrationOptions {
     public static final String PREFERENCES_REGISTER_BYTE_TO_BYTE_DIFF_TOOL = "registerByteToByteDiffTool";
 
     public static final String PREFERENCES_REGISTER_EDIT_AS_BINARY_FOR_DB_COLUMN = "registerEditAsBinaryForDbColumn";
+    public static final String PREFERENCES_NATIVE_FILE_SAVE_DELAY = "nativeFileSaveDelay";
+    public static final String PREFERENCES_OFF_HEAP_MEMORY_LIMIT = "offHeapMemoryLimit";
+    public static final String PREFERENCES_PAGE_MEMORY_BUDGET = "pageMemoryBudget";
+
+    public static final int DEFAULT_NATIVE_FILE_SAVE_DELAY = 500;
+    public static final int DEFAULT_OFF_HEAP_MEMORY_LIMIT = 256;
+    public static final int DEFAULT_PAGE_MEMORY_BUDGET = 1024;
 
     private final Preferences preferences;
 
@@ -190,4 +197,31 @@ public class IntegrationPreferences implements IntegrationOptions {
     public void setRegisterEditAsBinaryForDbColumn(boolean registerEditAsBinaryForDbColumn) {
         preferences.putBoolean(PREFERENCES_REGISTER_EDIT_AS_BINARY_FOR_DB_COLUMN, registerEditAsBinaryForDbColumn);
     }
+
+    @Override
+    public int getNativeFileSaveDelay() {
+        return preferences.getInt(PREFERENCES_NATIVE_FILE_SAVE_DELAY, DEFAULT_NATIVE_FILE_SAVE_DELAY);
+    }
+
+    public void setNativeFileSaveDelay(int nativeFileSaveDelay) {
+        preferences.putInt(PREFERENCES_NATIVE_FILE_SAVE_DELAY, nativeFileSaveDelay);
+    }
+
+    @Override
+    public int getOffHeapMemoryLimit() {
+        return preferences.getInt(PREFERENCES_OFF_HEAP_MEMORY_LIMIT, DEFAULT_OFF_HEAP_MEMORY_LIMIT);
+    }
+
+    public void setOffHeapMemoryLimit(int offHeapMemoryLimit) {
+        preferences.putInt(PREFERENCES_OFF_HEAP_MEMORY_LIMIT, offHeapMemoryLimit);
+    }
+
+    @Override
+    public int getPageMemoryBudget() {
+        return preferences.getInt(PREFERENCES_PAGE_MEMORY_BUDGET, DEFAULT_PAGE_MEMORY_BUDGET);
+    }
+
+    public void setPageMemoryBudget(int pageMemoryBudget) {
+        preferences.putInt(PREFERENCES_PAGE_MEMORY_BUDGET, pageMemoryBudget);
+    }
 }
@@ -25,7 +25,6 @@ import org.exbin.framework.bined.preferences.BinaryEditorPreferences;
 import org.exbin.framework.bined.search.SearchCondition;
 import org.exbin.framework.bined.search.SearchParameters;
 import org.exbin.framework.bined.search.service.BinarySearchService;
-import org.exbin.framework.bined.search.service.impl.BinarySearchServiceImpl;
 
 import javax.annotation.ParametersAreNonnullByDefault;
 import java.awt.BorderLayout;
@@ -48,7 +47,7 @@ public class BinEdComponentSearch implements BinEdComponentPanel.BinEdComponentE
         this.componentPanel = componentPanel;
         SectCodeArea codeArea = componentPanel.getCodeArea();
 
-        binarySearchService = new BinarySearchServiceImpl(codeArea);
+        binarySearchService = new ParallelBinarySearchService(codeArea);
         binarySearch.setBinarySearchService(binarySearchService);
         binarySearch.setPanelClosingListener(this::hideSearchPanel);
         binarySearch.setTargetComponent(componentPanel);
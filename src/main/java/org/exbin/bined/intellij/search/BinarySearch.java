@@ -15,6 +15,7 @@
  */
 package org.exbin.bined.intellij.search;
 
+import com.intellij.openapi.util.text.StringUtil;
 import org.exbin.auxiliary.binary_data.ByteArrayEditableData;
 import org.exbin.auxiliary.binary_data.EditableBinaryData;
 import org.exbin.bined.intellij.search.gui.BinarySearchPanel;
@@ -55,8 +56,7 @@ public class BinarySearch {
     private final ResourceBundle resourceBundle = App.getModule(LanguageModuleApi.class).getBundle(BinarySearch.class);
     private static final int DEFAULT_DELAY = 500;
 
-    private InvokeSearchThread invokeSearchThread;
-    private SearchThread searchThread;
+    private final BinarySearchScheduler searchScheduler = new BinarySearchScheduler();
 
     private SearchOperation currentSearchOperation = SearchOperation.FIND;
     private SearchParameters.SearchDirection currentSearchDirection = SearchParameters.SearchDirection.FORWARD;
@@ -74,30 +74,44 @@ public class BinarySearch {
     private final BinarySearchPanel binarySearchPanel = new BinarySearchPanel();
 
     public BinarySearch() {
-        searchStatusListener = new BinarySearchService.SearchStatusListener() {
+        searchStatusListener = new ParallelBinarySearchService.SearchProgressListener() {
+
+            private String statusText = "";
+            private String progressText = "";
+
             @Override
             public void setStatus(@Nonnull FoundMatches foundMatches, @Nonnull SearchParameters.MatchMode matchMode) {
                 BinarySearch.this.foundMatches = foundMatches;
                 switch (foundMatches.getMatchesCount()) {
                     case 0:
-                        binarySearchPanel.setInfoLabel(resourceBundle.getString("searchStatus.noMatch"));
+                        statusText = resourceBundle.getString("searchStatus.noMatch");
                         break;
                     case 1:
-                        binarySearchPanel.setInfoLabel(
-                                matchMode == SearchParameters.MatchMode.MULTIPLE ? resourceBundle.getString("searchStatus.singleMatch") : resourceBundle.getString("searchStatus.matchFound")
-                        );
+                        statusText = matchMode == SearchParameters.MatchMode.MULTIPLE ? resourceBundle.getString("searchStatus.singleMatch") : resourceBundle.getString("searchStatus.matchFound");
                         break;
                     default:
-                        binarySearchPanel.setInfoLabel(
-                                java.text.MessageFormat.format(resourceBundle.getString("searchStatus.foundMatches"), foundMatches.getMatchPosition() + 1, foundMatches.getMatchesCount())
-                        );
+                        statusText = java.text.MessageFormat.format(resourceBundle.getString("searchStatus.foundMatches"), foundMatches.getMatchPosition() + 1, foundMatches.getMatchesCount());
                         break;
                 }
+                binarySearchPanel.setInfoLabel(statusText + progressText);
                 updateMatchStatus();
             }
 
+            @Override
+            public void setProgress(long scannedSize, long totalSize, long bytesPerSecond) {
+                if (scannedSize >= totalSize) {
+                    progressText = "";
+                } else {
+                    int percent = (int) (scannedSize * 100 / totalSize);
+                    progressText = " " + java.text.MessageFormat.format(resourceBundle.getString("searchStatus.progress"), percent, StringUtil.formatFileSize(bytesPerSecond));
+                }
+                binarySearchPanel.setInfoLabel(statusText + progressText);
+            }
+
             @Override
             public void clearStatus() {
+                statusText = "";
+                progressText = "";
                 binarySearchPanel.setInfoLabel("");
                 BinarySearch.this.foundMatches = new FoundMatches();
                 updateMatchStatus();
@@ -323,26 +337,42 @@ public class BinarySearch {
     }
 
     private void invokeSearch(SearchOperation searchOperation, SearchParameters searchParameters, @Nullable ReplaceParameters replaceParameters, final int delay) {
-        if (invokeSearchThread != null) {
-            invokeSearchThread.interrupt();
-        }
-        invokeSearchThread = new InvokeSearchThread();
-        invokeSearchThread.delay = delay;
         currentSearchOperation = searchOperation;
         currentSearchParameters.setFromParameters(searchParameters);
         currentReplaceParameters.setFromParameters(replaceParameters);
-        invokeSearchThread.start();
+
+        // Search task works on its own copy of parameters
+        SearchParameters taskSearchParameters = new SearchParameters();
+        taskSearchParameters.setFromParameters(currentSearchParameters);
+        ReplaceParameters taskReplaceParameters = new ReplaceParameters();
+        taskReplaceParameters.setFromParameters(currentReplaceParameters);
+        searchScheduler.schedule(token -> performSearch(searchOperation, taskSearchParameters, taskReplaceParameters, token), delay);
     }
 
-    public void cancelSearch() {
-        if (invokeSearchThread != null) {
-            invokeSearchThread.interrupt();
-        }
-        if (searchThread != null) {
-            searchThread.interrupt();
+    private void performSearch(SearchOperation searchOperation, SearchParameters searchParameters, ReplaceParameters replaceParameters, SearchCancellationToken token) {
+        switch (searchOperation) {
+            case FIND:
+                if (binarySearchService instanceof ParallelBinarySearchService) {
+                    ((ParallelBinarySearchService) binarySearchService).performFind(searchParameters, searchStatusListener, token);
+                } else {
+                    binarySearchService.performFind(searchParameters, searchStatusListener);
+                }
+                break;
+            case FIND_AGAIN:
+                binarySearchService.performFindAgain(searchStatusListener);
+                break;
+            case REPLACE:
+                binarySearchService.performReplace(searchParameters, replaceParameters);
+                break;
+            default:
+                throw new UnsupportedOperationException("Not supported yet.");
         }
     }
 
+    public void cancelSearch() {
+        searchScheduler.cancel();
+    }
+
     public void clearSearch() {
         SearchCondition condition = currentSearchParameters.getCondition();
         condition.clear();
@@ -361,53 +391,6 @@ public class BinarySearch {
         invokeSearch(currentSearchOperation, DEFAULT_DELAY);
     }
 
-    private class InvokeSearchThread extends Thread {
-
-        private int delay = DEFAULT_DELAY;
-
-        public InvokeSearchThread() {
-            super("InvokeSearchThread");
-        }
-
-        @Override
-        public void run() {
-            try {
-                Thread.sleep(delay);
-                if (searchThread != null) {
-                    searchThread.interrupt();
-                }
-                searchThread = new SearchThread();
-                searchThread.start();
-            } catch (InterruptedException ex) {
-                // don't search
-            }
-        }
-    }
-
-    private class SearchThread extends Thread {
-
-        public SearchThread() {
-            super("SearchThread");
-        }
-
-        @Override
-        public void run() {
-            switch (currentSearchOperation) {
-                case FIND:
-                    binarySearchService.performFind(currentSearchParameters, searchStatusListener);
-                    break;
-                case FIND_AGAIN:
-                    binarySearchService.performFindAgain(searchStatusListener);
-                    break;
-                case REPLACE:
-                    binarySearchService.performReplace(currentSearchParameters, currentReplaceParameters);
-                    break;
-                default:
-                    throw new UnsupportedOperationException("Not supported yet.");
-            }
-        }
-    }
-
     public interface PanelClosingListener {
 
         void closed();
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) ExBin Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.exbin.bined.intellij.search;
+
+import com.intellij.util.concurrency.AppExecutorUtil;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.swing.Timer;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Scheduler of searches with delay for changes of the search condition.
+ * <p>
+ * Scheduled search is started after delay if no other search is scheduled
+ * meanwhile. Scheduling of new search cancels the running one. Searches of
+ * all editors share bounded executor. Methods are expected to be called from
+ * event dispatch thread.
+ *
+ * @author ExBin Project (https://exbin.org)
+ */
+@ParametersAreNonnullByDefault
+public class BinarySearchScheduler {
+
+    private static final ExecutorService SEARCH_EXECUTOR = AppExecutorUtil.createBoundedApplicationPoolExecutor("BinEd Search", 2);
+
+    private final Timer timer;
+    private SearchTask pendingTask = null;
+    private SearchCancellationToken runningToken = null;
+
+    public BinarySearchScheduler() {
+        timer = new Timer(0, e -> startPending());
+        timer.setRepeats(false);
+    }
+
+    /**
+     * Schedules search replacing previously scheduled search and cancelling
+     * the running one.
+     *
+     * @param task search task
+     * @param delay delay in milliseconds
+     */
+    public void schedule(SearchTask task, int delay) {
+        cancelRunning();
+        pendingTask = task;
+        timer.setInitialDelay(delay);
+        timer.restart();
+    }
+
+    /**
+     * Cancels scheduled and running search.
+     */
+    public void cancel() {
+        timer.stop();
+        pendingTask = null;
+        cancelRunning();
+    }
+
+    private void startPending() {
+        SearchTask task = pendingTask;
+        pendingTask = null;
+        if (task == null) {
+            return;
+        }
+
+        SearchCancellationToken token = new SearchCancellationToken();
+        runningToken = token;
+        SEARCH_EXECUTOR.execute(() -> {
+            if (token.isCancelled()) {
+                return;
+            }
+
+            try {
+                task.run(token);
+            } catch (CancellationException ex) {
+                // Search was replaced by newer one
+            } catch (Exception ex) {
+                Logger.getLogger(BinarySearchScheduler.class.getName()).log(Level.SEVERE, "Search failed", ex);
+            }
+        });
+    }
+
+    private void cancelRunning() {
+        if (runningToken != null) {
+            runningToken.cancel();
+            runningToken = null;
+        }
+    }
+
+    /**
+     * Search task.
+     */
+    @ParametersAreNonnullByDefault
+    public interface SearchTask {
+
+        /**
+         * Performs search.
+         *
+         * @param token cancellation token, search should stop when cancelled
+         */
+        void run(SearchCancellationToken token);
+    }
+}
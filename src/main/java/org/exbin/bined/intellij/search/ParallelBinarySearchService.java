@@ -0,0 +1,406 @@
+/*
+ * Copyright (C) ExBin Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.exbin.bined.intellij.search;
+
+import org.exbin.auxiliary.binary_data.BinaryData;
+import org.exbin.bined.CodeAreaUtils;
+import org.exbin.bined.highlight.swing.SearchCodeAreaColorAssessor;
+import org.exbin.bined.highlight.swing.SearchMatch;
+import org.exbin.bined.intellij.data.OverlayEditableData;
+import org.exbin.bined.intellij.search.matcher.CaseFoldingMatcher;
+import org.exbin.bined.intellij.search.matcher.SearchMatcher;
+import org.exbin.bined.intellij.search.matcher.SearchMatchers;
+import org.exbin.bined.swing.CodeAreaSwingUtils;
+import org.exbin.bined.swing.capability.ColorAssessorPainterCapable;
+import org.exbin.bined.swing.section.SectCodeArea;
+import org.exbin.framework.bined.search.SearchCondition;
+import org.exbin.framework.bined.search.SearchParameters;
+import org.exbin.framework.bined.search.service.impl.BinarySearchServiceImpl;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import javax.swing.SwingUtilities;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Binary search service performing searches using parallel search engine.
+ * <p>
+ * Searches for binary data and text are performed on bytes of the data in
+ * parallel, text ignoring case is matched by encoded case variants of its
+ * characters. Only text in stateful charsets, which don't encode characters
+ * independently, is searched by default implementation. Matcher of the last searched
+ * pattern is kept, so that repeated searches don't have to prepare shift
+ * tables again.
+ * <p>
+ * Matches are published to the code area and status listener while the
+ * search is still running, together with progress of the search if listener
+ * implements {@link SearchProgressListener}. Search can be stopped using
+ * {@link SearchCancellationToken}, results of cancelled search are not
+ * published.
+ * <p>
+ * Search runs outside of event dispatch thread, so editable content is
+ * searched in its snapshot taken on event dispatch thread together with
+ * caret position.
+ *
+ * @author ExBin Project (https://exbin.org)
+ */
+@ParametersAreNonnullByDefault
+public class ParallelBinarySearchService extends BinarySearchServiceImpl {
+
+    public static final int MAX_MATCHES_COUNT = 100;
+    public static final int PUBLISH_INTERVAL = 100;
+
+    private final SectCodeArea codeArea;
+    private final ParallelSearchEngine searchEngine = new ParallelSearchEngine();
+    private Object matcherKey = null;
+    private SearchMatcher matcher = null;
+
+    public ParallelBinarySearchService(SectCodeArea codeArea) {
+        super(codeArea);
+        this.codeArea = codeArea;
+    }
+
+    @Override
+    public void performFind(SearchParameters searchParameters, SearchStatusListener searchStatusListener) {
+        performFind(searchParameters, searchStatusListener, new SearchCancellationToken());
+    }
+
+    /**
+     * Performs find which can be cancelled.
+     * <p>
+     * Token is checked before each scanned chunk. Searches of text in
+     * stateful charsets handled by default implementation can be cancelled
+     * only before they start and their status is not reported after
+     * cancellation.
+     *
+     * @param searchParameters search parameters
+     * @param searchStatusListener search status listener
+     * @param token cancellation token
+     */
+    public void performFind(SearchParameters searchParameters, SearchStatusListener searchStatusListener, SearchCancellationToken token) {
+        if (token.isCancelled()) {
+            return;
+        }
+
+        SearchCondition condition = searchParameters.getCondition();
+        if (condition.isEmpty()) {
+            SwingUtilities.invokeLater(() -> {
+                if (!token.isCancelled()) {
+                    clearMatches();
+                    searchStatusListener.clearStatus();
+                }
+            });
+            return;
+        }
+
+        SearchMatcher searchMatcher = getMatcher(searchParameters);
+        if (searchMatcher == null) {
+            performDefaultFind(searchParameters, searchStatusListener, token);
+            return;
+        }
+        int patternLength = searchMatcher.getPatternLength();
+
+        searchStatusListener.clearStatus();
+        boolean forward = searchParameters.getSearchDirection() == SearchParameters.SearchDirection.FORWARD;
+        SearchedContent content = getSearchedContent();
+        long position;
+        if (searchParameters.isSearchFromCursor()) {
+            position = forward ? content.caretPosition : content.caretPosition - 1;
+        } else {
+            position = forward ? 0 : content.data.getDataSize() - patternLength;
+        }
+        SearchParameters lastSearchParameters = getLastSearchParameters();
+        lastSearchParameters.setFromParameters(searchParameters);
+        lastSearchParameters.setStartPosition(position);
+
+        int maxMatches = searchParameters.getMatchMode() == SearchParameters.MatchMode.SINGLE ? 1 : MAX_MATCHES_COUNT;
+        MatchesPublisher publisher = new MatchesPublisher(patternLength, forward, searchParameters.getMatchMode(), searchStatusListener, token);
+        try {
+            searchEngine.findAll(content.data, searchMatcher, position, forward, maxMatches, publisher, token);
+        } catch (CancellationException ex) {
+            // Search was replaced by newer one
+            return;
+        } finally {
+            if (content.snapshot) {
+                content.data.dispose();
+            }
+        }
+        publisher.finish();
+    }
+
+    /**
+     * Performs find by default implementation, which is not cancellable
+     * once started. Status of search cancelled meanwhile is not reported.
+     *
+     * @param searchParameters search parameters
+     * @param searchStatusListener search status listener
+     * @param token cancellation token
+     */
+    private void performDefaultFind(SearchParameters searchParameters, SearchStatusListener searchStatusListener, SearchCancellationToken token) {
+        super.performFind(searchParameters, new SearchStatusListener() {
+            @Override
+            public void setStatus(FoundMatches foundMatches, SearchParameters.MatchMode matchMode) {
+                if (!token.isCancelled()) {
+                    searchStatusListener.setStatus(foundMatches, matchMode);
+                }
+            }
+
+            @Override
+            public void clearStatus() {
+                if (!token.isCancelled()) {
+                    searchStatusListener.clearStatus();
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns content to search together with caret position.
+     * <p>
+     * Editable content is modified on event dispatch thread, so its snapshot
+     * is taken there.
+     *
+     * @return searched content
+     */
+    @Nonnull
+    private SearchedContent getSearchedContent() {
+        if (SwingUtilities.isEventDispatchThread()) {
+            return createSearchedContent();
+        }
+
+        SearchedContent[] content = new SearchedContent[1];
+        try {
+            SwingUtilities.invokeAndWait(() -> content[0] = createSearchedContent());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException();
+        } catch (InvocationTargetException ex) {
+            throw new IllegalStateException(ex.getCause());
+        }
+        return content[0];
+    }
+
+    @Nonnull
+    private SearchedContent createSearchedContent() {
+        long caretPosition = codeArea.getActiveCaretPosition().getDataPosition();
+        BinaryData contentData = codeArea.getContentData();
+        if (contentData instanceof OverlayEditableData) {
+            return new SearchedContent(((OverlayEditableData) contentData).createSnapshot(), caretPosition, true);
+        }
+        return new SearchedContent(contentData, caretPosition, false);
+    }
+
+    /**
+     * Returns matcher for search, matcher of the last pattern is reused.
+     *
+     * @param searchParameters search parameters
+     * @return matcher or null if search has to be performed by default
+     * implementation
+     */
+    @Nullable
+    private synchronized SearchMatcher getMatcher(SearchParameters searchParameters) {
+        SearchCondition condition = searchParameters.getCondition();
+        switch (condition.getSearchMode()) {
+            case TEXT: {
+                Charset charset = codeArea.getCharset();
+                if (searchParameters.isMatchCase()) {
+                    return getPatternMatcher(condition.getSearchText().getBytes(charset));
+                }
+
+                List<Object> key = Arrays.asList(condition.getSearchText(), charset);
+                if (!key.equals(matcherKey)) {
+                    matcher = CaseFoldingMatcher.forText(condition.getSearchText(), charset);
+                    matcherKey = key;
+                }
+                return matcher;
+            }
+            case BINARY: {
+                BinaryData searchData = condition.getBinaryData();
+                if (searchData == null || searchData.getDataSize() > Integer.MAX_VALUE) {
+                    return null;
+                }
+                byte[] pattern = new byte[(int) searchData.getDataSize()];
+                searchData.copyToArray(0, pattern, 0, pattern.length);
+                return getPatternMatcher(pattern);
+            }
+            default:
+                throw CodeAreaUtils.getInvalidTypeException(condition.getSearchMode());
+        }
+    }
+
+    @Nonnull
+    private SearchMatcher getPatternMatcher(byte[] pattern) {
+        ByteBuffer key = ByteBuffer.wrap(pattern);
+        if (matcher == null || !key.equals(matcherKey)) {
+            matcher = SearchMatchers.forPattern(pattern);
+            matcherKey = key;
+        }
+        return matcher;
+    }
+
+    /**
+     * Content searched by single search.
+     */
+    private static final class SearchedContent {
+
+        private final BinaryData data;
+        private final long caretPosition;
+        private final boolean snapshot;
+
+        SearchedContent(BinaryData data, long caretPosition, boolean snapshot) {
+            this.data = data;
+            this.caretPosition = caretPosition;
+            this.snapshot = snapshot;
+        }
+    }
+
+    /**
+     * Listener for progress of the search.
+     */
+    @ParametersAreNonnullByDefault
+    public interface SearchProgressListener extends SearchStatusListener {
+
+        /**
+         * Reports progress of the search.
+         *
+         * @param scannedSize size of already scanned data
+         * @param totalSize size of data to scan
+         * @param bytesPerSecond search throughput
+         */
+        void setProgress(long scannedSize, long totalSize, long bytesPerSecond);
+    }
+
+    /**
+     * Collects matches reported by search engine and publishes them to user
+     * interface in batches.
+     */
+    private class MatchesPublisher implements ParallelSearchEngine.SearchListener {
+
+        private final long matchLength;
+        private final boolean forward;
+        private final SearchParameters.MatchMode matchMode;
+        private final SearchStatusListener searchStatusListener;
+        private final SearchCancellationToken token;
+        private final List<SearchMatch> foundMatches = new ArrayList<>();
+        private final long startTime = System.nanoTime();
+        private long lastPublishTime = startTime;
+        private long scannedSize = 0;
+        private long totalSize = 0;
+        private boolean matchesChanged = false;
+        private boolean revealed = false;
+        // Count of matches shown in code area, accessed on event dispatch thread
+        private int publishedCount = 0;
+
+        MatchesPublisher(long matchLength, boolean forward, SearchParameters.MatchMode matchMode, SearchStatusListener searchStatusListener, SearchCancellationToken token) {
+            this.matchLength = matchLength;
+            this.forward = forward;
+            this.matchMode = matchMode;
+            this.searchStatusListener = searchStatusListener;
+            this.token = token;
+        }
+
+        @Override
+        public void matchesFound(long[] positions) {
+            List<SearchMatch> batch = new ArrayList<>(positions.length);
+            for (long position : positions) {
+                batch.add(new SearchMatch(position, matchLength));
+            }
+            if (forward) {
+                foundMatches.addAll(batch);
+            } else {
+                foundMatches.addAll(0, batch);
+            }
+            matchesChanged = true;
+            if (!revealed) {
+                // The first match is shown without waiting for publish interval
+                publish(false);
+            }
+        }
+
+        @Override
+        public void progressChanged(long scannedSize, long totalSize) {
+            this.scannedSize = scannedSize;
+            this.totalSize = totalSize;
+            if (System.nanoTime() - lastPublishTime >= PUBLISH_INTERVAL * 1000000L) {
+                publish(false);
+            }
+        }
+
+        public void finish() {
+            scannedSize = totalSize;
+            matchesChanged = true;
+            publish(true);
+        }
+
+        private void publish(boolean finished) {
+            if (token.isCancelled()) {
+                return;
+            }
+
+            long now = System.nanoTime();
+            lastPublishTime = now;
+            long elapsedTime = Math.max(1, now - startTime);
+            long bytesPerSecond = (long) (scannedSize / (elapsedTime / 1e9));
+            long currentScannedSize = scannedSize;
+            long currentTotalSize = totalSize;
+            List<SearchMatch> matches = matchesChanged ? new ArrayList<>(foundMatches) : null;
+            matchesChanged = false;
+            boolean reveal = !revealed && !foundMatches.isEmpty();
+            revealed |= reveal;
+
+            SwingUtilities.invokeLater(() -> {
+                if (token.isCancelled()) {
+                    return;
+                }
+
+                if (matches != null) {
+                    SearchCodeAreaColorAssessor searchAssessor = CodeAreaSwingUtils.findColorAssessor((ColorAssessorPainterCapable) codeArea.getPainter(), SearchCodeAreaColorAssessor.class);
+                    int currentIndex = publishedCount > 0 ? CodeAreaUtils.requireNonNull(searchAssessor).getCurrentMatchIndex() : -1;
+                    CodeAreaUtils.requireNonNull(searchAssessor).setMatches(matches);
+                    int matchPosition = -1;
+                    if (!matches.isEmpty()) {
+                        if (currentIndex >= 0) {
+                            // Matches are only added, match selected meanwhile by user is kept
+                            matchPosition = forward ? currentIndex : currentIndex + matches.size() - publishedCount;
+                        } else {
+                            matchPosition = forward ? 0 : matches.size() - 1;
+                        }
+                        searchAssessor.setCurrentMatchIndex(matchPosition);
+                        if (reveal) {
+                            // Caret is moved to the first match only, as it can be moved by user afterwards
+                            long matchDataPosition = matches.get(matchPosition).getPosition();
+                            codeArea.setActiveCaretPosition(matchDataPosition);
+                            codeArea.revealPosition(matchDataPosition, 0, codeArea.getActiveSection());
+                        }
+                    }
+                    publishedCount = matches.size();
+                    searchStatusListener.setStatus(new FoundMatches(matches.size(), matchPosition), matchMode);
+                    codeArea.repaint();
+                }
+                if (searchStatusListener instanceof SearchProgressListener) {
+                    ((SearchProgressListener) searchStatusListener).setProgress(finished ? currentTotalSize : currentScannedSize, currentTotalSize, bytesPerSecond);
+                }
+            });
+        }
+    }
+}
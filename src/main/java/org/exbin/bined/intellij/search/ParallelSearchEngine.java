@@ -0,0 +1,333 @@
+/*
+ * Copyright (C) ExBin Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.exbin.bined.intellij.search;
+
+import org.exbin.auxiliary.binary_data.BinaryData;
+import org.exbin.bined.intellij.data.GzipFileData;
+import org.exbin.bined.intellij.data.OverlayEditableData;
+import org.exbin.bined.intellij.search.matcher.SearchMatcher;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Search engine for exact byte sequences scanning data in parallel.
+ * <p>
+ * Data are processed in waves of chunks starting from the search position.
+ * Chunks of the wave are scanned by fork/join tasks using given
+ * {@link SearchMatcher}, each chunk is extended by pattern length so that
+ * matches crossing chunk boundary are found, and ordered results of chunks
+ * are merged. Next wave is started only if limit of matches was not reached
+ * yet. Matches of each wave are reported to listener as soon as the wave is
+ * finished, the first wave is a single chunk so that nearby matches are
+ * reported quickly. Cancellation token is checked before scanning of each
+ * chunk.
+ * <p>
+ * Chunks are read from data by worker threads, so default engine uses its
+ * own pool instead of common pool which is shared with non-blocking tasks.
+ * Data which have to be decoded sequentially, such as compressed data, are
+ * scanned chunk by chunk on calling thread instead, as parallel readers
+ * would only wait for each other.
+ *
+ * @author ExBin Project (https://exbin.org)
+ */
+@ParametersAreNonnullByDefault
+public class ParallelSearchEngine {
+
+    public static final int CHUNK_SIZE = 1024 * 1024;
+
+    private static final long[] NO_MATCHES = new long[0];
+    private static final ForkJoinPool SEARCH_POOL = new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors() - 1), pool -> {
+        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        thread.setName("BinEd Search " + thread.getPoolIndex());
+        thread.setDaemon(true);
+        return thread;
+    }, null, false);
+
+    private final ForkJoinPool pool;
+    private final int chunkSize;
+
+    public ParallelSearchEngine() {
+        this(SEARCH_POOL, CHUNK_SIZE);
+    }
+
+    public ParallelSearchEngine(ForkJoinPool pool, int chunkSize) {
+        this.pool = pool;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Finds positions of pattern in data.
+     *
+     * @param data searched data
+     * @param matcher matcher of searched pattern
+     * @param startPosition position of the first match candidate, the last
+     * one for backward search
+     * @param forward true for forward search
+     * @param maxMatches maximum number of matches
+     * @return positions of matches in ascending order, matches nearest to
+     * start position are returned if limit is reached
+     */
+    @Nonnull
+    public long[] findAll(BinaryData data, SearchMatcher matcher, long startPosition, boolean forward, int maxMatches) {
+        return findAll(data, matcher, startPosition, forward, maxMatches, null, null);
+    }
+
+    /**
+     * Finds positions of pattern in data reporting matches as they are
+     * found.
+     *
+     * @param data searched data
+     * @param matcher matcher of searched pattern
+     * @param startPosition position of the first match candidate, the last
+     * one for backward search
+     * @param forward true for forward search
+     * @param maxMatches maximum number of matches
+     * @param listener listener for matches and progress
+     * @param token cancellation token
+     * @return positions of matches in ascending order, matches nearest to
+     * start position are returned if limit is reached
+     * @throws CancellationException if search was cancelled
+     */
+    @Nonnull
+    public long[] findAll(BinaryData data, SearchMatcher matcher, long startPosition, boolean forward, int maxMatches, @Nullable SearchListener listener, @Nullable SearchCancellationToken token) {
+        long lastPosition = data.getDataSize() - matcher.getPatternLength();
+        if (lastPosition < 0 || maxMatches <= 0) {
+            return NO_MATCHES;
+        }
+
+        boolean parallel = isRandomAccess(data);
+        long fullWaveLength = parallel ? (long) chunkSize * pool.getParallelism() * 2 : chunkSize;
+        long waveLength = chunkSize;
+        long[] matches = NO_MATCHES;
+        long scannedSize = 0;
+        if (forward) {
+            long position = Math.max(0, startPosition);
+            long totalSize = Math.max(0, lastPosition + 1 - position);
+            while (position <= lastPosition && matches.length < maxMatches) {
+                if (token != null) {
+                    token.checkCancelled();
+                }
+                long waveEnd = Math.min(lastPosition + 1, position + waveLength);
+                long[] waveMatches = scanWave(data, matcher, position, waveEnd, true, maxMatches - matches.length, parallel, token);
+                matches = concat(matches, waveMatches, maxMatches, true);
+                scannedSize += waveEnd - position;
+                position = waveEnd;
+                waveLength = fullWaveLength;
+                if (listener != null) {
+                    notifyWave(listener, matches, waveMatches, scannedSize, totalSize, true);
+                }
+            }
+        } else {
+            long position = Math.min(lastPosition, startPosition);
+            long totalSize = Math.max(0, position + 1);
+            while (position >= 0 && matches.length < maxMatches) {
+                if (token != null) {
+                    token.checkCancelled();
+                }
+                long waveStart = Math.max(0, position + 1 - waveLength);
+                long[] waveMatches = scanWave(data, matcher, waveStart, position + 1, false, maxMatches - matches.length, parallel, token);
+                matches = concat(waveMatches, matches, maxMatches, false);
+                scannedSize += position + 1 - waveStart;
+                position = waveStart - 1;
+                waveLength = fullWaveLength;
+                if (listener != null) {
+                    notifyWave(listener, matches, waveMatches, scannedSize, totalSize, false);
+                }
+            }
+        }
+        return matches;
+    }
+
+    @Nonnull
+    private long[] scanWave(BinaryData data, SearchMatcher matcher, long start, long end, boolean forward, int maxMatches, boolean parallel, @Nullable SearchCancellationToken token) {
+        if (parallel) {
+            return pool.invoke(new ScanTask(data, matcher, start, end, forward, maxMatches, token));
+        }
+
+        // Wave of sequential data is a single chunk
+        return scanChunk(data, matcher, start, end, forward, maxMatches);
+    }
+
+    /**
+     * Returns true if data can be read from multiple threads at different
+     * positions without waiting for each other.
+     *
+     * @param data searched data
+     * @return true for random access data
+     */
+    private static boolean isRandomAccess(BinaryData data) {
+        BinaryData source = data instanceof OverlayEditableData ? ((OverlayEditableData) data).getSource() : data;
+        return !(source instanceof GzipFileData);
+    }
+
+    private static void notifyWave(SearchListener listener, long[] matches, long[] waveMatches, long scannedSize, long totalSize, boolean forward) {
+        if (waveMatches.length > 0) {
+            // Report only matches which were kept within the limit
+            int reported = Math.min(waveMatches.length, matches.length);
+            listener.matchesFound(forward ? Arrays.copyOf(waveMatches, reported) : Arrays.copyOfRange(waveMatches, waveMatches.length - reported, waveMatches.length));
+        }
+        listener.progressChanged(scannedSize, totalSize);
+    }
+
+    /**
+     * Scans chunk of data.
+     *
+     * @param data searched data
+     * @param matcher matcher of searched pattern
+     * @param start first match candidate position
+     * @param end position after the last match candidate
+     * @param forward true to collect matches from the start of chunk
+     * @param maxMatches maximum number of matches
+     * @return positions of matches in ascending order
+     */
+    @Nonnull
+    private static long[] scanChunk(BinaryData data, SearchMatcher matcher, long start, long end, boolean forward, int maxMatches) {
+        int candidates = (int) (end - start);
+        int length = candidates + matcher.getPatternLength() - 1;
+        byte[] buffer = new byte[length];
+        data.copyToArray(start, buffer, 0, length);
+
+        // Backward scan keeps the last matches of chunk in circular buffer
+        long[] matches = new long[Math.min(maxMatches, 16)];
+        int count = 0;
+        int offset = 0;
+        while (offset < candidates) {
+            int found = matcher.findNext(buffer, offset, candidates);
+            if (found < 0) {
+                break;
+            }
+            if (count == matches.length && matches.length < maxMatches) {
+                matches = Arrays.copyOf(matches, Math.min(maxMatches, count * 2));
+            }
+            matches[count % matches.length] = start + found;
+            count++;
+            if (forward && count == maxMatches) {
+                break;
+            }
+            offset = found + 1;
+        }
+
+        if (count <= matches.length) {
+            return Arrays.copyOf(matches, count);
+        }
+        long[] result = new long[matches.length];
+        int head = count % matches.length;
+        System.arraycopy(matches, head, result, 0, matches.length - head);
+        System.arraycopy(matches, 0, result, matches.length - head, head);
+        return result;
+    }
+
+    /**
+     * Concatenates ordered matches limiting their count.
+     *
+     * @param head preceding matches
+     * @param tail following matches
+     * @param maxMatches maximum number of matches
+     * @param keepHead true to drop matches from the end, false to drop them
+     * from the start
+     * @return merged matches
+     */
+    @Nonnull
+    private static long[] concat(long[] head, long[] tail, int maxMatches, boolean keepHead) {
+        if (tail.length == 0 && head.length <= maxMatches) {
+            return head;
+        }
+        if (head.length == 0 && tail.length <= maxMatches) {
+            return tail;
+        }
+
+        long[] merged = new long[head.length + tail.length];
+        System.arraycopy(head, 0, merged, 0, head.length);
+        System.arraycopy(tail, 0, merged, head.length, tail.length);
+        if (merged.length <= maxMatches) {
+            return merged;
+        }
+        return keepHead ? Arrays.copyOf(merged, maxMatches) : Arrays.copyOfRange(merged, merged.length - maxMatches, merged.length);
+    }
+
+    private class ScanTask extends RecursiveTask<long[]> {
+
+        private final BinaryData data;
+        private final SearchMatcher matcher;
+        private final long start;
+        private final long end;
+        private final boolean forward;
+        private final int maxMatches;
+        private final SearchCancellationToken token;
+
+        ScanTask(BinaryData data, SearchMatcher matcher, long start, long end, boolean forward, int maxMatches, @Nullable SearchCancellationToken token) {
+            this.data = data;
+            this.matcher = matcher;
+            this.start = start;
+            this.end = end;
+            this.forward = forward;
+            this.maxMatches = maxMatches;
+            this.token = token;
+        }
+
+        @Nonnull
+        @Override
+        protected long[] compute() {
+            if (end - start <= chunkSize) {
+                if (token != null) {
+                    token.checkCancelled();
+                }
+                return scanChunk(data, matcher, start, end, forward, maxMatches);
+            }
+
+            long middle = start + ((end - start) / 2 / chunkSize + 1) * chunkSize;
+            if (middle >= end) {
+                middle = start + (end - start) / 2;
+            }
+            ScanTask left = new ScanTask(data, matcher, start, middle, forward, maxMatches, token);
+            ScanTask right = new ScanTask(data, matcher, middle, end, forward, maxMatches, token);
+            left.fork();
+            long[] rightMatches = right.compute();
+            long[] leftMatches = left.join();
+            return concat(leftMatches, rightMatches, maxMatches, forward);
+        }
+    }
+
+    /**
+     * Listener for matches and progress of the search.
+     */
+    @ParametersAreNonnullByDefault
+    public interface SearchListener {
+
+        /**
+         * Reports batch of found matches. Batches are reported in order of
+         * search direction, positions within batch are in ascending order.
+         *
+         * @param positions positions of matches
+         */
+        void matchesFound(long[] positions);
+
+        /**
+         * Reports progress of the search.
+         *
+         * @param scannedSize size of already scanned data
+         * @param totalSize size of data to scan
+         */
+        void progressChanged(long scannedSize, long totalSize);
+    }
+}
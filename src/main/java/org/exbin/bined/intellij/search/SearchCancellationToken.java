@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) ExBin Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.exbin.bined.intellij.search;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Token for cancellation of running search.
+ * <p>
+ * Search checks token periodically and stops when it is cancelled.
+ *
+ * @author ExBin Project (https://exbin.org)
+ */
+@ParametersAreNonnullByDefault
+public class SearchCancellationToken {
+
+    private volatile boolean cancelled = false;
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Stops the search if token was cancelled.
+     *
+     * @throws CancellationException if token was cancelled
+     */
+    public void checkCancelled() {
+        if (cancelled) {
+            throw new CancellationException();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) ExBin Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.exbin.bined.intellij.search.matcher;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.Arrays;
+
+/**
+ * Horspool matcher shifting by pair of last bytes of window.
+ * <p>
+ * Used for patterns where the last byte is frequent within the pattern, such
+ * as UTF-16 text, so that shift by single byte would be short.
+ *
+ * @author ExBin Project (https://exbin.org)
+ */
+@ParametersAreNonnullByDefault
+public class BigramHorspoolMatcher implements SearchMatcher {
+
+    private static final int MAX_SHIFT = Character.MAX_VALUE;
+
+    private final byte[] pattern;
+    private final char[] shifts = new char[256 * 256];
+    private final int lastBigram;
+
+    public BigramHorspoolMatcher(byte[] pattern) {
+        if (pattern.length < 2) {
+            throw new IllegalArgumentException("Pattern too short");
+        }
+
+        this.pattern = pattern.clone();
+        int length = pattern.length;
+        Arrays.fill(shifts, (char) Math.min(length - 1, MAX_SHIFT));
+        for (int i = 0; i < length - 2; i++) {
+            int bigram = (pattern[i] & 0xff) << 8 | (pattern[i + 1] & 0xff);
+            shifts[bigram] = (char) Math.min(length - 2 - i, MAX_SHIFT);
+        }
+        lastBigram = (pattern[length - 2] & 0xff) << 8 | (pattern[length - 1] & 0xff);
+    }
+
+    @Override
+    public int getPatternLength() {
+        return pattern.length;
+    }
+
+    @Override
+    public int findNext(byte[] buffer, int from, int to) {
+        int lastIndex = pattern.length - 1;
+        int offset = from;
+        while (offset < to) {
+            int bigram = (buffer[offset + lastIndex - 1] & 0xff) << 8 | (buffer[offset + lastIndex] & 0xff);
+            if (bigram == lastBigram && SearchMatchers.regionMatches(buffer, offset, pattern, 0, lastIndex - 1)) {
+                return offset;
+            }
+            offset += shifts[bigram];
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright (C) ExBin Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.exbin.bined.intellij.search.matcher;
+
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Matcher of text ignoring case of characters.
+ * <p>
+ * Each character of the text is matched by encoded case variants which have
+ * the same length in bytes as the character itself, so that the pattern has
+ * fixed length. Window is shifted as in Boyer-Moore-Horspool algorithm by
+ * the last byte of window, using shifts of all variants, and candidate is
+ * then verified character by character. Byte order mark which charset
+ * writes before text is not part of the pattern.
+ *
+ * @author ExBin Project (https://exbin.org)
+ */
+@ParametersAreNonnullByDefault
+public class CaseFoldingMatcher implements SearchMatcher {
+
+    private final int patternLength;
+    private final int[] characterOffsets;
+    private final byte[][][] characterVariants;
+    private final long[] lastBytes = new long[4];
+    private final int[] shifts = new int[256];
+
+    private CaseFoldingMatcher(List<byte[][]> variants) {
+        characterVariants = variants.toArray(new byte[0][][]);
+        characterOffsets = new int[characterVariants.length + 1];
+        for (int i = 0; i < characterVariants.length; i++) {
+            characterOffsets[i + 1] = characterOffsets[i] + characterVariants[i][0].length;
+        }
+        patternLength = characterOffsets[characterVariants.length];
+
+        Arrays.fill(shifts, patternLength);
+        for (int i = 0; i < characterVariants.length; i++) {
+            for (byte[] variant : characterVariants[i]) {
+                for (int j = 0; j < variant.length; j++) {
+                    int position = characterOffsets[i] + j;
+                    int value = variant[j] & 0xff;
+                    if (position < patternLength - 1) {
+                        shifts[value] = Math.min(shifts[value], patternLength - 1 - position);
+                    } else {
+                        lastBytes[value >>> 6] |= 1L << value;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates matcher of given text encoded by given charset.
+     *
+     * @param text non-empty text
+     * @param charset charset
+     * @return matcher or null if charset doesn't encode characters
+     * independently, as stateful charsets
+     */
+    @Nullable
+    public static CaseFoldingMatcher forText(String text, Charset charset) {
+        if (text.isEmpty()) {
+            throw new IllegalArgumentException("Empty pattern");
+        }
+
+        CharsetEncoder encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        int markLength = getByteOrderMarkLength(encoder, charset);
+        if (markLength < 0) {
+            return null;
+        }
+        List<byte[][]> variants = new ArrayList<>();
+        ByteArrayOutputStream encodedText = new ByteArrayOutputStream();
+        int index = 0;
+        while (index < text.length()) {
+            int codePoint = text.codePointAt(index);
+            index += Character.charCount(codePoint);
+            byte[] encoded = encode(encoder, codePoint, markLength);
+            if (encoded == null) {
+                return null;
+            }
+            encodedText.write(encoded, 0, encoded.length);
+
+            List<byte[]> characterVariants = new ArrayList<>();
+            characterVariants.add(encoded);
+            for (int variantCodePoint : new int[]{Character.toLowerCase(codePoint), Character.toUpperCase(codePoint), Character.toTitleCase(codePoint)}) {
+                if (variantCodePoint == codePoint || !encoder.canEncode(new String(Character.toChars(variantCodePoint)))) {
+                    continue;
+                }
+                byte[] variant = encode(encoder, variantCodePoint, markLength);
+                if (variant != null && variant.length == encoded.length && !containsVariant(characterVariants, variant)) {
+                    characterVariants.add(variant);
+                }
+            }
+            variants.add(characterVariants.toArray(new byte[0][]));
+        }
+
+        // Characters encoded separately must form encoding of the whole text
+        byte[] textBytes = text.getBytes(charset);
+        if (!Arrays.equals(encodedText.toByteArray(), Arrays.copyOfRange(textBytes, Math.min(markLength, textBytes.length), textBytes.length))) {
+            return null;
+        }
+        return new CaseFoldingMatcher(variants);
+    }
+
+    @Override
+    public int getPatternLength() {
+        return patternLength;
+    }
+
+    @Override
+    public int findNext(byte[] buffer, int from, int to) {
+        int lastIndex = patternLength - 1;
+        int offset = from;
+        while (offset < to) {
+            int value = buffer[offset + lastIndex] & 0xff;
+            if ((lastBytes[value >>> 6] & (1L << value)) != 0 && matchesAt(buffer, offset)) {
+                return offset;
+            }
+            offset += shifts[value];
+        }
+        return -1;
+    }
+
+    private boolean matchesAt(byte[] buffer, int offset) {
+        for (int i = 0; i < characterVariants.length; i++) {
+            int characterOffset = offset + characterOffsets[i];
+            boolean matches = false;
+            for (byte[] variant : characterVariants[i]) {
+                if (SearchMatchers.regionMatches(buffer, characterOffset, variant, 0, variant.length)) {
+                    matches = true;
+                    break;
+                }
+            }
+            if (!matches) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns length of byte order mark which charset writes before encoded
+     * text.
+     *
+     * @return length or -1 if charset doesn't encode characters independently
+     */
+    private static int getByteOrderMarkLength(CharsetEncoder encoder, Charset charset) {
+        byte[] single = encode(encoder, 'a', 0);
+        if (single == null) {
+            return -1;
+        }
+        byte[] repeated = "aa".getBytes(charset);
+        int markLength = single.length * 2 - repeated.length;
+        if (markLength < 0 || markLength >= single.length || !Arrays.equals(single, 0, markLength, repeated, 0, markLength)) {
+            return -1;
+        }
+        return markLength;
+    }
+
+    /**
+     * Encodes single character without byte order mark.
+     */
+    @Nullable
+    private static byte[] encode(CharsetEncoder encoder, int codePoint, int markLength) {
+        try {
+            encoder.reset();
+            ByteBuffer buffer = encoder.encode(CharBuffer.wrap(Character.toChars(codePoint)));
+            if (buffer.remaining() <= markLength) {
+                return null;
+            }
+            buffer.position(buffer.position() + markLength);
+            byte[] encoded = new byte[buffer.remaining()];
+            buffer.get(encoded);
+            return encoded;
+        } catch (CharacterCodingException ex) {
+            return null;
+        }
+    }
+
+    private static boolean containsVariant(List<byte[]> variants, byte[] variant) {
+        for (byte[] existingVariant : variants) {
+            if (Arrays.equals(existingVariant, variant)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) ExBin Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.exbin.bined.intellij.search.matcher;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * Matcher scanning for the first byte of pattern and comparing the rest.
+ * <p>
+ * Suitable for short patterns, where skip tables cannot skip much.
+ *
+ * @author ExBin Project (https://exbin.org)
+ */
+@ParametersAreNonnullByDefault
+public class FirstByteMatcher implements SearchMatcher {
+
+    private final byte[] pattern;
+
+    public FirstByteMatcher(byte[] pattern) {
+        this.pattern = pattern.clone();
+    }
+
+    @Override
+    public int getPatternLength() {
+        return pattern.length;
+    }
+
+    @Override
+    public int findNext(byte[] buffer, int from, int to) {
+        byte first = pattern[0];
+        for (int offset = from; offset < to; offset++) {
+            if (buffer[offset] == first && SearchMatchers.regionMatches(buffer, offset, pattern, 1, pattern.length)) {
+                return offset;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) ExBin Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.exbin.bined.intellij.search.matcher;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.Arrays;
+
+/**
+ * Boyer-Moore-Horspool matcher.
+ * <p>
+ * Window is shifted by distance of the last byte of window from its last
+ * occurrence in the pattern, so that on average only a fraction of bytes is
+ * examined for longer patterns.
+ *
+ * @author ExBin Project (https://exbin.org)
+ */
+@ParametersAreNonnullByDefault
+public class HorspoolMatcher implements SearchMatcher {
+
+    private final byte[] pattern;
+    private final int[] shifts = new int[256];
+
+    public HorspoolMatcher(byte[] pattern) {
+        this.pattern = pattern.clone();
+        int length = pattern.length;
+        Arrays.fill(shifts, length);
+        for (int i = 0; i < length - 1; i++) {
+            shifts[pattern[i] & 0xff] = length - 1 - i;
+        }
+    }
+
+    @Override
+    public int getPatternLength() {
+        return pattern.length;
+    }
+
+    @Override
+    public int findNext(byte[] buffer, int from, int to) {
+        int lastIndex = pattern.length - 1;
+        byte last = pattern[lastIndex];
+        int offset = from;
+        while (offset < to) {
+            byte value = buffer[offset + lastIndex];
+            if (value == last && SearchMatchers.regionMatches(buffer, offset, pattern, 0, lastIndex)) {
+                return offset;
+            }
+            offset += shifts[value & 0xff];
+        }
+        return -1;
+    }
+}
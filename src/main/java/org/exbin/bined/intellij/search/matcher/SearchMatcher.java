@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) ExBin Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.exbin.bined.intellij.search.matcher;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * Matcher of exact byte pattern in buffer.
+ * <p>
+ * Implementations are immutable and can be shared by multiple threads.
+ *
+ * @author ExBin Project (https://exbin.org)
+ */
+@ParametersAreNonnullByDefault
+public interface SearchMatcher {
+
+    /**
+     * Returns length of the pattern.
+     *
+     * @return length in bytes
+     */
+    int getPatternLength();
+
+    /**
+     * Finds the first match starting in given range of buffer.
+     *
+     * @param buffer buffer, which must contain pattern length - 1 bytes
+     * after the end of range
+     * @param from first candidate offset
+     * @param to offset after the last candidate
+     * @return offset of match or -1 if not found
+     */
+    int findNext(byte[] buffer, int from, int to);
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) ExBin Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.exbin.bined.intellij.search.matcher;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.lang.reflect.Constructor;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Selection of search matcher for pattern.
+ *
+ * @author ExBin Project (https://exbin.org)
+ */
+@ParametersAreNonnullByDefault
+public class SearchMatchers {
+
+    /**
+     * Minimal length of pattern for which skip based matchers are used.
+     */
+    public static final int MIN_SKIP_LENGTH = 12;
+    /**
+     * Minimal length of pattern for which shifts by pairs of bytes are used.
+     */
+    public static final int MIN_BIGRAM_LENGTH = 16;
+
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+    private static final String VECTOR_MATCHER_CLASS = "org.exbin.bined.intellij.search.matcher.VectorFirstByteMatcher";
+
+    private SearchMatchers() {
+    }
+
+    /**
+     * Returns whether SIMD matcher is available, which requires JVM started
+     * with module jdk.incubator.vector.
+     *
+     * @return true if available
+     */
+    public static boolean isVectorMatcherAvailable() {
+        return VectorSupport.CONSTRUCTOR != null;
+    }
+
+    /**
+     * Creates matcher suitable for given pattern.
+     * <p>
+     * Short patterns are matched by first byte, using SIMD filter of first
+     * and last byte if available. Patterns with small alphabet
+     * use Two-Way algorithm, which is linear for repetitive data. Patterns
+     * with frequent last byte use shifts by pairs of bytes and other patterns
+     * use Boyer-Moore-Horspool algorithm.
+     *
+     * @param pattern non-empty pattern
+     * @return matcher
+     */
+    @Nonnull
+    public static SearchMatcher forPattern(byte[] pattern) {
+        int length = pattern.length;
+        if (length == 0) {
+            throw new IllegalArgumentException("Empty pattern");
+        }
+        if (length < MIN_SKIP_LENGTH) {
+            if (VectorSupport.CONSTRUCTOR != null) {
+                try {
+                    return VectorSupport.CONSTRUCTOR.newInstance((Object) pattern);
+                } catch (ReflectiveOperationException ex) {
+                    Logger.getLogger(SearchMatchers.class.getName()).log(Level.WARNING, "Unable to create vector matcher", ex);
+                }
+            }
+            return new FirstByteMatcher(pattern);
+        }
+
+        boolean[] present = new boolean[256];
+        int distinctCount = 0;
+        for (byte value : pattern) {
+            if (!present[value & 0xff]) {
+                present[value & 0xff] = true;
+                distinctCount++;
+            }
+        }
+        if (distinctCount <= 2 || distinctCount * 4 < length) {
+            return new TwoWayMatcher(pattern);
+        }
+
+        if (length >= MIN_BIGRAM_LENGTH) {
+            int lastShift = length - 1;
+            byte last = pattern[length - 1];
+            for (int i = length - 2; i >= 0; i--) {
+                if (pattern[i] == last) {
+                    lastShift = length - 1 - i;
+                    break;
+                }
+            }
+            if (lastShift * 4 < length) {
+                return new BigramHorspoolMatcher(pattern);
+            }
+        }
+        return new HorspoolMatcher(pattern);
+    }
+
+    /**
+     * Compares part of pattern with buffer.
+     *
+     * @param buffer buffer
+     * @param offset offset of pattern start in buffer
+     * @param pattern pattern
+     * @param from first compared index of pattern
+     * @param to index after the last compared index of pattern
+     * @return true if bytes are equal
+     */
+    public static boolean regionMatches(byte[] buffer, int offset, byte[] pattern, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buffer[offset + i] != pattern[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Lazily detected support of Vector API. Matcher class is loaded by
+     * reflection, so that classes of incubator module are not linked when the
+     * module is not present.
+     */
+    private static final class VectorSupport {
+
+        private static final Constructor<? extends SearchMatcher> CONSTRUCTOR = findConstructor();
+
+        @Nullable
+        private static Constructor<? extends SearchMatcher> findConstructor() {
+            if (ModuleLayer.boot().findModule(VECTOR_MODULE).isEmpty()) {
+                return null;
+            }
+
+            try {
+                Constructor<? extends SearchMatcher> constructor = Class.forName(VECTOR_MATCHER_CLASS).asSubclass(SearchMatcher.class).getConstructor(byte[].class);
+                // Verify that vector operations are usable on this platform
+                constructor.newInstance((Object) new byte[]{0}).findNext(new byte[1], 0, 1);
+                return constructor;
+            } catch (ReflectiveOperationException | LinkageError | RuntimeException ex) {
+                Logger.getLogger(SearchMatchers.class.getName()).log(Level.INFO, "Vector API not available, using scalar search", ex);
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) ExBin Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.exbin.bined.intellij.search.matcher;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * Two-Way matcher of Crochemore and Perrin.
+ * <p>
+ * Pattern is split by critical factorization and window is compared right
+ * part first, which guarantees linear time even for periodic patterns and
+ * data, where Horspool degrades. Window is additionally shifted by the last
+ * byte of window as in Horspool algorithm.
+ *
+ * @author ExBin Project (https://exbin.org)
+ */
+@ParametersAreNonnullByDefault
+public class TwoWayMatcher implements SearchMatcher {
+
+    private final byte[] pattern;
+    private final int[] shifts = new int[256];
+    private final int criticalPosition;
+    private final int period;
+    private final boolean periodic;
+
+    public TwoWayMatcher(byte[] pattern) {
+        this.pattern = pattern.clone();
+        int length = pattern.length;
+        for (int i = 0; i < length; i++) {
+            shifts[pattern[i] & 0xff] = i + 1;
+        }
+
+        // Critical factorization is given by the longer of maximal suffixes for both orderings
+        int[] forwardSuffix = maximalSuffix(pattern, false);
+        int[] reverseSuffix = maximalSuffix(pattern, true);
+        int[] maximalSuffix = reverseSuffix[0] > forwardSuffix[0] ? reverseSuffix : forwardSuffix;
+        int suffix = maximalSuffix[0];
+        int suffixPeriod = maximalSuffix[1];
+
+        criticalPosition = suffix;
+        if (suffixPeriod + suffix + 1 <= length && SearchMatchers.regionMatches(pattern, suffixPeriod, pattern, 0, suffix + 1)) {
+            periodic = true;
+            period = suffixPeriod;
+        } else {
+            periodic = false;
+            period = Math.max(suffix + 1, length - suffix - 1) + 1;
+        }
+    }
+
+    /**
+     * Computes maximal suffix of pattern for given byte ordering.
+     *
+     * @param pattern pattern
+     * @param reversed true for reversed byte ordering
+     * @return position before the suffix and period of the suffix
+     */
+    @Nonnull
+    private static int[] maximalSuffix(byte[] pattern, boolean reversed) {
+        int length = pattern.length;
+        int suffix = -1;
+        int candidate = 0;
+        int offset = 1;
+        int suffixPeriod = 1;
+        while (candidate + offset < length) {
+            int first = pattern[suffix + offset] & 0xff;
+            int second = pattern[candidate + offset] & 0xff;
+            if (first == second) {
+                if (offset == suffixPeriod) {
+                    candidate += suffixPeriod;
+                    offset = 1;
+                } else {
+                    offset++;
+                }
+            } else if (reversed ? first < second : first > second) {
+                candidate += offset;
+                offset = 1;
+                suffixPeriod = candidate - suffix;
+            } else {
+                suffix = candidate++;
+                offset = 1;
+                suffixPeriod = 1;
+            }
+        }
+        return new int[]{suffix, suffixPeriod};
+    }
+
+    @Override
+    public int getPatternLength() {
+        return pattern.length;
+    }
+
+    @Override
+    public int findNext(byte[] buffer, int from, int to) {
+        int length = pattern.length;
+        int rightStart = criticalPosition + 1;
+        int memoryReset = periodic ? length - period : 0;
+        int memory = 0;
+        int offset = from;
+        while (offset < to) {
+            int shift = length - shifts[buffer[offset + length - 1] & 0xff];
+            if (shift == length) {
+                // Last byte of window doesn't occur in pattern
+                offset += length;
+                memory = 0;
+                continue;
+            }
+            if (shift > 0) {
+                offset += Math.max(shift, memory);
+                memory = 0;
+                continue;
+            }
+
+            int index = Math.max(rightStart, memory);
+            while (index < length && pattern[index] == buffer[offset + index]) {
+                index++;
+            }
+            if (index < length) {
+                offset += index - criticalPosition;
+                memory = 0;
+                continue;
+            }
+
+            index = rightStart;
+            while (index > memory && pattern[index - 1] == buffer[offset + index - 1]) {
+                index--;
+            }
+            if (index <= memory) {
+                return offset;
+            }
+            offset += period;
+            memory = memoryReset;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright (C) ExBin Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.exbin.bined.intellij.data;
+
+import org.exbin.auxiliary.binary_data.ByteArrayData;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.Deflater;
+import java.util.zip.ZipException;
+
+/**
+ * Tests for deflate decoder comparing decoded data with data compressed by
+ * {@link Deflater}.
+ *
+ * @author ExBin Project (https://exbin.org)
+ */
+@ParametersAreNonnullByDefault
+public class DeflateDecoderTest {
+
+    private static final int BLOCK_TYPE_STORED = 0;
+    private static final int BLOCK_TYPE_FIXED = 1;
+    private static final int BLOCK_TYPE_DYNAMIC = 2;
+
+    @Test
+    public void testStoredBlocks() throws ZipException {
+        byte[] data = createText(new Random(1), 200000);
+        byte[] compressed = deflate(data, Deflater.NO_COMPRESSION);
+        Assert.assertEquals(BLOCK_TYPE_STORED, getFirstBlockType(compressed));
+        Assert.assertArrayEquals(data, decode(compressed, new Random(2)));
+    }
+
+    @Test
+    public void testFixedBlock() throws ZipException {
+        byte[] data = "Short text, short text, short text.".getBytes(StandardCharsets.US_ASCII);
+        byte[] compressed = deflate(data, Deflater.DEFAULT_COMPRESSION);
+        Assert.assertEquals(BLOCK_TYPE_FIXED, getFirstBlockType(compressed));
+        Assert.assertArrayEquals(data, decode(compressed, new Random(3)));
+    }
+
+    @Test
+    public void testDynamicBlocks() throws ZipException {
+        byte[] data = createText(new Random(4), 1000000);
+        byte[] compressed = deflate(data, Deflater.BEST_COMPRESSION);
+        Assert.assertEquals(BLOCK_TYPE_DYNAMIC, getFirstBlockType(compressed));
+        Assert.assertArrayEquals(data, decode(compressed, new Random(5)));
+    }
+
+    @Test
+    public void testMixedBlocks() throws ZipException {
+        Random random = new Random(6);
+        byte[] data = createText(random, 600000);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        Deflater deflater = new Deflater(Deflater.NO_COMPRESSION, true);
+        byte[] buffer = new byte[65536];
+        int[] levels = {Deflater.NO_COMPRESSION, Deflater.BEST_SPEED, Deflater.BEST_COMPRESSION};
+        int position = 0;
+        for (int part = 0; position < data.length; part++) {
+            int length = Math.min(data.length - position, 50000 + random.nextInt(50000));
+            deflater.setLevel(levels[part % levels.length]);
+            deflater.setInput(data, position, length);
+            position += length;
+            int flush = part % 2 == 0 ? Deflater.SYNC_FLUSH : Deflater.FULL_FLUSH;
+            int deflated;
+            do {
+                deflated = deflater.deflate(buffer, 0, buffer.length, flush);
+                output.write(buffer, 0, deflated);
+            } while (deflated == buffer.length);
+        }
+        deflater.finish();
+        while (!deflater.finished()) {
+            output.write(buffer, 0, deflater.deflate(buffer));
+        }
+        deflater.end();
+
+        Assert.assertArrayEquals(data, decode(output.toByteArray(), random));
+    }
+
+    @Test
+    public void testRepetitiveData() throws ZipException {
+        byte[] data = new byte[300000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i % 251 == 0 ? i / 251 : 'a');
+        }
+        Assert.assertArrayEquals(data, decode(deflate(data, Deflater.BEST_COMPRESSION), new Random(7)));
+    }
+
+    @Test
+    public void testEmptyStream() throws ZipException {
+        DeflateDecoder decoder = new DeflateDecoder(new ByteArrayData(deflate(new byte[0], Deflater.DEFAULT_COMPRESSION)), 0, null);
+        Assert.assertEquals(-1, decoder.read(new byte[16], 0, 16));
+        Assert.assertTrue(decoder.isFinished());
+        Assert.assertEquals(0, decoder.getOutputPosition());
+    }
+
+    @Test
+    public void testSkip() throws ZipException {
+        byte[] data = createText(new Random(8), 500000);
+        byte[] compressed = deflate(data, Deflater.DEFAULT_COMPRESSION);
+        DeflateDecoder decoder = new DeflateDecoder(new ByteArrayData(compressed), 0, null);
+        Assert.assertEquals(300000, decoder.skip(300000));
+        byte[] buffer = new byte[1000];
+        Assert.assertEquals(buffer.length, decoder.read(buffer, 0, buffer.length));
+        Assert.assertArrayEquals(Arrays.copyOfRange(data, 300000, 301000), buffer);
+        Assert.assertEquals(data.length - 301000, decoder.skip(Long.MAX_VALUE));
+        Assert.assertTrue(decoder.isFinished());
+        Assert.assertEquals(compressed.length, decoder.getInputEndPosition());
+    }
+
+    @Test(expected = ZipException.class)
+    public void testInvalidBlockType() throws ZipException {
+        // Final block with reserved block type 3
+        DeflateDecoder decoder = new DeflateDecoder(new ByteArrayData(new byte[]{7, 0, 0, 0}), 0, null);
+        decoder.read(new byte[16], 0, 16);
+    }
+
+    /**
+     * Decodes whole stream using reads of random length.
+     *
+     * @param compressed raw deflate data
+     * @param random random generator
+     * @return decoded data
+     * @throws ZipException if data are invalid
+     */
+    @Nonnull
+    static byte[] decode(byte[] compressed, Random random) throws ZipException {
+        DeflateDecoder decoder = new DeflateDecoder(new ByteArrayData(compressed), 0, null);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] buffer = new byte[100000];
+        int read;
+        while ((read = decoder.read(buffer, 0, 1 + random.nextInt(buffer.length))) >= 0) {
+            output.write(buffer, 0, read);
+        }
+        Assert.assertTrue(decoder.isFinished());
+        Assert.assertEquals(compressed.length, decoder.getInputEndPosition());
+        return output.toByteArray();
+    }
+
+    @Nonnull
+    static byte[] deflate(byte[] data, int level) {
+        Deflater deflater = new Deflater(level, true);
+        deflater.setInput(data);
+        deflater.finish();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] buffer = new byte[65536];
+        while (!deflater.finished()) {
+            output.write(buffer, 0, deflater.deflate(buffer));
+        }
+        deflater.end();
+        return output.toByteArray();
+    }
+
+    /**
+     * Creates compressible text of random words.
+     *
+     * @param random random generator
+     * @param length length of text
+     * @return text bytes
+     */
+    @Nonnull
+    static byte[] createText(Random random, int length) {
+        String[] words = new String[500];
+        for (int i = 0; i < words.length; i++) {
+            char[] word = new char[2 + random.nextInt(10)];
+            for (int j = 0; j < word.length; j++) {
+                word[j] = (char) ('a' + random.nextInt(26));
+            }
+            words[i] = new String(word);
+        }
+
+        byte[] text = new byte[length];
+        int position = 0;
+        while (position < length) {
+            byte[] word = words[random.nextInt(words.length)].getBytes(StandardCharsets.US_ASCII);
+            int wordLength = Math.min(word.length, length - position);
+            System.arraycopy(word, 0, text, position, wordLength);
+            position += wordLength;
+            if (position < length) {
+                text[position++] = (byte) (random.nextInt(10) == 0 ? '\n' : ' ');
+            }
+        }
+        return text;
+    }
+
+    private static int getFirstBlockType(byte[] compressed) {
+        return (compressed[0] >> 1) & 3;
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) ExBin Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.exbin.bined.intellij.data;
+
+import org.exbin.auxiliary.binary_data.ByteArrayData;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+/**
+ * Tests for edit journal.
+ *
+ * @author ExBin Project (https://exbin.org)
+ */
+@ParametersAreNonnullByDefault
+public class EditJournalTest {
+
+    @Test
+    public void testRecoverUnsavedEdits() throws IOException {
+        Path directory = Files.createTempDirectory("bined");
+        Path filePath = directory.resolve("data.bin");
+        Path journalPath = directory.resolve("data.journal");
+        try {
+            Files.write(filePath, new byte[]{1, 2, 3, 4});
+
+            EditJournal journal = EditJournal.open(journalPath, filePath);
+            OverlayEditableData data = new OverlayEditableData(new ByteArrayData(Files.readAllBytes(filePath)));
+            data.setJournal(journal);
+            data.replace(1, new byte[]{5});
+            journal.close();
+
+            journal = EditJournal.open(journalPath, filePath);
+            data = new OverlayEditableData(new ByteArrayData(Files.readAllBytes(filePath)));
+            Assert.assertTrue(journal.hasRecords());
+            Assert.assertTrue(data.recover(journal));
+            Assert.assertArrayEquals(new byte[]{1, 5, 3, 4}, getContent(data));
+            journal.delete();
+        } finally {
+            Files.deleteIfExists(journalPath);
+            Files.deleteIfExists(filePath);
+            Files.delete(directory);
+        }
+    }
+
+    @Test
+    public void testRecoverEditsAfterSave() throws IOException {
+        Path directory = Files.createTempDirectory("bined");
+        Path filePath = directory.resolve("data.bin");
+        Path journalPath = directory.resolve("data.journal");
+        try {
+            Files.write(filePath, new byte[]{1, 2, 3, 4});
+            Files.setLastModifiedTime(filePath, FileTime.fromMillis(1000000));
+
+            EditJournal journal = EditJournal.open(journalPath, filePath);
+            OverlayEditableData data = new OverlayEditableData(new ByteArrayData(Files.readAllBytes(filePath)));
+            data.setJournal(journal);
+            data.insert(4, new byte[]{5, 6});
+
+            // Save changes both size and modification time of the file
+            byte[] savedContent = getContent(data);
+            Files.write(filePath, savedContent);
+            Files.setLastModifiedTime(filePath, FileTime.fromMillis(2000000));
+            data.resetSource(new ByteArrayData(savedContent), EditJournal.FileState.of(filePath));
+            Assert.assertFalse(journal.hasRecords());
+
+            data.remove(0, 2);
+            journal.close();
+
+            journal = EditJournal.open(journalPath, filePath);
+            data = new OverlayEditableData(new ByteArrayData(Files.readAllBytes(filePath)));
+            Assert.assertTrue(journal.hasRecords());
+            Assert.assertTrue(data.recover(journal));
+            Assert.assertArrayEquals(new byte[]{3, 4, 5, 6}, getContent(data));
+            journal.delete();
+        } finally {
+            Files.deleteIfExists(journalPath);
+            Files.deleteIfExists(filePath);
+            Files.delete(directory);
+        }
+    }
+
+    @Test
+    public void testChangedFileDiscardsJournal() throws IOException {
+        Path directory = Files.createTempDirectory("bined");
+        Path filePath = directory.resolve("data.bin");
+        Path journalPath = directory.resolve("data.journal");
+        try {
+            Files.write(filePath, new byte[]{1, 2, 3, 4});
+            Files.setLastModifiedTime(filePath, FileTime.fromMillis(1000000));
+
+            EditJournal journal = EditJournal.open(journalPath, filePath);
+            journal.appendReplace(0, new byte[]{9});
+            journal.close();
+
+            Files.write(filePath, new byte[]{1, 2, 3});
+            journal = EditJournal.open(journalPath, filePath);
+            Assert.assertFalse(journal.hasRecords());
+            journal.delete();
+        } finally {
+            Files.deleteIfExists(journalPath);
+            Files.deleteIfExists(filePath);
+            Files.delete(directory);
+        }
+    }
+
+    @Nonnull
+    private static byte[] getContent(OverlayEditableData data) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        data.saveToStream(outputStream);
+        return outputStream.toByteArray();
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) ExBin Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.exbin.bined.intellij.data;
+
+import org.exbin.auxiliary.binary_data.ByteArrayData;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+
+/**
+ * Tests for seek index of gzip data comparing data read at random positions
+ * with data compressed by {@link GZIPOutputStream}.
+ *
+ * @author ExBin Project (https://exbin.org)
+ */
+@ParametersAreNonnullByDefault
+public class GzipSeekIndexTest {
+
+    private static final long SPAN = 64 * 1024;
+
+    @Test
+    public void testBuild() throws IOException {
+        byte[] data = DeflateDecoderTest.createText(new Random(1), 1000000);
+        GzipSeekIndex index = GzipSeekIndex.build(new ByteArrayData(gzip(data)), SPAN, null);
+        Assert.assertNotNull(index);
+        Assert.assertEquals(data.length, index.getUncompressedSize());
+        Assert.assertFalse(index.isLazy());
+        Assert.assertTrue(index.getCheckpointsCount() > 1);
+        Assert.assertEquals(0, index.findCheckpoint(0).getUncompressedPosition());
+    }
+
+    @Test
+    public void testRandomSeeks() throws IOException {
+        Random random = new Random(2);
+        byte[] data = DeflateDecoderTest.createText(random, 2000000);
+        assertRandomSeeks(data, gzip(data), random);
+    }
+
+    @Test
+    public void testMultipleMembers() throws IOException {
+        Random random = new Random(3);
+        byte[] first = DeflateDecoderTest.createText(random, 700000);
+        byte[] second = new byte[0];
+        byte[] third = DeflateDecoderTest.createText(random, 500000);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        compressed.write(gzip(first));
+        compressed.write(gzip(second));
+        compressed.write(gzip(third));
+
+        byte[] data = Arrays.copyOf(first, first.length + third.length);
+        System.arraycopy(third, 0, data, first.length, third.length);
+        GzipSeekIndex index = assertRandomSeeks(data, compressed.toByteArray(), random);
+        Assert.assertEquals(first.length, index.findCheckpoint(first.length).getUncompressedPosition());
+    }
+
+    @Test
+    public void testTrailingData() throws IOException {
+        byte[] data = DeflateDecoderTest.createText(new Random(4), 100000);
+        byte[] compressed = gzip(data);
+        byte[] padded = Arrays.copyOf(compressed, compressed.length + 100);
+        GzipSeekIndex index = GzipSeekIndex.build(new ByteArrayData(padded), SPAN, null);
+        Assert.assertNotNull(index);
+        Assert.assertEquals(data.length, index.getUncompressedSize());
+    }
+
+    @Test(expected = ZipException.class)
+    public void testNotGzip() throws ZipException {
+        GzipSeekIndex.build(new ByteArrayData(DeflateDecoderTest.createText(new Random(5), 1000)), SPAN, null);
+    }
+
+    @Test
+    public void testCancelled() throws IOException {
+        byte[] data = DeflateDecoderTest.createText(new Random(6), 3000000);
+        GzipSeekIndex index = GzipSeekIndex.build(new ByteArrayData(gzip(data)), SPAN, new GzipSeekIndex.BuildMonitor() {
+            @Override
+            public boolean isCancelled() {
+                return true;
+            }
+
+            @Override
+            public void progress(long position, long size) {
+            }
+        });
+        Assert.assertNull(index);
+    }
+
+    @Test
+    public void testSaveAndLoad() throws IOException {
+        Random random = new Random(7);
+        byte[] data = DeflateDecoderTest.createText(random, 1000000);
+        byte[] compressed = gzip(data);
+        GzipSeekIndex index = GzipSeekIndex.build(new ByteArrayData(compressed), SPAN, null);
+        Assert.assertNotNull(index);
+
+        Path directory = Files.createTempDirectory("bined");
+        Path indexPath = directory.resolve("test.gzindex");
+        try {
+            index.save(indexPath, compressed.length, 1000);
+            Assert.assertNull(GzipSeekIndex.load(indexPath, compressed.length, 2000));
+            Assert.assertNull(GzipSeekIndex.load(indexPath, compressed.length + 1, 1000));
+            GzipSeekIndex loadedIndex = GzipSeekIndex.load(indexPath, compressed.length, 1000);
+            Assert.assertNotNull(loadedIndex);
+            Assert.assertEquals(index.getCheckpointsCount(), loadedIndex.getCheckpointsCount());
+            Assert.assertEquals(index.getUncompressedSize(), loadedIndex.getUncompressedSize());
+            assertReads(data, compressed, loadedIndex, random);
+        } finally {
+            Files.deleteIfExists(indexPath);
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    @Nonnull
+    private static GzipSeekIndex assertRandomSeeks(byte[] data, byte[] compressed, Random random) throws ZipException {
+        GzipSeekIndex index = GzipSeekIndex.build(new ByteArrayData(compressed), SPAN, null);
+        Assert.assertNotNull(index);
+        Assert.assertEquals(data.length, index.getUncompressedSize());
+        assertReads(data, compressed, index, random);
+        return index;
+    }
+
+    /**
+     * Reads data at random positions starting from the nearest checkpoint
+     * and compares them with original data.
+     */
+    private static void assertReads(byte[] data, byte[] compressed, GzipSeekIndex index, Random random) throws ZipException {
+        ByteArrayData compressedData = new ByteArrayData(compressed);
+        for (int i = 0; i < 100; i++) {
+            int position = random.nextInt(data.length);
+            int length = Math.min(data.length - position, 1 + random.nextInt((int) SPAN * 2));
+            GzipSeekIndex.Checkpoint checkpoint = index.findCheckpoint(position);
+            Assert.assertTrue(checkpoint.getUncompressedPosition() <= position);
+            Assert.assertTrue(position - checkpoint.getUncompressedPosition() < SPAN * 2);
+
+            DeflateDecoder decoder = checkpoint.createDecoder(compressedData);
+            long skip = position - checkpoint.getUncompressedPosition();
+            Assert.assertEquals(skip, decoder.skip(skip));
+            byte[] buffer = new byte[length];
+            int offset = 0;
+            while (offset < length) {
+                int read = decoder.read(buffer, offset, length - offset);
+                if (read < 0) {
+                    // Next member starts with its own checkpoint
+                    decoder = index.findCheckpoint(position + offset).createDecoder(compressedData);
+                    continue;
+                }
+                offset += read;
+            }
+            Assert.assertArrayEquals(Arrays.copyOfRange(data, position, position + length), buffer);
+        }
+    }
+
+    @Nonnull
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzipOutput = new GZIPOutputStream(output)) {
+            gzipOutput.write(data);
+        }
+        return output.toByteArray();
+    }
+}
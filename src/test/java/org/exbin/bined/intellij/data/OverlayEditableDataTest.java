@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) ExBin Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.exbin.bined.intellij.data;
+
+import org.exbin.auxiliary.binary_data.ByteArrayData;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Tests for overlay editable data.
+ *
+ * @author ExBin Project (https://exbin.org)
+ */
+@ParametersAreNonnullByDefault
+public class OverlayEditableDataTest {
+
+    @Test
+    public void testEditsMatchArray() {
+        Random random = new Random(1);
+        byte[] sourceData = randomBytes(random, 10000);
+        OverlayEditableData data = new OverlayEditableData(new ByteArrayData(sourceData.clone()));
+        byte[] expected = sourceData.clone();
+        for (int i = 0; i < 2000; i++) {
+            expected = randomEdit(random, data, expected);
+        }
+        Assert.assertArrayEquals(expected, getContent(data));
+    }
+
+    @Test
+    public void testInPlaceModifiedRanges() {
+        OverlayEditableData data = new OverlayEditableData(new ByteArrayData(new byte[1000]));
+        Assert.assertFalse(data.isModified());
+        data.replace(10, new byte[]{1, 2, 3});
+        data.replace(500, new byte[]{4});
+        Assert.assertTrue(data.isModified());
+        Assert.assertEquals(2, data.getInPlaceModifiedRanges().size());
+        Assert.assertEquals(500, data.getInPlaceModifiedRanges().get(1).getStartPosition());
+
+        data.insert(0, new byte[]{5});
+        Assert.assertNull(data.getInPlaceModifiedRanges());
+    }
+
+    @Test
+    public void testRebaseSource() {
+        Random random = new Random(2);
+        byte[] sourceData = randomBytes(random, 10000);
+        ByteArrayData source = new ByteArrayData(sourceData);
+        OverlayEditableData data = new OverlayEditableData(source);
+        byte[] expected = sourceData.clone();
+        for (int i = 0; i < 100; i++) {
+            expected = randomEdit(random, data, expected);
+        }
+
+        // Snapshot is written to the file while editing continues
+        OverlayEditableData snapshot = data.createSnapshot();
+        byte[] written = getContent(snapshot);
+        for (int i = 0; i < 100; i++) {
+            expected = randomEdit(random, data, expected);
+        }
+        Arrays.fill(sourceData, (byte) 0x55);
+
+        Assert.assertTrue(data.rebaseSource(snapshot, new ByteArrayData(written)));
+        Assert.assertArrayEquals(expected, getContent(data));
+    }
+
+    @Test
+    public void testSnapshotIsStable() {
+        Random random = new Random(3);
+        OverlayEditableData data = new OverlayEditableData(new ByteArrayData(randomBytes(random, 5000)));
+        OverlayEditableData snapshot = data.createSnapshot();
+        byte[] snapshotContent = getContent(snapshot);
+        byte[] expected = snapshotContent.clone();
+        for (int i = 0; i < 100; i++) {
+            expected = randomEdit(random, data, expected);
+        }
+        Assert.assertArrayEquals(snapshotContent, getContent(snapshot));
+        Assert.assertArrayEquals(expected, getContent(data));
+    }
+
+    @Test(timeout = 20000)
+    public void testManyScatteredEdits() {
+        int size = 1000000;
+        OverlayEditableData data = new OverlayEditableData(new ByteArrayData(new byte[size]));
+        Random random = new Random(4);
+        byte[] expected = new byte[size];
+        for (int i = 0; i < 200000; i++) {
+            int position = random.nextInt(size / 2) * 2;
+            expected[position] = (byte) (1 + random.nextInt(255));
+            data.replace(position, new byte[]{expected[position]});
+        }
+        OverlayEditableData snapshot = data.createSnapshot();
+        data.insert(1, new byte[]{1});
+        data.remove(0, 2);
+        for (int i = 0; i < 1000; i++) {
+            int position = random.nextInt(size);
+            Assert.assertEquals(expected[position], snapshot.getByte(position));
+        }
+        Assert.assertArrayEquals(expected, getContent(snapshot));
+    }
+
+    /**
+     * Performs random edit of data and the same edit of expected array.
+     *
+     * @param random random generator
+     * @param data edited data
+     * @param expected expected content
+     * @return expected content after edit
+     */
+    @Nonnull
+    private static byte[] randomEdit(Random random, OverlayEditableData data, byte[] expected) {
+        int position = random.nextInt(expected.length + 1);
+        switch (random.nextInt(3)) {
+            case 0: {
+                byte[] inserted = randomBytes(random, 1 + random.nextInt(20));
+                data.insert(position, inserted);
+                byte[] result = new byte[expected.length + inserted.length];
+                System.arraycopy(expected, 0, result, 0, position);
+                System.arraycopy(inserted, 0, result, position, inserted.length);
+                System.arraycopy(expected, position, result, position + inserted.length, expected.length - position);
+                return result;
+            }
+            case 1: {
+                int length = Math.min(expected.length - position, random.nextInt(20));
+                data.remove(position, length);
+                byte[] result = new byte[expected.length - length];
+                System.arraycopy(expected, 0, result, 0, position);
+                System.arraycopy(expected, position + length, result, position, expected.length - position - length);
+                return result;
+            }
+            default: {
+                int length = Math.min(expected.length - position, random.nextInt(20));
+                byte[] replacing = randomBytes(random, length);
+                data.replace(position, replacing);
+                byte[] result = expected.clone();
+                System.arraycopy(replacing, 0, result, position, length);
+                return result;
+            }
+        }
+    }
+
+    @Nonnull
+    private static byte[] getContent(OverlayEditableData data) {
+        byte[] content = new byte[(int) data.getDataSize()];
+        data.copyToArray(0, content, 0, content.length);
+        return content;
+    }
+
+    @Nonnull
+    private static byte[] randomBytes(Random random, int length) {
+        byte[] data = new byte[length];
+        random.nextBytes(data);
+        return data;
+    }
+}
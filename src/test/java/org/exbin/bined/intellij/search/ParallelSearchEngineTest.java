@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) ExBin Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.exbin.bined.intellij.search;
+
+import org.exbin.auxiliary.binary_data.ByteArrayData;
+import org.exbin.bined.intellij.search.matcher.SearchMatchers;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Tests for parallel search engine.
+ * <p>
+ * Small chunks are used, so that matches cross chunk boundaries and results
+ * of multiple chunks and waves are merged.
+ *
+ * @author ExBin Project (https://exbin.org)
+ */
+@ParametersAreNonnullByDefault
+public class ParallelSearchEngineTest {
+
+    private static final int CHUNK_SIZE = 16;
+    private static final ForkJoinPool POOL = new ForkJoinPool(4);
+
+    private final ParallelSearchEngine searchEngine = new ParallelSearchEngine(POOL, CHUNK_SIZE);
+
+    @AfterClass
+    public static void shutdownPool() {
+        POOL.shutdown();
+    }
+
+    @Test
+    public void testMatchesAcrossChunkBoundaries() {
+        byte[] pattern = {1, 2, 3, 4, 5, 6, 7};
+        byte[] data = new byte[CHUNK_SIZE * 20];
+        for (int boundary = CHUNK_SIZE; boundary < data.length - CHUNK_SIZE; boundary += CHUNK_SIZE * 2) {
+            System.arraycopy(pattern, 0, data, boundary - (boundary / CHUNK_SIZE) % pattern.length, pattern.length);
+        }
+        System.arraycopy(pattern, 0, data, data.length - pattern.length, pattern.length);
+
+        long[] expected = findNaive(data, pattern, 0, data.length);
+        Assert.assertEquals(10, expected.length);
+        Assert.assertArrayEquals(expected, find(data, pattern, 0, true, Integer.MAX_VALUE));
+        Assert.assertArrayEquals(expected, find(data, pattern, data.length, false, Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void testForwardLimit() {
+        Random random = new Random(7);
+        byte[] data = randomBytes(random, 5000);
+        byte[] pattern = {1, 0};
+        long[] allMatches = findNaive(data, pattern, 1000, data.length);
+
+        long[] matches = find(data, pattern, 1000, true, 30);
+        Assert.assertArrayEquals(Arrays.copyOf(allMatches, 30), matches);
+    }
+
+    @Test
+    public void testBackwardLimit() {
+        Random random = new Random(11);
+        byte[] data = randomBytes(random, 5000);
+        byte[] pattern = {1, 0};
+        // Backward search starts at the last candidate position
+        long[] allMatches = findNaive(data, pattern, 0, 4001);
+
+        long[] matches = find(data, pattern, 4000, false, 30);
+        Assert.assertArrayEquals(Arrays.copyOfRange(allMatches, allMatches.length - 30, allMatches.length), matches);
+    }
+
+    @Test
+    public void testRandomData() {
+        Random random = new Random(42);
+        for (int round = 0; round < 50; round++) {
+            byte[] data = randomBytes(random, 100 + random.nextInt(3000));
+            byte[] pattern = randomBytes(random, 1 + random.nextInt(4));
+            int maxMatches = 1 + random.nextInt(100);
+            int start = random.nextInt(data.length);
+
+            long[] forwardMatches = findNaive(data, pattern, start, data.length);
+            Assert.assertArrayEquals(Arrays.copyOf(forwardMatches, Math.min(maxMatches, forwardMatches.length)), find(data, pattern, start, true, maxMatches));
+
+            long[] backwardMatches = findNaive(data, pattern, 0, start + 1);
+            Assert.assertArrayEquals(Arrays.copyOfRange(backwardMatches, Math.max(0, backwardMatches.length - maxMatches), backwardMatches.length), find(data, pattern, start, false, maxMatches));
+        }
+    }
+
+    @Test
+    public void testListener() {
+        Random random = new Random(3);
+        byte[] data = randomBytes(random, 5000);
+        byte[] pattern = {1, 0};
+        List<Long> reported = new ArrayList<>();
+        long[] lastProgress = new long[2];
+        long[] matches = searchEngine.findAll(new ByteArrayData(data), SearchMatchers.forPattern(pattern), data.length, false, 50, new ParallelSearchEngine.SearchListener() {
+            @Override
+            public void matchesFound(long[] positions) {
+                // Backward batches are reported from the end, each batch is ascending
+                for (int i = positions.length - 1; i >= 0; i--) {
+                    reported.add(positions[i]);
+                }
+            }
+
+            @Override
+            public void progressChanged(long scannedSize, long totalSize) {
+                lastProgress[0] = scannedSize;
+                lastProgress[1] = totalSize;
+            }
+        }, null);
+
+        Assert.assertEquals(50, matches.length);
+        Assert.assertEquals(50, reported.size());
+        for (int i = 0; i < matches.length; i++) {
+            Assert.assertEquals(matches[matches.length - 1 - i], (long) reported.get(i));
+        }
+        Assert.assertEquals(data.length - pattern.length + 1, lastProgress[1]);
+    }
+
+    @Test
+    public void testNoCandidates() {
+        byte[] pattern = {1, 2, 3};
+        Assert.assertEquals(0, find(new byte[]{1, 2}, pattern, 0, true, 10).length);
+        Assert.assertEquals(0, find(new byte[]{1, 2, 3}, pattern, 0, true, 0).length);
+        Assert.assertEquals(0, find(new byte[]{1, 2, 3}, pattern, 1, true, 10).length);
+    }
+
+    @Test(expected = CancellationException.class)
+    public void testCancelled() {
+        SearchCancellationToken token = new SearchCancellationToken();
+        token.cancel();
+        searchEngine.findAll(new ByteArrayData(new byte[1000]), SearchMatchers.forPattern(new byte[]{1}), 0, true, 10, null, token);
+    }
+
+    @Nonnull
+    private long[] find(byte[] data, byte[] pattern, long startPosition, boolean forward, int maxMatches) {
+        return searchEngine.findAll(new ByteArrayData(data), SearchMatchers.forPattern(pattern), startPosition, forward, maxMatches);
+    }
+
+    @Nonnull
+    private static long[] findNaive(byte[] data, byte[] pattern, int from, int to) {
+        int candidatesEnd = Math.min(to, data.length - pattern.length + 1);
+        List<Long> matches = new ArrayList<>();
+        for (int i = from; i < candidatesEnd; i++) {
+            if (SearchMatchers.regionMatches(data, i, pattern, 0, pattern.length)) {
+                matches.add((long) i);
+            }
+        }
+        return matches.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    @Nonnull
+    private static byte[] randomBytes(Random random, int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) random.nextInt(3);
+        }
+        return data;
+    }
+}
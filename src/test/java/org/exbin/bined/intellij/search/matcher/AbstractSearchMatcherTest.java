@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) ExBin Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.exbin.bined.intellij.search.matcher;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Common tests of search matchers comparing found matches with naive search.
+ *
+ * @author ExBin Project (https://exbin.org)
+ */
+@ParametersAreNonnullByDefault
+public abstract class AbstractSearchMatcherTest {
+
+    @Nonnull
+    protected abstract SearchMatcher createMatcher(byte[] pattern);
+
+    @Test
+    public void testPatternLength() {
+        byte[] pattern = "pattern of text".getBytes(StandardCharsets.US_ASCII);
+        Assert.assertEquals(pattern.length, createMatcher(pattern).getPatternLength());
+    }
+
+    @Test
+    public void testFindText() {
+        byte[] buffer = "Text with pattern of text, second pattern of text.".getBytes(StandardCharsets.US_ASCII);
+        byte[] pattern = "pattern of text".getBytes(StandardCharsets.US_ASCII);
+        assertMatches(buffer, pattern);
+    }
+
+    @Test
+    public void testNotFound() {
+        byte[] buffer = "Text without searched sequence".getBytes(StandardCharsets.US_ASCII);
+        byte[] pattern = "pattern of text".getBytes(StandardCharsets.US_ASCII);
+        SearchMatcher matcher = createMatcher(pattern);
+        Assert.assertEquals(-1, matcher.findNext(buffer, 0, buffer.length - pattern.length + 1));
+    }
+
+    @Test
+    public void testRangeBounds() {
+        byte[] pattern = "pattern of text".getBytes(StandardCharsets.US_ASCII);
+        byte[] buffer = new byte[pattern.length * 4];
+        System.arraycopy(pattern, 0, buffer, 5, pattern.length);
+        SearchMatcher matcher = createMatcher(pattern);
+
+        // Match at the first and at the last candidate of range
+        Assert.assertEquals(5, matcher.findNext(buffer, 5, 6));
+        Assert.assertEquals(5, matcher.findNext(buffer, 0, 6));
+        // Match starting at the end of range is not reported
+        Assert.assertEquals(-1, matcher.findNext(buffer, 0, 5));
+        Assert.assertEquals(-1, matcher.findNext(buffer, 6, buffer.length - pattern.length + 1));
+    }
+
+    @Test
+    public void testOverlappingMatches() {
+        byte[] pattern = "abababababababab".getBytes(StandardCharsets.US_ASCII);
+        byte[] buffer = "xabababababababababababababababx".getBytes(StandardCharsets.US_ASCII);
+        assertMatches(buffer, pattern);
+    }
+
+    @Test
+    public void testRandomData() {
+        Random random = new Random(42);
+        for (int round = 0; round < 200; round++) {
+            int alphabet = 2 + random.nextInt(round % 2 == 0 ? 3 : 255);
+            byte[] buffer = randomBytes(random, 2000 + random.nextInt(2000), alphabet);
+            byte[] pattern;
+            if (random.nextBoolean()) {
+                int start = random.nextInt(buffer.length - 40);
+                pattern = Arrays.copyOfRange(buffer, start, start + 16 + random.nextInt(24));
+            } else {
+                pattern = randomBytes(random, 16 + random.nextInt(24), alphabet);
+            }
+            assertMatches(buffer, pattern);
+        }
+    }
+
+    /**
+     * Asserts that all matches found by matcher from each offset are equal to
+     * matches found by naive search.
+     *
+     * @param buffer buffer
+     * @param pattern pattern
+     */
+    protected void assertMatches(byte[] buffer, byte[] pattern) {
+        SearchMatcher matcher = createMatcher(pattern);
+        int candidates = buffer.length - pattern.length + 1;
+        List<Integer> expected = findNaive(buffer, pattern, candidates);
+        List<Integer> found = new ArrayList<>();
+        int offset = 0;
+        while (offset < candidates) {
+            int match = matcher.findNext(buffer, offset, candidates);
+            if (match < 0) {
+                break;
+            }
+            found.add(match);
+            offset = match + 1;
+        }
+        Assert.assertEquals(expected, found);
+    }
+
+    @Nonnull
+    private static List<Integer> findNaive(byte[] buffer, byte[] pattern, int candidates) {
+        List<Integer> matches = new ArrayList<>();
+        for (int i = 0; i < candidates; i++) {
+            if (SearchMatchers.regionMatches(buffer, i, pattern, 0, pattern.length)) {
+                matches.add(i);
+            }
+        }
+        return matches;
+    }
+
+    @Nonnull
+    protected static byte[] randomBytes(Random random, int length, int alphabet) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) random.nextInt(alphabet);
+        }
+        return data;
+    }
+}
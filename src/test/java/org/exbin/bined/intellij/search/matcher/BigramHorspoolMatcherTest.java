@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) ExBin Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.exbin.bined.intellij.search.matcher;
+
+import org.junit.Test;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Tests for Horspool matcher shifting by pairs of bytes.
+ *
+ * @author ExBin Project (https://exbin.org)
+ */
+@ParametersAreNonnullByDefault
+public class BigramHorspoolMatcherTest extends AbstractSearchMatcherTest {
+
+    @Nonnull
+    @Override
+    protected SearchMatcher createMatcher(byte[] pattern) {
+        return new BigramHorspoolMatcher(pattern);
+    }
+
+    @Test
+    public void testUtf16Text() {
+        byte[] buffer = "Searched text with UTF-16 pattern, another UTF-16 pattern".getBytes(StandardCharsets.UTF_16LE);
+        byte[] pattern = "UTF-16 pattern".getBytes(StandardCharsets.UTF_16LE);
+        assertMatches(buffer, pattern);
+    }
+
+    @Test
+    public void testTwoBytePattern() {
+        byte[] buffer = {1, 2, 1, 2, 2, 1, 1, 2};
+        assertMatches(buffer, new byte[]{1, 2});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSingleBytePattern() {
+        createMatcher(new byte[]{1});
+    }
+}
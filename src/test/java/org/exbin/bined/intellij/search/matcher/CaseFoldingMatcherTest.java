@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) ExBin Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.exbin.bined.intellij.search.matcher;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Tests for matcher of text ignoring case.
+ *
+ * @author ExBin Project (https://exbin.org)
+ */
+@ParametersAreNonnullByDefault
+public class CaseFoldingMatcherTest {
+
+    @Test
+    public void testFindAsciiText() {
+        byte[] buffer = "Hello WORLD, hello world, HeLLo WoRlD!".getBytes(StandardCharsets.US_ASCII);
+        Assert.assertEquals(Arrays.asList(0, 13, 26), findAll(buffer, "hello world", StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    public void testFindMultiByteText() {
+        String text = "P\u0159\u00edli\u0161 \u017elu\u0165ou\u010dk\u00fd k\u016f\u0148, P\u0158\u00cdLI\u0160 \u017dLU\u0164OU\u010cK\u00dd K\u016e\u0147";
+        byte[] buffer = text.getBytes(StandardCharsets.UTF_8);
+        int secondOffset = text.substring(0, text.indexOf("\u017dLU\u0164")).getBytes(StandardCharsets.UTF_8).length;
+        int firstOffset = text.substring(0, text.indexOf("\u017elu\u0165")).getBytes(StandardCharsets.UTF_8).length;
+        Assert.assertEquals(Arrays.asList(firstOffset, secondOffset), findAll(buffer, "\u017dlu\u0165ou\u010dk\u00fd", StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testFindUtf16Text() {
+        byte[] buffer = "abc ABC aBc".getBytes(StandardCharsets.UTF_16LE);
+        Assert.assertEquals(Arrays.asList(0, 8, 16), findAll(buffer, "Abc", StandardCharsets.UTF_16LE));
+    }
+
+    @Test
+    public void testNotFound() {
+        byte[] buffer = "Text without searched word".getBytes(StandardCharsets.US_ASCII);
+        Assert.assertEquals(new ArrayList<Integer>(), findAll(buffer, "pattern", StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    public void testCharsetWithByteOrderMark() {
+        byte[] buffer = "abc ABC aBc".getBytes(StandardCharsets.UTF_16BE);
+        Assert.assertEquals(Arrays.asList(0, 8, 16), findAll(buffer, "Abc", StandardCharsets.UTF_16));
+    }
+
+    @Test
+    public void testStatefulCharset() {
+        Assert.assertNull(CaseFoldingMatcher.forText("\u3042\u3044", Charset.forName("ISO-2022-JP")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEmptyText() {
+        CaseFoldingMatcher.forText("", StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testRandomText() {
+        Random random = new Random(42);
+        String alphabet = "abcABC\u010d\u010c\u0159\u0158 ";
+        for (int round = 0; round < 200; round++) {
+            String data = randomText(random, 500 + random.nextInt(500), alphabet);
+            String text;
+            if (random.nextBoolean()) {
+                int start = random.nextInt(data.length() - 20);
+                text = data.substring(start, start + 1 + random.nextInt(19));
+            } else {
+                text = randomText(random, 1 + random.nextInt(4), alphabet);
+            }
+            byte[] buffer = data.getBytes(StandardCharsets.UTF_8);
+            Assert.assertEquals(findNaive(data, text, StandardCharsets.UTF_8), findAll(buffer, text, StandardCharsets.UTF_8));
+        }
+    }
+
+    @Nonnull
+    private static List<Integer> findAll(byte[] buffer, String text, Charset charset) {
+        SearchMatcher matcher = CaseFoldingMatcher.forText(text, charset);
+        Assert.assertNotNull(matcher);
+        int candidates = buffer.length - matcher.getPatternLength() + 1;
+        List<Integer> found = new ArrayList<>();
+        int offset = 0;
+        while (offset < candidates) {
+            int match = matcher.findNext(buffer, offset, candidates);
+            if (match < 0) {
+                break;
+            }
+            found.add(match);
+            offset = match + 1;
+        }
+        return found;
+    }
+
+    @Nonnull
+    private static List<Integer> findNaive(String data, String text, Charset charset) {
+        List<Integer> matches = new ArrayList<>();
+        for (int i = 0; i + text.length() <= data.length(); i++) {
+            if (data.regionMatches(true, i, text, 0, text.length())) {
+                matches.add(data.substring(0, i).getBytes(charset).length);
+            }
+        }
+        return matches;
+    }
+
+    @Nonnull
+    private static String randomText(Random random, int length, String alphabet) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            builder.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return builder.toString();
+    }
+}
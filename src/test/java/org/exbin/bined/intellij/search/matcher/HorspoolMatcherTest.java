@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) ExBin Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.exbin.bined.intellij.search.matcher;
+
+import org.junit.Test;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * Tests for Boyer-Moore-Horspool matcher.
+ *
+ * @author ExBin Project (https://exbin.org)
+ */
+@ParametersAreNonnullByDefault
+public class HorspoolMatcherTest extends AbstractSearchMatcherTest {
+
+    @Nonnull
+    @Override
+    protected SearchMatcher createMatcher(byte[] pattern) {
+        return new HorspoolMatcher(pattern);
+    }
+
+    @Test
+    public void testShortPattern() {
+        byte[] buffer = {1, 2, 3, 2, 1, 2, 2};
+        assertMatches(buffer, new byte[]{2});
+        assertMatches(buffer, new byte[]{1, 2});
+    }
+
+    @Test
+    public void testMaximalByteValues() {
+        byte[] pattern = {(byte) 0xff, 0, (byte) 0x80, 0x7f, (byte) 0xff, 0, (byte) 0x80, 0x7f, (byte) 0xfe, 0, 1, 2};
+        byte[] buffer = new byte[100];
+        System.arraycopy(pattern, 0, buffer, 0, pattern.length);
+        System.arraycopy(pattern, 0, buffer, 50, pattern.length);
+        System.arraycopy(pattern, 0, buffer, buffer.length - pattern.length, pattern.length);
+        assertMatches(buffer, pattern);
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) ExBin Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.exbin.bined.intellij.search.matcher;
+
+import org.junit.Test;
+
+import javax.annotation.Nonnull;
+import javax.annotation.ParametersAreNonnullByDefault;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Tests for Two-Way matcher.
+ *
+ * @author ExBin Project (https://exbin.org)
+ */
+@ParametersAreNonnullByDefault
+public class TwoWayMatcherTest extends AbstractSearchMatcherTest {
+
+    @Nonnull
+    @Override
+    protected SearchMatcher createMatcher(byte[] pattern) {
+        return new TwoWayMatcher(pattern);
+    }
+
+    @Test
+    public void testRepetitiveData() {
+        byte[] buffer = new byte[10000];
+        buffer[5000] = 1;
+        buffer[buffer.length - 1] = 1;
+        byte[] pattern = new byte[100];
+        pattern[pattern.length - 1] = 1;
+        assertMatches(buffer, pattern);
+        assertMatches(buffer, new byte[100]);
+    }
+
+    @Test
+    public void testPeriodicPattern() {
+        byte[] pattern = "abaabaabaabaabaab".getBytes(StandardCharsets.US_ASCII);
+        byte[] buffer = "abaabaabaabaabaabaabaabaabaabaabaabaababaabaabaabaabaab".getBytes(StandardCharsets.US_ASCII);
+        assertMatches(buffer, pattern);
+    }
+
+    @Test
+    public void testNonPeriodicPattern() {
+        byte[] pattern = "aaaaaaaaaaaaaaab".getBytes(StandardCharsets.US_ASCII);
+        byte[] buffer = "aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaabaaaaaaaaaaaaaaaab".getBytes(StandardCharsets.US_ASCII);
+        assertMatches(buffer, pattern);
+    }
+
+    @Test
+    public void testShortPattern() {
+        byte[] buffer = {1, 2, 3, 2, 1, 2, 2};
+        assertMatches(buffer, new byte[]{2});
+        assertMatches(buffer, new byte[]{2, 1});
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) ExBin Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.exbin.bined.intellij.search.matcher;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import javax.annotation.ParametersAreNonnullByDefault;
+
+/**
+ * Matcher filtering candidates by first and last byte of pattern using SIMD
+ * instructions.
+ * <p>
+ * Vectors of bytes at candidate positions and at positions shifted by
+ * pattern length are compared with first and last byte of pattern at once
+ * and only candidates matching both are verified. Requires module
+ * jdk.incubator.vector, which is added by VM option
+ * {@code --add-modules=jdk.incubator.vector}, use {@link SearchMatchers} to
+ * create it only when available. Class is compiled in separate source set,
+ * so that other classes are compiled without incubating module.
+ *
+ * @author ExBin Project (https://exbin.org)
+ */
+@ParametersAreNonnullByDefault
+public class VectorFirstByteMatcher implements SearchMatcher {
+
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+
+    private final byte[] pattern;
+    private final FirstByteMatcher scalarMatcher;
+    private final ByteVector first;
+    private final ByteVector last;
+
+    public VectorFirstByteMatcher(byte[] pattern) {
+        this.pattern = pattern.clone();
+        scalarMatcher = new FirstByteMatcher(pattern);
+        first = ByteVector.broadcast(SPECIES, pattern[0]);
+        last = ByteVector.broadcast(SPECIES, pattern[pattern.length - 1]);
+    }
+
+    @Override
+    public int getPatternLength() {
+        return pattern.length;
+    }
+
+    @Override
+    public int findNext(byte[] buffer, int from, int to) {
+        int lastIndex = pattern.length - 1;
+        int vectorLength = SPECIES.length();
+        // Dense matches are found by scalar scan before vector setup
+        int offset = Math.min(to, from + vectorLength);
+        int found = scalarMatcher.findNext(buffer, from, offset);
+        if (found >= 0) {
+            return found;
+        }
+
+        while (offset + vectorLength <= to) {
+            VectorMask<Byte> mask = ByteVector.fromArray(SPECIES, buffer, offset).compare(VectorOperators.EQ, first)
+                    .and(ByteVector.fromArray(SPECIES, buffer, offset + lastIndex).compare(VectorOperators.EQ, last));
+            if (mask.anyTrue()) {
+                // Candidates of vector are verified by scalar code, mask to bits conversion is slow on older JDKs
+                found = scalarMatcher.findNext(buffer, offset, offset + vectorLength);
+                if (found >= 0) {
+                    return found;
+                }
+            }
+            offset += vectorLength;
+        }
+
+        // Tail shorter than vector
+        return scalarMatcher.findNext(buffer, offset, to);
+    }
+}